@@ -9,7 +9,8 @@ import java.util.ArrayList;
  * It manages the definition of each object of type <code>Animation</code>
  *
  * The Animation class manages a series of images (frames) and
- * the amount of time to display each frame.
+ * the amount of time to display each frame. Each frame is an
+ * AtlasFrame, so several frames can share a single image.
  *
  * @author Quazar Volume
  */
@@ -72,9 +73,24 @@ public class Animation {
      */
     public synchronized void addFrame(Image imaImage,
         long lDuration)
+    {
+        addFrame(new AtlasFrame(imaImage), lDuration);
+    }
+
+    /**
+     * addFrame
+     *
+     * Adds a frame of an atlas to the animation with the specified
+     * duration (time to display the frame).
+     *
+     * @param afFrame is an object of class <code>AtlasFrame</code>
+     * @param lDuration is an object of class <code>Long</code>
+     */
+    public synchronized void addFrame(AtlasFrame afFrame,
+        long lDuration)
     {
         lTotalDuration += lDuration; // Updates lTotalDuration
-        Arrframes.add(new AnimFrame(imaImage, lTotalDuration)); // Adds frame
+        Arrframes.add(new AnimFrame(afFrame, lTotalDuration)); // Adds frame
     }
 
     /**
@@ -115,18 +131,33 @@ public class Animation {
     /**
      * getImage
      *
-     * Gets this Animation's current image. Returns null if this
-     * animation has no images.
+     * Gets the image that contains this Animation's current frame.
+     * The image may be an atlas page shared with other frames, so
+     * use getCurrentFrame to draw it. Returns null if this animation
+     * has no images.
      *
      * @return object of class <code>Image</code> or null
      */
     public synchronized Image getImage() {
+        AtlasFrame afFrame = getCurrentFrame();
+        return (afFrame == null) ? null : afFrame.getImage();
+    }
+
+    /**
+     * getCurrentFrame
+     *
+     * Gets this Animation's current frame. Returns null if this
+     * animation has no frames.
+     *
+     * @return object of class <code>AtlasFrame</code> or null
+     */
+    public synchronized AtlasFrame getCurrentFrame() {
         // Checks if frame array list is empty
         if (Arrframes.size() == 0) {
             return null;
         }
         else {
-            return getFrame(iCurrFrameIndex).imaImage; // Returns image if not
+            return getFrame(iCurrFrameIndex).afFrame; // Returns frame if not
         }
     }
 
@@ -147,14 +178,14 @@ public class Animation {
      *
      * It manages the definition of each object of type <code>AnimFrame</code>
      *
-     * The AnimFrame class manages an image and an end time, used to know the
+     * The AnimFrame class manages an atlas frame and an end time, used to know the
      * duration of that specific frame in an animation.
      *
      * @author Quazar Volume
      */
     private class AnimFrame {
 
-        Image imaImage; // Image of the frame
+        AtlasFrame afFrame; // Image of the frame
         long lEndTime; // Ending time of the frame
 
         /**
@@ -164,11 +195,11 @@ public class Animation {
          *
          * Creates a new, parameterized AnimFrame
          *
-         * @param imaImage is an object of class <code>Image</code>
+         * @param afFrame is an object of class <code>AtlasFrame</code>
          * @param lEndTime is an object of class <code>Long</code>
          */
-        public AnimFrame(Image imaImage, long lEndTime) {
-            this.imaImage = imaImage;
+        public AnimFrame(AtlasFrame afFrame, long lEndTime) {
+            this.afFrame = afFrame;
             this.lEndTime = lEndTime;
         }
     }
@@ -0,0 +1,135 @@
+package com.brackeen.javagamebook.graphics;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+
+/**
+ * AtlasFrame
+ *
+ * It manages the definition of each object of type <code>AtlasFrame</code>
+ *
+ * The AtlasFrame class is a rectangle inside an image. Many frames
+ * usually share the same image (a page of a SpriteAtlas) and are drawn
+ * with the source rectangle variant of drawImage, so the page stays a
+ * single accelerated surface. A frame can also cover a whole image.
+ *
+ * @author Quazar Volume
+ */
+public class AtlasFrame {
+
+    private Image imaPage;  // Image that contains the frame
+    private int iX;         // Position of the frame inside the page
+    private int iY;
+    private int iWidth;     // Size of the frame
+    private int iHeight;
+
+    /**
+     * AtlasFrame
+     *
+     * Parameterized Constructor (One parameter)
+     *
+     * Creates a new AtlasFrame that covers a whole image.
+     *
+     * @param imaImage is an object of class <code>Image</code>
+     */
+    public AtlasFrame(Image imaImage) {
+        this(imaImage, 0, 0, imaImage.getWidth(null),
+            imaImage.getHeight(null));
+    }
+
+    /**
+     * AtlasFrame
+     *
+     * Parameterized Constructor (Five parameters)
+     *
+     * Creates a new AtlasFrame with the specified rectangle of a page.
+     *
+     * @param imaPage is an object of class <code>Image</code>
+     * @param iX is an object of class <code>Integer</code>
+     * @param iY is an object of class <code>Integer</code>
+     * @param iWidth is an object of class <code>Integer</code>
+     * @param iHeight is an object of class <code>Integer</code>
+     */
+    public AtlasFrame(Image imaPage, int iX, int iY, int iWidth,
+        int iHeight)
+    {
+        this.imaPage = imaPage;
+        this.iX = iX;
+        this.iY = iY;
+        this.iWidth = iWidth;
+        this.iHeight = iHeight;
+    }
+
+    /**
+     * getImage
+     *
+     * Gets the image that contains this frame. It may contain other
+     * frames too.
+     *
+     * @return object of class <code>Image</code>
+     */
+    public Image getImage() {
+        return imaPage;
+    }
+
+    /**
+     * getX
+     *
+     * Gets the x position of this frame inside its image.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getX() {
+        return iX;
+    }
+
+    /**
+     * getY
+     *
+     * Gets the y position of this frame inside its image.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getY() {
+        return iY;
+    }
+
+    /**
+     * getWidth
+     *
+     * Gets the width of this frame.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getWidth() {
+        return iWidth;
+    }
+
+    /**
+     * getHeight
+     *
+     * Gets the height of this frame.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getHeight() {
+        return iHeight;
+    }
+
+    /**
+     * draw
+     *
+     * Draws this frame with its top left corner at the specified
+     * position.
+     *
+     * @param gra2D_G is an object of class <code>Graphics2D</code>
+     * @param iDestX is an object of class <code>Integer</code>
+     * @param iDestY is an object of class <code>Integer</code>
+     */
+    public void draw(Graphics2D gra2D_G, int iDestX, int iDestY) {
+        gra2D_G.drawImage(imaPage,
+            iDestX, iDestY, iDestX + iWidth, iDestY + iHeight,
+            iX, iY, iX + iWidth, iY + iHeight,
+            null);
+    }
+}
@@ -0,0 +1,239 @@
+package com.brackeen.javagamebook.graphics;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * FrameCache
+ *
+ * It manages the definition of each object of type <code>FrameCache</code>
+ *
+ * The FrameCache class keeps preprocessed images (for example, the
+ * mirrored and flipped versions of a creature frame) on disk as raw
+ * ARGB pixels, so they don't have to be decoded and transformed on
+ * every launch. Each entry is keyed by a hash of its source file, so
+ * changing an image invalidates its entry. Entries are read with a
+ * memory mapped FileChannel and copied in bulk into the raster of a
+ * BufferedImage.
+ * <p>Entry format (native byte order): magic, version, number of
+ * images, width, height, then the pixels of every image.</p>
+ *
+ * @author Quazar Volume
+ */
+public class FrameCache {
+
+    private static final int iMAGIC = 0x4d415955;  // "MAYU"
+    private static final int iVERSION = 1;
+    private static final int iHEADER_INTS = 5;
+
+    private File filDirectory;
+
+    /**
+     * FrameCache
+     *
+     * Parameterized Constructor
+     *
+     * Creates a new FrameCache that stores its entries in the
+     * specified directory. The directory is created when the first
+     * entry is stored.
+     *
+     * @param filDirectory is an object of class <code>File</code>
+     */
+    public FrameCache(File filDirectory) {
+        this.filDirectory = filDirectory;
+    }
+
+    /**
+     * load
+     *
+     * Loads the images stored for the specified source file and
+     * variant. Returns null if there is no valid entry (missing,
+     * stale or corrupt).
+     *
+     * @param filSource is an object of class <code>File</code>
+     * @param sVariant is an object of class <code>String</code>
+     * @return array of class <code>BufferedImage</code> or null
+     */
+    public BufferedImage[] load(File filSource, String sVariant) {
+        File filEntry = getEntryFile(filSource, sVariant);
+        if (filEntry == null || !filEntry.exists()) {
+            return null;
+        }
+        try {
+            RandomAccessFile rafFile = new RandomAccessFile(filEntry, "r");
+            try {
+                FileChannel fchChannel = rafFile.getChannel();
+                MappedByteBuffer mbbBuffer = fchChannel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, fchChannel.size());
+                mbbBuffer.order(ByteOrder.nativeOrder());
+                IntBuffer ibInts = mbbBuffer.asIntBuffer();
+                if (ibInts.remaining() < iHEADER_INTS ||
+                    ibInts.get() != iMAGIC || ibInts.get() != iVERSION)
+                {
+                    return null;
+                }
+                int iCount = ibInts.get();
+                int iWidth = ibInts.get();
+                int iHeight = ibInts.get();
+                if (iCount <= 0 || iWidth <= 0 || iHeight <= 0 ||
+                    ibInts.remaining() != (long)iCount * iWidth * iHeight)
+                {
+                    return null;
+                }
+                BufferedImage[] buiArrImages = new BufferedImage[iCount];
+                for (int iI = 0; iI < iCount; iI++) {
+                    buiArrImages[iI] = new BufferedImage(iWidth, iHeight,
+                        BufferedImage.TYPE_INT_ARGB);
+                    ibInts.get(getPixels(buiArrImages[iI]));
+                }
+                return buiArrImages;
+            }
+            finally {
+                rafFile.close();
+            }
+        }
+        catch (IOException ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * store
+     *
+     * Stores images for the specified source file and variant. All
+     * the images must have the same size. Errors are reported but
+     * otherwise ignored, since the cache is only an optimization.
+     *
+     * @param filSource is an object of class <code>File</code>
+     * @param sVariant is an object of class <code>String</code>
+     * @param imaArrImages is an array of class <code>Image</code>
+     */
+    public void store(File filSource, String sVariant, Image[] imaArrImages) {
+        File filEntry = getEntryFile(filSource, sVariant);
+        if (filEntry == null || imaArrImages.length == 0) {
+            return;
+        }
+        int iWidth = imaArrImages[0].getWidth(null);
+        int iHeight = imaArrImages[0].getHeight(null);
+        filDirectory.mkdirs();
+        try {
+            // write to a temporary file first, so a half written
+            // entry is never read
+            File filTemp = File.createTempFile("frame", ".tmp", filDirectory);
+            RandomAccessFile rafFile = new RandomAccessFile(filTemp, "rw");
+            try {
+                ByteBuffer bbBuffer = ByteBuffer.allocate(4 *
+                    (iHEADER_INTS + imaArrImages.length * iWidth * iHeight));
+                bbBuffer.order(ByteOrder.nativeOrder());
+                IntBuffer ibInts = bbBuffer.asIntBuffer();
+                ibInts.put(iMAGIC).put(iVERSION).put(imaArrImages.length)
+                    .put(iWidth).put(iHeight);
+                for (int iI = 0; iI < imaArrImages.length; iI++) {
+                    ibInts.put(getPixels(toIntArgb(imaArrImages[iI],
+                        iWidth, iHeight)));
+                }
+                FileChannel fchChannel = rafFile.getChannel();
+                while (bbBuffer.hasRemaining()) {
+                    fchChannel.write(bbBuffer);
+                }
+            }
+            finally {
+                rafFile.close();
+            }
+            filEntry.delete();
+            if (!filTemp.renameTo(filEntry)) {
+                filTemp.delete();
+            }
+        }
+        catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * getEntryFile
+     *
+     * Gets the file of the entry for the specified source file and
+     * variant. The name contains a hash of the contents of the
+     * source file. Returns null if the source can't be read.
+     *
+     * @param filSource is an object of class <code>File</code>
+     * @param sVariant is an object of class <code>String</code>
+     * @return object of class <code>File</code> or null
+     */
+    private File getEntryFile(File filSource, String sVariant) {
+        CRC32 crcHash = new CRC32();
+        byte[] byteArrBuffer = new byte[8192];
+        try {
+            FileInputStream fisInput = new FileInputStream(filSource);
+            try {
+                int iRead = fisInput.read(byteArrBuffer);
+                while (iRead > 0) {
+                    crcHash.update(byteArrBuffer, 0, iRead);
+                    iRead = fisInput.read(byteArrBuffer);
+                }
+            }
+            finally {
+                fisInput.close();
+            }
+        }
+        catch (IOException ex) {
+            return null;
+        }
+        String sName = filSource.getName().replaceAll("[^A-Za-z0-9_.]", "_");
+        return new File(filDirectory, sName + "-" + sVariant + "-" +
+            Long.toHexString(crcHash.getValue()) + ".argb");
+    }
+
+    /**
+     * toIntArgb
+     *
+     * Gets an image as a BufferedImage of type TYPE_INT_ARGB, copying
+     * it if needed.
+     *
+     * @param imaImage is an object of class <code>Image</code>
+     * @param iWidth is an object of class <code>Integer</code>
+     * @param iHeight is an object of class <code>Integer</code>
+     * @return object of class <code>BufferedImage</code>
+     */
+    private static BufferedImage toIntArgb(Image imaImage, int iWidth,
+        int iHeight)
+    {
+        if (imaImage instanceof BufferedImage &&
+            ((BufferedImage)imaImage).getType() == BufferedImage.TYPE_INT_ARGB)
+        {
+            return (BufferedImage)imaImage;
+        }
+        BufferedImage buiCopy = new BufferedImage(iWidth, iHeight,
+            BufferedImage.TYPE_INT_ARGB);
+        Graphics2D gra2D_G = buiCopy.createGraphics();
+        gra2D_G.drawImage(imaImage, 0, 0, null);
+        gra2D_G.dispose();
+        return buiCopy;
+    }
+
+    /**
+     * getPixels
+     *
+     * Gets the pixel array of a TYPE_INT_ARGB BufferedImage.
+     *
+     * @param buiImage is an object of class <code>BufferedImage</code>
+     * @return array of class <code>Integer</code>
+     */
+    private static int[] getPixels(BufferedImage buiImage) {
+        return ((DataBufferInt)buiImage.getRaster().getDataBuffer()).getData();
+    }
+}
@@ -0,0 +1,74 @@
+package com.brackeen.javagamebook.graphics;
+
+/**
+ * ParticleEmitter
+ *
+ * It manages the definition of each object of type <code>ParticleEmitter</code>
+ *
+ * The ParticleEmitter class describes a burst of particles (how
+ * many, in which directions, how fast, how long they live and their
+ * color), so an effect is created once and emitted into a
+ * ParticleSystem as many times as needed. It never changes once
+ * created.
+ *
+ * @author Quazar Volume
+ */
+public class ParticleEmitter {
+
+    private final int iNumber;
+    private final float fAngle;     // Direction, in radians (PI/2 is down)
+    private final float fSpread;    // Width of the cone, in radians
+    private final float fSpeed;     // Maximum speed, in pixels per ms
+    private final int iLife;        // Maximum life, in ms
+    private final int iColor;       // Index in the palette
+
+    /**
+     * ParticleEmitter
+     *
+     * Parameterized Constructor
+     *
+     * @param iNumber is an object of class <code>Integer</code>
+     * @param fAngle is an object of class <code>Float</code>
+     * @param fSpread is an object of class <code>Float</code>
+     * @param fSpeed is an object of class <code>Float</code>
+     * @param iLife is an object of class <code>Integer</code>
+     * @param iColor is an object of class <code>Integer</code>
+     */
+    public ParticleEmitter(int iNumber, float fAngle, float fSpread,
+        float fSpeed, int iLife, int iColor)
+    {
+        this.iNumber = iNumber;
+        this.fAngle = fAngle;
+        this.fSpread = fSpread;
+        this.fSpeed = fSpeed;
+        this.iLife = iLife;
+        this.iColor = iColor;
+    }
+
+    /**
+     * emit
+     *
+     * Emits a burst of particles at the specified point.
+     *
+     * @param ptsParticles is an object of class <code>ParticleSystem</code>
+     * @param fX is an object of class <code>Float</code>
+     * @param fY is an object of class <code>Float</code>
+     */
+    public void emit(ParticleSystem ptsParticles, float fX, float fY) {
+        ptsParticles.emit(fX, fY, iNumber, fAngle, fSpread, fSpeed, iLife,
+            iColor);
+    }
+
+    /**
+     * emit
+     *
+     * Emits a burst of particles at the center of a Sprite.
+     *
+     * @param ptsParticles is an object of class <code>ParticleSystem</code>
+     * @param sprSprite is an object of class <code>Sprite</code>
+     */
+    public void emit(ParticleSystem ptsParticles, Sprite sprSprite) {
+        emit(ptsParticles, sprSprite.getX() + sprSprite.getWidth() / 2,
+            sprSprite.getY() + sprSprite.getHeight() / 2);
+    }
+}
@@ -0,0 +1,285 @@
+package com.brackeen.javagamebook.graphics;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.util.Random;
+
+/**
+ * ParticleSystem
+ *
+ * It manages the definition of each object of type <code>ParticleSystem</code>
+ *
+ * The ParticleSystem class keeps small, short-lived particles (sparks,
+ * blood, dust) in fixed-capacity arrays of primitives: position,
+ * velocity, life and color of each one. The live particles are always
+ * the first ones of the arrays; a particle that dies is replaced by
+ * the last live one. Nothing is allocated after creation, so tens of
+ * thousands of particles cost no garbage per frame. Particles emitted
+ * when the arrays are full are dropped.
+ * <p>Particles are drawn from a Batch, a copy of the live particles
+ * made once per tick. Three batches are used in turn, so a batch can
+ * be drawn by the render thread while the next one is filled.</p>
+ * <p>Colors are indexes in a palette given when the system is
+ * created; each batch is drawn one color at a time.</p>
+ *
+ * @author Quazar Volume
+ */
+public class ParticleSystem {
+
+    private static final int iNUM_BATCHES = 3;
+
+    private final int iCapacity;
+    private final float fGravity;       // Added to the vertical velocity per ms
+    private final Color[] colArrPalette;
+
+    // Live particles, the first iCount ones
+    private final float[] fArrX;
+    private final float[] fArrY;
+    private final float[] fArrVelocityX;
+    private final float[] fArrVelocityY;
+    private final int[] iArrLife;       // Time left, in ms
+    private final int[] iArrMaxLife;    // Time lived in all, in ms
+    private final byte[] byteArrColor;  // Index in the palette
+    private int iCount;
+
+    private final Random ranRandom;
+    private final Batch[] batArrBatches;
+    private int iNextBatch;
+
+    /**
+     * ParticleSystem
+     *
+     * Parameterized Constructor
+     *
+     * Creates a new ParticleSystem with room for the specified number
+     * of particles, pulled down by the specified gravity, and drawn
+     * with the colors of the specified palette (at most 128).
+     *
+     * @param iCapacity is an object of class <code>Integer</code>
+     * @param fGravity is an object of class <code>Float</code>
+     * @param colArrPalette is an array of class <code>Color</code>
+     */
+    public ParticleSystem(int iCapacity, float fGravity,
+        Color[] colArrPalette)
+    {
+        if (colArrPalette.length > Byte.MAX_VALUE + 1) {
+            throw new IllegalArgumentException("Too many colors: " +
+                colArrPalette.length);
+        }
+        this.iCapacity = iCapacity;
+        this.fGravity = fGravity;
+        this.colArrPalette = colArrPalette.clone();
+        fArrX = new float[iCapacity];
+        fArrY = new float[iCapacity];
+        fArrVelocityX = new float[iCapacity];
+        fArrVelocityY = new float[iCapacity];
+        iArrLife = new int[iCapacity];
+        iArrMaxLife = new int[iCapacity];
+        byteArrColor = new byte[iCapacity];
+        ranRandom = new Random();
+        batArrBatches = new Batch[iNUM_BATCHES];
+        for (int iI = 0; iI < iNUM_BATCHES; iI++) {
+            batArrBatches[iI] = new Batch(this.colArrPalette, iCapacity);
+        }
+    }
+
+    /**
+     * getCapacity
+     *
+     * Gets the maximum number of live particles.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getCapacity() {
+        return iCapacity;
+    }
+
+    /**
+     * getCount
+     *
+     * Gets the number of live particles.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getCount() {
+        return iCount;
+    }
+
+    /**
+     * emit
+     *
+     * Emits particles from a point, in random directions inside a
+     * cone, with random speeds and lives up to the specified ones.
+     * Angles are in radians, 0 pointing right and PI/2 down.
+     *
+     * @param fX is an object of class <code>Float</code>
+     * @param fY is an object of class <code>Float</code>
+     * @param iNumber is an object of class <code>Integer</code>
+     * @param fAngle is an object of class <code>Float</code>
+     * @param fSpread is an object of class <code>Float</code>
+     * @param fSpeed is an object of class <code>Float</code>
+     * @param iLife is an object of class <code>Integer</code>
+     * @param iColor is an object of class <code>Integer</code>
+     */
+    public void emit(float fX, float fY, int iNumber, float fAngle,
+        float fSpread, float fSpeed, int iLife, int iColor)
+    {
+        int iEnd = Math.min(iCount + iNumber, iCapacity);
+        for (int iI = iCount; iI < iEnd; iI++) {
+            float fDirection = fAngle + (ranRandom.nextFloat() - 0.5f) * fSpread;
+            float fVelocity = fSpeed * (0.25f + 0.75f * ranRandom.nextFloat());
+            fArrX[iI] = fX;
+            fArrY[iI] = fY;
+            fArrVelocityX[iI] = fVelocity * (float)Math.cos(fDirection);
+            fArrVelocityY[iI] = fVelocity * (float)Math.sin(fDirection);
+            iArrLife[iI] = Math.max(1,
+                (int)(iLife * (0.5f + 0.5f * ranRandom.nextFloat())));
+            iArrMaxLife[iI] = iArrLife[iI];
+            byteArrColor[iI] = (byte)iColor;
+        }
+        iCount = iEnd;
+    }
+
+    /**
+     * update
+     *
+     * Moves the particles and removes the ones whose life is over.
+     *
+     * @param lElapsedTime is an object of class <code>Long</code>
+     */
+    public void update(long lElapsedTime) {
+        int iElapsed = (int)lElapsedTime;
+        float fGravityStep = fGravity * iElapsed;
+        int iI = 0;
+        while (iI < iCount) {
+            iArrLife[iI] -= iElapsed;
+            if (iArrLife[iI] <= 0) {
+                // move the last live particle here
+                iCount--;
+                fArrX[iI] = fArrX[iCount];
+                fArrY[iI] = fArrY[iCount];
+                fArrVelocityX[iI] = fArrVelocityX[iCount];
+                fArrVelocityY[iI] = fArrVelocityY[iCount];
+                iArrLife[iI] = iArrLife[iCount];
+                iArrMaxLife[iI] = iArrMaxLife[iCount];
+                byteArrColor[iI] = byteArrColor[iCount];
+                continue;
+            }
+            fArrVelocityY[iI] += fGravityStep;
+            fArrX[iI] += fArrVelocityX[iI] * iElapsed;
+            fArrY[iI] += fArrVelocityY[iI] * iElapsed;
+            iI++;
+        }
+    }
+
+    /**
+     * clear
+     *
+     * Removes all the particles.
+     */
+    public void clear() {
+        iCount = 0;
+    }
+
+    /**
+     * createBatch
+     *
+     * Copies the live particles to the next batch, to be drawn. The
+     * batch is filled again by the third call after this one, so it
+     * must be drawn by then.
+     *
+     * @return object of class <code>Batch</code>
+     */
+    public Batch createBatch() {
+        Batch batBatch = batArrBatches[iNextBatch];
+        iNextBatch = (iNextBatch + 1) % iNUM_BATCHES;
+        for (int iI = 0; iI < iCount; iI++) {
+            batBatch.iArrX[iI] = (int)fArrX[iI];
+            batBatch.iArrY[iI] = (int)fArrY[iI];
+            // particles shrink as they die
+            batBatch.byteArrSize[iI] =
+                (byte)(1 + 3 * iArrLife[iI] / iArrMaxLife[iI]);
+            batBatch.byteArrColor[iI] = byteArrColor[iI];
+        }
+        batBatch.iCount = iCount;
+        return batBatch;
+    }
+
+    /**
+     * Batch
+     *
+     * It manages the definition of each object of type <code>Batch</code>
+     *
+     * The Batch class is a copy of the live particles of a
+     * ParticleSystem, in world pixels, to be drawn.
+     */
+    public static class Batch {
+
+        private final Color[] colArrPalette;
+        private final int[] iArrX;
+        private final int[] iArrY;
+        private final byte[] byteArrSize;
+        private final byte[] byteArrColor;
+        private int iCount;
+
+        /**
+         * Batch
+         *
+         * Parameterized Constructor
+         *
+         * @param colArrPalette is an array of class <code>Color</code>
+         * @param iCapacity is an object of class <code>Integer</code>
+         */
+        private Batch(Color[] colArrPalette, int iCapacity) {
+            this.colArrPalette = colArrPalette;
+            iArrX = new int[iCapacity];
+            iArrY = new int[iCapacity];
+            byteArrSize = new byte[iCapacity];
+            byteArrColor = new byte[iCapacity];
+        }
+
+        /**
+         * getCount
+         *
+         * Gets the number of particles copied.
+         *
+         * @return object of class <code>Integer</code>
+         */
+        public int getCount() {
+            return iCount;
+        }
+
+        /**
+         * draw
+         *
+         * Draws the particles scrolled by the specified offset, one
+         * color at a time. Particles out of the screen are skipped.
+         *
+         * @param gra2D_G is an object of class <code>Graphics2D</code>
+         * @param iOffsetX is an object of class <code>Integer</code>
+         * @param iOffsetY is an object of class <code>Integer</code>
+         * @param iScreenWidth is an object of class <code>Integer</code>
+         * @param iScreenHeight is an object of class <code>Integer</code>
+         */
+        public void draw(Graphics2D gra2D_G, int iOffsetX, int iOffsetY,
+            int iScreenWidth, int iScreenHeight)
+        {
+            for (int iColor = 0; iColor < colArrPalette.length; iColor++) {
+                gra2D_G.setColor(colArrPalette[iColor]);
+                for (int iI = 0; iI < iCount; iI++) {
+                    if (byteArrColor[iI] != iColor) {
+                        continue;
+                    }
+                    int iX = iArrX[iI] + iOffsetX;
+                    int iY = iArrY[iI] + iOffsetY;
+                    int iSize = byteArrSize[iI];
+                    if (iX + iSize > 0 && iX < iScreenWidth &&
+                        iY + iSize > 0 && iY < iScreenHeight)
+                    {
+                        gra2D_G.fillRect(iX, iY, iSize, iSize);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.brackeen.javagamebook.graphics;
 import java.awt.*;
 import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 import java.lang.reflect.InvocationTargetException;
 import javax.swing.JFrame;
 
@@ -13,12 +14,22 @@ import javax.swing.JFrame;
  *
  * The ScreenManager class manages initializing and displaying
  * full screen graphics modes.
+ * <p>It can also give the game a virtual screen of a fixed size:
+ * the game draws into an offscreen image of that size, which is
+ * scaled once per frame to fill as much of the real screen as it
+ * can, by a whole factor so pixels stay square and sharp, and
+ * centered between black bars. Drawing then costs the same whatever
+ * the resolution of the monitor.</p>
  *
  * @author Quazar Volume
  */
 public class ScreenManager {
 
     private GraphicsDevice gdDevice; // Device object for screen management
+    private boolean bContentsLost;   // The back buffer was lost since last checked
+    private int iVirtualWidth;       // Size of the virtual screen, 0 if none
+    private int iVirtualHeight;
+    private VolatileImage viVirtualScreen; // What the game draws, before scaling
 
     /**
      * ScreenManager
@@ -180,12 +191,70 @@ public class ScreenManager {
 
     }
     
+    /**
+     * setVirtualSize
+     *
+     * Sets the size of the virtual screen the game draws on, or
+     * turns it off if the width or the height is 0, so the game
+     * draws on the real screen.
+     *
+     * @param iWidth is an object of class <code>Integer</code>
+     * @param iHeight is an object of class <code>Integer</code>
+     */
+    public void setVirtualSize(int iWidth, int iHeight) {
+        boolean bVirtual = iWidth > 0 && iHeight > 0;
+        iVirtualWidth = bVirtual ? iWidth : 0;
+        iVirtualHeight = bVirtual ? iHeight : 0;
+        if (viVirtualScreen != null) {
+            viVirtualScreen.flush();
+            viVirtualScreen = null;
+        }
+        bContentsLost = true;
+    }
+
+    /**
+     * isVirtual
+     *
+     * Checks if the game draws on a virtual screen.
+     *
+     * @return object of class <code>Boolean</code>
+     */
+    public boolean isVirtual() {
+        return iVirtualWidth > 0;
+    }
+
+    /**
+     * getScale
+     *
+     * Gets how many times bigger the virtual screen is shown: the
+     * biggest whole factor that fits in the real screen. Screens
+     * smaller than the virtual one get the fraction that fits. It is
+     * 1 without virtual screen.
+     *
+     * @return object of class <code>Float</code>
+     */
+    public float getScale() {
+        int iScreenWidth = getScreenWidth();
+        int iScreenHeight = getScreenHeight();
+        if (!isVirtual() || iScreenWidth <= 0 || iScreenHeight <= 0) {
+            return 1;
+        }
+        int iScale = Math.min(iScreenWidth / iVirtualWidth,
+            iScreenHeight / iVirtualHeight);
+        if (iScale >= 1) {
+            return iScale;
+        }
+        return Math.min((float)iScreenWidth / iVirtualWidth,
+            (float)iScreenHeight / iVirtualHeight);
+    }
+
     /**
      * getGraphics
      *
-     * Gets the graphics context for the display. The
-     * ScreenManager uses double buffering, so applications must
-     * call update() to show any graphics drawn.
+     * Gets the graphics context for the display, or for the virtual
+     * screen if there is one. The ScreenManager uses double
+     * buffering, so applications must call update() to show any
+     * graphics drawn.
      * <p>
      * The application must dispose of the graphics object.
      * </p>
@@ -194,33 +263,149 @@ public class ScreenManager {
      */
     public Graphics2D getGraphics() {
         Window winWindow = gdDevice.getFullScreenWindow();
-        if (winWindow != null) {
-            BufferStrategy strategy = winWindow.getBufferStrategy();
-            return (Graphics2D)strategy.getDrawGraphics();
+        if (winWindow == null) {
+            return null;
+        }
+        else if (isVirtual()) {
+            // (re)create the virtual screen if it was lost
+            GraphicsConfiguration gcConfiguration =
+                winWindow.getGraphicsConfiguration();
+            int iValid = (viVirtualScreen == null) ?
+                VolatileImage.IMAGE_INCOMPATIBLE :
+                viVirtualScreen.validate(gcConfiguration);
+            if (iValid == VolatileImage.IMAGE_INCOMPATIBLE) {
+                if (viVirtualScreen != null) {
+                    viVirtualScreen.flush();
+                }
+                viVirtualScreen = gcConfiguration.createCompatibleVolatileImage(
+                    iVirtualWidth, iVirtualHeight);
+                bContentsLost = true;
+            }
+            else if (iValid == VolatileImage.IMAGE_RESTORED) {
+                bContentsLost = true;
+            }
+            Graphics2D gra2D_G = viVirtualScreen.createGraphics();
+            gra2D_G.setFont(winWindow.getFont());
+            gra2D_G.setColor(winWindow.getForeground());
+            gra2D_G.setBackground(winWindow.getBackground());
+            return gra2D_G;
         }
         else {
-            return null;
+            BufferStrategy strategy = winWindow.getBufferStrategy();
+            return (Graphics2D)strategy.getDrawGraphics();
         }
     }
     
     /**
      * update
      *
-     * Updates the display
+     * Updates the display. The virtual screen, if there is one, is
+     * scaled onto the display first.
      */
     public void update() {
         Window winWindow = gdDevice.getFullScreenWindow();
         if (winWindow != null) {
             BufferStrategy strategy = winWindow.getBufferStrategy();
+            if (isVirtual() && viVirtualScreen != null) {
+                drawVirtualScreen((Graphics2D)strategy.getDrawGraphics());
+            }
             if (!strategy.contentsLost()) {
                 strategy.show();
             }
+            else {
+                bContentsLost = true;
+            }
         }
         // Sync the display on some systems.
         // (on Linux, this fixes event queue problems)
         Toolkit.getDefaultToolkit().sync();
     }
     
+    /**
+     * drawVirtualScreen
+     *
+     * Draws the virtual screen scaled and centered, with black bars
+     * around it, and disposes of the graphics context. Scaling uses
+     * the nearest pixel, so a whole factor keeps the pixels sharp.
+     *
+     * @param gra2D_G is an object of class <code>Graphics2D</code>
+     */
+    private void drawVirtualScreen(Graphics2D gra2D_G) {
+        int iScreenWidth = getScreenWidth();
+        int iScreenHeight = getScreenHeight();
+        float fScale = getScale();
+        int iWidth = Math.round(iVirtualWidth * fScale);
+        int iHeight = Math.round(iVirtualHeight * fScale);
+        int iX = (iScreenWidth - iWidth) / 2;
+        int iY = (iScreenHeight - iHeight) / 2;
+
+        gra2D_G.setColor(Color.black);
+        gra2D_G.fillRect(0, 0, iScreenWidth, iY);
+        gra2D_G.fillRect(0, iY + iHeight, iScreenWidth,
+            iScreenHeight - iY - iHeight);
+        gra2D_G.fillRect(0, iY, iX, iHeight);
+        gra2D_G.fillRect(iX + iWidth, iY, iScreenWidth - iX - iWidth,
+            iHeight);
+        gra2D_G.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+            RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        gra2D_G.drawImage(viVirtualScreen, iX, iY, iWidth, iHeight, null);
+        gra2D_G.dispose();
+
+        if (viVirtualScreen.contentsLost()) {
+            bContentsLost = true;
+        }
+    }
+
+    /**
+     * isBackBufferPreserved
+     *
+     * Checks if the back buffer still holds the last frame drawn, so
+     * a frame can be drawn by only redrawing the parts that changed.
+     * This is false for page flipping strategies that don't copy the 
+     * frame back, and after the contents of the buffer were lost. 
+     * The virtual screen is always kept, unless it was lost.
+     *
+     * @return object of class <code>Boolean</code>
+     */
+    public boolean isBackBufferPreserved() {
+        Window winWindow = gdDevice.getFullScreenWindow();
+        if (winWindow == null || bContentsLost) {
+            bContentsLost = false;
+            return false;
+        }
+        if (isVirtual()) {
+            return true;
+        }
+        BufferCapabilities bcCapabilities =
+            winWindow.getBufferStrategy().getCapabilities();
+        return !bcCapabilities.isPageFlipping() ||
+            BufferCapabilities.FlipContents.COPIED.equals(
+                bcCapabilities.getFlipContents());
+    }
+
+    /**
+     * isContentsLost
+     *
+     * Checks if the last frame drawn on the display, or on the
+     * virtual screen, was lost (when the window was hidden, for
+     * example), so it must be drawn again whole even if nothing
+     * changed. The next call to isBackBufferPreserved returns false.
+     *
+     * @return object of class <code>Boolean</code>
+     */
+    public boolean isContentsLost() {
+        Window winWindow = gdDevice.getFullScreenWindow();
+        if (winWindow == null) {
+            return false;
+        }
+        if (winWindow.getBufferStrategy().contentsLost() ||
+            (viVirtualScreen != null && viVirtualScreen.contentsLost()))
+        {
+            bContentsLost = true;
+        }
+        return bContentsLost;
+    }
+
     /**
      * getFullScreenWindow
      *
@@ -236,12 +421,36 @@ public class ScreenManager {
     /**
      * getWidth
      *
+     * Returns the width the game draws at: the width of the virtual
+     * screen, if there is one, or of the real screen.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getWidth() {
+        return isVirtual() ? iVirtualWidth : getScreenWidth();
+    }
+
+    /**
+     * getHeight
+     *
+     * Returns the height the game draws at: the height of the virtual
+     * screen, if there is one, or of the real screen.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getHeight() {
+        return isVirtual() ? iVirtualHeight : getScreenHeight();
+    }
+
+    /**
+     * getScreenWidth
+     *
      * Returns the width of the window currently used in full
      * screen mode. Returns 0 if the device is not in full screen mode.
      *
      * @return object of class <code>Integer</code>
      */
-    public int getWidth() {
+    public int getScreenWidth() {
         Window winWindow = gdDevice.getFullScreenWindow();
         // Checks if device is in full screen mode
         if (winWindow != null) {
@@ -253,14 +462,14 @@ public class ScreenManager {
     }
     
     /**
-     * getHeight
+     * getScreenHeight
      *
      * Returns the height of the window currently used in full
      * screen mode. Returns 0 if the device is not in full screen mode.
      *
      * @return object of class <code>Integer</code>
      */
-    public int getHeight() {
+    public int getScreenHeight() {
         Window winWindow = gdDevice.getFullScreenWindow();
         // Checks if device is in full screen mode
         if (winWindow != null) {
@@ -277,6 +486,10 @@ public class ScreenManager {
      * Restores the screen's display mode.
      */
     public void restoreScreen() {
+        if (viVirtualScreen != null) {
+            viVirtualScreen.flush();
+            viVirtualScreen = null;
+        }
         Window winWindow = gdDevice.getFullScreenWindow();
         // Checks if device is in full screen mode
         if (winWindow != null) {
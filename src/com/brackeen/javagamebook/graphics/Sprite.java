@@ -1,5 +1,6 @@
 package com.brackeen.javagamebook.graphics;
 
+import java.awt.Graphics2D;
 import java.awt.Image;
 
 /**
@@ -21,6 +22,9 @@ public class Sprite {
     // velocity (pixels per millisecond)
     private float fDx;
     private float fDy;
+    // light carried by the sprite
+    private int iLightRadius;       // In pixels, 0 if it has no light
+    private int iLightIntensity;    // 0 to 255
 
     /**
      * Sprite
@@ -101,7 +105,7 @@ public class Sprite {
      * @return object of class <code>Integer</code>
      */
     public int getWidth() {
-        return aniAnim.getImage().getWidth(null);
+        return aniAnim.getCurrentFrame().getWidth();
     }
     
     /**
@@ -112,7 +116,7 @@ public class Sprite {
      * @return object of class <code>Integer</code>
      */
     public int getHeight() {
-        return aniAnim.getImage().getHeight(null);
+        return aniAnim.getCurrentFrame().getHeight();
     }
     
     /**
@@ -162,7 +166,8 @@ public class Sprite {
     /**
      * getImage
      * 
-     * Gets this Sprite's current image.
+     * Gets the image that contains this Sprite's current frame. It may
+     * be an atlas page shared with other frames.
      * 
      * @return object of class <code>Image</code>
      */
@@ -170,14 +175,80 @@ public class Sprite {
         return aniAnim.getImage();
     }
     
+    /**
+     * getCurrentFrame
+     * 
+     * Gets this Sprite's current frame.
+     * 
+     * @return object of class <code>AtlasFrame</code>
+     */
+    public AtlasFrame getCurrentFrame() {
+        return aniAnim.getCurrentFrame();
+    }
+    
+    /**
+     * draw
+     * 
+     * Draws this Sprite's current frame at the specified position
+     * of the screen.
+     * 
+     * @param gra2D_G is an object of class <code>Graphics2D</code>
+     * @param iX is an object of class <code>Integer</code>
+     * @param iY is an object of class <code>Integer</code>
+     */
+    public void draw(Graphics2D gra2D_G, int iX, int iY) {
+        aniAnim.getCurrentFrame().draw(gra2D_G, iX, iY);
+    }
+    
+    /**
+     * setLight
+     * 
+     * Sets the light carried by this Sprite, drawn around its center 
+     * by the lighting pass: its radius in pixels (0 for no light) 
+     * and its intensity, from 0 to 255.
+     * 
+     * @param iLightRadius is an object of class <code>Integer</code>
+     * @param iLightIntensity is an object of class <code>Integer</code>
+     */
+    public void setLight(int iLightRadius, int iLightIntensity) {
+        this.iLightRadius = iLightRadius;
+        this.iLightIntensity = iLightIntensity;
+    }
+    
+    /**
+     * getLightRadius
+     * 
+     * Gets the radius of the light carried by this Sprite, in pixels, 
+     * or 0 if it has no light.
+     * 
+     * @return object of class <code>Integer</code>
+     */
+    public int getLightRadius() {
+        return iLightRadius;
+    }
+    
+    /**
+     * getLightIntensity
+     * 
+     * Gets the intensity of the light carried by this Sprite.
+     * 
+     * @return object of class <code>Integer</code>
+     */
+    public int getLightIntensity() {
+        return iLightIntensity;
+    }
+    
     /**
      * clone
      * 
-     * Clones this Sprite. Does not clone position or velocity info.
+     * Clones this Sprite. Does not clone position or velocity info, 
+     * only the light.
      * 
      * @return object of class <code>Object</code>
      */
     public Object clone() {
-        return new Sprite(aniAnim);
+        Sprite sprClone = new Sprite(aniAnim);
+        sprClone.setLight(iLightRadius, iLightIntensity);
+        return sprClone;
     }
 }
\ No newline at end of file
@@ -0,0 +1,168 @@
+package com.brackeen.javagamebook.graphics;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * SpriteAtlas
+ *
+ * It manages the definition of each object of type <code>SpriteAtlas</code>
+ *
+ * The SpriteAtlas class packs many small images into a few large
+ * pages compatible with the display, so they can be kept in video
+ * memory as managed images. Images are packed in shelves (rows of
+ * images) from top to bottom, and a new page is started when the
+ * current one is full. Each packed image is returned as an AtlasFrame.
+ *
+ * @author Quazar Volume
+ */
+public class SpriteAtlas {
+
+    // Empty pixels left between frames
+    private static final int iPADDING = 1;
+
+    private GraphicsConfiguration gcGraphicsConfiguration;
+    private int iPageSize;
+    private ArrayList ArrPages;         // Pages created so far
+    private BufferedImage buiPage;      // Page being filled
+    private int iShelfX;                // Next free position on the shelf
+    private int iShelfY;                // Top of the current shelf
+    private int iShelfHeight;           // Height of the tallest image on the shelf
+    private IdentityHashMap ihmFrames;  // Frames of the images already packed
+
+    /**
+     * SpriteAtlas
+     *
+     * Parameterized Constructor
+     *
+     * Creates a new, empty SpriteAtlas with square pages of the
+     * specified size.
+     *
+     * @param gcGraphicsConfiguration is an object of class
+     * <code>GraphicsConfiguration</code>
+     * @param iPageSize is an object of class <code>Integer</code>
+     */
+    public SpriteAtlas(GraphicsConfiguration gcGraphicsConfiguration,
+        int iPageSize)
+    {
+        this.gcGraphicsConfiguration = gcGraphicsConfiguration;
+        this.iPageSize = iPageSize;
+        ArrPages = new ArrayList();
+        ihmFrames = new IdentityHashMap();
+    }
+
+    /**
+     * add
+     *
+     * Packs an image into this atlas and returns its frame. Adding
+     * the same image twice returns the same frame. Images bigger
+     * than a page get a page of their own.
+     *
+     * @param imaImage is an object of class <code>Image</code>
+     * @return object of class <code>AtlasFrame</code>
+     */
+    public synchronized AtlasFrame add(Image imaImage) {
+        AtlasFrame afFrame = (AtlasFrame)ihmFrames.get(imaImage);
+        if (afFrame != null) {
+            return afFrame;
+        }
+
+        int iWidth = imaImage.getWidth(null);
+        int iHeight = imaImage.getHeight(null);
+        if (iWidth + iPADDING > iPageSize || iHeight + iPADDING > iPageSize) {
+            // too big to share a page
+            BufferedImage buiOwnPage = createPage(iWidth, iHeight);
+            afFrame = copy(imaImage, buiOwnPage, 0, 0);
+        }
+        else {
+            // start a new shelf or a new page if needed
+            if (buiPage != null && iShelfX + iWidth > iPageSize) {
+                iShelfX = 0;
+                iShelfY += iShelfHeight + iPADDING;
+                iShelfHeight = 0;
+            }
+            if (buiPage == null || iShelfY + iHeight > iPageSize) {
+                buiPage = createPage(iPageSize, iPageSize);
+                iShelfX = 0;
+                iShelfY = 0;
+                iShelfHeight = 0;
+            }
+            afFrame = copy(imaImage, buiPage, iShelfX, iShelfY);
+            iShelfX += iWidth + iPADDING;
+            iShelfHeight = Math.max(iShelfHeight, iHeight);
+        }
+        ihmFrames.put(imaImage, afFrame);
+        return afFrame;
+    }
+
+    /**
+     * getPageCount
+     *
+     * Gets the number of pages created by this atlas.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public synchronized int getPageCount() {
+        return ArrPages.size();
+    }
+
+    /**
+     * getBytes
+     *
+     * Gets an estimate of the memory used by the pages of this
+     * atlas, in bytes (4 bytes per pixel).
+     *
+     * @return object of class <code>Long</code>
+     */
+    public synchronized long getBytes() {
+        long lBytes = 0;
+        for (int iI = 0; iI < ArrPages.size(); iI++) {
+            Image imaPage = (Image)ArrPages.get(iI);
+            lBytes += 4L * imaPage.getWidth(null) * imaPage.getHeight(null);
+        }
+        return lBytes;
+    }
+
+    /**
+     * createPage
+     *
+     * Creates a new transparent (not translucent) page compatible
+     * with the display.
+     *
+     * @param iWidth is an object of class <code>Integer</code>
+     * @param iHeight is an object of class <code>Integer</code>
+     * @return object of class <code>BufferedImage</code>
+     */
+    private BufferedImage createPage(int iWidth, int iHeight) {
+        BufferedImage buiNewPage = gcGraphicsConfiguration.createCompatibleImage(
+            iWidth, iHeight, Transparency.BITMASK);
+        ArrPages.add(buiNewPage);
+        return buiNewPage;
+    }
+
+    /**
+     * copy
+     *
+     * Draws an image into a page and returns its frame.
+     *
+     * @param imaImage is an object of class <code>Image</code>
+     * @param buiTarget is an object of class <code>BufferedImage</code>
+     * @param iX is an object of class <code>Integer</code>
+     * @param iY is an object of class <code>Integer</code>
+     * @return object of class <code>AtlasFrame</code>
+     */
+    private AtlasFrame copy(Image imaImage, BufferedImage buiTarget,
+        int iX, int iY)
+    {
+        Graphics2D gra2D_G = buiTarget.createGraphics();
+        gra2D_G.drawImage(imaImage, iX, iY, null);
+        gra2D_G.dispose();
+        return new AtlasFrame(buiTarget, iX, iY,
+            imaImage.getWidth(null), imaImage.getHeight(null));
+    }
+}
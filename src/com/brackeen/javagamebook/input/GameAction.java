@@ -8,6 +8,9 @@ package com.brackeen.javagamebook.input;
  * The GameAction class is an abstract to a user-initiated 
  * action, like jumping or moving. GameActions can be mapped 
  * to keys or the mouse with the InputManager.
+ * <p>GameActions are not thread safe: the InputManager queues the 
+ * key and mouse events and applies them on the game thread, once 
+ * per tick, when it is polled.</p>
  * 
  * @author Quazar Volume
  */
@@ -37,6 +40,7 @@ public class GameAction {
     private int iBehavior;
     private int iAmount;
     private int iState;
+    private int iId = -1;   // Index in its InputManager, -1 if not mapped
     
     /**
      * GameAction
@@ -78,6 +82,29 @@ public class GameAction {
         return sName;
     }
     
+    /**
+     * getId
+     * 
+     * Gets the index of this GameAction in the InputManager it is 
+     * mapped in, or -1 if it is not mapped.
+     * 
+     * @return object of class <code>Integer</code>
+     */
+    int getId() {
+        return iId;
+    }
+    
+    /**
+     * setId
+     * 
+     * Sets the index of this GameAction in its InputManager.
+     * 
+     * @param iId is an object of class <code>Integer</code>
+     */
+    void setId(int iId) {
+        this.iId = iId;
+    }
+    
     /**
      * reset
      * 
@@ -93,7 +120,7 @@ public class GameAction {
      * 
      * Taps this GameAction. Same as calling press() followed by release().
      */
-    public synchronized void tap() {
+    public void tap() {
         press();
         release();
     }
@@ -103,7 +130,7 @@ public class GameAction {
      * 
      * Signals that the key was pressed.
      */
-    public synchronized void press() {
+    public void press() {
         press(1);
     }
     
@@ -115,7 +142,7 @@ public class GameAction {
      * 
      * @param iAmount is an object of class <code>Integer</code>
      */
-    public synchronized void press(int iAmount) {
+    public void press(int iAmount) {
         if (iState != iSTATE_WAITING_FOR_RELEASE) {
             this.iAmount+=iAmount;
             iState = iSTATE_PRESSED;
@@ -128,7 +155,7 @@ public class GameAction {
      * 
      * Signals that the key was released
      */
-    public synchronized void release() {
+    public void release() {
         iState = iSTATE_RELEASED;
     }
     
@@ -139,7 +166,7 @@ public class GameAction {
      * 
      * @return object of class <code>Boolean</code>
      */
-    public synchronized boolean isPressed() {
+    public boolean isPressed() {
         return (getAmount() != 0);
     }
     
@@ -152,7 +179,7 @@ public class GameAction {
      * 
      * @return object of class <code>Integer</code>
      */
-    public synchronized int getAmount() {
+    public int getAmount() {
         int retVal = iAmount;
         if (retVal != 0) {
             if (iState == iSTATE_RELEASED) {
@@ -0,0 +1,107 @@
+package com.brackeen.javagamebook.input;
+
+/**
+ * InputEventQueue
+ *
+ * It manages the definition of each object of type <code>InputEventQueue</code>
+ *
+ * The InputEventQueue class is a fixed size ring buffer of input
+ * events, encoded as longs, written by one thread (the AWT event
+ * thread) and read by another (the game thread). It needs no locks:
+ * each side only writes its own position, and the positions are
+ * volatile, so an event is visible to the reader once the writer
+ * moves its position past it. Events that don't fit are dropped.
+ *
+ * @author Quazar Volume
+ */
+public class InputEventQueue {
+
+    // Returned by poll() when the queue is empty
+    public static final long lEMPTY = -1;
+
+    private final long[] lArrEvents;    // Ring of events
+    private final int iMask;            // Size of the ring - 1
+    private volatile long lHead;        // Next event to read (reader only)
+    private volatile long lTail;        // Next event to write (writer only)
+    private volatile int iDropped;      // Events dropped (writer only)
+
+    /**
+     * InputEventQueue
+     *
+     * Parameterized Constructor
+     *
+     * Creates a new, empty InputEventQueue that holds at least the
+     * specified number of events (rounded up to a power of two).
+     *
+     * @param iCapacity is an object of class <code>Integer</code>
+     */
+    public InputEventQueue(int iCapacity) {
+        int iSize = 1;
+        while (iSize < iCapacity) {
+            iSize <<= 1;
+        }
+        lArrEvents = new long[iSize];
+        iMask = iSize - 1;
+    }
+
+    /**
+     * offer
+     *
+     * Adds an event at the end of the queue. Returns false, and drops
+     * the event, if the queue is full. Only the writer thread may
+     * call it. Events must not be negative.
+     *
+     * @param lEvent is an object of class <code>Long</code>
+     * @return object of class <code>Boolean</code>
+     */
+    public boolean offer(long lEvent) {
+        long lWrite = lTail;
+        if (lWrite - lHead == lArrEvents.length) {
+            iDropped++;
+            return false;
+        }
+        lArrEvents[(int)lWrite & iMask] = lEvent;
+        // publish the event
+        lTail = lWrite + 1;
+        return true;
+    }
+
+    /**
+     * poll
+     *
+     * Removes the first event of the queue, or returns lEMPTY if
+     * there is none. Only the reader thread may call it.
+     *
+     * @return object of class <code>Long</code>
+     */
+    public long poll() {
+        long lRead = lHead;
+        if (lRead == lTail) {
+            return lEMPTY;
+        }
+        long lEvent = lArrEvents[(int)lRead & iMask];
+        lHead = lRead + 1;
+        return lEvent;
+    }
+
+    /**
+     * clear
+     *
+     * Forgets the events in the queue. Only the reader thread may
+     * call it.
+     */
+    public void clear() {
+        lHead = lTail;
+    }
+
+    /**
+     * getDropped
+     *
+     * Gets the number of events dropped because the queue was full.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getDropped() {
+        return iDropped;
+    }
+}
@@ -13,6 +13,10 @@ import javax.swing.SwingUtilities;
  * 
  * The InputManager manages input of key and mouse events. 
  * Events are mapped to GameActions.
+ * <p>The AWT listeners don't change the GameActions: they push each 
+ * press and release into a lock-free queue, and the game thread calls 
+ * poll() once per tick to apply them and get an InputSnapshot with 
+ * the state of every action for that tick.</p>
  * 
  * This class implements multiple interfaces
  * 
@@ -49,6 +53,13 @@ public class InputManager implements KeyListener, MouseListener,
     // "alt graph") are less than 600.
     private static final int iNUM_KEY_CODES = 600;
 
+    // Events queued between two polls
+    private static final int iQUEUE_SIZE = 1024;
+
+    // Kinds of queued events
+    private static final int iEVENT_PRESS = 0;
+    private static final int iEVENT_RELEASE = 1;
+
     private GameAction[] gaArrKeyActions = new GameAction[iNUM_KEY_CODES];
     private GameAction[] gaArrMouseActions = new GameAction[iNUM_MOUSE_CODES];
 
@@ -57,6 +68,10 @@ public class InputManager implements KeyListener, MouseListener,
     private Component comComp;
     private Robot robRobot;
     private boolean bIsRecentering;
+
+    private InputEventQueue ieqEvents;  // Events from the AWT thread
+    private ArrayList ArrActions;       // Mapped actions, by id
+    private InputSnapshot insSnapshot;  // State of the last poll
     
     /**
      * InputManager
@@ -70,6 +85,9 @@ public class InputManager implements KeyListener, MouseListener,
         this.comComp = comComp;
         pMouseLocation = new Point();
         pCenterLocation = new Point();
+        ieqEvents = new InputEventQueue(iQUEUE_SIZE);
+        ArrActions = new ArrayList();
+        insSnapshot = new InputSnapshot(new int[0]);
 
         // register key and mouse listeners
         comComp.addKeyListener(this);
@@ -147,6 +165,7 @@ public class InputManager implements KeyListener, MouseListener,
      * @param iKeyCode is an object of class <code>Integer</code>
      */
     public void mapToKey(GameAction gaGameAction, int iKeyCode) {
+        register(gaGameAction);
         gaArrKeyActions[iKeyCode] = gaGameAction;
     }
     
@@ -163,9 +182,86 @@ public class InputManager implements KeyListener, MouseListener,
      */
     public void mapToMouse(GameAction gaGameAction,
         int iMouseCode) {
+        register(gaGameAction);
         gaArrMouseActions[iMouseCode] = gaGameAction;
     }
     
+    /**
+     * register
+     * 
+     * Gives a GameAction its index in this InputManager, if it 
+     * doesn't have one yet.
+     * 
+     * @param gaGameAction is an object of class <code>GameAction</code>
+     */
+    private void register(GameAction gaGameAction) {
+        int iId = gaGameAction.getId();
+        if (iId < 0 || iId >= ArrActions.size() ||
+            ArrActions.get(iId) != gaGameAction)
+        {
+            gaGameAction.setId(ArrActions.size());
+            ArrActions.add(gaGameAction);
+        }
+    }
+    
+    /**
+     * poll
+     * 
+     * Applies the key and mouse events queued since the last poll to 
+     * their GameActions, in order, and gets the state of every action 
+     * for this tick. It must be called once per tick, on the game 
+     * thread.
+     * 
+     * @return object of class <code>InputSnapshot</code>
+     */
+    public InputSnapshot poll() {
+        long lEvent;
+        while ((lEvent = ieqEvents.poll()) != InputEventQueue.lEMPTY) {
+            GameAction gaGameAction =
+                (GameAction)ArrActions.get((int)lEvent >>> 1);
+            if ((lEvent & 1) == iEVENT_PRESS) {
+                gaGameAction.press((int)(lEvent >>> 32));
+            }
+            else {
+                gaGameAction.release();
+            }
+        }
+
+        int[] iArrAmounts = new int[ArrActions.size()];
+        for (int iI = 0; iI < iArrAmounts.length; iI++) {
+            iArrAmounts[iI] = ((GameAction)ArrActions.get(iI)).getAmount();
+        }
+        insSnapshot = new InputSnapshot(iArrAmounts);
+        return insSnapshot;
+    }
+    
+    /**
+     * getSnapshot
+     * 
+     * Gets the state of every GameAction at the last poll.
+     * 
+     * @return object of class <code>InputSnapshot</code>
+     */
+    public InputSnapshot getSnapshot() {
+        return insSnapshot;
+    }
+    
+    /**
+     * queue
+     * 
+     * Queues a press or a release of a GameAction, to be applied at 
+     * the next poll. Called on the AWT thread.
+     * 
+     * @param gaGameAction is an object of class <code>GameAction</code>
+     * @param iEvent is an object of class <code>Integer</code>
+     * @param iAmount is an object of class <code>Integer</code>
+     */
+    private void queue(GameAction gaGameAction, int iEvent, int iAmount) {
+        // amount, action id and kind of event, in one long
+        ieqEvents.offer(((long)iAmount << 32) |
+            (gaGameAction.getId() << 1) | iEvent);
+    }
+    
     /**
      * clearMap
      * 
@@ -225,6 +321,9 @@ public class InputManager implements KeyListener, MouseListener,
      * Resets all GameActions so they appear like they haven't been pressed.
      */
     public void resetAllGameActions() {
+        // forget the events not applied yet
+        ieqEvents.clear();
+
         // Swipes all game action key array
         for (int i=0; i<gaArrKeyActions.length; i++) {
             if (gaArrKeyActions[i] != null) {
@@ -390,7 +489,7 @@ public class InputManager implements KeyListener, MouseListener,
     public void keyPressed(KeyEvent keE) {
         GameAction gaGameAction = getKeyAction(keE);
         if (gaGameAction != null) {
-            gaGameAction.press();
+            queue(gaGameAction, iEVENT_PRESS, 1);
         }
         // make sure the key isn't processed for anything else
         keE.consume();
@@ -408,7 +507,7 @@ public class InputManager implements KeyListener, MouseListener,
     public void keyReleased(KeyEvent keE) {
         GameAction gaGameAction = getKeyAction(keE);
         if (gaGameAction != null) {
-            gaGameAction.release();
+            queue(gaGameAction, iEVENT_RELEASE, 0);
         }
         // make sure the key isn't processed for anything else
         keE.consume();
@@ -438,7 +537,7 @@ public class InputManager implements KeyListener, MouseListener,
     public void mousePressed(MouseEvent meE) {
         GameAction gaGameAction = getMouseButtonAction(meE);
         if (gaGameAction != null) {
-            gaGameAction.press();
+            queue(gaGameAction, iEVENT_PRESS, 1);
         }
     }
 
@@ -454,7 +553,7 @@ public class InputManager implements KeyListener, MouseListener,
     public void mouseReleased(MouseEvent meE) {
         GameAction gaGameAction = getMouseButtonAction(meE);
         if (gaGameAction != null) {
-            gaGameAction.release();
+            queue(gaGameAction, iEVENT_RELEASE, 0);
         }
     }
 
@@ -562,8 +661,8 @@ public class InputManager implements KeyListener, MouseListener,
             gaGameAction = gaArrMouseActions[iCodePos];
         }
         if (gaGameAction != null) {
-            gaGameAction.press(Math.abs(iAmount));
-            gaGameAction.release();
+            queue(gaGameAction, iEVENT_PRESS, Math.abs(iAmount));
+            queue(gaGameAction, iEVENT_RELEASE, 0);
         }
     }
 
@@ -0,0 +1,68 @@
+package com.brackeen.javagamebook.input;
+
+/**
+ * InputSnapshot
+ *
+ * It manages the definition of each object of type <code>InputSnapshot</code>
+ *
+ * The InputSnapshot class holds the state of every GameAction of an
+ * InputManager for one game tick: a bit set of the actions that are
+ * pressed, and the amount of each one. It never changes once created,
+ * so it can be checked any number of times during the tick.
+ *
+ * @author Quazar Volume
+ */
+public class InputSnapshot {
+
+    private final long[] lArrPressed;   // Bit set of pressed actions, by id
+    private final int[] iArrAmounts;    // Amount of each action, by id
+
+    /**
+     * InputSnapshot
+     *
+     * Parameterized Constructor
+     *
+     * Creates a new InputSnapshot from the amounts of the actions,
+     * by id.
+     *
+     * @param iArrAmounts is an array of class <code>Integer</code>
+     */
+    InputSnapshot(int[] iArrAmounts) {
+        this.iArrAmounts = iArrAmounts;
+        lArrPressed = new long[(iArrAmounts.length + 63) >> 6];
+        for (int iI = 0; iI < iArrAmounts.length; iI++) {
+            if (iArrAmounts[iI] != 0) {
+                lArrPressed[iI >> 6] |= 1L << iI;
+            }
+        }
+    }
+
+    /**
+     * isPressed
+     *
+     * Checks if a GameAction was pressed in this tick. Actions that
+     * are not mapped are never pressed.
+     *
+     * @param gaGameAction is an object of class <code>GameAction</code>
+     * @return object of class <code>Boolean</code>
+     */
+    public boolean isPressed(GameAction gaGameAction) {
+        int iId = gaGameAction.getId();
+        return iId >= 0 && (iId >> 6) < lArrPressed.length &&
+            (lArrPressed[iId >> 6] & (1L << iId)) != 0;
+    }
+
+    /**
+     * getAmount
+     *
+     * Gets the amount of a GameAction in this tick: the number of
+     * times a key was pressed, or the distance the mouse moved.
+     *
+     * @param gaGameAction is an object of class <code>GameAction</code>
+     * @return object of class <code>Integer</code>
+     */
+    public int getAmount(GameAction gaGameAction) {
+        int iId = gaGameAction.getId();
+        return (iId >= 0 && iId < iArrAmounts.length) ? iArrAmounts[iId] : 0;
+    }
+}
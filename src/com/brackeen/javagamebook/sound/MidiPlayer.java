@@ -1,13 +1,33 @@
 package com.brackeen.javagamebook.sound;
 
 import java.io.*;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
 import javax.sound.midi.*;
+import com.brackeen.javagamebook.util.AssetLoader;
+import com.brackeen.javagamebook.util.ThreadPool;
 
 /**
  * MidiPlayer
  *
  * It manages the definition of each object of type <code>MidiPlayer</code>
-
+ *
+ * The MidiPlayer class plays MIDI sequences. Sequences are kept in a
+ * cache by file name, so they are loaded once and can be played by
+ * name. Playing the sequence that is already playing does nothing,
+ * so it can be requested every frame. Looping is done by the
+ * sequencer itself, without a gap, between the "loopStart" and
+ * "loopEnd" markers of the sequence if it has them.
+ * <p>In prerender mode, sequences are rendered once to PCM by a
+ * MidiRenderer and played through a SoundManager instead of the
+ * Sequencer, sharing its mixer and clock with the sound effects. A
+ * sequence can be heard while it is rendered; a few rendered
+ * sequences are kept in memory.</p>
+ *
  * @author Quazar Volume
  *
  */
@@ -16,10 +36,25 @@ public class MidiPlayer implements MetaEventListener {
 
     // Midi meta event
     public static final int iEND_OF_TRACK_MESSAGE = 47;
+    // Midi marker meta event, and the markers of the loop points
+    public static final int iMARKER_MESSAGE = 6;
+    public static final String sLOOP_START_MARKER = "loopStart";
+    public static final String sLOOP_END_MARKER = "loopEnd";
+    // Memory for rendered sequences, other than the one playing
+    private static final int iMAX_RENDERED_BYTES = 64 * 1024 * 1024;
 
     private Sequencer seqSequencer;
     private boolean bLoop;
     private boolean bPaused;
+    private HashMap<String, Future<Sequence>> hmSequences; // Loaded or loading sequences by file name
+
+    // Prerender mode
+    private MidiRenderer mrRenderer;        // null if not in prerender mode
+    private SoundManager smSoundManager;    // Plays the rendered sequences
+    private ThreadPool tpRenderPool;        // Renders the sequences
+    private LinkedHashMap lhmRendered;      // Rendered sequences, oldest first
+    private Sequence seqRendered;           // Sequence playing
+    private RenderedSequence.RenderedStream rstPlaying;    // Its stream
     
     /**
      * MidiPlayer
@@ -30,6 +65,7 @@ public class MidiPlayer implements MetaEventListener {
      * 
      */
     public MidiPlayer() {
+        hmSequences = new HashMap<String, Future<Sequence>>();
         try {
             seqSequencer = MidiSystem.getSequencer();
             seqSequencer.open();
@@ -40,6 +76,37 @@ public class MidiPlayer implements MetaEventListener {
         }
     }
 
+    /**
+     * setPrerender
+     * 
+     * Turns on the prerender mode: sequences are rendered to PCM on 
+     * the specified ThreadPool and played with the specified 
+     * SoundManager, and the Sequencer is closed. Returns false (and 
+     * nothing changes) if sequences can't be rendered on this 
+     * system.
+     * 
+     * @param smSoundManager is an object of class <code>SoundManager</code>
+     * @param tpRenderPool is an object of class <code>ThreadPool</code>
+     * @return an object of class <code>Boolean</code>
+     */
+    public synchronized boolean setPrerender(SoundManager smSoundManager,
+        ThreadPool tpRenderPool)
+    {
+        MidiRenderer mrNewRenderer =
+            new MidiRenderer(smSoundManager.getPlaybackFormat());
+        if (!mrNewRenderer.isAvailable()) {
+            return false;
+        }
+        stop();
+        close();
+        seqSequencer = null;
+        mrRenderer = mrNewRenderer;
+        this.smSoundManager = smSoundManager;
+        this.tpRenderPool = tpRenderPool;
+        lhmRendered = new LinkedHashMap();
+        return true;
+    }
+
     /**
      * getSequence
      * 
@@ -60,6 +127,67 @@ public class MidiPlayer implements MetaEventListener {
     }
 
 
+    /**
+     * getSequence
+     * 
+     * Loads a sequence from the file system on the specified
+     * AssetLoader. This method returns immediately. The Future 
+     * gives null if an error occurs.
+     * 
+     * @param sFilename is an object of class <code>String</code>
+     * @param alLoader is an object of class <code>AssetLoader</code>
+     * @return an object of class <code>Future</code>
+     */
+    public Future<Sequence> getSequence(final String sFilename,
+        AssetLoader alLoader)
+    {
+        return alLoader.submit(new Callable<Sequence>() {
+            public Sequence call() {
+                return getSequence(sFilename);
+            }
+        });
+    }
+
+    /**
+     * load
+     * 
+     * Starts loading a sequence into the cache on the specified 
+     * AssetLoader, unless it is already cached. This method returns 
+     * immediately.
+     * 
+     * @param sFilename is an object of class <code>String</code>
+     * @param alLoader is an object of class <code>AssetLoader</code>
+     */
+    public synchronized void load(String sFilename, AssetLoader alLoader) {
+        if (!hmSequences.containsKey(sFilename)) {
+            hmSequences.put(sFilename, getSequence(sFilename, alLoader));
+        }
+    }
+
+    /**
+     * getCachedSequence
+     * 
+     * Gets a sequence from the cache, waiting for it if it is still 
+     * loading. A sequence that is not cached is loaded now. Returns 
+     * null if an error occurs.
+     * 
+     * @param sFilename is an object of class <code>String</code>
+     * @return an object of class <code>Sequence</code>
+     */
+    public Sequence getCachedSequence(String sFilename) {
+        Future<Sequence> futCached;
+        synchronized (this) {
+            futCached = hmSequences.get(sFilename);
+            if (futCached == null) {
+                // not loading, so load it now
+                futCached = CompletableFuture.completedFuture(
+                    getSequence(sFilename));
+                hmSequences.put(sFilename, futCached);
+            }
+        }
+        return AssetLoader.getResult(futCached);
+    }
+
     /**
      * getSequence
      * 
@@ -88,21 +216,51 @@ public class MidiPlayer implements MetaEventListener {
         }
     }
 
+    /**
+     * play
+     * 
+     * Plays a cached sequence by file name, optionally looping. 
+     * This method returns immediately.
+     * 
+     * @param sFilename is an object of class <code>String</code>
+     * @param bLoop is an object of class <code>Boolean</code>
+     */
+    public void play(String sFilename, boolean bLoop) {
+        play(getCachedSequence(sFilename), bLoop);
+    }
+
     /**
      * play
      * 
      * Plays a sequence, optionally looping. This method returns
-     * immediately. The sequence is not played if it is invalid.
+     * immediately. The sequence is not played if it is invalid. 
+     * If the sequence is already playing (or paused) with the 
+     * same looping, nothing changes.
      * 
      * @param seqSequence is an object of class <code>Sequence</code>
      * @param bLoop is an object of class <code>Boolean</code>
      */
     public void play(Sequence seqSequence, boolean bLoop) {
-        if (seqSequencer != null && seqSequence != null && seqSequencer.isOpen()) {
+        if (mrRenderer != null) {
+            playRendered(seqSequence, bLoop);
+        }
+        else if (seqSequencer != null && seqSequence != null && seqSequencer.isOpen()) {
+            if (seqSequencer.getSequence() == seqSequence &&
+                this.bLoop == bLoop &&
+                (seqSequencer.isRunning() || bPaused))
+            {
+                // already playing
+                return;
+            }
             try {
+                seqSequencer.stop();
                 seqSequencer.setSequence(seqSequence);
-                seqSequencer.start();
+                setLoop(seqSequence, bLoop);
+                seqSequencer.setTickPosition(0);
                 this.bLoop = bLoop;
+                if (!bPaused) {
+                    seqSequencer.start();
+                }
             }
             catch (InvalidMidiDataException ex) {
                 ex.printStackTrace();
@@ -110,23 +268,106 @@ public class MidiPlayer implements MetaEventListener {
         }
     }
 
+    /**
+     * playRendered
+     * 
+     * Plays a sequence in prerender mode, starting to render it if 
+     * needed.
+     * 
+     * @param seqSequence is an object of class <code>Sequence</code>
+     * @param bLoop is an object of class <code>Boolean</code>
+     */
+    private synchronized void playRendered(Sequence seqSequence,
+        boolean bLoop)
+    {
+        if (seqSequence == null || (seqSequence == seqRendered &&
+            this.bLoop == bLoop && rstPlaying != null))
+        {
+            // invalid, or already playing
+            return;
+        }
+        stop();
+
+        RenderedSequence rsRendered =
+            (RenderedSequence)lhmRendered.remove(seqSequence);
+        if (rsRendered == null) {
+            rsRendered = mrRenderer.render(seqSequence, tpRenderPool);
+        }
+        // forget the oldest sequences that don't fit
+        int iBytes = 0;
+        Iterator iteI = lhmRendered.values().iterator();
+        while (iteI.hasNext()) {
+            iBytes += ((RenderedSequence)iteI.next()).getSize();
+        }
+        iteI = lhmRendered.values().iterator();
+        while (iBytes > iMAX_RENDERED_BYTES && iteI.hasNext()) {
+            iBytes -= ((RenderedSequence)iteI.next()).getSize();
+            iteI.remove();
+        }
+        // the newest is last
+        lhmRendered.put(seqSequence, rsRendered);
+
+        rstPlaying = rsRendered.getInputStream(bLoop);
+        rstPlaying.setPaused(bPaused);
+        smSoundManager.play(rstPlaying);
+        seqRendered = seqSequence;
+        this.bLoop = bLoop;
+    }
+
+    /**
+     * setLoop
+     * 
+     * Sets the loop points of the sequencer for a sequence: its 
+     * loop markers, or the whole sequence if it has none.
+     * 
+     * @param seqSequence is an object of class <code>Sequence</code>
+     * @param bLoop is an object of class <code>Boolean</code>
+     */
+    private void setLoop(Sequence seqSequence, boolean bLoop) {
+        long lLoopStart = 0;
+        long lLoopEnd = -1;
+        Track[] traArrTracks = seqSequence.getTracks();
+        for (int iI = 0; iI < traArrTracks.length; iI++) {
+            for (int iJ = 0; iJ < traArrTracks[iI].size(); iJ++) {
+                MidiEvent meEvent = traArrTracks[iI].get(iJ);
+                if (meEvent.getMessage() instanceof MetaMessage) {
+                    MetaMessage mmMessage = (MetaMessage)meEvent.getMessage();
+                    if (mmMessage.getType() == iMARKER_MESSAGE) {
+                        String sMarker = new String(mmMessage.getData()).trim();
+                        if (sMarker.equals(sLOOP_START_MARKER)) {
+                            lLoopStart = meEvent.getTick();
+                        }
+                        else if (sMarker.equals(sLOOP_END_MARKER)) {
+                            lLoopEnd = meEvent.getTick();
+                        }
+                    }
+                }
+            }
+        }
+        if (lLoopEnd != -1 && lLoopEnd <= lLoopStart) {
+            // invalid markers: loop the whole sequence
+            lLoopStart = 0;
+            lLoopEnd = -1;
+        }
+        // the end point goes first, so the start is never past it
+        seqSequencer.setLoopEndPoint(-1);
+        seqSequencer.setLoopStartPoint(lLoopStart);
+        seqSequencer.setLoopEndPoint(lLoopEnd);
+        seqSequencer.setLoopCount(bLoop ? Sequencer.LOOP_CONTINUOUSLY : 0);
+    }
+
   
     /**
      * meta
      * 
      * This method is called by the sound system when a meta
-     * event occurs. In this case, when the end-of-track meta
-     * event is received, the sequence is restarted if
-     * looping is on.
+     * event occurs. Looping is done by the sequencer, so the 
+     * end-of-track event needs nothing.
      * 
      * @param mmEvent is an object of class <code>MetaMessage</code>
      */
     public void meta(MetaMessage mmEvent) {
-        if (mmEvent.getType() == iEND_OF_TRACK_MESSAGE) {
-            if (seqSequencer != null && seqSequencer.isOpen() && bLoop) {
-                seqSequencer.start();
-            }
-        }
+        // nothing to do
     }
 
 
@@ -136,7 +377,12 @@ public class MidiPlayer implements MetaEventListener {
      * Stops the sequencer and resets its position to 0.
      * 
      */
-    public void stop() {
+    public synchronized void stop() {
+         if (rstPlaying != null) {
+             rstPlaying.close();
+             rstPlaying = null;
+             seqRendered = null;
+         }
          if (seqSequencer != null && seqSequencer.isOpen()) {
              seqSequencer.stop();
              seqSequencer.setMicrosecondPosition(0);
@@ -150,6 +396,9 @@ public class MidiPlayer implements MetaEventListener {
      * 
      */
     public void close() {
+         if (mrRenderer != null) {
+             stop();
+         }
          if (seqSequencer != null && seqSequencer.isOpen()) {
              seqSequencer.close();
          }
@@ -158,7 +407,7 @@ public class MidiPlayer implements MetaEventListener {
     /**
      * Sequencer
      * 
-     * Gets the sequencer.
+     * Gets the sequencer (null in prerender mode).
      * 
      * @return an object of class <code>Sequencer</code>
      */
@@ -174,8 +423,14 @@ public class MidiPlayer implements MetaEventListener {
      * 
      * @param bPaused is an object of class <code>Boolean</code>
      */
-    public void setPaused(boolean bPaused) {
-        if (this.bPaused != bPaused && seqSequencer != null && seqSequencer.isOpen()) {
+    public synchronized void setPaused(boolean bPaused) {
+        if (mrRenderer != null) {
+            this.bPaused = bPaused;
+            if (rstPlaying != null) {
+                rstPlaying.setPaused(bPaused);
+            }
+        }
+        else if (this.bPaused != bPaused && seqSequencer != null && seqSequencer.isOpen()) {
             this.bPaused = bPaused;
             if (bPaused) {
                 seqSequencer.stop();
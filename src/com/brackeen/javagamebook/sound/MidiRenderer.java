@@ -0,0 +1,174 @@
+package com.brackeen.javagamebook.sound;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import com.brackeen.javagamebook.util.ThreadPool;
+
+/**
+ * MidiRenderer
+ *
+ * It manages the definition of each object of type <code>MidiRenderer</code>
+ *
+ * The MidiRenderer class renders MIDI sequences to PCM samples with
+ * the software synthesizer of Java Sound, instead of playing them in
+ * real time through a Sequencer. The result is played through the
+ * SoundManager like any other sound, so music and effects share one
+ * audio clock and one mixer, and the cost of the synthesizer is paid
+ * once per sequence.
+ * <p>A sequence is written as a MIDI file in memory and read back
+ * with AudioSystem, which renders MIDI files with the software
+ * synthesizer, and then converted to the playback format. If the
+ * system has no reader of MIDI files, or can't convert its samples,
+ * the renderer is not available and music should be played with a
+ * Sequencer.</p>
+ *
+ * @author Quazar Volume
+ */
+public class MidiRenderer {
+
+    // Standard MIDI file type the sequences are written as
+    private static final int iMIDI_FILE_TYPE = 1;
+    // Bytes rendered at a time
+    private static final int iCHUNK_SIZE = 16384;
+
+    private AudioFormat afFormat;
+    private boolean bAvailable;
+
+    /**
+     * MidiRenderer
+     *
+     * Parameterized Constructor
+     *
+     * Creates a new MidiRenderer that renders to the specified
+     * format. An empty sequence is rendered to check that it can be
+     * done on this system.
+     *
+     * @param afFormat is an object of class <code>AudioFormat</code>
+     */
+    public MidiRenderer(AudioFormat afFormat) {
+        this.afFormat = afFormat;
+        try {
+            Sequence seqEmpty = new Sequence(Sequence.PPQ, 24);
+            seqEmpty.createTrack();
+            AudioInputStream aisStream = openStream(seqEmpty);
+            aisStream.close();
+            bAvailable = true;
+        }
+        catch (Exception ex) {
+            // not available; the reason doesn't matter
+            bAvailable = false;
+        }
+    }
+
+    /**
+     * isAvailable
+     *
+     * Checks if this renderer can render sequences.
+     *
+     * @return object of class <code>Boolean</code>
+     */
+    public boolean isAvailable() {
+        return bAvailable;
+    }
+
+    /**
+     * render
+     *
+     * Starts rendering a sequence on the specified ThreadPool. This
+     * method returns immediately; the samples can be played while they
+     * are rendered. Returns null if the renderer is not available.
+     *
+     * @param seqSequence is an object of class <code>Sequence</code>
+     * @param tpPool is an object of class <code>ThreadPool</code>
+     * @return object of class <code>RenderedSequence</code>
+     */
+    public RenderedSequence render(final Sequence seqSequence,
+        ThreadPool tpPool)
+    {
+        if (!isAvailable()) {
+            return null;
+        }
+
+        // size of the whole sequence, in whole frames; the release of
+        // the last notes is left out, so it loops without a gap
+        int iFrameSize = afFormat.getFrameSize();
+        long lFrames = (long)(seqSequence.getMicrosecondLength() / 1e6 *
+            afFormat.getFrameRate());
+        final RenderedSequence rsRendered = new RenderedSequence(
+            (int)Math.min(lFrames * iFrameSize,
+            Integer.MAX_VALUE / iFrameSize * iFrameSize));
+
+        tpPool.runTask(new Runnable() {
+            public void run() {
+                renderNow(seqSequence, rsRendered);
+            }
+        });
+        return rsRendered;
+    }
+
+    /**
+     * openStream
+     *
+     * Writes a sequence as a MIDI file in memory and opens it as a
+     * stream of samples in the format of this renderer. The samples
+     * are rendered as the stream is read.
+     *
+     * @param seqSequence is an object of class <code>Sequence</code>
+     * @return object of class <code>AudioInputStream</code>
+     * @throws Exception if it can't be written, rendered or converted
+     */
+    private AudioInputStream openStream(Sequence seqSequence)
+        throws Exception
+    {
+        ByteArrayOutputStream baosFile = new ByteArrayOutputStream();
+        MidiSystem.write(seqSequence, iMIDI_FILE_TYPE, baosFile);
+        AudioInputStream aisStream = AudioSystem.getAudioInputStream(
+            new ByteArrayInputStream(baosFile.toByteArray()));
+        if (aisStream.getFormat().matches(afFormat)) {
+            return aisStream;
+        }
+        return AudioSystem.getAudioInputStream(afFormat, aisStream);
+    }
+
+    /**
+     * renderNow
+     *
+     * Renders a sequence with the software synthesizer and reads the
+     * samples it produces.
+     *
+     * @param seqSequence is an object of class <code>Sequence</code>
+     * @param rsRendered is an object of class <code>RenderedSequence</code>
+     */
+    private void renderNow(Sequence seqSequence,
+        RenderedSequence rsRendered)
+    {
+        try {
+            AudioInputStream aisStream = openStream(seqSequence);
+            byte[] byteArrSamples = rsRendered.getSamplesArray();
+            int iPosition = 0;
+            while (iPosition < byteArrSamples.length) {
+                int iRead = aisStream.read(byteArrSamples, iPosition,
+                    Math.min(iCHUNK_SIZE, byteArrSamples.length - iPosition));
+                if (iRead <= 0) {
+                    break;
+                }
+                iPosition += iRead;
+                rsRendered.rendered(iRead);
+            }
+            aisStream.close();
+        }
+        catch (Exception ex) {
+            // I/O, file format or synthesizer errors
+            ex.printStackTrace();
+        }
+        finally {
+            rsRendered.finish();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.brackeen.javagamebook.sound;
+
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * RenderedSequence
+ *
+ * It manages the definition of each object of type <code>RenderedSequence</code>
+ *
+ * The RenderedSequence class holds the samples of a MIDI sequence
+ * rendered to PCM by a MidiRenderer. The samples are written while the
+ * sequence is rendered, and can be played at the same time: a stream
+ * that catches up with the renderer waits for more samples. Once the
+ * whole sequence is rendered, it is played from memory, and a looping
+ * stream starts over without a gap.
+ *
+ * @author Quazar Volume
+ */
+public class RenderedSequence {
+
+    private byte[] byteArrSamples;  // Samples of the whole sequence
+    private int iRendered;          // Bytes rendered so far
+    private boolean bFinished;      // No more samples will be written
+
+    /**
+     * RenderedSequence
+     *
+     * Parameterized Constructor
+     *
+     * Creates a new, empty RenderedSequence of the specified size in
+     * bytes.
+     *
+     * @param iSize is an object of class <code>Integer</code>
+     */
+    public RenderedSequence(int iSize) {
+        byteArrSamples = new byte[iSize];
+    }
+
+    /**
+     * getSize
+     *
+     * Gets the size of the rendered sequence, in bytes.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getSize() {
+        return byteArrSamples.length;
+    }
+
+    /**
+     * isComplete
+     *
+     * Checks if all the samples were rendered.
+     *
+     * @return object of class <code>Boolean</code>
+     */
+    public synchronized boolean isComplete() {
+        return iRendered == byteArrSamples.length;
+    }
+
+    /**
+     * getSamplesArray
+     *
+     * Gets the array the renderer writes the samples to. Samples
+     * must be written in order, and reported with rendered().
+     *
+     * @return array of class <code>byte</code>
+     */
+    byte[] getSamplesArray() {
+        return byteArrSamples;
+    }
+
+    /**
+     * rendered
+     *
+     * Reports that more samples were written.
+     *
+     * @param iLength is an object of class <code>Integer</code>
+     */
+    synchronized void rendered(int iLength) {
+        iRendered += iLength;
+        notifyAll();
+    }
+
+    /**
+     * finish
+     *
+     * Reports that no more samples will be written (the sequence is
+     * complete, or rendering failed and it ends early).
+     */
+    synchronized void finish() {
+        bFinished = true;
+        notifyAll();
+    }
+
+    /**
+     * waitForSamples
+     *
+     * Waits until the samples up to a position are rendered, and
+     * gets how many bytes are available from that position (0 if
+     * the rendering ended there).
+     *
+     * @param iPosition is an object of class <code>Integer</code>
+     * @return object of class <code>Integer</code>
+     */
+    private synchronized int waitForSamples(int iPosition) {
+        while (iRendered <= iPosition && !bFinished) {
+            try {
+                wait();
+            }
+            catch (InterruptedException ex) {
+                return 0;
+            }
+        }
+        return Math.max(iRendered - iPosition, 0);
+    }
+
+    /**
+     * getInputStream
+     *
+     * Gets a new stream of the samples, optionally looping.
+     *
+     * @param bLoop is an object of class <code>Boolean</code>
+     * @return object of class <code>RenderedStream</code>
+     */
+    public RenderedStream getInputStream(boolean bLoop) {
+        return new RenderedStream(bLoop);
+    }
+
+    /**
+     * RenderedStream
+     *
+     * It manages the definition of each object of type <code>RenderedStream</code>
+     *
+     * The RenderedStream class reads the samples of a
+     * RenderedSequence. It can be paused (it gives silence and keeps
+     * its position) and closed (it ends).
+     *
+     * @author Quazar Volume
+     */
+    public class RenderedStream extends InputStream {
+
+        private boolean bLoop;
+        private int iPosition;              // Next byte to read
+        private volatile boolean bPaused;
+        private volatile boolean bClosed;
+
+        /**
+         * RenderedStream
+         *
+         * Parameterized Constructor
+         *
+         * @param bLoop is an object of class <code>Boolean</code>
+         */
+        RenderedStream(boolean bLoop) {
+            this.bLoop = bLoop;
+        }
+
+        /**
+         * setPaused
+         *
+         * Sets the paused state. A paused stream gives silence.
+         *
+         * @param bPaused is an object of class <code>Boolean</code>
+         */
+        public void setPaused(boolean bPaused) {
+            this.bPaused = bPaused;
+        }
+
+        /**
+         * read
+         *
+         * Reads one byte.
+         *
+         * @return object of class <code>Integer</code>
+         */
+        public int read() {
+            byte[] byteArrOne = new byte[1];
+            return (read(byteArrOne, 0, 1) == -1) ? -1 : byteArrOne[0] & 0xff;
+        }
+
+        /**
+         * read
+         *
+         * Reads samples, waiting for them to be rendered if needed.
+         *
+         * @param byteArrBuffer is an array of class <code>byte</code>
+         * @param iOffset is an object of class <code>Integer</code>
+         * @param iLength is an object of class <code>Integer</code>
+         * @return object of class <code>Integer</code>
+         */
+        public int read(byte[] byteArrBuffer, int iOffset, int iLength) {
+            if (bClosed) {
+                return -1;
+            }
+            if (bPaused) {
+                // keep the line busy with silence
+                Arrays.fill(byteArrBuffer, iOffset, iOffset + iLength,
+                    (byte)0);
+                return iLength;
+            }
+            int iAvailable = waitForSamples(iPosition);
+            if (iAvailable == 0) {
+                if (!bLoop || iPosition == 0) {
+                    return -1;
+                }
+                // start over
+                iPosition = 0;
+                iAvailable = waitForSamples(iPosition);
+                if (iAvailable == 0) {
+                    return -1;
+                }
+            }
+            int iRead = Math.min(iLength, iAvailable);
+            System.arraycopy(byteArrSamples, iPosition, byteArrBuffer,
+                iOffset, iRead);
+            iPosition += iRead;
+            return iRead;
+        }
+
+        /**
+         * close
+         *
+         * Closes this stream; the next read ends it.
+         */
+        public void close() {
+            bClosed = true;
+        }
+    }
+}
@@ -7,13 +7,16 @@ package com.brackeen.javagamebook.sound;
  *
  * The Sound class is a container for sound samples. The sound
  * samples are format-agnostic and are stored as a byte array.
+ * A Sound can be created before its samples are loaded; it stays
+ * silent until they arrive.
  * 
  * @author Quazar Volume
  *
  */
 public class Sound {
 
-    private byte[] byteArrSamples;
+    private volatile byte[] byteArrSamples;
+    private int iInstances;     // Instances queued or playing
   
     /**
      * Sound
@@ -29,10 +32,34 @@ public class Sound {
         this.byteArrSamples = byteArrSamples;
     }
 
+    /**
+     * setSamples
+     * 
+     * Sets the samples of a Sound that was created before they
+     * were loaded.
+     * 
+     * @param byteArrSamples is an object of class <code>byte</code>
+     */
+    void setSamples(byte[] byteArrSamples) {
+        this.byteArrSamples = byteArrSamples;
+    }
+
+    /**
+     * isLoaded
+     * 
+     * Checks if the samples of this Sound are available.
+     * 
+     * @return an object of class <code>Boolean</code>
+     */
+    public boolean isLoaded() {
+        return byteArrSamples != null;
+    }
+
     /**
      * getSamples
      * 
-     * Returns this Sound's objects samples as a byte array.
+     * Returns this Sound's objects samples as a byte array, or
+     * null if they are not loaded yet.
      * 
      * @return an object of class <code>Sound</code>
      */
@@ -40,4 +67,28 @@ public class Sound {
         return byteArrSamples;
     }
 
+    /**
+     * getInstances
+     * 
+     * Gets the number of instances of this Sound that are queued 
+     * or playing.
+     * 
+     * @return an object of class <code>Integer</code>
+     */
+    public synchronized int getInstances() {
+        return iInstances;
+    }
+
+    /**
+     * addInstance
+     * 
+     * Counts an instance of this Sound that was queued (1) or that 
+     * finished playing (-1).
+     * 
+     * @param iDelta is an object of class <code>Integer</code>
+     */
+    synchronized void addInstance(int iDelta) {
+        iInstances += iDelta;
+    }
+
 }
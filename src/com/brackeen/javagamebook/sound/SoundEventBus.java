@@ -0,0 +1,205 @@
+package com.brackeen.javagamebook.sound;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+import com.brackeen.javagamebook.graphics.Sprite;
+
+/**
+ * SoundEventBus
+ *
+ * It manages the definition of each object of type <code>SoundEventBus</code>
+ *
+ * The SoundEventBus class collects the sounds requested during a game
+ * tick and plays them all at once, at the end of the tick, through a
+ * SoundManager. This keeps the audio work bounded no matter how many
+ * creatures ask for sounds:
+ * <ul>
+ * <li>A Sound posted again within the coalescing window (or twice in
+ * the same tick) is played only once.</li>
+ * <li>A Sound is not played while it already has its maximum number
+ * of instances queued or playing.</li>
+ * <li>At most a budget of new voices is started per tick; sounds with
+ * a higher priority are played first, and the rest are dropped.</li>
+ * </ul>
+ *
+ * @author Quazar Volume
+ */
+public class SoundEventBus {
+
+    // Priorities
+    public static final int iPRIORITY_LOW = 0;      // Ambient and enemy sounds
+    public static final int iPRIORITY_NORMAL = 1;
+    public static final int iPRIORITY_HIGH = 2;     // Player and menu sounds
+
+    private SoundManager smSoundManager;
+    private long lWindow;               // Coalescing window, in ms
+    private int iVoiceBudget;           // Voices started per tick
+    private int iMaxInstances;          // Default instances per Sound
+    private IdentityHashMap ihmMaxInstances;    // Instances per Sound
+    private IdentityHashMap ihmLastPlayed;      // Time each Sound was played
+    private ArrayList ArrEvents;        // Events of this tick
+    private long lTime;                 // Time of the bus, in ms
+
+    /**
+     * SoundEventBus
+     *
+     * Parameterized Constructor
+     *
+     * Creates a new SoundEventBus that plays its sounds with the
+     * specified SoundManager.
+     *
+     * @param smSoundManager is an object of class <code>SoundManager</code>
+     * @param lWindow is an object of class <code>Long</code>
+     * @param iVoiceBudget is an object of class <code>Integer</code>
+     * @param iMaxInstances is an object of class <code>Integer</code>
+     */
+    public SoundEventBus(SoundManager smSoundManager, long lWindow,
+        int iVoiceBudget, int iMaxInstances)
+    {
+        this.smSoundManager = smSoundManager;
+        this.lWindow = lWindow;
+        this.iVoiceBudget = iVoiceBudget;
+        this.iMaxInstances = iMaxInstances;
+        ihmMaxInstances = new IdentityHashMap();
+        ihmLastPlayed = new IdentityHashMap();
+        ArrEvents = new ArrayList();
+    }
+
+    /**
+     * setMaxInstances
+     *
+     * Sets the maximum number of instances of a Sound that can be
+     * queued or playing at the same time.
+     *
+     * @param souSound is an object of class <code>Sound</code>
+     * @param iMaxInstances is an object of class <code>Integer</code>
+     */
+    public void setMaxInstances(Sound souSound, int iMaxInstances) {
+        ihmMaxInstances.put(souSound, Integer.valueOf(iMaxInstances));
+    }
+
+    /**
+     * post
+     *
+     * Requests a sound, centered, to be played at the end of this
+     * tick.
+     *
+     * @param souSound is an object of class <code>Sound</code>
+     * @param iPriority is an object of class <code>Integer</code>
+     */
+    public void post(Sound souSound, int iPriority) {
+        post(souSound, null, iPriority);
+    }
+
+    /**
+     * post
+     *
+     * Requests a sound coming from an emitter Sprite (or centered,
+     * if the emitter is null) to be played at the end of this tick.
+     * If the same Sound was already requested in this tick, only the
+     * highest priority is kept.
+     *
+     * @param souSound is an object of class <code>Sound</code>
+     * @param sprEmitter is an object of class <code>Sprite</code>
+     * @param iPriority is an object of class <code>Integer</code>
+     */
+    public void post(Sound souSound, Sprite sprEmitter, int iPriority) {
+        if (souSound == null) {
+            return;
+        }
+        for (int iI = 0; iI < ArrEvents.size(); iI++) {
+            SoundEvent seEvent = (SoundEvent)ArrEvents.get(iI);
+            if (seEvent.souSound == souSound) {
+                // coalesce with the event already posted
+                if (iPriority > seEvent.iPriority) {
+                    seEvent.iPriority = iPriority;
+                    seEvent.sprEmitter = sprEmitter;
+                }
+                return;
+            }
+        }
+        ArrEvents.add(new SoundEvent(souSound, sprEmitter, iPriority));
+    }
+
+    /**
+     * flush
+     *
+     * Plays the sounds requested in this tick, by priority, within
+     * the voice budget, and forgets the rest. It must be called once
+     * per tick.
+     *
+     * @param lElapsedTime is an object of class <code>Long</code>
+     */
+    public void flush(long lElapsedTime) {
+        lTime += lElapsedTime;
+        int iVoices = 0;
+        for (int iPriority = iPRIORITY_HIGH; iPriority >= iPRIORITY_LOW;
+            iPriority--)
+        {
+            for (int iI = 0; iI < ArrEvents.size() && iVoices < iVoiceBudget;
+                iI++)
+            {
+                SoundEvent seEvent = (SoundEvent)ArrEvents.get(iI);
+                if (seEvent.iPriority == iPriority && canPlay(seEvent.souSound)
+                    && smSoundManager.play(seEvent.souSound,
+                        seEvent.sprEmitter) != null)
+                {
+                    ihmLastPlayed.put(seEvent.souSound, Long.valueOf(lTime));
+                    iVoices++;
+                }
+            }
+        }
+        ArrEvents.clear();
+    }
+
+    /**
+     * canPlay
+     *
+     * Checks if a Sound can be played now: it was not played within
+     * the coalescing window, and it has instances left.
+     *
+     * @param souSound is an object of class <code>Sound</code>
+     * @return object of class <code>Boolean</code>
+     */
+    private boolean canPlay(Sound souSound) {
+        Long lLastPlayed = (Long)ihmLastPlayed.get(souSound);
+        if (lLastPlayed != null && lTime - lLastPlayed.longValue() < lWindow) {
+            return false;
+        }
+        Integer iMax = (Integer)ihmMaxInstances.get(souSound);
+        return souSound.getInstances() <
+            ((iMax != null) ? iMax.intValue() : iMaxInstances);
+    }
+
+    /**
+     * SoundEvent
+     *
+     * It manages the definition of each object of type <code>SoundEvent</code>
+     *
+     * The SoundEvent class holds a sound requested during a tick.
+     *
+     * @author Quazar Volume
+     */
+    private static class SoundEvent {
+
+        Sound souSound;         // Sound to play
+        Sprite sprEmitter;      // Emitter of the sound, or null
+        int iPriority;          // Priority of the sound
+
+        /**
+         * SoundEvent
+         *
+         * Parameterized Constructor
+         *
+         * @param souSound is an object of class <code>Sound</code>
+         * @param sprEmitter is an object of class <code>Sprite</code>
+         * @param iPriority is an object of class <code>Integer</code>
+         */
+        SoundEvent(Sound souSound, Sprite sprEmitter, int iPriority) {
+            this.souSound = souSound;
+            this.sprEmitter = sprEmitter;
+            this.iPriority = iPriority;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.brackeen.javagamebook.sound;
+
+/**
+ * SoundListener
+ *
+ * It manages the definition of each object of type <code>SoundListener</code>
+ *
+ * The SoundListener interface is implemented by whatever "hears" the
+ * positional sounds played by a SoundManager (usually the camera).
+ * Sounds are panned and attenuated by their position relative to
+ * the listener.
+ *
+ * @author Quazar Volume
+ */
+public interface SoundListener {
+
+    /**
+     * getListenerX
+     *
+     * Gets the horizontal position of the listener, in world pixels.
+     *
+     * @return object of class <code>Float</code>
+     */
+    public float getListenerX();
+
+    /**
+     * getListenerY
+     *
+     * Gets the vertical position of the listener, in world pixels.
+     *
+     * @return object of class <code>Float</code>
+     */
+    public float getListenerY();
+}
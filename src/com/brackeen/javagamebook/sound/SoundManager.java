@@ -3,6 +3,8 @@ package com.brackeen.javagamebook.sound;
 import java.io.*;
 import javax.sound.sampled.*;
 import javax.sound.midi.*;
+import com.brackeen.javagamebook.graphics.Sprite;
+import com.brackeen.javagamebook.util.Metrics;
 import com.brackeen.javagamebook.util.ThreadPool;
 import com.brackeen.javagamebook.util.LoopingByteInputStream;
 
@@ -16,6 +18,14 @@ import com.brackeen.javagamebook.util.LoopingByteInputStream;
  * SoundManager is a ThreadPool, with each thread playing back
  * one sound at a time. This allows the SoundManager to
  * easily limit the number of simultaneous sounds being played.
+ * <p>Sounds can also be played from an emitter Sprite. They are
+ * attenuated with the distance to the SoundListener and panned to
+ * its left or right; emitters too far away are not played at all.</p>
+ * <p>The size of the line buffers (the latency of every sound) and of
+ * the chunks written to them can be configured. In adaptive mode the
+ * buffers shrink until underruns appear, and then grow back a little.
+ * Latency, underruns and line use are recorded in a Metrics
+ * registry.</p>
  *
  * @author Quazar Volume
  *
@@ -27,6 +37,22 @@ public class SoundManager extends ThreadPool {
     private ThreadLocal tlLocalBuffer;
     private Object objPausedLock;
     private boolean bPaused;
+    private SoundListener slListener;   // Listener of positional sounds
+    private int iMaxDistance;           // Distance at which sounds are culled
+
+    // Clean sounds played before the adaptive mode shrinks the buffers
+    private static final int iADAPT_SOUNDS = 8;
+
+    private ThreadLocal tlLocalLineSize;    // Size requested for each line
+    private int iNumLines;              // Lines (threads) in the pool
+    private int iBusyLines;             // Lines playing a sound
+    private int iBufferSize;            // Line buffer size, in bytes
+    private int iPeriodSize;            // Bytes written at a time
+    private boolean bAdaptive;          // Adapt the buffer size to underruns
+    private int iMinBufferSize;         // Smallest buffer size to try
+    private int iMaxBufferSize;         // Largest buffer size to use
+    private int iCleanSounds;           // Sounds played without underruns
+    private Metrics mtrMetrics;         // Latency, underrun and line metrics
 
     /**
      * SoundManager
@@ -56,13 +82,48 @@ public class SoundManager extends ThreadPool {
      */
     public SoundManager(AudioFormat afPlaybackFormat,
         int iMaxSimultaneousSounds)
+    {
+        // use a short, 100ms (1/10th sec) buffer for filters that
+        // change in real-time
+        this(afPlaybackFormat, iMaxSimultaneousSounds, 100, 100, false);
+    }
+    
+    /**
+     * SoundManager
+     * 
+     * Parameterized Constructor
+     * 
+     * Creates a new SoundManager with the specified maximum
+     * number of simultaneous sounds, the size of the line buffers 
+     * and the size of the chunks written to them (both in 
+     * milliseconds of sound). In adaptive mode the buffer size is 
+     * only the starting point.
+     * 
+     * @param afPlaybackFormat is an object of class <code>AudioFormat</code>
+     * @param iMaxSimultaneousSounds is an object of class <code>Integer</code>
+     * @param iBufferMillis is an object of class <code>Integer</code>
+     * @param iPeriodMillis is an object of class <code>Integer</code>
+     * @param bAdaptive is an object of class <code>Boolean</code>
+     */
+    public SoundManager(AudioFormat afPlaybackFormat,
+        int iMaxSimultaneousSounds, int iBufferMillis, int iPeriodMillis,
+        boolean bAdaptive)
     {
         super(Math.min(iMaxSimultaneousSounds,
             getMaxSimultaneousSounds(afPlaybackFormat)));
         this.afPlaybackFormat = afPlaybackFormat;
         tlLocalLine = new ThreadLocal();
         tlLocalBuffer = new ThreadLocal();
+        tlLocalLineSize = new ThreadLocal();
         objPausedLock = new Object();
+        iNumLines = Math.min(iMaxSimultaneousSounds,
+            getMaxSimultaneousSounds(afPlaybackFormat));
+        iPeriodSize = millisToBytes(iPeriodMillis);
+        iBufferSize = Math.max(millisToBytes(iBufferMillis), iPeriodSize);
+        this.bAdaptive = bAdaptive;
+        iMinBufferSize = Math.min(2 * iPeriodSize, iBufferSize);
+        iMaxBufferSize = 4 * iBufferSize;
+        mtrMetrics = new Metrics();
         // notify threads in pool it's ok to start
         synchronized (this) {
             notifyAll();
@@ -92,6 +153,146 @@ public class SoundManager extends ThreadPool {
         //return mixMixer.getMaxLines(dlLineInfo);
     }
 
+    /**
+     * millisToBytes
+     * 
+     * Converts a duration of sound to a number of bytes in the 
+     * playback format (a whole number of frames).
+     * 
+     * @param iMillis is an object of class <code>Integer</code>
+     * @return object of class <code>Integer</code>
+     */
+    private int millisToBytes(int iMillis) {
+        return afPlaybackFormat.getFrameSize() * Math.max(1,
+            Math.round(afPlaybackFormat.getSampleRate() * iMillis / 1000));
+    }
+
+    /**
+     * getPlaybackFormat
+     * 
+     * Gets the format of the sounds played by this SoundManager.
+     * 
+     * @return object of class <code>AudioFormat</code>
+     */
+    public AudioFormat getPlaybackFormat() {
+        return afPlaybackFormat;
+    }
+
+    /**
+     * setMetrics
+     * 
+     * Sets the registry where the latency, underruns and line use 
+     * are recorded, so they can be read with the metrics of the 
+     * game loop.
+     * 
+     * @param mtrMetrics is an object of class <code>Metrics</code>
+     */
+    public void setMetrics(Metrics mtrMetrics) {
+        this.mtrMetrics = mtrMetrics;
+    }
+
+    /**
+     * getMetrics
+     * 
+     * Gets the registry where the latency, underruns and line use 
+     * are recorded.
+     * 
+     * @return object of class <code>Metrics</code>
+     */
+    public Metrics getMetrics() {
+        return mtrMetrics;
+    }
+
+    /**
+     * getBufferSize
+     * 
+     * Gets the size, in bytes, of the line buffers (the size new 
+     * lines are opened with, in adaptive mode).
+     * 
+     * @return object of class <code>Integer</code>
+     */
+    public synchronized int getBufferSize() {
+        return iBufferSize;
+    }
+
+    /**
+     * adapt
+     * 
+     * Adapts the size of the line buffers after a sound was played. 
+     * After several sounds without underruns the buffers shrink; an 
+     * underrun makes them grow, and they never shrink below that 
+     * size again.
+     * 
+     * @param bUnderrun is an object of class <code>Boolean</code>
+     */
+    private synchronized void adapt(boolean bUnderrun) {
+        if (!bAdaptive) {
+            return;
+        }
+        int iFrameSize = afPlaybackFormat.getFrameSize();
+        if (bUnderrun) {
+            iBufferSize = Math.min(iMaxBufferSize,
+                iBufferSize * 3 / 2 / iFrameSize * iFrameSize);
+            iMinBufferSize = iBufferSize;
+            iCleanSounds = 0;
+        }
+        else if (++iCleanSounds >= iADAPT_SOUNDS &&
+            iBufferSize > iMinBufferSize)
+        {
+            iBufferSize = Math.max(iMinBufferSize,
+                iBufferSize * 3 / 4 / iFrameSize * iFrameSize);
+            iCleanSounds = 0;
+        }
+        else {
+            return;
+        }
+        mtrMetrics.add("sound.buffer.bytes", iBufferSize);
+    }
+
+    /**
+     * setBusy
+     * 
+     * Counts a line that starts (true) or stops (false) playing a 
+     * sound, and records the share of lines in use.
+     * 
+     * @param bBusy is an object of class <code>Boolean</code>
+     */
+    private synchronized void setBusy(boolean bBusy) {
+        iBusyLines += bBusy ? 1 : -1;
+        if (bBusy) {
+            mtrMetrics.add("sound.lines.busy.pct",
+                100L * iBusyLines / Math.max(iNumLines, 1));
+        }
+    }
+
+    /**
+     * openLine
+     * 
+     * Opens and starts a line with the specified buffer size, and 
+     * makes it the line of the current thread. Returns null if 
+     * no line is available.
+     * 
+     * @param iSize is an object of class <code>Integer</code>
+     * @return object of class <code>SourceDataLine</code>
+     */
+    private SourceDataLine openLine(int iSize) {
+        SourceDataLine sdlLine;
+        DataLine.Info dlLineInfo = new DataLine.Info(
+            SourceDataLine.class, afPlaybackFormat);
+        try {
+            sdlLine = (SourceDataLine)AudioSystem.getLine(dlLineInfo);
+            sdlLine.open(afPlaybackFormat, iSize);
+        }
+        catch (LineUnavailableException ex) {
+            return null;
+        }
+
+        sdlLine.start();
+        tlLocalLine.set(sdlLine);
+        tlLocalLineSize.set(Integer.valueOf(iSize));
+        return sdlLine;
+    }
+
     /**
      * cleanUp
      * 
@@ -171,6 +372,30 @@ public class SoundManager extends ThreadPool {
         return getSound(getAudioInputStream(sFilename));
     }
 
+    /**
+     * getSound
+     * 
+     * Creates a Sound and loads its samples from the file system
+     * on the specified ThreadPool. This method returns immediately; 
+     * the Sound is silent until its samples are loaded.
+     * 
+     * @param sFilename is an object of class <code>String</code>
+     * @param tpLoader is an object of class <code>ThreadPool</code>
+     * @return object of class <code>Sound</code>
+     */
+    public Sound getSound(final String sFilename, ThreadPool tpLoader) {
+        final Sound souSound = new Sound(null);
+        tpLoader.runTask(new Runnable() {
+            public void run() {
+                Sound souLoaded = getSound(sFilename);
+                if (souLoaded != null) {
+                    souSound.setSamples(souLoaded.getSamples());
+                }
+            }
+        });
+        return souSound;
+    }
+
     /**
      * getSound
      * 
@@ -297,7 +522,7 @@ public class SoundManager extends ThreadPool {
         boolean bLoop)
     {
         InputStream isIs;
-        if (souSound != null) {
+        if (souSound != null && souSound.isLoaded()) {
             if (bLoop) {
                 isIs = new LoopingByteInputStream(
                     souSound.getSamples());
@@ -306,11 +531,72 @@ public class SoundManager extends ThreadPool {
                 isIs = new ByteArrayInputStream(souSound.getSamples());
             }
 
-            return play(isIs, sfFilter);
+            if (sfFilter != null) {
+                isIs = new FilteredSoundStream(isIs, sfFilter);
+            }
+            runTask(new SoundPlayer(isIs, souSound, 1, 0));
+            return isIs;
         }
         return null;
     }
 
+    /**
+     * setListener
+     * 
+     * Sets the listener of positional sounds, and the distance (in 
+     * pixels) at which they can no longer be heard.
+     * 
+     * @param slListener is an object of class <code>SoundListener</code>
+     * @param iMaxDistance is an object of class <code>Integer</code>
+     */
+    public void setListener(SoundListener slListener, int iMaxDistance) {
+        this.slListener = slListener;
+        this.iMaxDistance = iMaxDistance;
+    }
+
+    /**
+     * play
+     * 
+     * Plays a sound coming from an emitter Sprite. The sound gets 
+     * quieter with the distance to the listener, and is panned to 
+     * the side of the listener where the emitter is. Sounds farther 
+     * than the maximum distance are dropped before they take a 
+     * thread or a line, and null is returned. Without a listener 
+     * the sound is played normally. This method returns immediately.
+     * 
+     * @param souSound is an object of class <code>Sound</code>
+     * @param sprEmitter is an object of class <code>Sprite</code>
+     * @return object of class <code>InputStream</code>
+     */
+    public InputStream play(Sound souSound, Sprite sprEmitter) {
+        if (slListener == null || sprEmitter == null) {
+            return play(souSound);
+        }
+        if (souSound == null || !souSound.isLoaded()) {
+            return null;
+        }
+
+        // distance from the center of the emitter to the listener
+        float fDx = sprEmitter.getX() + sprEmitter.getWidth() / 2f -
+            slListener.getListenerX();
+        float fDy = sprEmitter.getY() + sprEmitter.getHeight() / 2f -
+            slListener.getListenerY();
+        float fDistanceSquared = fDx * fDx + fDy * fDy;
+        if (fDistanceSquared >= (float)iMaxDistance * iMaxDistance) {
+            // too far away to be heard
+            return null;
+        }
+
+        // volume from 1 (at the listener) to 0 (at the maximum 
+        // distance), fully panned at half the maximum distance
+        float fVolume = 1 - (float)Math.sqrt(fDistanceSquared) / iMaxDistance;
+        float fPan = Math.max(-1f, Math.min(1f, 2 * fDx / iMaxDistance));
+
+        InputStream isIs = new ByteArrayInputStream(souSound.getSamples());
+        runTask(new SoundPlayer(isIs, souSound, fVolume, fPan));
+        return isIs;
+    }
+
     /**
      * play
      * 
@@ -360,33 +646,16 @@ public class SoundManager extends ThreadPool {
             catch (InterruptedException ex) { }
         }
 
-        // use a short, 100ms (1/10th sec) buffer for filters that
-        // change in real-time
-        int iBufferSize = afPlaybackFormat.getFrameSize() *
-            Math.round(afPlaybackFormat.getSampleRate() / 10);
-
         // create, open, and start the line
-        SourceDataLine sdlLine;
-        DataLine.Info dlLineInfo = new DataLine.Info(
-            SourceDataLine.class, afPlaybackFormat);
-        try {
-            sdlLine = (SourceDataLine)AudioSystem.getLine(dlLineInfo);
-            sdlLine.open(afPlaybackFormat, iBufferSize);
-        }
-        catch (LineUnavailableException ex) {
+        SourceDataLine sdlLine = openLine(getBufferSize());
+        if (sdlLine == null) {
             // the line is unavailable - signal to end this thread
             Thread.currentThread().interrupt();
             return;
         }
 
-        sdlLine.start();
-
-        // create the buffer
-        byte[] byteArrBuffer = new byte[iBufferSize];
-
-        // set this thread's locals
-        tlLocalLine.set(sdlLine);
-        tlLocalBuffer.set(byteArrBuffer);
+        // create the buffer, one period long
+        tlLocalBuffer.set(new byte[iPeriodSize]);
     }
 
     /**
@@ -417,6 +686,10 @@ public class SoundManager extends ThreadPool {
     protected class SoundPlayer implements Runnable {
 
         private InputStream isSource;
+        private long lTriggerTime;  // Time the sound was requested, in ns
+        private Sound souSound;     // Sound played, if any
+        private float fVolume;  // From 0 (silent) to 1 (unchanged)
+        private float fPan;     // From -1 (left) to 1 (right)
         
         /**
          * SoundPlayer
@@ -426,7 +699,34 @@ public class SoundManager extends ThreadPool {
          * @param isSource is an object of class <code>InputStream</code>
          */
         public SoundPlayer(InputStream isSource) {
+            this(isSource, null, 1, 0);
+        }
+        
+        /**
+         * SoundPlayer
+         * 
+         * Parameterized Constructor 
+         * 
+         * Creates a task that plays a Sound (which can be null) 
+         * from an InputStream, counting it as an instance of the 
+         * Sound until it finishes.
+         * 
+         * @param isSource is an object of class <code>InputStream</code>
+         * @param souSound is an object of class <code>Sound</code>
+         * @param fVolume is an object of class <code>Float</code>
+         * @param fPan is an object of class <code>Float</code>
+         */
+        public SoundPlayer(InputStream isSource, Sound souSound,
+            float fVolume, float fPan)
+        {
             this.isSource = isSource;
+            this.lTriggerTime = System.nanoTime();
+            this.souSound = souSound;
+            if (souSound != null) {
+                souSound.addInstance(1);
+            }
+            this.fVolume = fVolume;
+            this.fPan = fPan;
         }
         
         /**
@@ -434,6 +734,23 @@ public class SoundManager extends ThreadPool {
          * 
          */
         public void run() {
+            try {
+                play();
+            }
+            finally {
+                if (souSound != null) {
+                    souSound.addInstance(-1);
+                }
+            }
+        }
+
+        /**
+         * play
+         * 
+         * Copies the sound to the line of this thread.
+         * 
+         */
+        private void play() {
             // get line and buffer from ThreadLocals
             SourceDataLine sdlLine = (SourceDataLine)tlLocalLine.get();
             byte[] byteArrBuffer = (byte[])tlLocalBuffer.get();
@@ -442,8 +759,30 @@ public class SoundManager extends ThreadPool {
                 return;
             }
 
+            // reopen the line if the adaptive mode changed its size
+            int iSize = getBufferSize();
+            if (iSize != ((Integer)tlLocalLineSize.get()).intValue()) {
+                sdlLine.drain();
+                sdlLine.close();
+                sdlLine = openLine(iSize);
+                if (sdlLine == null) {
+                    tlLocalLine.set(null);
+                    return;
+                }
+            }
+
+            // pan the line (the line is reused, so it is always set);
+            // lines without a pan control play the sound centered
+            if (sdlLine.isControlSupported(FloatControl.Type.PAN)) {
+                ((FloatControl)sdlLine.getControl(FloatControl.Type.PAN))
+                    .setValue(fPan);
+            }
+
             // copy data to the line
+            setBusy(true);
+            boolean bUnderrun = false;
             try {
+                boolean bFirst = true;
                 int iNumBytesRead = 0;
                 while (iNumBytesRead != -1) {
                     // if paused, wait until unpaused
@@ -455,12 +794,29 @@ public class SoundManager extends ThreadPool {
                             catch (InterruptedException ex) {
                                 return;
                             }
+                            // the line ran dry on purpose
+                            bFirst = true;
                         }
                     }
                     // copy data
                     iNumBytesRead =
                         isSource.read(byteArrBuffer, 0, byteArrBuffer.length);
                     if (iNumBytesRead != -1) {
+                        if (fVolume < 1) {
+                            attenuate(byteArrBuffer, iNumBytesRead);
+                        }
+                        int iQueued = sdlLine.getBufferSize() -
+                            sdlLine.available();
+                        if (bFirst) {
+                            // time until this sample is heard
+                            recordLatency(iQueued);
+                        }
+                        else if (iQueued <= 0) {
+                            // the line played everything it had
+                            bUnderrun = true;
+                            mtrMetrics.increment("sound.underruns");
+                        }
+                        bFirst = false;
                         sdlLine.write(byteArrBuffer, 0, iNumBytesRead);
                     }
                 }
@@ -468,7 +824,42 @@ public class SoundManager extends ThreadPool {
             catch (IOException ex) {
                 ex.printStackTrace();
             }
+            finally {
+                setBusy(false);
+            }
+            adapt(bUnderrun);
+        }
 
+        /**
+         * recordLatency
+         * 
+         * Records the time from the request of the sound to its first 
+         * sample being heard: the time it waited for a line, plus 
+         * the time to play what the line already had queued.
+         * 
+         * @param iQueued is an object of class <code>Integer</code>
+         */
+        private void recordLatency(int iQueued) {
+            long lWaited = System.nanoTime() - lTriggerTime;
+            float fBytesPerSecond = afPlaybackFormat.getFrameSize() *
+                afPlaybackFormat.getFrameRate();
+            long lQueued = (long)(iQueued * 1e9 / fBytesPerSecond);
+            mtrMetrics.add("sound.latency.us", (lWaited + lQueued) / 1000);
+        }
+
+        /**
+         * attenuate
+         * 
+         * Scales the volume of 16-bit samples in a buffer.
+         * 
+         * @param byteArrBuffer is an array of class <code>byte</code>
+         * @param iLength is an object of class <code>Integer</code>
+         */
+        private void attenuate(byte[] byteArrBuffer, int iLength) {
+            for (int iI=0; iI+1<iLength; iI+=2) {
+                SoundFilter.setSample(byteArrBuffer, iI, (short)(
+                    SoundFilter.getSample(byteArrBuffer, iI) * fVolume));
+            }
         }
     }
 
@@ -4,6 +4,7 @@ import java.awt.*;
 import javax.swing.ImageIcon;
 
 import com.brackeen.javagamebook.graphics.ScreenManager;
+import com.brackeen.javagamebook.util.Metrics;
 
 /**
  * GameCore
@@ -12,6 +13,15 @@ import com.brackeen.javagamebook.graphics.ScreenManager;
  * 
  * Simple abstract class used for testing. Subclasses should 
  * implement the draw() method.
+ * <p>The loop can also run pipelined: the game is updated on the 
+ * loop thread, which publishes a snapshot of what to draw after each 
+ * update, and a render thread draws the latest snapshot and flips 
+ * the screen. Updating a frame and drawing the previous one overlap, 
+ * so slow drawing doesn't delay the game. Subclasses that support it 
+ * override createSnapshot() and drawSnapshot().</p>
+ * <p>Games always draw on a virtual screen of 800x600, which the 
+ * ScreenManager scales to the display mode found, so every display 
+ * shows the same part of the world and drawing costs the same.</p>
  * 
  * @author Quazar Volume
  */
@@ -20,21 +30,36 @@ public abstract class GameCore {
     // Font size
     protected static final int iFONT_SIZE = 24;
 
-    // Array of possible display modes
+    // Time to rest (in milliseconds) when there is nothing to draw
+    private static final long lIDLE_SLEEP = 10;
+
+    // Size of the virtual screen the game draws on
+    protected static final int iVIRTUAL_WIDTH = 800;
+    protected static final int iVIRTUAL_HEIGHT = 600;
+
+    // Array of possible display modes, the ones that fit the virtual 
+    // screen without shrinking it first
     private static final DisplayMode dmArrPOSSIBLE_MODES[] = {
         new DisplayMode(800, 600, 16, 0),
         new DisplayMode(800, 600, 32, 0),
         new DisplayMode(800, 600, 24, 0),
-        new DisplayMode(640, 480, 16, 0),
-        new DisplayMode(640, 480, 32, 0),
-        new DisplayMode(640, 480, 24, 0),
         new DisplayMode(1024, 768, 16, 0),
         new DisplayMode(1024, 768, 32, 0),
         new DisplayMode(1024, 768, 24, 0),
+        new DisplayMode(640, 480, 16, 0),
+        new DisplayMode(640, 480, 32, 0),
+        new DisplayMode(640, 480, 24, 0),
     };
 
-    private boolean bIsRunning;
+    private volatile boolean bIsRunning;
+    private boolean bPipelined;         // Draw on a render thread
+
+    // Snapshot published and not taken by the render thread yet
+    private final Object objSnapshotLock = new Object();
+    private Object objPendingSnapshot;
     protected ScreenManager smScreen;
+    // Frame, update and draw times; shared with the other subsystems
+    protected Metrics mtrMetrics = new Metrics();
     
     /**
      * stop
@@ -43,12 +68,41 @@ public abstract class GameCore {
      */
     public void stop() {
         bIsRunning = false;
+        synchronized (objSnapshotLock) {
+            objSnapshotLock.notifyAll();
+        }
+    }
+    
+    /**
+     * setPipelined
+     * 
+     * Turns on or off the pipelined loop, where drawing is done by a 
+     * render thread. It must be set before the game loop starts, and 
+     * only has effect if createSnapshot() is overridden.
+     * 
+     * @param bPipelined is an object of class <code>Boolean</code>
+     */
+    public void setPipelined(boolean bPipelined) {
+        this.bPipelined = bPipelined;
+    }
+    
+    /**
+     * getMetrics
+     * 
+     * Gets the metrics of the game loop (frame, update and draw 
+     * times), where other subsystems record their own metrics too.
+     * 
+     * @return object of class <code>Metrics</code>
+     */
+    public Metrics getMetrics() {
+        return mtrMetrics;
     }
     
     /**
      * run
      * 
-     * Calls init() and gameLoop()
+     * Calls init() and gameLoop(), and prints the metrics when the 
+     * game ends.
      */
     public void run() {
         try {
@@ -57,6 +111,7 @@ public abstract class GameCore {
         }
         finally {
             smScreen.restoreScreen();
+            System.out.print(mtrMetrics);
             lazilyExit();
         }
     }
@@ -97,6 +152,7 @@ public abstract class GameCore {
         DisplayMode dmDisplayMode =
             smScreen.findFirstCompatibleMode(dmArrPOSSIBLE_MODES);
         smScreen.setFullScreen(dmDisplayMode);
+        smScreen.setVirtualSize(iVIRTUAL_WIDTH, iVIRTUAL_HEIGHT);
 
         // Manages windows
         Window winWindow = smScreen.getFullScreenWindow();
@@ -125,6 +181,10 @@ public abstract class GameCore {
      * Runs through the game loop until stop() is called.
      */
     public void gameLoop() {
+        if (bPipelined && createSnapshot() != null) {
+            pipelinedLoop();
+            return;
+        }
         long lStartTime = System.currentTimeMillis();
         long lCurrTime = lStartTime;
 
@@ -132,15 +192,41 @@ public abstract class GameCore {
             long lElapsedTime =
                 System.currentTimeMillis() - lCurrTime;
             lCurrTime += lElapsedTime;
+            mtrMetrics.add("loop.frame.ms", lElapsedTime);
 
             // update
+            long lStartNanos = System.nanoTime();
             update(lElapsedTime);
+            mtrMetrics.add("loop.update.us",
+                (System.nanoTime() - lStartNanos) / 1000);
 
-            // draw the screen
-            Graphics2D gra2D_G = smScreen.getGraphics();
-            draw(gra2D_G);
-            gra2D_G.dispose();
-            smScreen.update();
+            // draw the screen, only if something changed or the last 
+            // frame was lost
+            Rectangle recDirty = getDirtyArea();
+            if (recDirty != null && smScreen.isContentsLost()) {
+                recDirty = null;
+            }
+            if (recDirty == null || !recDirty.isEmpty()) {
+                Graphics2D gra2D_G = smScreen.getGraphics();
+                boolean bPreserved = smScreen.isBackBufferPreserved();
+                if (recDirty != null && bPreserved) {
+                    gra2D_G.clip(recDirty);
+                }
+                lStartNanos = System.nanoTime();
+                draw(gra2D_G);
+                gra2D_G.dispose();
+                smScreen.update();
+                mtrMetrics.add("loop.draw.us",
+                    (System.nanoTime() - lStartNanos) / 1000);
+            }
+            else {
+                mtrMetrics.increment("loop.idle");
+                // nothing to draw, so let the CPU rest
+                try {
+                    Thread.sleep(lIDLE_SLEEP);
+                }
+                catch (InterruptedException ex) { }
+            }
 
             // don't take a nap! run as fast as possible
             /*try {
@@ -150,6 +236,98 @@ public abstract class GameCore {
         }
     }
     
+    /**
+     * pipelinedLoop
+     * 
+     * Runs through the game loop until stop() is called, updating 
+     * the game on this thread and drawing it on a render thread. At 
+     * most two frames are in flight: the one being drawn and the one 
+     * published; the update waits if the render thread is behind.
+     */
+    private void pipelinedLoop() {
+        Thread thrRender = new Thread("Render") {
+            public void run() {
+                try {
+                    renderLoop();
+                }
+                finally {
+                    // don't leave the game waiting for a dead thread
+                    GameCore.this.stop();
+                }
+            }
+        };
+        thrRender.start();
+
+        long lCurrTime = System.currentTimeMillis();
+        while (bIsRunning) {
+            long lElapsedTime =
+                System.currentTimeMillis() - lCurrTime;
+            lCurrTime += lElapsedTime;
+            mtrMetrics.add("loop.frame.ms", lElapsedTime);
+
+            // update
+            long lStartNanos = System.nanoTime();
+            update(lElapsedTime);
+            Object objSnapshot = createSnapshot();
+            mtrMetrics.add("loop.update.us",
+                (System.nanoTime() - lStartNanos) / 1000);
+
+            // publish, once the previous snapshot is taken
+            lStartNanos = System.nanoTime();
+            synchronized (objSnapshotLock) {
+                while (objPendingSnapshot != null && bIsRunning) {
+                    try {
+                        objSnapshotLock.wait();
+                    }
+                    catch (InterruptedException ex) { }
+                }
+                objPendingSnapshot = objSnapshot;
+                objSnapshotLock.notifyAll();
+            }
+            mtrMetrics.add("loop.publish.wait.us",
+                (System.nanoTime() - lStartNanos) / 1000);
+        }
+
+        try {
+            thrRender.join();
+        }
+        catch (InterruptedException ex) { }
+    }
+
+    /**
+     * renderLoop
+     * 
+     * Draws the snapshots published by the game loop, until stop() 
+     * is called.
+     */
+    private void renderLoop() {
+        while (true) {
+            Object objSnapshot;
+            synchronized (objSnapshotLock) {
+                while (objPendingSnapshot == null && bIsRunning) {
+                    try {
+                        objSnapshotLock.wait();
+                    }
+                    catch (InterruptedException ex) { }
+                }
+                if (!bIsRunning) {
+                    return;
+                }
+                objSnapshot = objPendingSnapshot;
+                objPendingSnapshot = null;
+                objSnapshotLock.notifyAll();
+            }
+
+            long lStartNanos = System.nanoTime();
+            Graphics2D gra2D_G = smScreen.getGraphics();
+            drawSnapshot(gra2D_G, objSnapshot);
+            gra2D_G.dispose();
+            smScreen.update();
+            mtrMetrics.add("loop.draw.us",
+                (System.nanoTime() - lStartNanos) / 1000);
+        }
+    }
+    
     /**
      * update
      * 
@@ -162,6 +340,48 @@ public abstract class GameCore {
         // do nothing
     }
     
+    /**
+     * getDirtyArea
+     * 
+     * Gets the area of the screen that changed since the last frame
+     * drawn. Returns null to redraw the whole screen (the default), 
+     * or an empty rectangle if nothing changed, in which case the
+     * frame is not drawn and the loop rests a little. Static screens 
+     * such as menus override this method.
+     * 
+     * @return object of class <code>Rectangle</code> or null
+     */
+    public Rectangle getDirtyArea() {
+        return null;
+    }
+    
+    /**
+     * createSnapshot
+     * 
+     * Creates an immutable snapshot of everything needed to draw the 
+     * current state of the game, for the pipelined loop. Returns null 
+     * (the default) if the game can't be drawn from snapshots, in 
+     * which case the loop is never pipelined.
+     * 
+     * @return object of class <code>Object</code> or null
+     */
+    public Object createSnapshot() {
+        return null;
+    }
+    
+    /**
+     * drawSnapshot
+     * 
+     * Draws a snapshot made by createSnapshot(). It is called on the 
+     * render thread, so it must not read the state of the game.
+     * 
+     * @param gra2D_G is an object of class <code>Graphics2D</code>
+     * @param objSnapshot is an object of class <code>Object</code>
+     */
+    public void drawSnapshot(Graphics2D gra2D_G, Object objSnapshot) {
+        draw(gra2D_G);
+    }
+    
     /**
      * draw
      * 
@@ -0,0 +1,88 @@
+package com.brackeen.javagamebook.tilegame;
+
+import com.brackeen.javagamebook.graphics.AtlasFrame;
+
+/**
+ * AnimatedTile
+ *
+ * It manages the definition of each object of type <code>AnimatedTile</code>
+ *
+ * The AnimatedTile class is a tile whose frame changes with time,
+ * like water. Every cell of a map shares the same AnimatedTile, and
+ * its frame is chosen from the clock of the map, so all of them move
+ * together and a map full of water costs one frame lookup per
+ * drawing instead of one animated sprite per cell.
+ * <p>The frame is looked up by getFrame for the clock being drawn,
+ * and the tile keeps no state of its own, so it can be shared by the
+ * render thread and the game. Drawn as an AtlasFrame, it is its
+ * first frame.</p>
+ *
+ * @author Quazar Volume
+ */
+public class AnimatedTile extends AtlasFrame {
+
+    private final AtlasFrame[] afArrFrames;
+    private final long[] lArrEndTimes;      // When each frame ends, in ms
+    private final long lTotalDuration;
+    private final int iKind;                // What it does to the player
+
+    /**
+     * AnimatedTile
+     *
+     * Parameterized Constructor
+     *
+     * Creates a new AnimatedTile with the specified frames, each one
+     * shown for its duration, that does what the specified kind says
+     * to the player (TileDefinition.iNO_KIND for nothing).
+     *
+     * @param afArrFrames is an array of class <code>AtlasFrame</code>
+     * @param lArrDurations is an array of class <code>Long</code>
+     * @param iKind is an object of class <code>Integer</code>
+     */
+    public AnimatedTile(AtlasFrame[] afArrFrames, long[] lArrDurations,
+        int iKind)
+    {
+        super(afArrFrames[0].getImage(), afArrFrames[0].getX(),
+            afArrFrames[0].getY(), afArrFrames[0].getWidth(),
+            afArrFrames[0].getHeight());
+        this.afArrFrames = afArrFrames.clone();
+        this.iKind = iKind;
+        lArrEndTimes = new long[afArrFrames.length];
+        long lTime = 0;
+        for (int iI = 0; iI < afArrFrames.length; iI++) {
+            lTime += Math.max(lArrDurations[iI], 1);
+            lArrEndTimes[iI] = lTime;
+        }
+        lTotalDuration = lTime;
+    }
+
+    /**
+     * getKind
+     *
+     * Gets what this tile does to the player who touches it, as the
+     * class of a power-up, or TileDefinition.iNO_KIND.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getKind() {
+        return iKind;
+    }
+
+    /**
+     * getFrame
+     *
+     * Gets the frame shown at the specified time of the clock of the
+     * map, in milliseconds.
+     *
+     * @param lClock is an object of class <code>Long</code>
+     * @return object of class <code>AtlasFrame</code>
+     */
+    public AtlasFrame getFrame(long lClock) {
+        long lTime = lClock % lTotalDuration;
+        int iFrame = 0;
+        while (lArrEndTimes[iFrame] <= lTime) {
+            iFrame++;
+        }
+        return afArrFrames[iFrame];
+    }
+}
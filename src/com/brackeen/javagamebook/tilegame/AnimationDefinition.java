@@ -0,0 +1,84 @@
+package com.brackeen.javagamebook.tilegame;
+
+/**
+ * AnimationDefinition
+ *
+ * It manages the definition of each object of type <code>AnimationDefinition</code>
+ *
+ * The AnimationDefinition class describes an animation read from the
+ * definition files: the image of each frame and how long it is shown.
+ * The images are only loaded when the sprites that use it are
+ * created. It never changes once created.
+ *
+ * @author Quazar Volume
+ */
+public class AnimationDefinition {
+
+    private final String sName;
+    private final String[] sArrFrames;     // Image of each frame
+    private final long[] lArrDurations;    // Time each frame is shown, in ms
+
+    /**
+     * AnimationDefinition
+     *
+     * Parameterized Constructor
+     *
+     * @param sName is an object of class <code>String</code>
+     * @param sArrFrames is an array of class <code>String</code>
+     * @param lArrDurations is an array of class <code>Long</code>
+     */
+    public AnimationDefinition(String sName, String[] sArrFrames,
+        long[] lArrDurations)
+    {
+        this.sName = sName;
+        this.sArrFrames = sArrFrames.clone();
+        this.lArrDurations = lArrDurations.clone();
+    }
+
+    /**
+     * getName
+     *
+     * Gets the name of this animation.
+     *
+     * @return object of class <code>String</code>
+     */
+    public String getName() {
+        return sName;
+    }
+
+    /**
+     * getNumFrames
+     *
+     * Gets the number of frames of this animation.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getNumFrames() {
+        return sArrFrames.length;
+    }
+
+    /**
+     * getFrame
+     *
+     * Gets the image file of a frame. Names starting with '~' are
+     * mirrored.
+     *
+     * @param iIndex is an object of class <code>Integer</code>
+     * @return object of class <code>String</code>
+     */
+    public String getFrame(int iIndex) {
+        return sArrFrames[iIndex];
+    }
+
+    /**
+     * getDuration
+     *
+     * Gets how long a frame is shown, in milliseconds.
+     *
+     * @param iIndex is an object of class <code>Integer</code>
+     * @return object of class <code>Long</code>
+     */
+    public long getDuration(int iIndex) {
+        return lArrDurations[iIndex];
+    }
+}
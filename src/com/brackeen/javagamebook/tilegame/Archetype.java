@@ -0,0 +1,211 @@
+package com.brackeen.javagamebook.tilegame;
+
+/**
+ * Archetype
+ *
+ * It manages the definition of each object of type <code>Archetype</code>
+ *
+ * The Archetype class describes a kind of creature or power-up read
+ * from the definition files: its class, health, speed, animations,
+ * attacks and the light it carries. The "host" sprite of each
+ * archetype is created from it, and creatures keep the index of their
+ * archetype, so the game can look up their attacks. It never changes
+ * once created.
+ *
+ * @author Quazar Volume
+ */
+public class Archetype {
+
+    // Classes; the creatures come first
+    public static final int iKIND_PLAYER = 0;
+    public static final int iKIND_GRUB = 1;
+    public static final int iKIND_FLY = 2;
+    public static final int iKIND_ARCHER = 3;
+    public static final int iKIND_BOSS = 4;
+    public static final int iKIND_WEAPON = 5;
+    public static final int iKIND_STAR = 6;
+    public static final int iKIND_MUSIC = 7;
+    public static final int iKIND_GOAL = 8;
+
+    // Names of the classes in the definition files, by kind
+    static final String[] sArrKINDS = {
+        "Player", "Grub", "Fly", "Archer", "Boss", "Weapon",
+        "Star", "Music", "Goal"
+    };
+
+    private final String sName;
+    private final int iIndex;           // Index in the definitions
+    private final int iKind;
+    private final int iHealth;          // Full health
+    private final float fSpeed;         // Maximum speed
+    private final AnimationDefinition adWalk;   // Animation of a power-up
+    private final AnimationDefinition adIdle;
+    private final Attack[] attArrAttacks;       // By decreasing health
+    private final int iLightRadius;     // In pixels, 0 if it has no light
+    private final int iLightIntensity;
+
+    /**
+     * Archetype
+     *
+     * Parameterized Constructor
+     *
+     * @param sName is an object of class <code>String</code>
+     * @param iIndex is an object of class <code>Integer</code>
+     * @param iKind is an object of class <code>Integer</code>
+     * @param iHealth is an object of class <code>Integer</code>
+     * @param fSpeed is an object of class <code>Float</code>
+     * @param adWalk is an object of class <code>AnimationDefinition</code>
+     * @param adIdle is an object of class <code>AnimationDefinition</code>
+     * @param attArrAttacks is an array of class <code>Attack</code>
+     * @param iLightRadius is an object of class <code>Integer</code>
+     * @param iLightIntensity is an object of class <code>Integer</code>
+     */
+    public Archetype(String sName, int iIndex, int iKind, int iHealth,
+        float fSpeed, AnimationDefinition adWalk, AnimationDefinition adIdle,
+        Attack[] attArrAttacks, int iLightRadius, int iLightIntensity)
+    {
+        this.sName = sName;
+        this.iIndex = iIndex;
+        this.iKind = iKind;
+        this.iHealth = iHealth;
+        this.fSpeed = fSpeed;
+        this.adWalk = adWalk;
+        this.adIdle = adIdle;
+        this.attArrAttacks = attArrAttacks.clone();
+        this.iLightRadius = iLightRadius;
+        this.iLightIntensity = iLightIntensity;
+    }
+
+    /**
+     * getName
+     *
+     * Gets the name of this archetype.
+     *
+     * @return object of class <code>String</code>
+     */
+    public String getName() {
+        return sName;
+    }
+
+    /**
+     * getIndex
+     *
+     * Gets the index of this archetype in the definitions.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getIndex() {
+        return iIndex;
+    }
+
+    /**
+     * getKind
+     *
+     * Gets the class of the sprite (iKIND_PLAYER, iKIND_GRUB...).
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getKind() {
+        return iKind;
+    }
+
+    /**
+     * isCreature
+     *
+     * Checks if the sprite is a creature, rather than a power-up.
+     *
+     * @return object of class <code>Boolean</code>
+     */
+    public boolean isCreature() {
+        return iKind < iKIND_STAR;
+    }
+
+    /**
+     * getHealth
+     *
+     * Gets the full health of the creature.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getHealth() {
+        return iHealth;
+    }
+
+    /**
+     * getSpeed
+     *
+     * Gets the maximum speed of the creature.
+     *
+     * @return object of class <code>Float</code>
+     */
+    public float getSpeed() {
+        return fSpeed;
+    }
+
+    /**
+     * getWalkAnimation
+     *
+     * Gets the walking animation of a creature, or the animation of
+     * a power-up.
+     *
+     * @return object of class <code>AnimationDefinition</code>
+     */
+    public AnimationDefinition getWalkAnimation() {
+        return adWalk;
+    }
+
+    /**
+     * getIdleAnimation
+     *
+     * Gets the idle animation of a creature.
+     *
+     * @return object of class <code>AnimationDefinition</code>
+     */
+    public AnimationDefinition getIdleAnimation() {
+        return adIdle;
+    }
+
+    /**
+     * getLightRadius
+     *
+     * Gets the radius of the light carried, in pixels, or 0 if there
+     * is none.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getLightRadius() {
+        return iLightRadius;
+    }
+
+    /**
+     * getLightIntensity
+     *
+     * Gets the intensity of the light carried, from 0 to 255.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getLightIntensity() {
+        return iLightIntensity;
+    }
+
+    /**
+     * getAttack
+     *
+     * Gets the attack used with the specified health: the first one
+     * whose part of the full health is below it. Returns null if the
+     * creature doesn't attack.
+     *
+     * @param iCurrentHealth is an object of class <code>Integer</code>
+     * @return object of class <code>Attack</code>
+     */
+    public Attack getAttack(int iCurrentHealth) {
+        for (int iI = 0; iI < attArrAttacks.length; iI++) {
+            if (iCurrentHealth * 100 >
+                attArrAttacks[iI].getMinHealth() * iHealth)
+            {
+                return attArrAttacks[iI];
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,124 @@
+package com.brackeen.javagamebook.tilegame;
+
+/**
+ * Attack
+ *
+ * It manages the definition of each object of type <code>Attack</code>
+ *
+ * The Attack class describes how a creature attacks while its health
+ * is above a part of its full health: how often, how fast it moves
+ * meanwhile, when it may attack, and the patterns it chooses from.
+ * A creature with several attacks (the boss) gets faster as it loses
+ * health. It never changes once created.
+ *
+ * @author Quazar Volume
+ */
+public class Attack {
+
+    // When the creature may attack
+    public static final int iWHEN_VISIBLE = 0;  // Only while on screen
+    public static final int iWHEN_MOVING = 1;   // Only while moving
+
+    // Patterns
+    public static final int iPATTERN_ARROW = 0;     // One arrow ahead
+    public static final int iPATTERN_BATSWARM = 1;  // Bats around the creature
+    public static final int iPATTERN_ARROWRAIN = 2; // Arrows from the sky
+
+    private final int iMinHealth;       // Percentage of the full health
+    private final long lCooldown;       // Time between attacks, in ms
+    private final float fSpeed;         // Speed while used, or 0
+    private final int iWhen;
+    private final int[] iArrPatterns;
+
+    /**
+     * Attack
+     *
+     * Parameterized Constructor
+     *
+     * @param iMinHealth is an object of class <code>Integer</code>
+     * @param lCooldown is an object of class <code>Long</code>
+     * @param fSpeed is an object of class <code>Float</code>
+     * @param iWhen is an object of class <code>Integer</code>
+     * @param iArrPatterns is an array of class <code>Integer</code>
+     */
+    public Attack(int iMinHealth, long lCooldown, float fSpeed, int iWhen,
+        int[] iArrPatterns)
+    {
+        this.iMinHealth = iMinHealth;
+        this.lCooldown = lCooldown;
+        this.fSpeed = fSpeed;
+        this.iWhen = iWhen;
+        this.iArrPatterns = iArrPatterns.clone();
+    }
+
+    /**
+     * getMinHealth
+     *
+     * Gets the percentage of the full health the creature must have
+     * above to use this attack.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getMinHealth() {
+        return iMinHealth;
+    }
+
+    /**
+     * getCooldown
+     *
+     * Gets the time between attacks, in milliseconds.
+     *
+     * @return object of class <code>Long</code>
+     */
+    public long getCooldown() {
+        return lCooldown;
+    }
+
+    /**
+     * getSpeed
+     *
+     * Gets the speed of the creature while this attack is used, or 0
+     * if it keeps its speed.
+     *
+     * @return object of class <code>Float</code>
+     */
+    public float getSpeed() {
+        return fSpeed;
+    }
+
+    /**
+     * getWhen
+     *
+     * Gets when the creature may attack: iWHEN_VISIBLE or
+     * iWHEN_MOVING.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getWhen() {
+        return iWhen;
+    }
+
+    /**
+     * getNumPatterns
+     *
+     * Gets the number of patterns chosen from.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getNumPatterns() {
+        return iArrPatterns.length;
+    }
+
+    /**
+     * getPattern
+     *
+     * Gets a pattern (iPATTERN_ARROW, iPATTERN_BATSWARM or
+     * iPATTERN_ARROWRAIN).
+     *
+     * @param iIndex is an object of class <code>Integer</code>
+     * @return object of class <code>Integer</code>
+     */
+    public int getPattern(int iIndex) {
+        return iArrPatterns[iIndex];
+    }
+}
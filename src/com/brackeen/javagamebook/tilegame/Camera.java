@@ -0,0 +1,297 @@
+package com.brackeen.javagamebook.tilegame;
+
+import java.awt.Rectangle;
+
+import com.brackeen.javagamebook.graphics.Sprite;
+import com.brackeen.javagamebook.sound.SoundListener;
+
+/**
+ * Camera
+ *
+ * It manages the definition of each object of type <code>Camera</code>
+ *
+ * The Camera class keeps the part of a TileMap that is visible on the
+ * screen. It follows the player and is updated once per game tick;
+ * the renderer, the AI visibility checks and the sounds all read the
+ * same view from it instead of computing the scrolling again.
+ * <p>By default the camera keeps the player centered (one tile to
+ * the left and up, as the game always did), but it can also move
+ * smoothly, ignore small movements inside a dead zone and look ahead
+ * in the direction the player is moving. The view never leaves the
+ * map.</p>
+ * <p>The camera is also the listener of positional sounds, at the
+ * center of the view.</p>
+ *
+ * @author Quazar Volume
+ */
+public class Camera implements SoundListener {
+
+    private TileMap tmMap;          // Map followed (null before the first update)
+    private float fCenterX;         // Center of the view, in world pixels
+    private float fCenterY;
+    private int iViewWidth;         // Size of the view, in pixels
+    private int iViewHeight;
+    private int iOffsetX;           // Scrolling of the map, in pixels
+    private int iOffsetY;
+
+    private long lSmoothTime;       // Time to close most of the distance, in ms
+    private int iDeadZoneWidth;     // Size of the area the player can move in
+    private int iDeadZoneHeight;    // without moving the camera
+    private float fLookAhead;       // Look-ahead distance per unit of velocity
+
+    /**
+     * Camera
+     *
+     * Default Constructor
+     *
+     * Creates a new Camera that keeps the player centered, without
+     * smoothing, dead zone or look-ahead.
+     */
+    public Camera() {
+        lSmoothTime = 0;
+        iDeadZoneWidth = 0;
+        iDeadZoneHeight = 0;
+        fLookAhead = 0;
+    }
+
+    /**
+     * setSmoothTime
+     *
+     * Sets how fast the camera moves to its target. The camera closes
+     * about two thirds of the distance in the specified time. 0 moves
+     * it to the target right away.
+     *
+     * @param lSmoothTime is an object of class <code>Long</code>
+     */
+    public void setSmoothTime(long lSmoothTime) {
+        this.lSmoothTime = Math.max(lSmoothTime, 0);
+    }
+
+    /**
+     * setDeadZone
+     *
+     * Sets the size of the area, around the center of the view, in
+     * which the player can move without moving the camera.
+     *
+     * @param iDeadZoneWidth is an object of class <code>Integer</code>
+     * @param iDeadZoneHeight is an object of class <code>Integer</code>
+     */
+    public void setDeadZone(int iDeadZoneWidth, int iDeadZoneHeight) {
+        this.iDeadZoneWidth = Math.max(iDeadZoneWidth, 0);
+        this.iDeadZoneHeight = Math.max(iDeadZoneHeight, 0);
+    }
+
+    /**
+     * setLookAhead
+     *
+     * Sets how far ahead of the player the camera looks, in pixels
+     * per unit of horizontal velocity (pixels per millisecond).
+     *
+     * @param fLookAhead is an object of class <code>Float</code>
+     */
+    public void setLookAhead(float fLookAhead) {
+        this.fLookAhead = fLookAhead;
+    }
+
+    /**
+     * update
+     *
+     * Moves the camera towards the player of the specified TileMap.
+     * When the map or the size of the view change, the camera jumps
+     * to the player.
+     *
+     * @param tmMap is an object of class <code>TileMap</code>
+     * @param iViewWidth is an object of class <code>Integer</code>
+     * @param iViewHeight is an object of class <code>Integer</code>
+     * @param lElapsedTime is an object of class <code>Long</code>
+     */
+    public void update(TileMap tmMap, int iViewWidth, int iViewHeight,
+        long lElapsedTime)
+    {
+        Sprite sprPlayer = tmMap.getPlayer();
+        float fTargetX = Math.round(sprPlayer.getX()) +
+            TileMapRenderer.tilesToPixels(1) +
+            sprPlayer.getVelocityX() * fLookAhead;
+        float fTargetY = Math.round(sprPlayer.getY()) +
+            TileMapRenderer.tilesToPixels(1);
+
+        if (tmMap != this.tmMap || iViewWidth != this.iViewWidth ||
+            iViewHeight != this.iViewHeight)
+        {
+            // new map: start on the player
+            this.tmMap = tmMap;
+            this.iViewWidth = iViewWidth;
+            this.iViewHeight = iViewHeight;
+            fCenterX = fTargetX;
+            fCenterY = fTargetY;
+        }
+        else {
+            fCenterX = follow(fCenterX, fTargetX, iDeadZoneWidth, lElapsedTime);
+            fCenterY = follow(fCenterY, fTargetY, iDeadZoneHeight, lElapsedTime);
+        }
+
+        // keep the view inside the map
+        int iMapWidth = TileMapRenderer.tilesToPixels(tmMap.getWidth());
+        int iMapHeight = TileMapRenderer.tilesToPixels(tmMap.getHeight());
+        iOffsetX = iViewWidth / 2 - Math.round(fCenterX);
+        iOffsetX = Math.min(iOffsetX, 0);
+        iOffsetX = Math.max(iOffsetX, iViewWidth - iMapWidth);
+        iOffsetY = iViewHeight / 2 - Math.round(fCenterY);
+        iOffsetY = Math.min(iOffsetY, 0);
+        iOffsetY = Math.max(iOffsetY, iViewHeight - iMapHeight);
+    }
+
+    /**
+     * follow
+     *
+     * Moves one coordinate of the center of the view towards its
+     * target, outside of the dead zone.
+     *
+     * @param fCenter is an object of class <code>Float</code>
+     * @param fTarget is an object of class <code>Float</code>
+     * @param iDeadZone is an object of class <code>Integer</code>
+     * @param lElapsedTime is an object of class <code>Long</code>
+     * @return object of class <code>Float</code>
+     */
+    private float follow(float fCenter, float fTarget, int iDeadZone,
+        long lElapsedTime)
+    {
+        // only the part of the distance outside the dead zone counts
+        float fDistance = fTarget - fCenter;
+        float fHalfZone = iDeadZone / 2f;
+        if (fDistance > fHalfZone) {
+            fDistance -= fHalfZone;
+        }
+        else if (fDistance < -fHalfZone) {
+            fDistance += fHalfZone;
+        }
+        else {
+            return fCenter;
+        }
+
+        if (lSmoothTime == 0) {
+            return fCenter + fDistance;
+        }
+        float fFactor = 1 - (float)Math.exp(-(double)lElapsedTime / lSmoothTime);
+        return fCenter + fDistance * fFactor;
+    }
+
+    /**
+     * getOffsetX
+     *
+     * Gets the horizontal scrolling of the map: the value added to a
+     * world position to get a screen position.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getOffsetX() {
+        return iOffsetX;
+    }
+
+    /**
+     * getOffsetY
+     *
+     * Gets the vertical scrolling of the map: the value added to a
+     * world position to get a screen position.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getOffsetY() {
+        return iOffsetY;
+    }
+
+    /**
+     * getCenterX
+     *
+     * Gets the horizontal center of the view, in world pixels.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getCenterX() {
+        return iViewWidth / 2 - iOffsetX;
+    }
+
+    /**
+     * getCenterY
+     *
+     * Gets the vertical center of the view, in world pixels.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getCenterY() {
+        return iViewHeight / 2 - iOffsetY;
+    }
+
+    /**
+     * getListenerX
+     *
+     * Gets the horizontal position of the listener of positional
+     * sounds: the center of the view.
+     *
+     * @return object of class <code>Float</code>
+     */
+    public float getListenerX() {
+        return getCenterX();
+    }
+
+    /**
+     * getListenerY
+     *
+     * Gets the vertical position of the listener of positional
+     * sounds: the center of the view.
+     *
+     * @return object of class <code>Float</code>
+     */
+    public float getListenerY() {
+        return getCenterY();
+    }
+
+    /**
+     * getViewBounds
+     *
+     * Gets the visible part of the map, in world pixels.
+     *
+     * @return object of class <code>Rectangle</code>
+     */
+    public Rectangle getViewBounds() {
+        return new Rectangle(-iOffsetX, -iOffsetY, iViewWidth, iViewHeight);
+    }
+
+    /**
+     * worldToScreenX
+     *
+     * Converts a horizontal world position to a screen position.
+     *
+     * @param fWorldX is an object of class <code>Float</code>
+     * @return object of class <code>Integer</code>
+     */
+    public int worldToScreenX(float fWorldX) {
+        return Math.round(fWorldX) + iOffsetX;
+    }
+
+    /**
+     * worldToScreenY
+     *
+     * Converts a vertical world position to a screen position.
+     *
+     * @param fWorldY is an object of class <code>Float</code>
+     * @return object of class <code>Integer</code>
+     */
+    public int worldToScreenY(float fWorldY) {
+        return Math.round(fWorldY) + iOffsetY;
+    }
+
+    /**
+     * isVisibleX
+     *
+     * Checks if a horizontal world position is inside the view. This
+     * is the check used to wake up creatures and to let them attack.
+     *
+     * @param fWorldX is an object of class <code>Float</code>
+     * @return object of class <code>Boolean</code>
+     */
+    public boolean isVisibleX(float fWorldX) {
+        int iScreenX = worldToScreenX(fWorldX);
+        return iScreenX >= 0 && iScreenX < iViewWidth;
+    }
+}
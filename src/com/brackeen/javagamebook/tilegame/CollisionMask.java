@@ -0,0 +1,338 @@
+package com.brackeen.javagamebook.tilegame;
+
+/**
+ * CollisionMask
+ *
+ * It manages the definition of each object of type <code>CollisionMask</code>
+ *
+ * The CollisionMask class holds the collision data of a TileMap in a
+ * compact form. Every row of the map is stored as a run of 64 bit
+ * words with one bit per solid tile, plus a second plane with one bit
+ * per one-way platform. This allows horizontal sweeps to test 64 tiles
+ * per operation. Each tile also keeps a type (solid, one-way, slope or
+ * ladder) as metadata.
+ * <p>Tiles outside the left and right borders of the map are solid, so
+ * creatures can't leave the map sideways. Tiles above and below the map
+ * are empty.</p>
+ *
+ * @author Quazar Volume
+ */
+public class CollisionMask {
+
+    // Tile types
+    public static final int iTILE_EMPTY = 0;
+    public static final int iTILE_SOLID = 1;
+    public static final int iTILE_ONE_WAY = 2;      // Only blocks from above
+    public static final int iTILE_SLOPE_UP = 3;     // Floor rises to the right
+    public static final int iTILE_SLOPE_DOWN = 4;   // Floor falls to the right
+    public static final int iTILE_LADDER = 5;       // Never blocks
+
+    // Returned by the row scans when no tile is found
+    public static final int iNO_TILE = Integer.MIN_VALUE;
+
+    private static final int iWORD_BITS = 6;    // Math.pow(2, WORD_BITS) == 64
+
+    private int iWidth;
+    private int iHeight;
+    private int iWordsPerRow;
+    private long[] lArrSolid;       // One bit per solid tile, row by row
+    private long[] lArrOneWay;      // One bit per one-way platform, row by row
+    private byte[] byteArrTypes;    // Type of every tile, row by row
+
+    /**
+     * CollisionMask
+     *
+     * Parameterized Constructor
+     *
+     * Creates a new, empty CollisionMask with the specified width
+     * and height (in number of tiles).
+     *
+     * @param iWidth is an object of class <code>Integer</code>
+     * @param iHeight is an object of class <code>Integer</code>
+     */
+    public CollisionMask(int iWidth, int iHeight) {
+        this.iWidth = iWidth;
+        this.iHeight = iHeight;
+        iWordsPerRow = (iWidth + 63) >> iWORD_BITS;
+        lArrSolid = new long[iWordsPerRow * iHeight];
+        lArrOneWay = new long[iWordsPerRow * iHeight];
+        byteArrTypes = new byte[iWidth * iHeight];
+    }
+
+    /**
+     * getWidth
+     *
+     * Gets the width of this mask (number of tiles across).
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getWidth() {
+        return iWidth;
+    }
+
+    /**
+     * getHeight
+     *
+     * Gets the height of this mask (number of tiles down).
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getHeight() {
+        return iHeight;
+    }
+
+    /**
+     * setTileType
+     *
+     * Sets the type of the tile at the specified location and
+     * updates the solid and one-way planes.
+     *
+     * @param iX is an object of class <code>Integer</code>
+     * @param iY is an object of class <code>Integer</code>
+     * @param iType is an object of class <code>Integer</code>
+     */
+    public void setTileType(int iX, int iY, int iType) {
+        int iWord = iY * iWordsPerRow + (iX >> iWORD_BITS);
+        long lBit = 1L << iX;   // shifting only uses the lowest 6 bits
+        byteArrTypes[iY * iWidth + iX] = (byte)iType;
+        lArrSolid[iWord] &= ~lBit;
+        lArrOneWay[iWord] &= ~lBit;
+        if (iType == iTILE_SOLID) {
+            lArrSolid[iWord] |= lBit;
+        }
+        else if (iType == iTILE_ONE_WAY) {
+            lArrOneWay[iWord] |= lBit;
+        }
+    }
+
+    /**
+     * getTileType
+     *
+     * Gets the type of the tile at the specified location.
+     *
+     * @param iX is an object of class <code>Integer</code>
+     * @param iY is an object of class <code>Integer</code>
+     * @return object of class <code>Integer</code>
+     */
+    public int getTileType(int iX, int iY) {
+        if (iX < 0 || iX >= iWidth) {
+            return iTILE_SOLID;
+        }
+        if (iY < 0 || iY >= iHeight) {
+            return iTILE_EMPTY;
+        }
+        return byteArrTypes[iY * iWidth + iX];
+    }
+
+    /**
+     * isSolid
+     *
+     * Checks if the tile at the specified location blocks movement
+     * from every direction.
+     *
+     * @param iX is an object of class <code>Integer</code>
+     * @param iY is an object of class <code>Integer</code>
+     * @return object of class <code>Boolean</code>
+     */
+    public boolean isSolid(int iX, int iY) {
+        return getTileType(iX, iY) == iTILE_SOLID;
+    }
+
+    /**
+     * isOneWay
+     *
+     * Checks if the tile at the specified location is a one-way
+     * platform.
+     *
+     * @param iX is an object of class <code>Integer</code>
+     * @param iY is an object of class <code>Integer</code>
+     * @return object of class <code>Boolean</code>
+     */
+    public boolean isOneWay(int iX, int iY) {
+        return getTileType(iX, iY) == iTILE_ONE_WAY;
+    }
+
+    /**
+     * isSlope
+     *
+     * Checks if the tile at the specified location is a slope.
+     *
+     * @param iX is an object of class <code>Integer</code>
+     * @param iY is an object of class <code>Integer</code>
+     * @return object of class <code>Boolean</code>
+     */
+    public boolean isSlope(int iX, int iY) {
+        int iType = getTileType(iX, iY);
+        return iType == iTILE_SLOPE_UP || iType == iTILE_SLOPE_DOWN;
+    }
+
+    /**
+     * isLadder
+     *
+     * Checks if the tile at the specified location is a ladder.
+     *
+     * @param iX is an object of class <code>Integer</code>
+     * @param iY is an object of class <code>Integer</code>
+     * @return object of class <code>Boolean</code>
+     */
+    public boolean isLadder(int iX, int iY) {
+        return getTileType(iX, iY) == iTILE_LADDER;
+    }
+
+    /**
+     * getSlopeHeight
+     *
+     * Gets the height in pixels of the floor of a slope tile at the
+     * specified horizontal offset (in pixels) inside the tile. Returns
+     * 0 for tiles that are not slopes.
+     *
+     * @param iX is an object of class <code>Integer</code>
+     * @param iY is an object of class <code>Integer</code>
+     * @param iOffsetX is an object of class <code>Integer</code>
+     * @return object of class <code>Integer</code>
+     */
+    public int getSlopeHeight(int iX, int iY, int iOffsetX) {
+        int iTileSize = TileMapRenderer.tilesToPixels(1);
+        iOffsetX = Math.max(0, Math.min(iTileSize, iOffsetX));
+        switch (getTileType(iX, iY)) {
+            case iTILE_SLOPE_UP: {
+                return iOffsetX;
+            }
+            case iTILE_SLOPE_DOWN: {
+                return iTileSize - iOffsetX;
+            }
+            default: {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * getSolidWord
+     *
+     * Gets 64 tiles of the solid plane of a row at once. Bit n of
+     * word w represents the tile in column w * 64 + n.
+     *
+     * @param iY is an object of class <code>Integer</code>
+     * @param iWord is an object of class <code>Integer</code>
+     * @return object of class <code>Long</code>
+     */
+    public long getSolidWord(int iY, int iWord) {
+        return lArrSolid[iY * iWordsPerRow + iWord];
+    }
+
+    /**
+     * getOneWayWord
+     *
+     * Gets 64 tiles of the one-way plane of a row at once. Bit n of
+     * word w represents the tile in column w * 64 + n.
+     *
+     * @param iY is an object of class <code>Integer</code>
+     * @param iWord is an object of class <code>Integer</code>
+     * @return object of class <code>Long</code>
+     */
+    public long getOneWayWord(int iY, int iWord) {
+        return lArrOneWay[iY * iWordsPerRow + iWord];
+    }
+
+    /**
+     * findSolid
+     *
+     * Finds the first solid tile of a row between two columns
+     * (inclusive), scanning from iFromX towards iToX in either
+     * direction. Columns outside the map are solid. Returns
+     * iNO_TILE if no solid tile is found.
+     *
+     * @param iY is an object of class <code>Integer</code>
+     * @param iFromX is an object of class <code>Integer</code>
+     * @param iToX is an object of class <code>Integer</code>
+     * @return object of class <code>Integer</code>
+     */
+    public int findSolid(int iY, int iFromX, int iToX) {
+        return scanRow(lArrSolid, iY, iFromX, iToX, true);
+    }
+
+    /**
+     * findOneWay
+     *
+     * Finds the first one-way platform of a row between two columns
+     * (inclusive), scanning from iFromX towards iToX in either
+     * direction. Returns iNO_TILE if no platform is found.
+     *
+     * @param iY is an object of class <code>Integer</code>
+     * @param iFromX is an object of class <code>Integer</code>
+     * @param iToX is an object of class <code>Integer</code>
+     * @return object of class <code>Integer</code>
+     */
+    public int findOneWay(int iY, int iFromX, int iToX) {
+        return scanRow(lArrOneWay, iY, iFromX, iToX, false);
+    }
+
+    /**
+     * scanRow
+     *
+     * Scans a row of a plane a word at a time and returns the first
+     * set bit found between iFromX and iToX, in order of scanning.
+     *
+     * @param lArrPlane is an array of class <code>Long</code>
+     * @param iY is an object of class <code>Integer</code>
+     * @param iFromX is an object of class <code>Integer</code>
+     * @param iToX is an object of class <code>Integer</code>
+     * @param bSolidBorders is an object of class <code>Boolean</code>
+     * @return object of class <code>Integer</code>
+     */
+    private int scanRow(long[] lArrPlane, int iY, int iFromX, int iToX,
+        boolean bSolidBorders)
+    {
+        boolean bRight = iToX >= iFromX;
+
+        // the borders of the map come first when scanning from outside
+        if (bSolidBorders && (iFromX < 0 || iFromX >= iWidth)) {
+            return iFromX;
+        }
+        if (iY < 0 || iY >= iHeight) {
+            if (bSolidBorders && (iToX < 0 || iToX >= iWidth)) {
+                return bRight ? iWidth : -1;
+            }
+            return iNO_TILE;
+        }
+
+        int iRow = iY * iWordsPerRow;
+        if (bRight) {
+            int iLast = Math.min(iToX, iWidth - 1);
+            int iX = Math.max(iFromX, 0);
+            while (iX <= iLast) {
+                int iWord = iX >> iWORD_BITS;
+                long lBits = lArrPlane[iRow + iWord] & (-1L << iX);
+                if (lBits != 0) {
+                    int iFound = (iWord << iWORD_BITS)
+                        + Long.numberOfTrailingZeros(lBits);
+                    return (iFound <= iLast) ? iFound : iNO_TILE;
+                }
+                iX = (iWord + 1) << iWORD_BITS;
+            }
+            if (bSolidBorders && iToX >= iWidth) {
+                return iWidth;
+            }
+        }
+        else {
+            int iLast = Math.max(iToX, 0);
+            int iX = Math.min(iFromX, iWidth - 1);
+            while (iX >= iLast) {
+                int iWord = iX >> iWORD_BITS;
+                long lBits = lArrPlane[iRow + iWord]
+                    & (-1L >>> (63 - (iX & 63)));
+                if (lBits != 0) {
+                    int iFound = (iWord << iWORD_BITS) + 63
+                        - Long.numberOfLeadingZeros(lBits);
+                    return (iFound >= iLast) ? iFound : iNO_TILE;
+                }
+                iX = (iWord << iWORD_BITS) - 1;
+            }
+            if (bSolidBorders && iToX < 0) {
+                return -1;
+            }
+        }
+        return iNO_TILE;
+    }
+}
@@ -0,0 +1,608 @@
+package com.brackeen.javagamebook.tilegame;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Definitions
+ *
+ * It manages the definition of each object of type <code>Definitions</code>
+ *
+ * The Definitions class reads the creatures, power-ups, animated tiles
+ * and levels of the game from data files (data/creatures.txt and
+ * data/levels.txt), so new content doesn't need code changes. The
+ * files are parsed once into tables that never change: archetypes by
+ * index, archetypes and animated tiles by map character (128-entry
+ * tables) and levels by number.
+ * <p>Each line of the files is a keyword followed by its values,
+ * separated by spaces; lines starting with "#" are comments. The
+ * files describe their own format.</p>
+ *
+ * @author Quazar Volume
+ */
+public class Definitions {
+
+    // Files read by default
+    public static final String sCREATURE_FILE = "data/creatures.txt";
+    public static final String sLEVEL_FILE = "data/levels.txt";
+
+    // Size of the table of map characters
+    public static final int iNUM_CHARS = 128;
+
+    private Archetype[] arcArrArchetypes;  // By index
+    private HashMap hmArchetypes;           // Archetypes by name
+    private Archetype[] arcArrSpawns;       // Archetypes by map character
+    private TileDefinition[] tdArrTiles;    // Animated tiles, in file order
+    private TileDefinition[] tdArrTileChars; // Animated tiles by map character
+    private LevelDefinition[] ldArrLevels;  // Levels by number
+    private int[] iArrLevelOrder;           // Level numbers, in play order
+
+    /**
+     * Definitions
+     *
+     * Default Constructor
+     *
+     * Creates empty Definitions, with no archetypes, tiles or levels.
+     */
+    public Definitions() {
+        arcArrArchetypes = new Archetype[0];
+        hmArchetypes = new HashMap();
+        arcArrSpawns = new Archetype[iNUM_CHARS];
+        tdArrTiles = new TileDefinition[0];
+        tdArrTileChars = new TileDefinition[iNUM_CHARS];
+        ldArrLevels = new LevelDefinition[0];
+        iArrLevelOrder = new int[0];
+    }
+
+    /**
+     * Definitions
+     *
+     * Parameterized Constructor
+     *
+     * Reads the definitions from the specified files.
+     *
+     * @param sCreatureFile is an object of class <code>String</code>
+     * @param sLevelFile is an object of class <code>String</code>
+     * @throws IOException if a file can't be read or has a wrong line
+     */
+    public Definitions(String sCreatureFile, String sLevelFile)
+        throws IOException
+    {
+        this();
+        readCreatures(sCreatureFile);
+        readLevels(sLevelFile);
+    }
+
+    /**
+     * readLines
+     *
+     * Reads the lines of a definition file, split into words. Comments
+     * and blank lines are replaced by null, so the index of a line is
+     * its number minus one.
+     *
+     * @param sFilename is an object of class <code>String</code>
+     * @return object of class <code>ArrayList</code>
+     * @throws IOException
+     */
+    private static ArrayList readLines(String sFilename) throws IOException {
+        ArrayList ArrLines = new ArrayList();
+        BufferedReader brReader = new BufferedReader(new FileReader(sFilename));
+        try {
+            String sLine = brReader.readLine();
+            while (sLine != null) {
+                sLine = sLine.trim();
+                if (sLine.length() == 0 || sLine.startsWith("#")) {
+                    ArrLines.add(null);
+                }
+                else {
+                    ArrLines.add(sLine.split("\\s+"));
+                }
+                sLine = brReader.readLine();
+            }
+        }
+        finally {
+            brReader.close();
+        }
+        return ArrLines;
+    }
+
+    /**
+     * readCreatures
+     *
+     * Reads the animations, creatures, power-ups, attacks, lights,
+     * animated tiles and map characters. Animations must be declared
+     * before they are used; the rest may come in any order.
+     *
+     * @param sFilename is an object of class <code>String</code>
+     * @throws IOException
+     */
+    private void readCreatures(String sFilename) throws IOException {
+        ArrayList ArrLines = readLines(sFilename);
+        HashMap hmAnimations = new HashMap();
+        HashMap hmAttacks = new HashMap();      // Attacks by creature name
+        HashMap hmLights = new HashMap();       // Lights by creature name
+        ArrayList ArrSprites = new ArrayList(); // Creature and power-up lines
+        ArrayList ArrSpawns = new ArrayList();  // Spawn lines
+        ArrayList ArrTiles = new ArrayList();   // Animated tile lines
+
+        for (int iI = 0; iI < ArrLines.size(); iI++) {
+            String[] sArrTokens = (String[])ArrLines.get(iI);
+            if (sArrTokens == null) {
+                continue;
+            }
+            String sKeyword = sArrTokens[0];
+            try {
+                if (sKeyword.equals("anim") && sArrTokens.length >= 3) {
+                    AnimationDefinition adAnim = parseAnimation(sArrTokens);
+                    hmAnimations.put(adAnim.getName(), adAnim);
+                }
+                else if ((sKeyword.equals("creature") &&
+                        sArrTokens.length == 7) ||
+                    (sKeyword.equals("powerup") && sArrTokens.length == 4))
+                {
+                    ArrSprites.add(Integer.valueOf(iI));
+                }
+                else if (sKeyword.equals("attack") && sArrTokens.length >= 7) {
+                    ArrayList ArrAttacks = (ArrayList)hmAttacks.get(
+                        sArrTokens[1]);
+                    if (ArrAttacks == null) {
+                        ArrAttacks = new ArrayList();
+                        hmAttacks.put(sArrTokens[1], ArrAttacks);
+                    }
+                    ArrAttacks.add(parseAttack(sArrTokens));
+                }
+                else if (sKeyword.equals("light") && sArrTokens.length == 4) {
+                    int iRadius = Integer.parseInt(sArrTokens[2]);
+                    int iIntensity = Integer.parseInt(sArrTokens[3]);
+                    if (iRadius < 0 || iIntensity < 0 || iIntensity > 255) {
+                        throw new IllegalArgumentException("wrong light");
+                    }
+                    hmLights.put(sArrTokens[1], new int[] {iRadius, iIntensity});
+                }
+                else if (sKeyword.equals("spawn") && sArrTokens.length == 3 &&
+                    sArrTokens[1].length() == 1 &&
+                    sArrTokens[1].charAt(0) < iNUM_CHARS)
+                {
+                    ArrSpawns.add(Integer.valueOf(iI));
+                }
+                else if (sKeyword.equals("tile") && sArrTokens.length == 4 &&
+                    sArrTokens[1].length() == 1 &&
+                    sArrTokens[1].charAt(0) < iNUM_CHARS)
+                {
+                    ArrTiles.add(Integer.valueOf(iI));
+                }
+                else {
+                    throw new IllegalArgumentException("unknown definition");
+                }
+            }
+            catch (IllegalArgumentException ex) {
+                throw lineError(sFilename, iI, ex.getMessage());
+            }
+        }
+
+        // creatures and power-ups, with their attacks
+        arcArrArchetypes = new Archetype[ArrSprites.size()];
+        for (int iJ = 0; iJ < ArrSprites.size(); iJ++) {
+            int iI = ((Integer)ArrSprites.get(iJ)).intValue();
+            String[] sArrTokens = (String[])ArrLines.get(iI);
+            try {
+                arcArrArchetypes[iJ] = parseArchetype(sArrTokens, iJ,
+                    hmAnimations, (ArrayList)hmAttacks.remove(sArrTokens[1]),
+                    (int[])hmLights.remove(sArrTokens[1]));
+            }
+            catch (IllegalArgumentException ex) {
+                throw lineError(sFilename, iI, ex.getMessage());
+            }
+            hmArchetypes.put(arcArrArchetypes[iJ].getName(),
+                arcArrArchetypes[iJ]);
+        }
+        if (!hmAttacks.isEmpty()) {
+            throw new IOException(sFilename + ": attacks of unknown creatures "
+                + hmAttacks.keySet());
+        }
+        if (!hmLights.isEmpty()) {
+            throw new IOException(sFilename + ": lights of unknown creatures "
+                + hmLights.keySet());
+        }
+
+        // map characters
+        for (int iJ = 0; iJ < ArrSpawns.size(); iJ++) {
+            int iI = ((Integer)ArrSpawns.get(iJ)).intValue();
+            String[] sArrTokens = (String[])ArrLines.get(iI);
+            Archetype arcArchetype = (Archetype)hmArchetypes.get(sArrTokens[2]);
+            if (arcArchetype == null) {
+                throw lineError(sFilename, iI, "unknown creature "
+                    + sArrTokens[2]);
+            }
+            arcArrSpawns[sArrTokens[1].charAt(0)] = arcArchetype;
+        }
+
+        // animated tiles; letters are the tiles of the images/ directory
+        tdArrTiles = new TileDefinition[ArrTiles.size()];
+        for (int iJ = 0; iJ < ArrTiles.size(); iJ++) {
+            int iI = ((Integer)ArrTiles.get(iJ)).intValue();
+            String[] sArrTokens = (String[])ArrLines.get(iI);
+            char cChar = sArrTokens[1].charAt(0);
+            if ((cChar >= 'A' && cChar <= 'Z') || arcArrSpawns[cChar] != null
+                || tdArrTileChars[cChar] != null)
+            {
+                throw lineError(sFilename, iI, "character already used "
+                    + cChar);
+            }
+            try {
+                tdArrTiles[iJ] = parseTile(sArrTokens, hmAnimations);
+            }
+            catch (IllegalArgumentException ex) {
+                throw lineError(sFilename, iI, ex.getMessage());
+            }
+            tdArrTileChars[cChar] = tdArrTiles[iJ];
+        }
+    }
+
+    /**
+     * parseAnimation
+     *
+     * Parses an "anim" line.
+     *
+     * @param sArrTokens is an array of class <code>String</code>
+     * @return object of class <code>AnimationDefinition</code>
+     */
+    private static AnimationDefinition parseAnimation(String[] sArrTokens) {
+        String[] sArrFrames = new String[sArrTokens.length - 2];
+        long[] lArrDurations = new long[sArrFrames.length];
+        for (int iI = 0; iI < sArrFrames.length; iI++) {
+            String sFrame = sArrTokens[iI + 2];
+            int iColon = sFrame.lastIndexOf(':');
+            if (iColon <= 0) {
+                throw new IllegalArgumentException("frame without time "
+                    + sFrame);
+            }
+            sArrFrames[iI] = sFrame.substring(0, iColon);
+            lArrDurations[iI] = Long.parseLong(sFrame.substring(iColon + 1));
+        }
+        return new AnimationDefinition(sArrTokens[1], sArrFrames,
+            lArrDurations);
+    }
+
+    /**
+     * parseAttack
+     *
+     * Parses an "attack" line.
+     *
+     * @param sArrTokens is an array of class <code>String</code>
+     * @return object of class <code>Attack</code>
+     */
+    private static Attack parseAttack(String[] sArrTokens) {
+        int iWhen;
+        if (sArrTokens[5].equals("visible")) {
+            iWhen = Attack.iWHEN_VISIBLE;
+        }
+        else if (sArrTokens[5].equals("moving")) {
+            iWhen = Attack.iWHEN_MOVING;
+        }
+        else {
+            throw new IllegalArgumentException("unknown condition "
+                + sArrTokens[5]);
+        }
+        int[] iArrPatterns = new int[sArrTokens.length - 6];
+        for (int iI = 0; iI < iArrPatterns.length; iI++) {
+            String sPattern = sArrTokens[iI + 6];
+            if (sPattern.equals("arrow")) {
+                iArrPatterns[iI] = Attack.iPATTERN_ARROW;
+            }
+            else if (sPattern.equals("batswarm")) {
+                iArrPatterns[iI] = Attack.iPATTERN_BATSWARM;
+            }
+            else if (sPattern.equals("arrowrain")) {
+                iArrPatterns[iI] = Attack.iPATTERN_ARROWRAIN;
+            }
+            else {
+                throw new IllegalArgumentException("unknown pattern "
+                    + sPattern);
+            }
+        }
+        return new Attack(Integer.parseInt(sArrTokens[2]),
+            Long.parseLong(sArrTokens[3]), Float.parseFloat(sArrTokens[4]),
+            iWhen, iArrPatterns);
+    }
+
+    /**
+     * parseArchetype
+     *
+     * Parses a "creature" or "powerup" line.
+     *
+     * @param sArrTokens is an array of class <code>String</code>
+     * @param iIndex is an object of class <code>Integer</code>
+     * @param hmAnimations is an object of class <code>HashMap</code>
+     * @param ArrAttacks is an object of class <code>ArrayList</code> or null
+     * @param iArrLight is an array of class <code>Integer</code> or null
+     * @return object of class <code>Archetype</code>
+     */
+    private static Archetype parseArchetype(String[] sArrTokens, int iIndex,
+        HashMap hmAnimations, ArrayList ArrAttacks, int[] iArrLight)
+    {
+        boolean bCreature = sArrTokens[0].equals("creature");
+        int iKind = -1;
+        for (int iI = 0; iI < Archetype.sArrKINDS.length; iI++) {
+            if (Archetype.sArrKINDS[iI].equals(sArrTokens[2])) {
+                iKind = iI;
+            }
+        }
+        if (iKind < 0 || bCreature != (iKind < Archetype.iKIND_STAR)) {
+            throw new IllegalArgumentException("unknown class "
+                + sArrTokens[2]);
+        }
+
+        String sWalk = bCreature ? sArrTokens[5] : sArrTokens[3];
+        String sIdle = bCreature ? sArrTokens[6] : sWalk;
+        AnimationDefinition adWalk =
+            (AnimationDefinition)hmAnimations.get(sWalk);
+        AnimationDefinition adIdle =
+            (AnimationDefinition)hmAnimations.get(sIdle);
+        if (adWalk == null || adIdle == null) {
+            throw new IllegalArgumentException("unknown animation "
+                + (adWalk == null ? sWalk : sIdle));
+        }
+        Attack[] attArrAttacks = (ArrAttacks == null) ? new Attack[0] :
+            (Attack[])ArrAttacks.toArray(new Attack[ArrAttacks.size()]);
+        return new Archetype(sArrTokens[1], iIndex, iKind,
+            bCreature ? Integer.parseInt(sArrTokens[3]) : 0,
+            bCreature ? Float.parseFloat(sArrTokens[4]) : 0,
+            adWalk, adIdle, attArrAttacks,
+            (iArrLight == null) ? 0 : iArrLight[0],
+            (iArrLight == null) ? 0 : iArrLight[1]);
+    }
+
+    /**
+     * parseTile
+     *
+     * Parses a "tile" line.
+     *
+     * @param sArrTokens is an array of class <code>String</code>
+     * @param hmAnimations is an object of class <code>HashMap</code>
+     * @return object of class <code>TileDefinition</code>
+     */
+    private static TileDefinition parseTile(String[] sArrTokens,
+        HashMap hmAnimations)
+    {
+        AnimationDefinition adAnim =
+            (AnimationDefinition)hmAnimations.get(sArrTokens[2]);
+        if (adAnim == null) {
+            throw new IllegalArgumentException("unknown animation "
+                + sArrTokens[2]);
+        }
+        int iKind = TileDefinition.iNO_KIND;
+        if (!sArrTokens[3].equals("none")) {
+            for (int iI = Archetype.iKIND_STAR;
+                iI < Archetype.sArrKINDS.length; iI++)
+            {
+                if (Archetype.sArrKINDS[iI].equals(sArrTokens[3])) {
+                    iKind = iI;
+                }
+            }
+            if (iKind == TileDefinition.iNO_KIND) {
+                throw new IllegalArgumentException("unknown class "
+                    + sArrTokens[3]);
+            }
+        }
+        return new TileDefinition(sArrTokens[1].charAt(0), adAnim, iKind);
+    }
+
+    /**
+     * readLevels
+     *
+     * Reads the levels.
+     *
+     * @param sFilename is an object of class <code>String</code>
+     * @throws IOException
+     */
+    private void readLevels(String sFilename) throws IOException {
+        ArrayList ArrLines = readLines(sFilename);
+        ArrayList ArrLevels = new ArrayList();
+        int iMaxNumber = -1;
+        for (int iI = 0; iI < ArrLines.size(); iI++) {
+            String[] sArrTokens = (String[])ArrLines.get(iI);
+            if (sArrTokens == null) {
+                continue;
+            }
+            try {
+                if (!sArrTokens[0].equals("level") || sArrTokens.length != 7) {
+                    throw new IllegalArgumentException("unknown definition");
+                }
+                LevelDefinition ldLevel = new LevelDefinition(
+                    Integer.parseInt(sArrTokens[1]), sArrTokens[2],
+                    sArrTokens[3], sArrTokens[4],
+                    Integer.parseInt(sArrTokens[5]),
+                    Integer.parseInt(sArrTokens[6]));
+                if (ldLevel.getNumber() < 0) {
+                    throw new IllegalArgumentException("negative level");
+                }
+                ArrLevels.add(ldLevel);
+                iMaxNumber = Math.max(iMaxNumber, ldLevel.getNumber());
+            }
+            catch (IllegalArgumentException ex) {
+                throw lineError(sFilename, iI, ex.getMessage());
+            }
+        }
+
+        ldArrLevels = new LevelDefinition[iMaxNumber + 1];
+        iArrLevelOrder = new int[ArrLevels.size()];
+        for (int iI = 0; iI < ArrLevels.size(); iI++) {
+            LevelDefinition ldLevel = (LevelDefinition)ArrLevels.get(iI);
+            ldArrLevels[ldLevel.getNumber()] = ldLevel;
+            iArrLevelOrder[iI] = ldLevel.getNumber();
+        }
+    }
+
+    /**
+     * lineError
+     *
+     * Creates the exception for a wrong line of a file.
+     *
+     * @param sFilename is an object of class <code>String</code>
+     * @param iIndex is an object of class <code>Integer</code>
+     * @param sMessage is an object of class <code>String</code>
+     * @return object of class <code>IOException</code>
+     */
+    private static IOException lineError(String sFilename, int iIndex,
+        String sMessage)
+    {
+        return new IOException(sFilename + ":" + (iIndex + 1) + ": "
+            + sMessage);
+    }
+
+    /**
+     * getNumArchetypes
+     *
+     * Gets the number of archetypes.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getNumArchetypes() {
+        return arcArrArchetypes.length;
+    }
+
+    /**
+     * getArchetype
+     *
+     * Gets the archetype at an index, or null if there is none.
+     *
+     * @param iIndex is an object of class <code>Integer</code>
+     * @return object of class <code>Archetype</code>
+     */
+    public Archetype getArchetype(int iIndex) {
+        return (iIndex >= 0 && iIndex < arcArrArchetypes.length) ?
+            arcArrArchetypes[iIndex] : null;
+    }
+
+    /**
+     * getArchetype
+     *
+     * Gets the archetype of the specified name, or null if there is
+     * none.
+     *
+     * @param sName is an object of class <code>String</code>
+     * @return object of class <code>Archetype</code>
+     */
+    public Archetype getArchetype(String sName) {
+        return (Archetype)hmArchetypes.get(sName);
+    }
+
+    /**
+     * getSpawn
+     *
+     * Gets the archetype placed by a character of the map files, or
+     * null if the character places nothing.
+     *
+     * @param cChar is an object of class <code>Character</code>
+     * @return object of class <code>Archetype</code>
+     */
+    public Archetype getSpawn(char cChar) {
+        return (cChar < iNUM_CHARS) ? arcArrSpawns[cChar] : null;
+    }
+
+    /**
+     * getNumTiles
+     *
+     * Gets the number of animated tiles.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getNumTiles() {
+        return tdArrTiles.length;
+    }
+
+    /**
+     * getTileAt
+     *
+     * Gets an animated tile by its place in the definition file.
+     *
+     * @param iIndex is an object of class <code>Integer</code>
+     * @return object of class <code>TileDefinition</code>
+     */
+    public TileDefinition getTileAt(int iIndex) {
+        return tdArrTiles[iIndex];
+    }
+
+    /**
+     * getTile
+     *
+     * Gets the animated tile placed by a character of the map files,
+     * or null if the character places none.
+     *
+     * @param cChar is an object of class <code>Character</code>
+     * @return object of class <code>TileDefinition</code>
+     */
+    public TileDefinition getTile(char cChar) {
+        return (cChar < iNUM_CHARS) ? tdArrTileChars[cChar] : null;
+    }
+
+    /**
+     * getLevel
+     *
+     * Gets the level of the specified number, or null if there is
+     * none.
+     *
+     * @param iNumber is an object of class <code>Integer</code>
+     * @return object of class <code>LevelDefinition</code>
+     */
+    public LevelDefinition getLevel(int iNumber) {
+        return (iNumber >= 0 && iNumber < ldArrLevels.length) ?
+            ldArrLevels[iNumber] : null;
+    }
+
+    /**
+     * getNumLevels
+     *
+     * Gets the number of levels.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getNumLevels() {
+        return iArrLevelOrder.length;
+    }
+
+    /**
+     * getLevelAt
+     *
+     * Gets a level by its place in the play order.
+     *
+     * @param iIndex is an object of class <code>Integer</code>
+     * @return object of class <code>LevelDefinition</code>
+     */
+    public LevelDefinition getLevelAt(int iIndex) {
+        return ldArrLevels[iArrLevelOrder[iIndex]];
+    }
+
+    /**
+     * getFirstLevel
+     *
+     * Gets the number of the first level, or -1 if there are none.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getFirstLevel() {
+        return (iArrLevelOrder.length > 0) ? iArrLevelOrder[0] : -1;
+    }
+
+    /**
+     * getNextLevel
+     *
+     * Gets the number of the level played after the specified one.
+     * After the last level (or an unknown one) comes the first.
+     *
+     * @param iNumber is an object of class <code>Integer</code>
+     * @return object of class <code>Integer</code>
+     */
+    public int getNextLevel(int iNumber) {
+        for (int iI = 0; iI < iArrLevelOrder.length - 1; iI++) {
+            if (iArrLevelOrder[iI] == iNumber) {
+                return iArrLevelOrder[iI + 1];
+            }
+        }
+        return getFirstLevel();
+    }
+}
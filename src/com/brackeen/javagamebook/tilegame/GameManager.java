@@ -4,7 +4,6 @@ import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.util.Iterator;
 
-import javax.sound.midi.Sequence;
 import javax.sound.midi.Sequencer;
 import javax.sound.sampled.AudioFormat;
 
@@ -12,10 +11,15 @@ import com.brackeen.javagamebook.graphics.*;
 import com.brackeen.javagamebook.sound.*;
 import com.brackeen.javagamebook.input.*;
 import com.brackeen.javagamebook.test.GameCore;
-import static com.brackeen.javagamebook.tilegame.TileMapRenderer.tilesToPixels;
 import com.brackeen.javagamebook.tilegame.sprites.*;
+import com.brackeen.javagamebook.util.AssetLoader;
+import com.brackeen.javagamebook.util.ThreadPool;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 /**
  * GameManager
@@ -46,21 +50,76 @@ public class GameManager extends GameCore {
     private static final AudioFormat afPLAYBACK_FORMAT =
         new AudioFormat(44100, 16, 1, true, false);
 
+    // Music, cached by the MidiPlayer by file name
+    private static final String sMUSIC_MENU = "sounds/Main_menu1.mid";
+    private static final String sMUSIC_CLOUDS = "sounds/Clouds.mid";
+    // Render music to PCM and play it with the sound effects, when
+    // the system allows it (otherwise the Sequencer is used). Off by
+    // default: the Music power-up toggles the drums on the Sequencer,
+    // and the rendered track holds a SoundManager voice while it plays
+    private static final boolean bPRERENDER_MUSIC = false;
+
+    // Distance (in pixels) at which positional sounds can't be heard
+    private static final int iSOUND_DISTANCE = 1600;
+    // Sound events: coalescing window (ms), voices per tick and 
+    // instances of each sound
+    private static final long lSOUND_WINDOW = 60;
+    private static final int iSOUND_VOICE_BUDGET = 4;
+    private static final int iSOUND_MAX_INSTANCES = 3;
+    // Sound line buffers: starting size and write size (ms); the 
+    // buffers adapt to underruns
+    private static final int iSOUND_BUFFER_MILLIS = 40;
+    private static final int iSOUND_PERIOD_MILLIS = 10;
+
     private static final int iDRUM_TRACK = 1;
 
+    // Draw on a render thread, from snapshots published each tick, 
+    // while the next tick is updated
+    private static final boolean bPIPELINED_RENDER = false;
+
     // Gravity pull
     public static final float fGRAVITY = 0.0013f;
 
+    // Particles alive at once, and their colors
+    private static final int iPARTICLE_CAPACITY = 32768;
+    private static final int iCOLOR_SPARK = 0;
+    private static final int iCOLOR_BLOOD = 1;
+    private static final int iCOLOR_MAGIC = 2;
+
+    // Time the logo is shown (about 500 frames at 60 frames per second)
+    private static final long lLOGO_TIME = 8000;
+
     // Game objects
-    private Point pPointCache = new Point();
-    private boolean bGameOverScreen = false;
-    private TileMap tmMap;
+    private TileMap tmMap;          // Level played, or null outside of the game
     private MidiPlayer mpMidiPlayer;
+    private ThreadPool tpMusicRenderer;     // Renders music in prerender mode
     private SoundManager smSoundManager;
+    private SoundEventBus sebSounds;    // Sounds requested during a tick
     private ResourceManager rmResourceManager;
     private InputManager imInputManager;
+    private InputSnapshot insInput; // State of the actions in this tick
     private TileMapRenderer tmrRenderer;
-    private LinkedList<Image> lklBackgrounds;
+    private Camera camCamera;       // View of the map, shared by renderer, AI and sounds
+    private HudRenderer hrHud;      // Cached score, life, health and pause panels
+    private ParticleSystem ptsParticles;
+    private WorldSnapshot wsFrame;  // Filled again by draw(), when not pipelined
+    private ParticleEmitter pemArrowHit;    // Sparks where an arrow hits
+    private ParticleEmitter pemDeath;       // Burst of a creature that dies
+    private ParticleEmitter pemBossAttack;  // Burst of the boss attacking
+    private ArrayList<String> ArrBackgrounds;   // Background of each screen, by file name
+    private ImageResidency irResidency;         // Backgrounds currently in memory
+    private String sCurrentBackground;
+    private HashSet hsPreloaded;    // Backgrounds preloaded for the next screens
+    private Future<TileMap> futLevel;   // First level, preloaded, or null
+
+    // Screens
+    private GameStateStack stsStates;
+    private PlayingState psPlaying;
+    private MenuState msMainMenu;
+    private MenuState msPaused;
+    private MenuState msGameOver;
+    private MenuState msCredits;
+    private AssetLoader alLoader;   // Loads images, sounds and sequences in parallel
 
     private GameAction gaMoveLeft;
     private GameAction gaMoveRight;
@@ -77,22 +136,14 @@ public class GameManager extends GameCore {
     private GameAction gaControls;
     private GameAction gaOptions;
     private GameAction gaReturn;
+    private GameAction gaMetrics;   // Prints the metrics, for debugging
     
     private float fInitialJumpY;    // States from where the character started to jump
     
     private int iLife;
     private int iInitialLife = 3;
     private int iScore;
-    private boolean bPause;
     private boolean bArrowAvailable;
-    private boolean bMenu;
-    private Sequence seqSequence1;
-    private Sequence seqSequence;
-    private Sequence seqSequence2;
-    private Sequence seqSequence3;
-    private Sequence seqSequence4;
-    private long lTimer;
-    private boolean bPauseBoss;
     
     // Sounds
     private Sound souPrizeSound;
@@ -106,6 +157,13 @@ public class GameManager extends GameCore {
     private Sound souEnemyDeath;
     private Sound souBossImmune;
     
+    // State of the last frame drawn on a static screen (menu or pause)
+    private GameState gsDrawnState;
+    private boolean bDrawnStatic;
+    private int iDrawnScore;
+    private int iDrawnLife;
+    private int iDrawnHealth;
+    
     private LinkedList<Sprite> lklSpritesToAdd; //Holds the sprites to be added on the next frame (prevents ConcurrentModificationErrors)
     
     /**
@@ -115,96 +173,182 @@ public class GameManager extends GameCore {
      */
     public void init() {
         super.init();
+        setPipelined(bPIPELINED_RENDER);
 
         // set up input manager
         initInput();
 
+        // start loading assets in parallel
+        alLoader = new AssetLoader();
+
         // start resource manager
         rmResourceManager = new ResourceManager(
-        smScreen.getFullScreenWindow().getGraphicsConfiguration());
+        smScreen.getFullScreenWindow().getGraphicsConfiguration(), alLoader);
+        rmResourceManager.setMetrics(mtrMetrics);
 
         // load resources
-        tmrRenderer = new TileMapRenderer();
+        camCamera = new Camera();
+        tmrRenderer = new TileMapRenderer(camCamera);
+        hrHud = new HudRenderer(
+            smScreen.getFullScreenWindow().getGraphicsConfiguration(),
+            smScreen.getFullScreenWindow().getFont());
+        ptsParticles = new ParticleSystem(iPARTICLE_CAPACITY, fGRAVITY,
+            new Color[] {Color.yellow, new Color(160, 0, 0),
+            new Color(170, 80, 255)});
+        pemArrowHit = new ParticleEmitter(24, (float)-Math.PI / 2,
+            (float)Math.PI, 0.3f, 400, iCOLOR_SPARK);
+        pemDeath = new ParticleEmitter(60, (float)-Math.PI / 2,
+            (float)Math.PI * 2, 0.35f, 900, iCOLOR_BLOOD);
+        pemBossAttack = new ParticleEmitter(150, (float)-Math.PI / 2,
+            (float)Math.PI * 2, 0.5f, 1200, iCOLOR_MAGIC);
         //vidas int
         iLife = iInitialLife;
         //Score
         iScore = 0;
         
-        lklBackgrounds = new LinkedList();
+        ArrBackgrounds = new ArrayList<String>();
+        irResidency = new ImageResidency(rmResourceManager);
         
-        // load map images in order
+        // screen images in order; the levels have their own
             // Main menu
-        lklBackgrounds.add(rmResourceManager.loadImage("Logo1.jpg"));
-        lklBackgrounds.add(rmResourceManager.loadImage("Intento5.jpg"));
-        lklBackgrounds.add(rmResourceManager.loadImage("HP_1.jpg"));
-        lklBackgrounds.add(rmResourceManager.loadImage("escritorio1.jpg"));
-        lklBackgrounds.add(rmResourceManager.loadImage("controles1.jpg"));
-            // First map
-        lklBackgrounds.add(rmResourceManager.loadImage("Fondo_Villa_2_Negro.jpg"));
-            // Second map
-        lklBackgrounds.add(rmResourceManager.loadImage("Fondo_Castillo.jpg"));
-            // Third map
-        lklBackgrounds.add(rmResourceManager.loadImage("final.jpg"));
-            // Fourth map
-        lklBackgrounds.add(rmResourceManager.loadImage("first.jpg"));
-            //GameOver map
-        lklBackgrounds.add(rmResourceManager.loadImage("Game Over1.jpg"));
-        lklBackgrounds.add(rmResourceManager.loadImage("Thanks_for_playing.jpg"));
+        ArrBackgrounds.add("Logo1.jpg");
+        ArrBackgrounds.add("Intento5.jpg");
+        ArrBackgrounds.add("HP_1.jpg");
+        ArrBackgrounds.add("escritorio1.jpg");
+        ArrBackgrounds.add("controles1.jpg");
+            //GameOver and credits
+        ArrBackgrounds.add("Game Over1.jpg");
+        ArrBackgrounds.add("Thanks_for_playing.jpg");
         
-        tmrRenderer.setBackground(lklBackgrounds.get(0));
-        
-        // Controls
-        fInitialJumpY = 0;
+        // menu backgrounds stay resident; level backgrounds are 
+        // loaded on level entry and released when the level is left
+        for (int iI = 0; iI < 5; iI++) {
+            irResidency.acquire(ArrBackgrounds.get(iI));
+        }
         
-        // load first map
-        tmMap = rmResourceManager.loadNextMap();
-
-        // load sounds
-        smSoundManager = new SoundManager(afPLAYBACK_FORMAT);
-        souPrizeSound = smSoundManager.getSound("sounds/prize.wav");
-        souBoopSound = smSoundManager.getSound("sounds/boop2.wav");
-        souPause = smSoundManager.getSound("sounds/pause_on.wav");
-        souUnpause = smSoundManager.getSound("sounds/pause_off.wav");
-        souEnemyDeath = smSoundManager.getSound("sounds/enemy_death.wav");
-        souPlayerShoot = smSoundManager.getSound("sounds/player_shoot.wav");
-        souMenuSelect = smSoundManager.getSound("sounds/menu_select.wav");
-        souArrowHit = smSoundManager.getSound("sounds/arrow_hit2.wav");
-        souBossImmune = smSoundManager.getSound("sounds/boss_invinsible.wav");
-        souPlayerHurt = smSoundManager.getSound("sounds/player_hurt.wav");
-
-        // start music
+        // load sounds in the background; they are silent until loaded
+        smSoundManager = new SoundManager(afPLAYBACK_FORMAT,
+            SoundManager.getMaxSimultaneousSounds(afPLAYBACK_FORMAT),
+            iSOUND_BUFFER_MILLIS, iSOUND_PERIOD_MILLIS, true);
+        smSoundManager.setMetrics(mtrMetrics);
+        smSoundManager.setListener(camCamera, iSOUND_DISTANCE);
+        sebSounds = new SoundEventBus(smSoundManager, lSOUND_WINDOW,
+            iSOUND_VOICE_BUDGET, iSOUND_MAX_INSTANCES);
+        souPrizeSound = smSoundManager.getSound("sounds/prize.wav", alLoader);
+        souBoopSound = smSoundManager.getSound("sounds/boop2.wav", alLoader);
+        souPause = smSoundManager.getSound("sounds/pause_on.wav", alLoader);
+        souUnpause = smSoundManager.getSound("sounds/pause_off.wav", alLoader);
+        souEnemyDeath = smSoundManager.getSound("sounds/enemy_death.wav", alLoader);
+        souPlayerShoot = smSoundManager.getSound("sounds/player_shoot.wav", alLoader);
+        souMenuSelect = smSoundManager.getSound("sounds/menu_select.wav", alLoader);
+        souArrowHit = smSoundManager.getSound("sounds/arrow_hit2.wav", alLoader);
+        souBossImmune = smSoundManager.getSound("sounds/boss_invinsible.wav", alLoader);
+        souPlayerHurt = smSoundManager.getSound("sounds/player_hurt.wav", alLoader);
+
+        // load music in the background
         mpMidiPlayer = new MidiPlayer();
-        seqSequence =
-            mpMidiPlayer.getSequence("sounds/Main_menu1.mid");
-        mpMidiPlayer.play(seqSequence, true);
-        
-        seqSequence1 =
-            mpMidiPlayer.getSequence("sounds/Village2.mid");
-        
-        seqSequence2 =
-            mpMidiPlayer.getSequence("sounds/Castle.mid");
-        
-        seqSequence3 =
-            mpMidiPlayer.getSequence("sounds/Clouds.mid");
-        
-        seqSequence4 =
-            mpMidiPlayer.getSequence("sounds/BOSS.mid");
+        if (bPRERENDER_MUSIC) {
+            tpMusicRenderer = new ThreadPool(1);
+            if (!mpMidiPlayer.setPrerender(smSoundManager, tpMusicRenderer)) {
+                tpMusicRenderer.close();
+                tpMusicRenderer = null;
+            }
+        }
+        mpMidiPlayer.load(sMUSIC_MENU, alLoader);
+        mpMidiPlayer.load(sMUSIC_CLOUDS, alLoader);
+        Definitions defDefinitions = rmResourceManager.getDefinitions();
+        for (int iI = 0; iI < defDefinitions.getNumLevels(); iI++) {
+            mpMidiPlayer.load(defDefinitions.getLevelAt(iI).getMusic(), 
+                alLoader);
+        }
         
-        //Pause
-        bPause = false;
+        // Controls
+        fInitialJumpY = 0;
         
         //Arrow
         bArrowAvailable = true;
         
-        //Timer
-        lTimer = 0;
-        
-        //Menu
-        bMenu = false;
-        bPauseBoss = false;
-        
         // Sprites to add on next frame
         lklSpritesToAdd = new LinkedList();
+        
+        // show the first screen; it only waits for its own background
+        hsPreloaded = new HashSet();
+        initStates();
+    }
+    
+    /**
+     * initStates
+     * 
+     * Creates the screens of the game and how they lead to each 
+     * other, and shows the first one.
+     */
+    private void initStates() {
+        stsStates = new GameStateStack();
+        psPlaying = new PlayingState(this);
+        MenuState msLogo = new MenuState(this, ArrBackgrounds.get(0), 
+            sMUSIC_MENU);
+        MenuState msTitle = new MenuState(this, ArrBackgrounds.get(1), 
+            sMUSIC_MENU);
+        msMainMenu = new MenuState(this, ArrBackgrounds.get(2), sMUSIC_MENU);
+        MenuState msSettings = new MenuState(this, ArrBackgrounds.get(3), 
+            sMUSIC_MENU);
+        MenuState msControls = new MenuState(this, ArrBackgrounds.get(4), 
+            sMUSIC_MENU);
+        msPaused = new MenuState(this, null, null);
+        msPaused.setOverlay(true);
+        msGameOver = new MenuState(this, ArrBackgrounds.get(5), sMUSIC_CLOUDS);
+        msGameOver.setMessage("Press Enter to try again");
+        msCredits = new MenuState(this, ArrBackgrounds.get(6), sMUSIC_CLOUDS);
+
+        msLogo.setTimeout(lLOGO_TIME, msTitle);
+        msTitle.addOption(gaEnter, MenuState.iGO_TO, msMainMenu, 
+            souMenuSelect);
+        msMainMenu.addOption(gaPlay, MenuState.iGO_TO, psPlaying, 
+            souMenuSelect);
+        msMainMenu.addOption(gaOptions, MenuState.iGO_TO, msSettings, 
+            souMenuSelect);
+        msSettings.addOption(gaControls, MenuState.iGO_TO, msControls, 
+            souMenuSelect);
+        msSettings.addOption(gaReturn, MenuState.iGO_TO, msMainMenu, 
+            souMenuSelect);
+        msControls.addOption(gaReturn, MenuState.iGO_TO, msSettings, 
+            souMenuSelect);
+        msPaused.addOption(gaResume, MenuState.iCLOSE, null, null);
+        msPaused.addOption(gaPause, MenuState.iCLOSE, null, souUnpause);
+        msPaused.addOption(gaWakeUp, MenuState.iGO_TO, msMainMenu, 
+            souMenuSelect);
+        msPaused.addOption(gaExitGame, MenuState.iQUIT, null, souMenuSelect);
+        msGameOver.addOption(gaEnter, MenuState.iGO_TO, msTitle, 
+            souMenuSelect);
+        msCredits.addOption(gaEnter, MenuState.iGO_TO, msTitle, 
+            souMenuSelect);
+        psPlaying.addNext(msGameOver);
+        psPlaying.addNext(msCredits);
+
+        stsStates.set(msLogo);
+        stsStates.applyChanges();
+    }
+    
+    /**
+     * getStates
+     * 
+     * Gets the stack of screens.
+     * 
+     * @return object of class <code>GameStateStack</code>
+     */
+    GameStateStack getStates() {
+        return stsStates;
+    }
+    
+    /**
+     * getSoundBus
+     * 
+     * Gets the bus the sounds of this tick are posted to.
+     * 
+     * @return object of class <code>SoundEventBus</code>
+     */
+    SoundEventBus getSoundBus() {
+        return sebSounds;
     }
     
     /**
@@ -214,10 +358,88 @@ public class GameManager extends GameCore {
      */
     public void stop() {
         super.stop();
+        alLoader.close();
         mpMidiPlayer.close();
+        if (tpMusicRenderer != null) {
+            tpMusicRenderer.close();
+        }
         smSoundManager.close();
     }
 
+    /**
+     * showBackground
+     * 
+     * Shows the specified background image. The image is made 
+     * resident (waiting for it to be loaded if needed) and the 
+     * previous background is released.
+     * 
+     * @param sName is an object of class <code>String</code>
+     */
+    void showBackground(String sName) {
+        if (sName.equals(sCurrentBackground)) {
+            return;
+        }
+        Image imaBackground = AssetLoader.getResult(irResidency.acquire(sName));
+        if (sCurrentBackground != null) {
+            irResidency.release(sCurrentBackground);
+        }
+        sCurrentBackground = sName;
+        tmrRenderer.setBackground(imaBackground);
+    }
+
+    /**
+     * preloadBackground
+     * 
+     * Starts loading a background image that will be shown soon. It 
+     * stays resident until releasePreloads() is called.
+     * 
+     * @param sName is an object of class <code>String</code>
+     */
+    void preloadBackground(String sName) {
+        if (hsPreloaded.add(sName)) {
+            irResidency.acquire(sName);
+        }
+    }
+
+    /**
+     * releasePreloads
+     * 
+     * Releases the background images preloaded. The ones being shown 
+     * stay resident.
+     */
+    void releasePreloads() {
+        Iterator iteI = hsPreloaded.iterator();
+        while (iteI.hasNext()) {
+            irResidency.release((String)iteI.next());
+        }
+        hsPreloaded.clear();
+    }
+
+    /**
+     * getResidentImageBytes
+     * 
+     * Gets an estimate of the memory used by every image in memory
+     * (the sprite atlas and the resident backgrounds), in bytes.
+     * 
+     * @return object of class <code>Long</code>
+     */
+    public long getResidentImageBytes() {
+        return irResidency.getResidentBytes();
+    }
+
+    /**
+     * playMusic
+     * 
+     * Plays a sequence in a loop, waiting for it to be loaded if
+     * needed. Nothing changes if it is already playing, so it can 
+     * be called every frame.
+     * 
+     * @param sMusic is an object of class <code>String</code>
+     */
+    void playMusic(String sMusic) {
+        mpMidiPlayer.play(sMusic, true);
+    }
+
     /**
      * initInput
      * 
@@ -252,6 +474,8 @@ public class GameManager extends GameCore {
             GameAction.iDETECT_INITAL_PRESS_ONLY);
         gaReturn = new GameAction("Return", 
             GameAction.iDETECT_INITAL_PRESS_ONLY);
+        gaMetrics = new GameAction("Metrics", 
+            GameAction.iDETECT_INITAL_PRESS_ONLY);
 
         imInputManager = new InputManager(
             smScreen.getFullScreenWindow());
@@ -271,237 +495,150 @@ public class GameManager extends GameCore {
         imInputManager.mapToKey(gaOptions, KeyEvent.VK_O);
         imInputManager.mapToKey(gaControls, KeyEvent.VK_C);
         imInputManager.mapToKey(gaReturn, KeyEvent.VK_BACK_SPACE);
+        imInputManager.mapToKey(gaMetrics, KeyEvent.VK_F3);
     }
 
     /**
-     * checkInput
+     * checkGameInput
      * 
-     * Checks for user input.
+     * Checks for user input during the game. The screens check 
+     * their own input.
      * 
      * @param elapsedTime is an object of class <code>Long</code>
      */
-    private void checkInput(long elapsedTime) {
+    private void checkGameInput(long elapsedTime) {
         Player plaPlayer = (Player)tmMap.getPlayer();
         
-        // Checks if exit has been pressed
-        if (gaExit.isPressed()) {
-            stop();
-        }
-       
-        // Checks if exit within pause menu is pressed
-        if(gaExitGame.isPressed() && bPause) {
-            smSoundManager.play(souMenuSelect);
-            stop();
-        }
-        
-        
-        if(iLife == 0 || bPauseBoss){
-             mpMidiPlayer.play(seqSequence3, true);
-            if (gaEnter.isPressed()) {
-                        bPauseBoss = false;
-                        smSoundManager.play(souMenuSelect);
-                        iLife = iInitialLife;
-                        mpMidiPlayer.play(seqSequence, true);
-                        tmrRenderer.setBackground(lklBackgrounds.get
-                                (rmResourceManager.getICurrentMap()));
-                        tmMap = rmResourceManager.loadNextMap();
-                    }
-        }
-        // Checks if wake up button within pause menu is pressed
-        if(gaWakeUp.isPressed() && bPause) {
-            smSoundManager.play(souMenuSelect);
-            mpMidiPlayer.play(seqSequence, true);
-            iLife = iInitialLife;
-            bPause = false;
-            rmResourceManager.iCurrentMap = 2;
-            tmrRenderer.setBackground(lklBackgrounds.get
-                     (rmResourceManager.getICurrentMap()));
-            tmMap = rmResourceManager.loadNextMap();
-        }
-        
-        if(gaResume.isPressed() && bPause){
-            bPause = false;
-        }
         // Checks for player input
         if (plaPlayer.isAlive()) {
             float velocityX = 0;
-            switch(rmResourceManager.getICurrentMap()-1) {
-                // Logo preview
-                case 0: {
-                    lTimer ++;
-                    if (lTimer == 500) {
-                        tmrRenderer.setBackground(lklBackgrounds.get
-                                (rmResourceManager.getICurrentMap()));
-                        tmMap = rmResourceManager.loadNextMap();
-                    }
-                    break;
-                }
-                // Main menu with game name
-                case 1: {
-                    if (gaEnter.isPressed()) {
-                        smSoundManager.play(souMenuSelect);
-                        tmrRenderer.setBackground(lklBackgrounds.get
-                                (rmResourceManager.getICurrentMap()));
-                        tmMap = rmResourceManager.loadNextMap();
-                       
-                    }
-                    break;
-                }
-                // Main menu
-                case 2: {
-                    if (gaPlay.isPressed() && iLife != 0) {
-                        smSoundManager.play(souMenuSelect);
-                       // mpMidiPlayer.close();
-                        mpMidiPlayer.play(seqSequence1, true);
-                        rmResourceManager.iCurrentMap = 5;
-                        tmrRenderer.setBackground(lklBackgrounds.get
-                                (rmResourceManager.getICurrentMap()));
-                        tmMap = rmResourceManager.loadNextMap();
-                    }
-                    if (gaOptions.isPressed()) {
-                        smSoundManager.play(souMenuSelect);
-                        tmrRenderer.setBackground(lklBackgrounds.get
-                                (rmResourceManager.getICurrentMap()));
-                        tmMap = rmResourceManager.loadNextMap();
-                    }
-                    break;
-                }
-                // Settings
-                case 3: {
-                    if (gaControls.isPressed()) {
-                        smSoundManager.play(souMenuSelect);
-                        tmrRenderer.setBackground(lklBackgrounds.get
-                                (rmResourceManager.getICurrentMap()));
-                        tmMap = rmResourceManager.loadNextMap();
-                    }
-                    if (gaReturn.isPressed()) {
-                        smSoundManager.play(souMenuSelect);
-                        rmResourceManager.iCurrentMap = 2;
-                        tmrRenderer.setBackground(lklBackgrounds.get
-                                (rmResourceManager.getICurrentMap()));
-                        tmMap = rmResourceManager.loadNextMap();
-                    }
-                    break;
-                }
-                // Controls
-                case 4: {
-                    if (gaReturn.isPressed()) {
-                        smSoundManager.play(souMenuSelect);
-                        rmResourceManager.iCurrentMap = 3;
-                        tmrRenderer.setBackground(lklBackgrounds.get
-                                (rmResourceManager.getICurrentMap()));
-                        tmMap = rmResourceManager.loadNextMap();
+            if (insInput.isPressed(gaMoveLeft)) {
+                velocityX-=plaPlayer.getMaxSpeed();
+                plaPlayer.setFacingRight(false);
+            }
+            
+            if (insInput.isPressed(gaMoveRight)) {
+                velocityX+=plaPlayer.getMaxSpeed();
+                plaPlayer.setFacingRight(true);
+            }
+            
+            if (insInput.isPressed(gaJump)) {
+                plaPlayer.jump(false);
+            } 
+            else { // the player released the jump key
+                plaPlayer.setJumpAccelHeightReached(true); // Prevent the player from jumping in mid-air
+            }
+            
+            if ( insInput.isPressed(gaAttack) ) {
+                if ( !bArrowAvailable ) {   // Check if the player can shoot again after waiting
+                    int iTimeToWait = 500;
+                    
+                    if ( plaPlayer.getShootTime().getTimeInMillis()
+                            + iTimeToWait
+                            < Calendar.getInstance().getTimeInMillis() ) {
+                        bArrowAvailable = true;
                     }
-                    break;
-                }
+                } 
                 
-                case 5: {
+                if ( bArrowAvailable ) {
+                    // Shoot Arrows
+                    sebSounds.post(souPlayerShoot, SoundEventBus.iPRIORITY_HIGH);
+
+                    bArrowAvailable = false;
+                    plaPlayer.updateShootTime();
                     
-                }
-                default: {
+                    float fSpawnXPos;
+                    float fSpawnXVel = 1.5f;
+                    float fSpawnYPos = plaPlayer.getY() 
+                            + TileMapRenderer.tilesToPixels(1);
+                    float fSpawnYVel = -.2f;
                     
-                    if (gaMoveLeft.isPressed()) {
-                        velocityX-=plaPlayer.getMaxSpeed();
-                        plaPlayer.setFacingRight(false);
-                    }
+                    Weapon weaArrowToShoot = new Weapon(
+                                rmResourceManager.aniDefaultAnim,
+                                rmResourceManager.aniDefaultAnim,
+                                rmResourceManager.aniDefaultAnim,
+                                rmResourceManager.aniDefaultAnim,
+                                rmResourceManager.aniDefaultAnim,
+                                rmResourceManager.aniDefaultAnim);
                     
-                    if (gaMoveRight.isPressed()) {
-                        velocityX+=plaPlayer.getMaxSpeed();
-                        plaPlayer.setFacingRight(true);
-                    }
+                    weaArrowToShoot.setY(fSpawnYPos);
+                    weaArrowToShoot.setVelocityY(fSpawnYVel);
                     
-                    if (gaJump.isPressed()) {
-                        plaPlayer.jump(false);
-                    } 
-                    else { // the player released the jump key
-                        plaPlayer.setJumpAccelHeightReached(true); // Prevent the player from jumping in mid-air
+                    if (plaPlayer.getFacingRight()) { // To the right
+                        fSpawnXPos = plaPlayer.getX() 
+                                + TileMapRenderer.tilesToPixels(1) + 15f;
+                        fSpawnXVel *= 1;
                     }
-                    
-                    if ( gaAttack.isPressed() ) {
-                        if ( !bArrowAvailable ) {   // Check if the player can shoot again after waiting
-                            int iTimeToWait = 500;
-                            
-                            if ( plaPlayer.getShootTime().getTimeInMillis()
-                                    + iTimeToWait
-                                    < Calendar.getInstance().getTimeInMillis() ) {
-                                bArrowAvailable = true;
-                            }
-                        } 
-                        
-                        if ( bArrowAvailable ) {
-                            // Shoot Arrows
-                            smSoundManager.play(souPlayerShoot);
-
-                            bArrowAvailable = false;
-                            plaPlayer.updateShootTime();
-                            
-                            float fSpawnXPos;
-                            float fSpawnXVel = 1.5f;
-                            float fSpawnYPos = plaPlayer.getY() 
-                                    + TileMapRenderer.tilesToPixels(1);
-                            float fSpawnYVel = -.2f;
-                            
-                            Weapon weaArrowToShoot = new Weapon(
-                                        rmResourceManager.aniDefaultAnim,
-                                        rmResourceManager.aniDefaultAnim,
-                                        rmResourceManager.aniDefaultAnim,
-                                        rmResourceManager.aniDefaultAnim,
-                                        rmResourceManager.aniDefaultAnim,
-                                        rmResourceManager.aniDefaultAnim);
-                            
-                            weaArrowToShoot.setY(fSpawnYPos);
-                            weaArrowToShoot.setVelocityY(fSpawnYVel);
-                            
-                            if (plaPlayer.getFacingRight()) { // To the right
-                                fSpawnXPos = plaPlayer.getX() 
-                                        + TileMapRenderer.tilesToPixels(1) + 15f;
-                                fSpawnXVel *= 1;
-                            }
-                            else {
-                                fSpawnXPos = plaPlayer.getX() 
-                                        - TileMapRenderer.tilesToPixels(1) - 15f;
-                                fSpawnXVel *= -1;
-                            }
-                            
-                            weaArrowToShoot.setX(fSpawnXPos);
-                            weaArrowToShoot.setVelocityX(fSpawnXVel);
-                            
-                            lklSpritesToAdd.add(weaArrowToShoot);
-                        } 
+                    else {
+                        fSpawnXPos = plaPlayer.getX() 
+                                - TileMapRenderer.tilesToPixels(1) - 15f;
+                        fSpawnXVel *= -1;
                     }
                     
-                    // Checks if pause button is pressed
-                    if (gaPause.isPressed()) {
-                        
-                        if(!bPause) {
-                            smSoundManager.play(souPause);
-                            bPause = true;
-                        }
-                        
-                        else {
-                            smSoundManager.play(souUnpause);
-                            bPause = false;
-                        }
-                    }
+                    weaArrowToShoot.setX(fSpawnXPos);
+                    weaArrowToShoot.setVelocityX(fSpawnXVel);
                     
-                    plaPlayer.setVelocityX(velocityX);
-                }
-                break;
+                    lklSpritesToAdd.add(weaArrowToShoot);
+                } 
             }
-        }
-            else {
-            // Checks if enter has been pressed within gameover menu
-            ///if( rmResourceManager.iCurrentMap == 9 ) {
-            if ( gaEnter.isPressed() ) {
-                bGameOverScreen = false;
-                rmResourceManager.iCurrentMap = 1;
-                tmrRenderer.setBackground(
-                        lklBackgrounds.get(rmResourceManager.getICurrentMap()));
-                tmMap = rmResourceManager.loadNextMap();
+            
+            // Checks if pause button is pressed
+            if (insInput.isPressed(gaPause)) {
+                sebSounds.post(souPause, SoundEventBus.iPRIORITY_HIGH);
+                stsStates.push(msPaused);
             }
+            
+            plaPlayer.setVelocityX(velocityX);
         }
     }
 
+    /**
+     * getDirtyArea
+     * 
+     * Gets the area of the screen that changed since the last frame. 
+     * Menus, the pause screen and the game over screen are static, so 
+     * only the sprites that changed (if any) are redrawn there. During 
+     * the game the whole screen is redrawn every frame.
+     * 
+     * @return object of class <code>Rectangle</code> or null
+     */
+    public Rectangle getDirtyArea() {
+        GameState gsState = stsStates.peek();
+        boolean bStatic = gsState != psPlaying;
+        tmrRenderer.setTrackDirty(bStatic);
+        if (!bStatic) {
+            bDrawnStatic = false;
+            return null;
+        }
+
+        Rectangle recDirty = tmrRenderer.getDirtyArea(tmMap,
+            smScreen.getWidth(), smScreen.getHeight());
+        int iHealth = (tmMap != null) ? 
+            ((Player)tmMap.getPlayer()).getHealth() : 0;
+        if (!bDrawnStatic || gsState != gsDrawnState) {
+            // the screen changed
+            recDirty = new Rectangle(0, 0, smScreen.getWidth(),
+                smScreen.getHeight());
+        }
+        else if (iScore != iDrawnScore || iLife != iDrawnLife ||
+            iHealth != iDrawnHealth)
+        {
+            // the life and score panel changed
+            Rectangle recPanel = hrHud.getStatusBounds();
+            recDirty = recDirty.isEmpty() ? recPanel : recDirty.union(recPanel);
+        }
+
+        if (!recDirty.isEmpty()) {
+            // it will be drawn now
+            bDrawnStatic = true;
+            gsDrawnState = gsState;
+            iDrawnScore = iScore;
+            iDrawnLife = iLife;
+            iDrawnHealth = iHealth;
+        }
+        return recDirty;
+    }
+
     /**
      * draw
      * 
@@ -510,86 +647,97 @@ public class GameManager extends GameCore {
      * @param gra2D_G is an object of class <code>Graphics2D</code>
      */
     public void draw(Graphics2D gra2D_G) {
-        tmrRenderer.draw(gra2D_G, tmMap,
+        // drawn on this thread, so the same snapshot is filled again
+        if (wsFrame == null) {
+            wsFrame = (WorldSnapshot)createSnapshot();
+        }
+        else {
+            fillSnapshot(wsFrame);
+        }
+        drawSnapshot(gra2D_G, wsFrame);
+    }
+
+    /**
+     * createSnapshot
+     * 
+     * Copies what is needed to draw the current frame: the map as 
+     * seen by the camera (during the game), the HUD values and the 
+     * message of the screen. Each call makes a new snapshot, for 
+     * the render thread.
+     * 
+     * @return object of class <code>WorldSnapshot</code>
+     */
+    public Object createSnapshot() {
+        WorldSnapshot wsSnapshot = new WorldSnapshot(null, camCamera, 
+            null, null, false, 0, 0, 0, WorldSnapshot.iNO_BOSS, false, 
+            null);
+        fillSnapshot(wsSnapshot);
+        return wsSnapshot;
+    }
+
+    /**
+     * fillSnapshot
+     * 
+     * Copies what is needed to draw the current frame into the 
+     * specified snapshot, which must not be being drawn.
+     * 
+     * @param wsSnapshot is an object of class <code>WorldSnapshot</code>
+     */
+    private void fillSnapshot(WorldSnapshot wsSnapshot) {
+        GameState gsState = stsStates.peek();
+        if (tmMap == null) {
+            wsSnapshot.set(null, camCamera, 
+                tmrRenderer.getBackground(), null, false, iScore, iLife, 0, 
+                WorldSnapshot.iNO_BOSS, false, gsState.getMessage());
+            return;
+        }
+        Boss bosBoss = tmMap.getBoss();
+        wsSnapshot.set(tmMap, camCamera, 
+            tmrRenderer.getBackground(), ptsParticles.createBatch(), true, 
+            iScore, iLife, ((Player)tmMap.getPlayer()).getHealth(), 
+            (bosBoss != null) ? bosBoss.getHealth() : WorldSnapshot.iNO_BOSS, 
+            gsState == msPaused, gsState.getMessage());
+    }
+
+    /**
+     * drawSnapshot
+     * 
+     * Invokes renderer in order to draw a snapshot of the game 
+     * content. Only the snapshot is read, so it can be called on 
+     * the render thread.
+     * 
+     * @param gra2D_G is an object of class <code>Graphics2D</code>
+     * @param objSnapshot is an object of class <code>WorldSnapshot</code>
+     */
+    public void drawSnapshot(Graphics2D gra2D_G, Object objSnapshot) {
+        WorldSnapshot wsSnapshot = (WorldSnapshot)objSnapshot;
+        tmrRenderer.draw(gra2D_G, wsSnapshot,
             smScreen.getWidth(), smScreen.getHeight());
         
          gra2D_G.setColor(Color.black);
         
-        if(bPause) {
-            gra2D_G.setColor(Color.decode("#A3A375"));
-            gra2D_G.fill3DRect((smScreen.getWidth()/2) - 180, 180, 350, 250, bPause);
-            gra2D_G.setColor(Color.black);
-            gra2D_G.drawString("Pause", (smScreen.getWidth()/2) - 50, 240);
-            gra2D_G.drawString("Resume Game - P", (smScreen.getWidth()/2) - 100, 300);
-            gra2D_G.drawString("Wake up - W", (smScreen.getWidth()/2) - 70, 340);
-            gra2D_G.drawString("Quit Game - Q", (smScreen.getWidth()/2) - 80, 380);
-            gra2D_G.draw3DRect((smScreen.getWidth()/2) - 180, 180, 350, 250, bPause);
-            
-            
-        }
-        //play
-        if(rmResourceManager.iCurrentMap == 3){
-           // Draw strings for menu
-           
-        }
-        //Desk
-        if(rmResourceManager.iCurrentMap == 4){
-           // Draw strings for menu
-        }
-        //Computer/controles
-        if(rmResourceManager.iCurrentMap == 5){
-           
+        if(wsSnapshot.isPaused()) {
+            hrHud.drawPause(gra2D_G, smScreen.getWidth());
         }
-        
-        if (bGameOverScreen) {
+        if (wsSnapshot.getMessage() != null) {
             gra2D_G.setColor(Color.white);
-            gra2D_G.drawString("Press Enter to try again",10 ,30 ); 
+            gra2D_G.drawString(wsSnapshot.getMessage(),10 ,30 ); 
         }
         
          //Update life and score
-        if(rmResourceManager.iCurrentMap > 5){
-            gra2D_G.draw3DRect(0, 0, 170, 80, true);
-            gra2D_G.setColor(Color.decode("#A3A375"));
-            gra2D_G.fill3DRect(0, 0, 170, 80, true);
-            gra2D_G.setColor(Color.black);
-            gra2D_G.drawString("Score: " + iScore, 10, 20);
-            gra2D_G.drawString("Life: " + iLife, 10, 45);
-            Player plaPlayer = (Player) tmMap.getPlayer();
-            gra2D_G.drawString("Health: " + plaPlayer.getHealth(), 10, 75);
+        if(wsSnapshot.isHudShown()){
+            hrHud.drawStatus(gra2D_G, wsSnapshot.getScore(), 
+                wsSnapshot.getLife(), wsSnapshot.getHealth());
             
             // Show how to pause:
-            if ( !bPause ) {
-                gra2D_G.drawString("Pause (P)", smScreen.getWidth() - 125, 
-                        smScreen.getHeight() - 15);
+            if ( !wsSnapshot.isPaused() ) {
+                hrHud.drawPauseHint(gra2D_G, smScreen.getWidth(), 
+                        smScreen.getHeight());
             }
 
-            Iterator ite = tmMap.getSprites();
-            
-            while ( ite.hasNext() ) {
-                Sprite sprAux = (Sprite) ite.next();
-                
-                if ( sprAux instanceof Boss ) {
-                    Boss bosAux = (Boss) sprAux;
-                    
-                    int iRectWidth = 170;
-                    int iRectHeight = 50;
-                    
-                    gra2D_G.draw3DRect(smScreen.getWidth() - iRectWidth, 
-                            0, iRectWidth, iRectHeight, true);
-                    gra2D_G.setColor(Color.decode("#A3A375"));
-                    gra2D_G.fill3DRect(smScreen.getWidth() - iRectWidth,
-                            0, iRectWidth, iRectHeight, true);
-                    gra2D_G.setColor(Color.black);
-                    
-                    if (bosAux.getHealth() > 0) {
-                        gra2D_G.drawString("BOSS HP: " + bosAux.getHealth(), 
-                                smScreen.getWidth() - iRectWidth + 10, 30);
-                    }
-                    else {
-                        gra2D_G.drawString("BOSS HP: 0", 
-                                smScreen.getWidth() - iRectWidth + 10, 30);
-                    }
-                }
+            if ( wsSnapshot.getBossHealth() != WorldSnapshot.iNO_BOSS ) {
+                hrHud.drawBoss(gra2D_G, smScreen.getWidth(), 
+                        wsSnapshot.getBossHealth());
             }
         }
     }
@@ -621,67 +769,173 @@ public class GameManager extends GameCore {
     /**
      * getTileCollision
      * 
-     * Gets the tile that a Sprites collides with. Only the 
-     * Sprite's X or Y should be changed, not both. Returns null 
-     * if no collision is detected.
+     * Gets the first tile that a Sprite collides with when moving 
+     * from its current position to (fNewX, fNewY). The horizontal 
+     * movement is swept first and then the vertical movement from 
+     * the new horizontal position. Returns null if no collision 
+     * is detected.
      * 
      * @param sprSprite is an object of class <code>Sprite</code>
      * @param fNewX is an object of class <code>Float</code>
      * @param fNewY is an object of class <code>Float</code>
-     * @return object of class <code>Point</code>
+     * @return object of class <code>TileCollision</code>
      */
-    public Point getTileCollision(Sprite sprSprite,
+    public TileCollision getTileCollision(Sprite sprSprite,
         float fNewX, float fNewY)
     {
-        float fFromX = Math.min(sprSprite.getX(), fNewX);
-        float fFromY = Math.min(sprSprite.getY(), fNewY);
-        float fToX = Math.max(sprSprite.getX(), fNewX);
-        float fToY = Math.max(sprSprite.getY(), fNewY);
-
-        // get the tile locations
-        int iFromTileX = TileMapRenderer.pixelsToTiles(fFromX);
-        int iFromTileY = TileMapRenderer.pixelsToTiles(fFromY);
-        int iToTileX = TileMapRenderer.pixelsToTiles(fToX + sprSprite.getWidth() - 1);
-        int iToTileY = TileMapRenderer.pixelsToTiles(fToY + sprSprite.getHeight() - 1);
-
-        // check each tile for a collision
-        for (int iX = iFromTileX; iX <= iToTileX; iX++) {
-            for (int iY = iFromTileY; iY <= iToTileY; iY++) {
-                if (iX < 0 || iX >= tmMap.getWidth() ||
-                        tmMap.getTile(iX, iY) != null) {
-
-                    // collision found, return the tile
-                    if ( iX < 0 || iX >= tmMap.getWidth() ) { // tile out of bounds
-                        pPointCache.setLocation(iX, iY);
-                        return pPointCache;
-                    }
-                    else {
-                        if (!tmMap.getPlatform( iX, iY )) {  // solid tile
-                            pPointCache.setLocation(iX, iY);
-                            return pPointCache;
-                        }
-                        else { // platform (check collision only with top border)
-                            if ( fNewY + sprSprite.getHeight() > 
-                                    TileMapRenderer.tilesToPixels(iY) 
-                                    &&
-                                    fNewY + sprSprite.getHeight() < 
-                                    TileMapRenderer.tilesToPixels(iY) + 5 
-                                    ) {
-                                if (sprSprite.getY() < fNewY) {
-                                    pPointCache.setLocation(iX, iY); // stop the character on the platform
-                                }
-                                else {
-                                    pPointCache.setLocation(iX,
-                                            TileMapRenderer.pixelsToTiles(fNewY) - 1); // Put the player on top of the platform
-                                }
-                                /*pPointCache.setLocation(iX, 
-                                        iY); // put the creature on top of the platform*/
-                                return pPointCache;
-                            }
-                        }
+        TileCollision tcCollision = sweepHorizontal(sprSprite,
+            sprSprite.getX(), sprSprite.getY(), fNewX);
+        if (tcCollision != null) {
+            return tcCollision;
+        }
+        return sweepVertical(sprSprite, fNewX, sprSprite.getY(), fNewY);
+    }
+    
+    /**
+     * sweepHorizontal
+     * 
+     * Sweeps a Sprite horizontally from fFromX to fToX. Every row 
+     * covered by the Sprite is scanned a word (64 tiles) at a time 
+     * in the collision mask, from the column of its leading edge in 
+     * order of movement, so the nearest tile is always found first. 
+     * Platforms, slopes and ladders don't block horizontal movement. 
+     * Returns null if no collision is detected.
+     * 
+     * @param sprSprite is an object of class <code>Sprite</code>
+     * @param fFromX is an object of class <code>Float</code>
+     * @param fY is an object of class <code>Float</code>
+     * @param fToX is an object of class <code>Float</code>
+     * @return object of class <code>TileCollision</code>
+     */
+    private TileCollision sweepHorizontal(Sprite sprSprite,
+        float fFromX, float fY, float fToX)
+    {
+        float fDx = fToX - fFromX;
+        if (fDx == 0) {
+            return null;
+        }
+        CollisionMask cmMask = tmMap.getCollisionMask();
+        int iWidth = sprSprite.getWidth();
+        int iFromTileY = TileMapRenderer.pixelsToTiles(fY);
+        int iToTileY = TileMapRenderer.pixelsToTiles(fY + sprSprite.getHeight() - 1);
+        int iFromTileX;
+        int iToTileX;
+        if (fDx > 0) {
+            iFromTileX = TileMapRenderer.pixelsToTiles(fFromX + iWidth - 1);
+            iToTileX = TileMapRenderer.pixelsToTiles(fToX + iWidth - 1);
+        }
+        else {
+            iFromTileX = TileMapRenderer.pixelsToTiles(fFromX);
+            iToTileX = TileMapRenderer.pixelsToTiles(fToX);
+        }
+
+        // find the nearest solid column over all the rows
+        int iHitX = CollisionMask.iNO_TILE;
+        int iHitY = 0;
+        for (int iY = iFromTileY; iY <= iToTileY; iY++) {
+            int iX = cmMask.findSolid(iY, iFromTileX, iToTileX);
+            if (iX != CollisionMask.iNO_TILE && 
+                    (iHitX == CollisionMask.iNO_TILE || 
+                    (fDx > 0 ? iX < iHitX : iX > iHitX))) {
+                iHitX = iX;
+                iHitY = iY;
+            }
+        }
+        if (iHitX == CollisionMask.iNO_TILE) {
+            // no collision found
+            return null;
+        }
+
+        float fSurface;
+        float fDistance;
+        if (fDx > 0) {
+            fSurface = TileMapRenderer.tilesToPixels(iHitX);
+            fDistance = fSurface - (fFromX + iWidth);
+        }
+        else {
+            fSurface = TileMapRenderer.tilesToPixels(iHitX + 1);
+            fDistance = fFromX - fSurface;
+        }
+        float fTime = Math.max(0, Math.min(1, fDistance / Math.abs(fDx)));
+        return new TileCollision(iHitX, iHitY, fTime, 
+            (fDx > 0) ? -1 : 1, 0, fSurface);
+    }
+    
+    /**
+     * sweepVertical
+     * 
+     * Sweeps a Sprite vertically from fFromY to fToY, visiting the 
+     * tile rows in front of its leading edge in order of movement. 
+     * One-way platforms only block a Sprite that is falling and was 
+     * above the platform before moving. Slopes only block a falling 
+     * Sprite, at the height of the slope under its center. Returns 
+     * null if no collision is detected.
+     * 
+     * @param sprSprite is an object of class <code>Sprite</code>
+     * @param fX is an object of class <code>Float</code>
+     * @param fFromY is an object of class <code>Float</code>
+     * @param fToY is an object of class <code>Float</code>
+     * @return object of class <code>TileCollision</code>
+     */
+    private TileCollision sweepVertical(Sprite sprSprite,
+        float fX, float fFromY, float fToY)
+    {
+        float fDy = fToY - fFromY;
+        if (fDy == 0) {
+            return null;
+        }
+        CollisionMask cmMask = tmMap.getCollisionMask();
+        int iHeight = sprSprite.getHeight();
+        int iFromTileX = TileMapRenderer.pixelsToTiles(fX);
+        int iToTileX = TileMapRenderer.pixelsToTiles(fX + sprSprite.getWidth() - 1);
+        int iCenterX = Math.round(fX) + sprSprite.getWidth() / 2;
+        int iCenterTileX = TileMapRenderer.pixelsToTiles(iCenterX);
+        int iStep = (fDy > 0) ? 1 : -1;
+        int iFromTileY;
+        int iToTileY;
+        if (fDy > 0) {
+            iFromTileY = TileMapRenderer.pixelsToTiles(fFromY + iHeight - 1);
+            iToTileY = TileMapRenderer.pixelsToTiles(fToY + iHeight - 1);
+        }
+        else {
+            iFromTileY = TileMapRenderer.pixelsToTiles(fFromY);
+            iToTileY = TileMapRenderer.pixelsToTiles(fToY);
+        }
+
+        // visit every row crossed by the leading edge
+        for (int iY = iFromTileY; iY != iToTileY + iStep; iY += iStep) {
+            int iHitX = cmMask.findSolid(iY, iFromTileX, iToTileX);
+            float fSurface;
+            if (fDy > 0) {
+                fSurface = TileMapRenderer.tilesToPixels(iY);
+                if (iHitX == CollisionMask.iNO_TILE && 
+                        fFromY + iHeight <= fSurface) {
+                    // platform (check collision only with top border)
+                    iHitX = cmMask.findOneWay(iY, iFromTileX, iToTileX);
+                }
+                if (iHitX == CollisionMask.iNO_TILE && 
+                        cmMask.isSlope(iCenterTileX, iY)) {
+                    // slope (check collision with the floor under the center)
+                    fSurface = TileMapRenderer.tilesToPixels(iY + 1) 
+                        - cmMask.getSlopeHeight(iCenterTileX, iY, 
+                        iCenterX - TileMapRenderer.tilesToPixels(iCenterTileX));
+                    if (fToY + iHeight > fSurface && fFromY + iHeight 
+                            <= fSurface + TileMapRenderer.tilesToPixels(1) / 2) {
+                        iHitX = iCenterTileX;
                     }
                 }
             }
+            else {
+                fSurface = TileMapRenderer.tilesToPixels(iY + 1);
+            }
+            if (iHitX != CollisionMask.iNO_TILE) {
+                float fDistance = (fDy > 0) ? 
+                    fSurface - (fFromY + iHeight) : fFromY - fSurface;
+                float fTime = Math.max(0, 
+                    Math.min(1, fDistance / Math.abs(fDy)));
+                return new TileCollision(iHitX, iY, fTime, 
+                    0, -iStep, fSurface);
+            }
         }
 
         // no collision found
@@ -754,100 +1008,414 @@ public class GameManager extends GameCore {
     /**
      * update
      * 
+     * Reads the input of this tick and updates the screen on top 
+     * (the game, a menu...). F3 prints the metrics recorded so far.
+     * 
+     * @param lElapsedTime is an object of class <code>Long</code>
+     */
+    public void update(long lElapsedTime) {
+        // get keyboard/mouse input, once per tick
+        insInput = imInputManager.poll();
+        if (insInput.isPressed(gaExit)) {
+            stop();
+            return;
+        }
+        if (insInput.isPressed(gaMetrics)) {
+            System.out.print(mtrMetrics);
+        }
+
+        // update the screen on top
+        stsStates.update(insInput, lElapsedTime);
+
+        // play the sounds of this tick
+        sebSounds.flush(lElapsedTime);
+    }
+
+    /**
+     * startGame
+     * 
+     * Starts a new game on the first level, preloaded if possible.
+     */
+    void startGame() {
+        iLife = iInitialLife;
+        bArrowAvailable = true;
+        lklSpritesToAdd.clear();
+        ptsParticles.clear();
+        int iFirstLevel = rmResourceManager.getDefinitions().getFirstLevel();
+        rmResourceManager.iCurrentMap = iFirstLevel;
+        showLevel();
+        if (futLevel != null) {
+            tmMap = AssetLoader.getResult(futLevel);
+            futLevel = null;
+        }
+        if (tmMap == null) {
+            tmMap = rmResourceManager.loadLevel(iFirstLevel);
+        }
+        updateCamera(0);
+    }
+
+    /**
+     * showLevel
+     * 
+     * Shows the background and plays the music of the current level.
+     */
+    private void showLevel() {
+        LevelDefinition ldLevel = rmResourceManager.getDefinitions().getLevel(
+            rmResourceManager.getICurrentMap());
+        if (ldLevel != null) {
+            showBackground(ldLevel.getBackground());
+            playMusic(ldLevel.getMusic());
+        }
+    }
+
+    /**
+     * endGame
+     * 
+     * Releases the level when the game ends.
+     */
+    void endGame() {
+        tmMap = null;
+        lklSpritesToAdd.clear();
+        ptsParticles.clear();
+    }
+
+    /**
+     * preloadGame
+     * 
+     * Starts loading the first level and its background, so a new 
+     * game starts without waiting.
+     */
+    void preloadGame() {
+        final Definitions defDefinitions = rmResourceManager.getDefinitions();
+        LevelDefinition ldLevel = defDefinitions.getLevel(
+            defDefinitions.getFirstLevel());
+        if (ldLevel != null) {
+            preloadBackground(ldLevel.getBackground());
+        }
+        if (futLevel == null) {
+            futLevel = alLoader.submit(new Callable<TileMap>() {
+                public TileMap call() {
+                    return rmResourceManager.loadLevel(
+                        defDefinitions.getFirstLevel());
+                }
+            });
+        }
+    }
+
+    /**
+     * updateGame
+     * 
      * Updates Animation, position, and velocity of all Sprites 
      * in the current map. Add sprites to be spawned.
      * 
      * @param lElapsedTime is an object of class <code>Long</code>
      */
-    public void update(long lElapsedTime) {
+    void updateGame(long lElapsedTime) {
         Creature CrePlayer = (Creature)tmMap.getPlayer();
 
         // player is dead! start map over
         if (CrePlayer.getState() == Creature.iSTATE_DEAD && iLife != 0) {
              tmMap = rmResourceManager.reloadMap();
+             ptsParticles.clear();
+             updateCamera(0);
              return;   
         }
         
         if(iLife == 0){     // Send to game over screen
-            rmResourceManager.iCurrentMap = 9;
-            bGameOverScreen = true;
-            tmrRenderer.setBackground(lklBackgrounds.get
-                     (rmResourceManager.getICurrentMap()));
-            tmMap = rmResourceManager.loadNextMap();
-        } else {
-            bGameOverScreen = false;
+            stsStates.set(msGameOver);
+            return;
         }
         
-        
         // get keyboard/mouse input
-        checkInput(lElapsedTime);
-        
-        if(!bPause){
+        checkGameInput(lElapsedTime);
+        if (stsStates.hasChanges()) {
+            // paused
+            return;
+        }
+
         // update player
         updateCreature(CrePlayer, lElapsedTime);
         CrePlayer.update(lElapsedTime);
 
-            // update other sprites
-            Iterator iteI = tmMap.getSprites();
-            while (iteI.hasNext()) {
-                Sprite sprite = (Sprite)iteI.next();
-                if (sprite instanceof Creature) {
-                    Creature creature = (Creature)sprite;
-
-                    //Show dying animation if creature has run out of health
-                    if (creature.getHealth() == 0) {
-                        if ( !(creature instanceof Weapon) ) {
-                           smSoundManager.play(souEnemyDeath);  // Don't play dying sound for weapons that fall
-                        }
-                        creature.setState(Creature.iSTATE_DYING);
-                        iScore += 10;
-                        creature.setHealth(-1);
-                    }
+        // follow the player, once per tick
+        updateCamera(lElapsedTime);
 
-                    if (creature.getState() == Creature.iSTATE_DEAD) {
-                        iteI.remove();
+        // update other sprites
+        Iterator iteI = tmMap.getSprites();
+        while (iteI.hasNext()) {
+            Sprite sprite = (Sprite)iteI.next();
+            if (sprite instanceof Creature) {
+                Creature creature = (Creature)sprite;
+
+                //Show dying animation if creature has run out of health
+                if (creature.getHealth() == 0) {
+                    if ( !(creature instanceof Weapon) ) {
+                       sebSounds.post(souEnemyDeath, creature, SoundEventBus.iPRIORITY_LOW);  // Don't play dying sound for weapons that fall
+                       pemDeath.emit(ptsParticles, creature);
                     }
-                    else {
-                        updateCreature(creature, lElapsedTime);
+                    creature.setState(Creature.iSTATE_DYING);
+                    iScore += 10;
+                    creature.setHealth(-1);
+                }
+
+                if (creature.getState() == Creature.iSTATE_DEAD) {
+                    iteI.remove();
+                }
+                else {
+                    // wake up the creature when it's on screen
+                    if (camCamera.isVisibleX(creature.getX())) {
+                        creature.wakeUp();
                     }
+                    updateCreature(creature, lElapsedTime);
                 }
-                // normal update
-                sprite.update(lElapsedTime);
             }
+            // normal update
+            sprite.update(lElapsedTime);
+        }
+
+        // move the particles and the animated tiles
+        ptsParticles.update(lElapsedTime);
+        tmMap.updateClock(lElapsedTime);
+    
+        // Spawn sprites
+        Iterator iteSpritesToAdd = lklSpritesToAdd.iterator();
         
-            // Spawn sprites
-            Iterator iteSpritesToAdd = lklSpritesToAdd.iterator();
+        while ( iteSpritesToAdd.hasNext() ) {
+            Sprite sprSpawn = (Sprite) iteSpritesToAdd.next();
+
+            if ( sprSpawn instanceof Weapon ) {
+                
+                Weapon weaAux = (Weapon) sprSpawn;
+                
+                if ( weaAux.isDownwardArrow() ) {
+                    rmResourceManager.spawnArrow2(
+                        sprSpawn.getX(), sprSpawn.getY(),
+                        sprSpawn.getVelocityX(), sprSpawn.getVelocityY(),
+                        tmMap);
+                } 
+                else {
+                    rmResourceManager.spawnArrow(
+                        sprSpawn.getX(), sprSpawn.getY(),
+                        sprSpawn.getVelocityX(), sprSpawn.getVelocityY(),
+                        tmMap);
+                }
+            }
             
-            while ( iteSpritesToAdd.hasNext() ) {
-                Sprite sprSpawn = (Sprite) iteSpritesToAdd.next();
+            if (sprSpawn instanceof Fly ) {
+                rmResourceManager.spawnBat(
+                        sprSpawn.getX(), sprSpawn.getY(),
+                        sprSpawn.getVelocityX(), sprSpawn.getVelocityY(),
+                        tmMap);
+            }
+        }
+        
+        lklSpritesToAdd.clear();
+    }
+    
+    /**
+     * updateCamera
+     * 
+     * Moves the camera towards the player of the current map.
+     * 
+     * @param lElapsedTime is an object of class <code>Long</code>
+     */
+    private void updateCamera(long lElapsedTime) {
+        camCamera.update(tmMap, smScreen.getWidth(), smScreen.getHeight(),
+            lElapsedTime);
+    }
+    
+    /**
+     * checkAttack
+     * 
+     * Makes a creature attack as its archetype says: the attack for 
+     * its health sets its speed and how often it attacks, and each 
+     * time one of the patterns of the attack is chosen at random.
+     * 
+     * @param creCreature is an object of class <code>Creature</code>
+     */
+    private void checkAttack(Creature creCreature) {
+        Archetype arcArchetype = rmResourceManager.getDefinitions()
+            .getArchetype(creCreature.getArchetype());
+        if (arcArchetype == null || !creCreature.isAlive()) {
+            return;
+        }
+        Attack attAttack = arcArchetype.getAttack(creCreature.getHealth());
+        if (attAttack == null) {
+            return;
+        }
 
-                if ( sprSpawn instanceof Weapon ) {
-                    
-                    Weapon weaAux = (Weapon) sprSpawn;
-                    
-                    if ( weaAux.isDownwardArrow() ) {
-                        rmResourceManager.spawnArrow2(
-                            sprSpawn.getX(), sprSpawn.getY(),
-                            sprSpawn.getVelocityX(), sprSpawn.getVelocityY(),
-                            tmMap);
-                    } 
-                    else {
-                        rmResourceManager.spawnArrow(
-                            sprSpawn.getX(), sprSpawn.getY(),
-                            sprSpawn.getVelocityX(), sprSpawn.getVelocityY(),
-                            tmMap);
-                    }
+        // only creatures in view (or moving, for the boss) attack
+        if (attAttack.getWhen() == Attack.iWHEN_VISIBLE ?
+            !camCamera.isVisibleX(creCreature.getX()) :
+            creCreature.getVelocityX() == 0)
+        {
+            return;
+        }
+
+        // move at the speed of this attack
+        if (attAttack.getSpeed() > 0) {
+            if ( creCreature.getVelocityX() > 0 ) {
+                creCreature.setVelocityX(attAttack.getSpeed());
+            } else {
+                creCreature.setVelocityX(-attAttack.getSpeed());
+            }
+        }
+
+        if ( creCreature.getShootTime().getTimeInMillis()
+                + attAttack.getCooldown()
+                < Calendar.getInstance().getTimeInMillis() ) {
+            
+            sebSounds.post(souPlayerShoot, creCreature, SoundEventBus.iPRIORITY_LOW);
+            creCreature.updateShootTime();
+            
+            int iPattern = attAttack.getPattern(
+                (int) (Math.random() * attAttack.getNumPatterns()));
+            switch (iPattern) {
+                case Attack.iPATTERN_ARROW: {
+                    shootArrow(creCreature);
+                    break;
                 }
-                
-                if (sprSpawn instanceof Fly ) {
-                    rmResourceManager.spawnBat(
-                            sprSpawn.getX(), sprSpawn.getY(),
-                            sprSpawn.getVelocityX(), sprSpawn.getVelocityY(),
-                            tmMap);
+                case Attack.iPATTERN_BATSWARM: {
+                    pemBossAttack.emit(ptsParticles, creCreature);
+                    releaseBats(creCreature);
+                    break;
+                }
+                default: {
+                    pemBossAttack.emit(ptsParticles, creCreature);
+                    rainArrows(creCreature);
+                    break;
                 }
             }
+        }
+    }
+    
+    /**
+     * shootArrow
+     * 
+     * Shoots an arrow ahead of a creature.
+     * 
+     * @param creCreature is an object of class <code>Creature</code>
+     */
+    private void shootArrow(Creature creCreature) {
+        float fSpawnXPos;
+        float fSpawnXVel = 1.5f;
+        float fSpawnYPos = creCreature.getY() 
+                + TileMapRenderer.tilesToPixels(1);
+        float fSpawnYVel = -.2f;
+        
+        Weapon weaArrowToShoot = new Weapon(
+                    rmResourceManager.aniDefaultAnim,
+                    rmResourceManager.aniDefaultAnim,
+                    rmResourceManager.aniDefaultAnim,
+                    rmResourceManager.aniDefaultAnim,
+                    rmResourceManager.aniDefaultAnim,
+                    rmResourceManager.aniDefaultAnim);
+        
+        weaArrowToShoot.setY(fSpawnYPos);
+        weaArrowToShoot.setVelocityY(fSpawnYVel);
+        
+        if (creCreature.getFacingRight()) { // To the right
+            fSpawnXPos = creCreature.getX() 
+                    + TileMapRenderer.tilesToPixels(1) + 15f;
+            fSpawnXVel *= 1;
+        }
+        else {
+            fSpawnXPos = creCreature.getX() 
+                    - TileMapRenderer.tilesToPixels(1) - 15f;
+            fSpawnXVel *= -1;
+        }
+        
+        weaArrowToShoot.setX(fSpawnXPos);
+        weaArrowToShoot.setVelocityX(fSpawnXVel);
+        
+        lklSpritesToAdd.add(weaArrowToShoot);
+    }
+    
+    /**
+     * releaseBats
+     * 
+     * Releases a swarm of bats around a creature, flying the way it 
+     * faces.
+     * 
+     * @param creCreature is an object of class <code>Creature</code>
+     */
+    private void releaseBats(Creature creCreature) {
+        for (int i = 0; i < 5; i ++) {
             
-            lklSpritesToAdd.clear();
+            // Genero un número al azar de -50 a la altura del jefe
+            int iAzarY = (int) (Math.random() * creCreature.getHeight()) - 50;
+            // Genero un número al azar de -50 a la anchura del jefe
+            int iAzarX = (int) (Math.random() * creCreature.getWidth()) - 50;
+
+            float fSpawnXPos;
+            float fSpawnXVel = .5f;
+            float fSpawnYPos = creCreature.getY() 
+                    + iAzarY;
+            float fSpawnYVel = 0f;
+
+            Fly flBat = new Fly(
+                        rmResourceManager.aniDefaultAnim,
+                        rmResourceManager.aniDefaultAnim,
+                        rmResourceManager.aniDefaultAnim,
+                        rmResourceManager.aniDefaultAnim,
+                        rmResourceManager.aniDefaultAnim,
+                        rmResourceManager.aniDefaultAnim);
+
+            flBat.setY(fSpawnYPos);
+            flBat.setVelocityY(fSpawnYVel);
+
+            if (creCreature.getFacingRight()) { // To the right
+                fSpawnXPos = creCreature.getX() 
+                        + iAzarX;
+                fSpawnXVel *= 1;
+            }
+            else {
+                fSpawnXPos = creCreature.getX() // To the left
+                        - iAzarX;
+                fSpawnXVel *= -1;
+            }
+
+            flBat.setX(fSpawnXPos);
+            flBat.setVelocityX(fSpawnXVel);
+
+            lklSpritesToAdd.add(flBat);
+        }
+    }
+    
+    /**
+     * rainArrows
+     * 
+     * Makes arrows fall from the top of the map, across all of it.
+     * 
+     * @param creCreature is an object of class <code>Creature</code>
+     */
+    private void rainArrows(Creature creCreature) {
+        for (int i = 0; i < 43; i ++) {
+
+            int iAzarX = 50 * i;
+
+            float fSpawnXPos = iAzarX;
+            float fSpawnXVel = 0.01f;
+            float fSpawnYPos = 0;
+            float fSpawnYVel = -.2f;
+
+            Weapon weaArrowToShoot = new Weapon(
+                        rmResourceManager.aniDefaultAnim,
+                        rmResourceManager.aniDefaultAnim,
+                        rmResourceManager.aniDefaultAnim,
+                        rmResourceManager.aniDefaultAnim,
+                        rmResourceManager.aniDefaultAnim,
+                        rmResourceManager.aniDefaultAnim);
+            
+            weaArrowToShoot.setDownwardArrow(true);
+
+            weaArrowToShoot.setY(fSpawnYPos);
+            weaArrowToShoot.setVelocityY(fSpawnYVel);
+
+            weaArrowToShoot.setX(fSpawnXPos);
+            weaArrowToShoot.setVelocityX(fSpawnXVel);
+
+            lklSpritesToAdd.add(weaArrowToShoot);
         }
     }
     
@@ -870,12 +1438,8 @@ public class GameManager extends GameCore {
                 fGRAVITY * lElapsedTime);
         }
 
-        if(creCreature instanceof Boss && !creCreature.isAlive()){     // Send to game over screen
-            bPauseBoss = true;
-            rmResourceManager.iCurrentMap = 10;
-            tmrRenderer.setBackground(lklBackgrounds.get
-                     (rmResourceManager.getICurrentMap()));
-            tmMap = rmResourceManager.loadNextMap();
+        if(creCreature instanceof Boss && !creCreature.isAlive()){     // Send to the credits
+            stsStates.set(msCredits);
         }
         
         // change x
@@ -890,19 +1454,19 @@ public class GameManager extends GameCore {
                 creCreature.setFacingRight(false);  
             }
         }
-        Point pTile =
-            getTileCollision(creCreature, fNewX, creCreature.getY());
-        if (pTile == null) {
+        TileCollision tcTile = sweepHorizontal(creCreature, 
+            fOldX, creCreature.getY(), fNewX);
+        if (tcTile == null) {
             creCreature.setX(fNewX);
         }
         else {
             // line up with the tile boundary
             if (fDx > 0) {
-                creCreature.setX(TileMapRenderer.tilesToPixels(pTile.x) -
+                creCreature.setX(tcTile.getSurface() -
                     creCreature.getWidth());
             }
             else if (fDx < 0) {
-                creCreature.setX(TileMapRenderer.tilesToPixels(pTile.x + 1));
+                creCreature.setX(tcTile.getSurface());
             }
             creCreature.collideHorizontal();
         }
@@ -914,19 +1478,19 @@ public class GameManager extends GameCore {
         float fDy = creCreature.getVelocityY();
         float fOldY = creCreature.getY();
         float fNewY = fOldY + fDy * lElapsedTime;
-        pTile = getTileCollision(creCreature, creCreature.getX(), fNewY);
-        if (pTile == null) {
+        tcTile = sweepVertical(creCreature, creCreature.getX(), fOldY, fNewY);
+        if (tcTile == null) {
             creCreature.setY(fNewY);
         }
         else {
             // line up with the tile boundary and detect collision with roof
             
             if (fDy > 0) {
-                creCreature.setY(TileMapRenderer.tilesToPixels(pTile.y) -
+                creCreature.setY(tcTile.getSurface() -
                     creCreature.getHeight());
             }
             else if (fDy < 0) {
-                creCreature.setY( TileMapRenderer.tilesToPixels(pTile.y + 1)
+                creCreature.setY( tcTile.getSurface()
                     + ( TileMapRenderer.tilesToPixels(2) - creCreature.getHeight() ) );
             }
             
@@ -935,203 +1499,7 @@ public class GameManager extends GameCore {
         
         // Check for attacks (NPC)
         if (!( creCreature instanceof Player )) {
-            int iScreenWidth = smScreen.getWidth();
-            int iScreenHeight = smScreen.getHeight();
-
-            // Gets player's sprite
-            Sprite sprPlayer = tmMap.getPlayer();
-            int iMapWidth = tilesToPixels(tmMap.getWidth());
-            int iMapHeight = tilesToPixels(tmMap.getHeight());
-
-            // get the scrolling position of the map
-            // based on player's position
-            int iOffsetX = iScreenWidth / 2 -
-                Math.round(sprPlayer.getX()) - TileMapRenderer.tilesToPixels(1);
-            iOffsetX = Math.min(iOffsetX, 0);
-            iOffsetX = Math.max(iOffsetX, iScreenWidth - iMapWidth);
-            
-            int iOffsetY = iScreenHeight / 2 -
-            Math.round(sprPlayer.getY()) - TileMapRenderer.tilesToPixels(1);
-            iOffsetY = Math.min(iOffsetY, 0);
-            iOffsetY = Math.max(iOffsetY, iScreenHeight - iMapHeight);
-            
-            int iX = Math.round(creCreature.getX()) + iOffsetX;
-            int iY = Math.round(creCreature.getY()) + iOffsetY;
-            
-            // Boss attacks
-            if (creCreature instanceof Boss && creCreature.getVelocityX() != 0
-                    && creCreature.isAlive()) {
-                
-                int iTimeBetweenAttacks; // Time the boss waits before launching an attack
-                int iBossHP = creCreature.getHealth();
-                
-                if ( iBossHP > 30 * 0.6 ) {
-                    iTimeBetweenAttacks = 5000;
-                    
-                } else if ( iBossHP > 30 * 0.3 ) {
-                    iTimeBetweenAttacks = 3500;
-                    
-                    if ( creCreature.getVelocityX() > 0 ) {
-                        creCreature.setVelocityX(0.5f);
-                    } else {
-                        creCreature.setVelocityX(-0.5f);                    
-                    }
-                } else {
-                    iTimeBetweenAttacks = 2500;
-                    
-                    if ( creCreature.getVelocityX() > 0 ) {
-                        creCreature.setVelocityX(0.65f);
-                    } else {
-                        creCreature.setVelocityX(-0.65f);                    
-                    }
-                }
-                if ( creCreature.getShootTime().getTimeInMillis()
-                        + iTimeBetweenAttacks
-                        < Calendar.getInstance().getTimeInMillis()
-                        && creCreature.isAlive() ) {
-                    
-                    creCreature.updateShootTime();
-                    
-                    int iAttackType = (int) (Math.random() * 2) + 0;
-                    
-                    switch (iAttackType) {
-                        
-                        // Batswarm
-                        case 0: {  
-                            smSoundManager.play(souPlayerShoot);
-                            for (int i = 0; i < 5; i ++) {
-                                
-                                // Genero un número al azar de -50 a la altura del jefe
-                                int iAzarY = (int) (Math.random() * creCreature.getHeight()) - 50;
-                                // Genero un número al azar de -50 a la anchura del jefe
-                                int iAzarX = (int) (Math.random() * creCreature.getWidth()) - 50;
-
-                                float fSpawnXPos;
-                                float fSpawnXVel = .5f;
-                                float fSpawnYPos = creCreature.getY() 
-                                        + iAzarY;
-                                float fSpawnYVel = 0f;
-
-                                Fly flBat = new Fly(
-                                            rmResourceManager.aniDefaultAnim,
-                                            rmResourceManager.aniDefaultAnim,
-                                            rmResourceManager.aniDefaultAnim,
-                                            rmResourceManager.aniDefaultAnim,
-                                            rmResourceManager.aniDefaultAnim,
-                                            rmResourceManager.aniDefaultAnim);
-
-                                flBat.setY(fSpawnYPos);
-                                flBat.setVelocityY(fSpawnYVel);
-
-                                if (creCreature.getFacingRight()) { // To the right
-                                    fSpawnXPos = creCreature.getX() 
-                                            + iAzarX;
-                                    fSpawnXVel *= 1;
-                                }
-                                else {
-                                    fSpawnXPos = creCreature.getX() // To the left
-                                            - iAzarX;
-                                    fSpawnXVel *= -1;
-                                }
-
-                                flBat.setX(fSpawnXPos);
-                                flBat.setVelocityX(fSpawnXVel);
-
-                                lklSpritesToAdd.add(flBat);
-                            }
-                            break;
-                        }
-                        
-                        // Arrow rain
-                        case 1: {
-                            smSoundManager.play(souPlayerShoot);
-                            for (int i = 0; i < 43; i ++) {
-                                
-                                int iAzarY = (int) (Math.random() * creCreature.getHeight()) 
-                                        - 50;
-
-                                int iAzarX = 50 * i;
-
-                                float fSpawnXPos = iAzarX;
-                                float fSpawnXVel = 0.01f;
-                                float fSpawnYPos = 0;
-                                float fSpawnYVel = -.2f;
-
-                                Weapon weaArrowToShoot = new Weapon(
-                                            rmResourceManager.aniDefaultAnim,
-                                            rmResourceManager.aniDefaultAnim,
-                                            rmResourceManager.aniDefaultAnim,
-                                            rmResourceManager.aniDefaultAnim,
-                                            rmResourceManager.aniDefaultAnim,
-                                            rmResourceManager.aniDefaultAnim);
-                                
-                                weaArrowToShoot.setDownwardArrow(true);
-
-                                weaArrowToShoot.setY(fSpawnYPos);
-                                weaArrowToShoot.setVelocityY(fSpawnYVel);
-
-                                weaArrowToShoot.setX(fSpawnXPos);
-                                weaArrowToShoot.setVelocityX(fSpawnXVel);
-
-                                lklSpritesToAdd.add(weaArrowToShoot);
-                            }
-                            break;
-                        }
-                        default: {
-                            break;
-                        }
-                    }
-                }
-            }
-            
-            // Archers shooting arrows
-            if (creCreature instanceof Archer && 
-                    iX >= 0 && iX < iScreenWidth) {
-                
-                int iTimeBetweenShots = 2500;
-                    
-                if ( creCreature.getShootTime().getTimeInMillis()
-                        + iTimeBetweenShots
-                        < Calendar.getInstance().getTimeInMillis() 
-                        && creCreature.isAlive() ) {
-                    
-                    smSoundManager.play(souPlayerShoot);
-                    creCreature.updateShootTime();
-                    
-                    float fSpawnXPos;
-                            float fSpawnXVel = 1.5f;
-                            float fSpawnYPos = creCreature.getY() 
-                                    + TileMapRenderer.tilesToPixels(1);
-                            float fSpawnYVel = -.2f;
-                            
-                            Weapon weaArrowToShoot = new Weapon(
-                                        rmResourceManager.aniDefaultAnim,
-                                        rmResourceManager.aniDefaultAnim,
-                                        rmResourceManager.aniDefaultAnim,
-                                        rmResourceManager.aniDefaultAnim,
-                                        rmResourceManager.aniDefaultAnim,
-                                        rmResourceManager.aniDefaultAnim);
-                            
-                            weaArrowToShoot.setY(fSpawnYPos);
-                            weaArrowToShoot.setVelocityY(fSpawnYVel);
-                            
-                            if (creCreature.getFacingRight()) { // To the right
-                                fSpawnXPos = creCreature.getX() 
-                                        + TileMapRenderer.tilesToPixels(1) + 15f;
-                                fSpawnXVel *= 1;
-                            }
-                            else {
-                                fSpawnXPos = creCreature.getX() 
-                                        - TileMapRenderer.tilesToPixels(1) - 15f;
-                                fSpawnXVel *= -1;
-                            }
-                            
-                            weaArrowToShoot.setX(fSpawnXPos);
-                            weaArrowToShoot.setVelocityX(fSpawnXVel);
-                            
-                            lklSpritesToAdd.add(weaArrowToShoot);
-                }
-            }
+            checkAttack(creCreature);
         }
         
         //Check for collisions
@@ -1144,7 +1512,8 @@ public class GameManager extends GameCore {
             if ( sprCollision != null && !(weaAux.isDownwardArrow()) ) {
                 
                 if (sprCollision instanceof Creature ) {
-                    smSoundManager.play(souArrowHit);
+                    sebSounds.post(souArrowHit, sprCollision, SoundEventBus.iPRIORITY_NORMAL);
+                    pemArrowHit.emit(ptsParticles, creCreature);
 
                     weaAux.setSticky(sprCollision);
 
@@ -1157,7 +1526,7 @@ public class GameManager extends GameCore {
                     if ( !(sprCollision instanceof PowerUp) ) {
                         tmMap.removeSprite(sprCollision);
                     }
-                    smSoundManager.play(souBossImmune);
+                    sebSounds.post(souBossImmune, creCreature, SoundEventBus.iPRIORITY_NORMAL);
                     creCreature.setVelocityX(0f);
                 }
             }
@@ -1194,11 +1563,12 @@ public class GameManager extends GameCore {
             }
         }
         
-            // Map 9
-        if ( rmResourceManager.iCurrentMap == 9 ) {
+            // Boss arena, set by the map
+        if ( tmMap.isArena() ) {
             // Invisible wall for boss
             if ( creCreature instanceof Boss ) {
-                if ( creCreature.getX() < 80 || creCreature.getX() > 2000 ) {
+                if ( creCreature.getX() < tmMap.getArenaLeft() 
+                        || creCreature.getX() > tmMap.getArenaRight() ) {
                     creCreature.setVelocityX( creCreature.getVelocityX() * -1 );
                 }
             }
@@ -1214,11 +1584,40 @@ public class GameManager extends GameCore {
         }
     }
     
+    /**
+     * getAnimatedTileCollision
+     * 
+     * Gets an animated tile of the map that does something to the 
+     * specified Sprite and is under it, or null if there is none.
+     * 
+     * @param sprSprite is an object of class <code>Sprite</code>
+     * @return object of class <code>AnimatedTile</code>
+     */
+    public AnimatedTile getAnimatedTileCollision(Sprite sprSprite) {
+        int iX = Math.round(sprSprite.getX());
+        int iY = Math.round(sprSprite.getY());
+        int iFromTileX = TileMapRenderer.pixelsToTiles(iX);
+        int iToTileX = TileMapRenderer.pixelsToTiles(iX + sprSprite.getWidth() - 1);
+        int iFromTileY = TileMapRenderer.pixelsToTiles(iY);
+        int iToTileY = TileMapRenderer.pixelsToTiles(iY + sprSprite.getHeight() - 1);
+        for (int iTileX = iFromTileX; iTileX <= iToTileX; iTileX++) {
+            for (int iTileY = iFromTileY; iTileY <= iToTileY; iTileY++) {
+                AtlasFrame afTile = tmMap.getTile(iTileX, iTileY);
+                if (afTile instanceof AnimatedTile &&
+                    ((AnimatedTile)afTile).getKind() != TileDefinition.iNO_KIND)
+                {
+                    return (AnimatedTile)afTile;
+                }
+            }
+        }
+        return null;
+    }
+    
     /**
      * checkPlayerCollision
      * 
-     * Checks for Player collision with other Sprites. If canKill is true, 
-     * collisions with Creatures will kill them.
+     * Checks for Player collision with other Sprites and with animated 
+     * tiles. If canKill is true, collisions with Creatures will kill them.
      * 
      * @param plaPlayer is an object of class <code>Player</code>
      * @param bCanKill is an object of class <code>Boolean</code>
@@ -1232,7 +1631,16 @@ public class GameManager extends GameCore {
 
         // check for player collision with other sprites
         Sprite sprCollisionSprite = getSpriteCollision(plaPlayer);
-        if (sprCollisionSprite instanceof PowerUp) {
+        if (sprCollisionSprite == null) {
+            // water and spikes work like the power-ups of their kind
+            AnimatedTile atTile = getAnimatedTileCollision(plaPlayer);
+            if (atTile != null) {
+                applyPowerUp(atTile.getKind());
+                plaPlayer.updateShootTime();
+                bArrowAvailable = true;
+            }
+        }
+        else if (sprCollisionSprite instanceof PowerUp) {
             acquirePowerUp((PowerUp)sprCollisionSprite);
             
             // Restart player shooting when a powerUp is acquired (goal, for instance)
@@ -1254,8 +1662,9 @@ public class GameManager extends GameCore {
                 if(iLife > 1){
                     if (creBadguy instanceof Weapon) { // Handle damage by weapons
                         plaPlayer.setHealth(plaPlayer.getHealth() - 100);
-                        smSoundManager.play(souArrowHit);
-                        smSoundManager.play(souPlayerHurt);
+                        sebSounds.post(souArrowHit, SoundEventBus.iPRIORITY_HIGH);
+                        sebSounds.post(souPlayerHurt, SoundEventBus.iPRIORITY_HIGH);
+                        pemArrowHit.emit(ptsParticles, creBadguy);
                         
                         creBadguy.setSticky( plaPlayer );   //Make the arrow follow the player after it hits
                         creBadguy.setState(Creature.iSTATE_DYING);
@@ -1291,57 +1700,48 @@ public class GameManager extends GameCore {
     public void acquirePowerUp(PowerUp puPowerUp) {
         // remove it from the map (not implemented, yet)
         //tmMap.removeSprite(puPowerUp);
+        if (puPowerUp instanceof PowerUp.Star) {
+            applyPowerUp(Archetype.iKIND_STAR);
+        }
+        else if (puPowerUp instanceof PowerUp.Music) {
+            applyPowerUp(Archetype.iKIND_MUSIC);
+        }
+        else if (puPowerUp instanceof PowerUp.Goal) {
+            applyPowerUp(Archetype.iKIND_GOAL);
+        }
+    }
+    
+    /**
+     * applyPowerUp
+     * 
+     * Does to the player what a power-up of the specified kind does 
+     * (iKIND_STAR, iKIND_MUSIC or iKIND_GOAL of Archetype).
+     * 
+     * @param iKind is an object of class <code>Integer</code>
+     */
+    private void applyPowerUp(int iKind) {
         Player plaPlayer = (Player)tmMap.getPlayer();
 
-        if (puPowerUp instanceof PowerUp.Star) {
+        if (iKind == Archetype.iKIND_STAR) {
             // do something here, like give the player points
             //smSoundManager.play(souPrizeSound);
             plaPlayer.setState(Creature.iSTATE_DYING);
             iLife -= 1;
         }
-        else if (puPowerUp instanceof PowerUp.Music) {
+        else if (iKind == Archetype.iKIND_MUSIC) {
             // Change the music
-            smSoundManager.play(souPrizeSound);
+            sebSounds.post(souPrizeSound, SoundEventBus.iPRIORITY_HIGH);
             
             toggleDrumPlayback();
         }
-        else if (puPowerUp instanceof PowerUp.Goal) {
-            // Advance to next map and change background according to map
+        else if (iKind == Archetype.iKIND_GOAL) {
+            // Advance to next map, with its background and music
             smSoundManager.play(souPrizeSound,
                 new EchoFilter(2000, .7f), false);
                 
-            switch(rmResourceManager.getICurrentMap()) {
-                case 4: { // Map 5
-                    tmrRenderer.setBackground(lklBackgrounds.get(4));
-                    break;
-                }
-                case 5: { // Map 6
-                    tmrRenderer.setBackground(lklBackgrounds.get(5));
-                    break;
-                }
-                case 6: { // Map 7
-                    tmrRenderer.setBackground(lklBackgrounds.get(6));
-                     mpMidiPlayer.play(seqSequence2, true);
-                    break;
-                }
-                case 7:{
-                   tmrRenderer.setBackground(lklBackgrounds.get(7));
-                   mpMidiPlayer.play(seqSequence3, true);
-                    break;
-                }
-                case 8:{
-                    mpMidiPlayer.play(seqSequence4, true);
-                    break;
-                }
-                case 9:{
-                    
-                }
-                default: {
-                    break;
-                }
-                
-            }
             tmMap = rmResourceManager.loadNextMap();
+            ptsParticles.clear();
+            showLevel();
         }
     }
 
@@ -0,0 +1,131 @@
+package com.brackeen.javagamebook.tilegame;
+
+import java.util.ArrayList;
+
+import com.brackeen.javagamebook.input.InputSnapshot;
+
+/**
+ * GameState
+ *
+ * It manages the definition of each object of type <code>GameState</code>
+ *
+ * The GameState class is a screen of the game (a menu, the game
+ * itself, the pause screen...). States are kept in a GameStateStack;
+ * only the state on top is updated. A state is told when it enters
+ * and exits the stack, so it only holds what it needs while it is
+ * there, and it can preload what the states it leads to need.
+ *
+ * @author Quazar Volume
+ */
+public abstract class GameState {
+
+    protected GameManager gmGame;
+    private ArrayList ArrNext;      // States this one can lead to
+
+    /**
+     * GameState
+     *
+     * Parameterized Constructor
+     *
+     * @param gmGame is an object of class <code>GameManager</code>
+     */
+    public GameState(GameManager gmGame) {
+        this.gmGame = gmGame;
+        ArrNext = new ArrayList();
+    }
+
+    /**
+     * addNext
+     *
+     * Adds a state this one can lead to, so it is preloaded.
+     *
+     * @param gsState is an object of class <code>GameState</code>
+     */
+    public void addNext(GameState gsState) {
+        if (gsState != null && !ArrNext.contains(gsState)) {
+            ArrNext.add(gsState);
+        }
+    }
+
+    /**
+     * preloadNext
+     *
+     * Forgets what was preloaded before, and preloads the states this
+     * one can lead to.
+     */
+    protected void preloadNext() {
+        gmGame.releasePreloads();
+        for (int iI = 0; iI < ArrNext.size(); iI++) {
+            ((GameState)ArrNext.get(iI)).preload();
+        }
+    }
+
+    /**
+     * enter
+     *
+     * Called when this state is put on the stack.
+     */
+    public void enter() {
+        preloadNext();
+    }
+
+    /**
+     * resume
+     *
+     * Called when this state is on top of the stack again, after the
+     * state above it was removed.
+     */
+    public void resume() {
+        // do nothing
+    }
+
+    /**
+     * exit
+     *
+     * Called when this state is removed from the stack.
+     */
+    public void exit() {
+        // do nothing
+    }
+
+    /**
+     * preload
+     *
+     * Starts loading what this state needs, before it is entered.
+     */
+    public void preload() {
+        // do nothing
+    }
+
+    /**
+     * isOverlay
+     *
+     * Checks if this state is drawn over the state below it.
+     *
+     * @return object of class <code>Boolean</code>
+     */
+    public boolean isOverlay() {
+        return false;
+    }
+
+    /**
+     * getMessage
+     *
+     * Gets the message shown on this screen, or null.
+     *
+     * @return object of class <code>String</code>
+     */
+    public String getMessage() {
+        return null;
+    }
+
+    /**
+     * update
+     *
+     * Updates this state, with the input of this tick.
+     *
+     * @param insInput is an object of class <code>InputSnapshot</code>
+     * @param lElapsedTime is an object of class <code>Long</code>
+     */
+    public abstract void update(InputSnapshot insInput, long lElapsedTime);
+}
@@ -0,0 +1,187 @@
+package com.brackeen.javagamebook.tilegame;
+
+import java.util.ArrayList;
+
+import com.brackeen.javagamebook.input.InputSnapshot;
+
+/**
+ * GameStateStack
+ *
+ * It manages the definition of each object of type <code>GameStateStack</code>
+ *
+ * The GameStateStack class holds the screens of the game. The state
+ * on top is the one updated; states can be pushed over it (the pause
+ * screen over the game) or replace the whole stack (going from a menu
+ * to another).
+ * <p>Changes asked for during a tick are applied at the end of it,
+ * in order, so the state being updated can finish its tick with
+ * everything it had.</p>
+ *
+ * @author Quazar Volume
+ */
+public class GameStateStack {
+
+    // Changes
+    private static final int iCHANGE_PUSH = 0;
+    private static final int iCHANGE_POP = 1;
+    private static final int iCHANGE_SET = 2;
+
+    private ArrayList ArrStates;     // States, the top last
+    private ArrayList ArrChanges;    // Changes asked for in this tick
+
+    /**
+     * GameStateStack
+     *
+     * Default Constructor
+     *
+     * Creates a new, empty GameStateStack.
+     */
+    public GameStateStack() {
+        ArrStates = new ArrayList();
+        ArrChanges = new ArrayList();
+    }
+
+    /**
+     * push
+     *
+     * Puts a state over the current one, at the end of this tick.
+     *
+     * @param gsState is an object of class <code>GameState</code>
+     */
+    public void push(GameState gsState) {
+        ArrChanges.add(new Change(iCHANGE_PUSH, gsState));
+    }
+
+    /**
+     * pop
+     *
+     * Removes the state on top, at the end of this tick.
+     */
+    public void pop() {
+        ArrChanges.add(new Change(iCHANGE_POP, null));
+    }
+
+    /**
+     * set
+     *
+     * Removes every state and puts the specified one, at the end of
+     * this tick.
+     *
+     * @param gsState is an object of class <code>GameState</code>
+     */
+    public void set(GameState gsState) {
+        ArrChanges.add(new Change(iCHANGE_SET, gsState));
+    }
+
+    /**
+     * peek
+     *
+     * Gets the state on top, or null if the stack is empty.
+     *
+     * @return object of class <code>GameState</code>
+     */
+    public GameState peek() {
+        return ArrStates.isEmpty() ? null :
+            (GameState)ArrStates.get(ArrStates.size() - 1);
+    }
+
+    /**
+     * contains
+     *
+     * Checks if a state is in the stack.
+     *
+     * @param gsState is an object of class <code>GameState</code>
+     * @return object of class <code>Boolean</code>
+     */
+    public boolean contains(GameState gsState) {
+        return ArrStates.contains(gsState);
+    }
+
+    /**
+     * hasChanges
+     *
+     * Checks if changes were asked for in this tick.
+     *
+     * @return object of class <code>Boolean</code>
+     */
+    public boolean hasChanges() {
+        return !ArrChanges.isEmpty();
+    }
+
+    /**
+     * update
+     *
+     * Updates the state on top and applies the changes it asked for.
+     *
+     * @param insInput is an object of class <code>InputSnapshot</code>
+     * @param lElapsedTime is an object of class <code>Long</code>
+     */
+    public void update(InputSnapshot insInput, long lElapsedTime) {
+        GameState gsTop = peek();
+        if (gsTop != null) {
+            gsTop.update(insInput, lElapsedTime);
+        }
+        applyChanges();
+    }
+
+    /**
+     * applyChanges
+     *
+     * Applies the changes asked for, in order. The states removed
+     * exit, top first, before the new ones enter.
+     */
+    public void applyChanges() {
+        // changes may ask for more changes
+        for (int iI = 0; iI < ArrChanges.size(); iI++) {
+            Change chaChange = (Change)ArrChanges.get(iI);
+            if (chaChange.iChange != iCHANGE_PUSH) {
+                boolean bAll = chaChange.iChange == iCHANGE_SET;
+                while (!ArrStates.isEmpty()) {
+                    GameState gsState = (GameState)ArrStates.remove(
+                        ArrStates.size() - 1);
+                    gsState.exit();
+                    if (!bAll) {
+                        break;
+                    }
+                }
+                if (!bAll && !ArrStates.isEmpty()) {
+                    peek().resume();
+                }
+            }
+            if (chaChange.gsState != null) {
+                ArrStates.add(chaChange.gsState);
+                chaChange.gsState.enter();
+            }
+        }
+        ArrChanges.clear();
+    }
+
+    /**
+     * Change
+     *
+     * It manages the definition of each object of type <code>Change</code>
+     *
+     * The Change class holds a change of the stack asked for during
+     * a tick.
+     *
+     * @author Quazar Volume
+     */
+    private static class Change {
+
+        int iChange;            // Kind of change
+        GameState gsState;      // State to put, or null
+
+        /**
+         * Change
+         *
+         * Parameterized Constructor
+         *
+         * @param iChange is an object of class <code>Integer</code>
+         * @param gsState is an object of class <code>GameState</code>
+         */
+        Change(int iChange, GameState gsState) {
+            this.iChange = iChange;
+            this.gsState = gsState;
+        }
+    }
+}
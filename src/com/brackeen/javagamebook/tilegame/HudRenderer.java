@@ -0,0 +1,332 @@
+package com.brackeen.javagamebook.tilegame;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+
+import com.brackeen.javagamebook.graphics.AtlasFrame;
+
+/**
+ * HudRenderer
+ *
+ * It manages the definition of each object of type <code>HudRenderer</code>
+ *
+ * The HudRenderer class draws the heads-up display: the score, life
+ * and health panel, the boss health panel and the pause menu. Every
+ * panel is rendered once into an image and drawn with a single
+ * drawImage call. Numbers are composed from a glyph atlas of digits,
+ * and a panel is only rendered again when one of its values changes.
+ *
+ * @author Quazar Volume
+ */
+public class HudRenderer {
+
+    private static final Color colPANEL = new Color(0xA3A375);
+
+    // Status panel (score, life and health)
+    private static final int iSTATUS_WIDTH = 170;
+    private static final int iSTATUS_HEIGHT = 80;
+    // Boss panel
+    private static final int iBOSS_WIDTH = 170;
+    private static final int iBOSS_HEIGHT = 50;
+    // Pause menu
+    private static final int iPAUSE_WIDTH = 350;
+    private static final int iPAUSE_HEIGHT = 250;
+
+    private GraphicsConfiguration gcGraphicsConfiguration;
+    private Font fonFont;
+    private FontMetrics fmMetrics;
+
+    private Image imaGlyphs;            // Digits 0 to 9 and the minus sign
+    private AtlasFrame[] afArrGlyphs;   // Frame of each glyph in imaGlyphs
+
+    private Image imaStatusBase;        // Status panel without numbers
+    private Image imaStatus;            // Status panel with numbers
+    private int iStatusScore;           // Values drawn in imaStatus
+    private int iStatusLife;
+    private int iStatusHealth;
+
+    private Image imaBossBase;          // Boss panel without numbers
+    private Image imaBoss;              // Boss panel with numbers
+    private int iBossHealth;            // Value drawn in imaBoss
+
+    private Image imaPause;             // Pause menu
+    private Image imaPauseHint;         // "Pause (P)" hint
+
+    /**
+     * HudRenderer
+     *
+     * Parameterized Constructor
+     *
+     * Creates a new HudRenderer that draws its text with the
+     * specified font, and renders all its static panels.
+     *
+     * @param gcGraphicsConfiguration is an object of class
+     * <code>GraphicsConfiguration</code>
+     * @param fonFont is an object of class <code>Font</code>
+     */
+    public HudRenderer(GraphicsConfiguration gcGraphicsConfiguration,
+        Font fonFont)
+    {
+        this.gcGraphicsConfiguration = gcGraphicsConfiguration;
+        this.fonFont = fonFont;
+        createGlyphs();
+
+        // status panel
+        imaStatusBase = createPanel(iSTATUS_WIDTH, iSTATUS_HEIGHT);
+        Graphics2D gra2D_G = (Graphics2D)imaStatusBase.getGraphics();
+        gra2D_G.setFont(fonFont);
+        gra2D_G.drawString("Score: ", 10, 20);
+        gra2D_G.drawString("Life: ", 10, 45);
+        gra2D_G.drawString("Health: ", 10, 75);
+        gra2D_G.dispose();
+        imaStatus = createImage(iSTATUS_WIDTH + 1, iSTATUS_HEIGHT + 1);
+        iStatusScore = Integer.MIN_VALUE;
+
+        // boss panel
+        imaBossBase = createPanel(iBOSS_WIDTH, iBOSS_HEIGHT);
+        gra2D_G = (Graphics2D)imaBossBase.getGraphics();
+        gra2D_G.setFont(fonFont);
+        gra2D_G.drawString("BOSS HP: ", 10, 30);
+        gra2D_G.dispose();
+        imaBoss = createImage(iBOSS_WIDTH + 1, iBOSS_HEIGHT + 1);
+        iBossHealth = Integer.MIN_VALUE;
+
+        // pause menu
+        imaPause = createImage(iPAUSE_WIDTH + 1, iPAUSE_HEIGHT + 1);
+        gra2D_G = (Graphics2D)imaPause.getGraphics();
+        gra2D_G.setFont(fonFont);
+        gra2D_G.setColor(colPANEL);
+        gra2D_G.fill3DRect(0, 0, iPAUSE_WIDTH, iPAUSE_HEIGHT, true);
+        gra2D_G.setColor(Color.black);
+        gra2D_G.drawString("Pause", 130, 60);
+        gra2D_G.drawString("Resume Game - P", 80, 120);
+        gra2D_G.drawString("Wake up - W", 110, 160);
+        gra2D_G.drawString("Quit Game - Q", 100, 200);
+        gra2D_G.draw3DRect(0, 0, iPAUSE_WIDTH, iPAUSE_HEIGHT, true);
+        gra2D_G.dispose();
+
+        // pause hint
+        imaPauseHint = createImage(fmMetrics.stringWidth("Pause (P)"),
+            fmMetrics.getHeight());
+        gra2D_G = (Graphics2D)imaPauseHint.getGraphics();
+        gra2D_G.setFont(fonFont);
+        gra2D_G.setColor(Color.black);
+        gra2D_G.drawString("Pause (P)", 0, fmMetrics.getAscent());
+        gra2D_G.dispose();
+    }
+
+    /**
+     * drawStatus
+     *
+     * Draws the score, life and health panel at the top left corner
+     * of the screen.
+     *
+     * @param gra2D_G is an object of class <code>Graphics2D</code>
+     * @param iScore is an object of class <code>Integer</code>
+     * @param iLife is an object of class <code>Integer</code>
+     * @param iHealth is an object of class <code>Integer</code>
+     */
+    public void drawStatus(Graphics2D gra2D_G, int iScore, int iLife,
+        int iHealth)
+    {
+        if (iScore != iStatusScore || iLife != iStatusLife ||
+            iHealth != iStatusHealth)
+        {
+            Graphics2D gra2D_Panel = beginPanel(imaStatus, imaStatusBase);
+            drawNumber(gra2D_Panel, iScore,
+                10 + fmMetrics.stringWidth("Score: "), 20);
+            drawNumber(gra2D_Panel, iLife,
+                10 + fmMetrics.stringWidth("Life: "), 45);
+            drawNumber(gra2D_Panel, iHealth,
+                10 + fmMetrics.stringWidth("Health: "), 75);
+            gra2D_Panel.dispose();
+            iStatusScore = iScore;
+            iStatusLife = iLife;
+            iStatusHealth = iHealth;
+        }
+        gra2D_G.drawImage(imaStatus, 0, 0, null);
+    }
+
+    /**
+     * getStatusBounds
+     *
+     * Gets the area of the screen covered by the score, life and
+     * health panel.
+     *
+     * @return object of class <code>Rectangle</code>
+     */
+    public Rectangle getStatusBounds() {
+        return new Rectangle(0, 0, imaStatus.getWidth(null),
+            imaStatus.getHeight(null));
+    }
+
+    /**
+     * drawBoss
+     *
+     * Draws the boss health panel at the top right corner of the
+     * screen. Negative health is shown as 0.
+     *
+     * @param gra2D_G is an object of class <code>Graphics2D</code>
+     * @param iScreenWidth is an object of class <code>Integer</code>
+     * @param iHealth is an object of class <code>Integer</code>
+     */
+    public void drawBoss(Graphics2D gra2D_G, int iScreenWidth, int iHealth) {
+        iHealth = Math.max(iHealth, 0);
+        if (iHealth != iBossHealth) {
+            Graphics2D gra2D_Panel = beginPanel(imaBoss, imaBossBase);
+            drawNumber(gra2D_Panel, iHealth,
+                10 + fmMetrics.stringWidth("BOSS HP: "), 30);
+            gra2D_Panel.dispose();
+            iBossHealth = iHealth;
+        }
+        gra2D_G.drawImage(imaBoss, iScreenWidth - iBOSS_WIDTH, 0, null);
+    }
+
+    /**
+     * drawPause
+     *
+     * Draws the pause menu centered horizontally on the screen.
+     *
+     * @param gra2D_G is an object of class <code>Graphics2D</code>
+     * @param iScreenWidth is an object of class <code>Integer</code>
+     */
+    public void drawPause(Graphics2D gra2D_G, int iScreenWidth) {
+        gra2D_G.drawImage(imaPause, (iScreenWidth / 2) - 180, 180, null);
+    }
+
+    /**
+     * drawPauseHint
+     *
+     * Draws the "Pause (P)" hint at the bottom right corner of the
+     * screen.
+     *
+     * @param gra2D_G is an object of class <code>Graphics2D</code>
+     * @param iScreenWidth is an object of class <code>Integer</code>
+     * @param iScreenHeight is an object of class <code>Integer</code>
+     */
+    public void drawPauseHint(Graphics2D gra2D_G, int iScreenWidth,
+        int iScreenHeight)
+    {
+        gra2D_G.drawImage(imaPauseHint, iScreenWidth - 125,
+            iScreenHeight - 15 - fmMetrics.getAscent(), null);
+    }
+
+    /**
+     * createGlyphs
+     *
+     * Renders the digits and the minus sign once into a single
+     * image, one frame per glyph.
+     */
+    private void createGlyphs() {
+        // a scratch image is needed to measure the font
+        Image imaScratch = createImage(1, 1);
+        Graphics2D gra2D_G = (Graphics2D)imaScratch.getGraphics();
+        fmMetrics = gra2D_G.getFontMetrics(fonFont);
+        gra2D_G.dispose();
+
+        String sGlyphs = "0123456789-";
+        int iHeight = fmMetrics.getHeight();
+        imaGlyphs = createImage(fmMetrics.stringWidth(sGlyphs), iHeight);
+        afArrGlyphs = new AtlasFrame[sGlyphs.length()];
+        gra2D_G = (Graphics2D)imaGlyphs.getGraphics();
+        gra2D_G.setFont(fonFont);
+        gra2D_G.setColor(Color.black);
+        int iX = 0;
+        for (int iI = 0; iI < sGlyphs.length(); iI++) {
+            char cChar = sGlyphs.charAt(iI);
+            int iWidth = fmMetrics.charWidth(cChar);
+            gra2D_G.drawString(String.valueOf(cChar), iX,
+                fmMetrics.getAscent());
+            afArrGlyphs[iI] = new AtlasFrame(imaGlyphs, iX, 0, iWidth,
+                iHeight);
+            iX += iWidth;
+        }
+        gra2D_G.dispose();
+    }
+
+    /**
+     * drawNumber
+     *
+     * Draws a number with the glyphs, with its baseline at the
+     * specified position.
+     *
+     * @param gra2D_G is an object of class <code>Graphics2D</code>
+     * @param iNumber is an object of class <code>Integer</code>
+     * @param iX is an object of class <code>Integer</code>
+     * @param iBaseline is an object of class <code>Integer</code>
+     */
+    private void drawNumber(Graphics2D gra2D_G, int iNumber, int iX,
+        int iBaseline)
+    {
+        int iY = iBaseline - fmMetrics.getAscent();
+        String sDigits = Integer.toString(iNumber);
+        for (int iI = 0; iI < sDigits.length(); iI++) {
+            char cChar = sDigits.charAt(iI);
+            AtlasFrame afGlyph = afArrGlyphs[(cChar == '-') ? 10 : cChar - '0'];
+            afGlyph.draw(gra2D_G, iX, iY);
+            iX += afGlyph.getWidth();
+        }
+    }
+
+    /**
+     * createPanel
+     *
+     * Creates the image of an empty panel, drawn like the old
+     * draw3DRect and fill3DRect calls.
+     *
+     * @param iWidth is an object of class <code>Integer</code>
+     * @param iHeight is an object of class <code>Integer</code>
+     * @return object of class <code>Image</code>
+     */
+    private Image createPanel(int iWidth, int iHeight) {
+        Image imaPanel = createImage(iWidth + 1, iHeight + 1);
+        Graphics2D gra2D_G = (Graphics2D)imaPanel.getGraphics();
+        gra2D_G.setColor(Color.black);
+        gra2D_G.draw3DRect(0, 0, iWidth, iHeight, true);
+        gra2D_G.setColor(colPANEL);
+        gra2D_G.fill3DRect(0, 0, iWidth, iHeight, true);
+        gra2D_G.setColor(Color.black);
+        gra2D_G.dispose();
+        return imaPanel;
+    }
+
+    /**
+     * beginPanel
+     *
+     * Clears a panel image, copies its base into it and returns its
+     * graphics, ready to draw numbers.
+     *
+     * @param imaPanel is an object of class <code>Image</code>
+     * @param imaBase is an object of class <code>Image</code>
+     * @return object of class <code>Graphics2D</code>
+     */
+    private Graphics2D beginPanel(Image imaPanel, Image imaBase) {
+        Graphics2D gra2D_G = (Graphics2D)imaPanel.getGraphics();
+        gra2D_G.setBackground(new Color(0, 0, 0, 0));
+        gra2D_G.clearRect(0, 0, imaPanel.getWidth(null),
+            imaPanel.getHeight(null));
+        gra2D_G.drawImage(imaBase, 0, 0, null);
+        return gra2D_G;
+    }
+
+    /**
+     * createImage
+     *
+     * Creates a translucent image compatible with the display.
+     *
+     * @param iWidth is an object of class <code>Integer</code>
+     * @param iHeight is an object of class <code>Integer</code>
+     * @return object of class <code>Image</code>
+     */
+    private Image createImage(int iWidth, int iHeight) {
+        return gcGraphicsConfiguration.createCompatibleImage(
+            Math.max(iWidth, 1), Math.max(iHeight, 1),
+            Transparency.TRANSLUCENT);
+    }
+}
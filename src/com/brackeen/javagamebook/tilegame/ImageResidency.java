@@ -0,0 +1,159 @@
+package com.brackeen.javagamebook.tilegame;
+
+import java.awt.Image;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.Future;
+
+import com.brackeen.javagamebook.util.AssetLoader;
+
+/**
+ * ImageResidency
+ *
+ * It manages the definition of each object of type <code>ImageResidency</code>
+ *
+ * The ImageResidency class keeps large per-level images (such as
+ * backgrounds) in memory only while something uses them. Each image
+ * is loaded when it is first acquired and counts its references;
+ * when the last reference is released the image is flushed and
+ * forgotten, so memory stays flat no matter how many levels the
+ * game has.
+ *
+ * @author Quazar Volume
+ */
+public class ImageResidency {
+
+    private ResourceManager rmResourceManager;
+    private HashMap hmEntries;  // Resident images by file name
+
+    /**
+     * ImageResidency
+     *
+     * Parameterized Constructor
+     *
+     * Creates a new, empty ImageResidency that loads its images with
+     * the specified ResourceManager.
+     *
+     * @param rmResourceManager is an object of class
+     * <code>ResourceManager</code>
+     */
+    public ImageResidency(ResourceManager rmResourceManager) {
+        this.rmResourceManager = rmResourceManager;
+        hmEntries = new HashMap();
+    }
+
+    /**
+     * acquire
+     *
+     * Adds a reference to an image from the images/ directory,
+     * starting to load it if it is not resident. This method returns
+     * immediately; the image is obtained from the returned Future.
+     *
+     * @param sName is an object of class <code>String</code>
+     * @return object of class <code>Future</code>
+     */
+    public synchronized Future<Image> acquire(String sName) {
+        Entry entEntry = (Entry)hmEntries.get(sName);
+        if (entEntry == null) {
+            entEntry = new Entry(
+                rmResourceManager.loadCompatibleImageAsync(sName));
+            hmEntries.put(sName, entEntry);
+        }
+        entEntry.iReferences++;
+        return entEntry.futImage;
+    }
+
+    /**
+     * release
+     *
+     * Removes a reference to an image. The image is unloaded when
+     * its last reference is released.
+     *
+     * @param sName is an object of class <code>String</code>
+     */
+    public synchronized void release(String sName) {
+        Entry entEntry = (Entry)hmEntries.get(sName);
+        if (entEntry == null) {
+            return;
+        }
+        entEntry.iReferences--;
+        if (entEntry.iReferences <= 0) {
+            hmEntries.remove(sName);
+            if (entEntry.futImage.isDone()) {
+                Image imaImage = AssetLoader.getResult(entEntry.futImage);
+                if (imaImage != null) {
+                    imaImage.flush();
+                }
+            }
+            else {
+                entEntry.futImage.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * getReferenceCount
+     *
+     * Gets the number of references to an image (0 if it is not
+     * resident).
+     *
+     * @param sName is an object of class <code>String</code>
+     * @return object of class <code>Integer</code>
+     */
+    public synchronized int getReferenceCount(String sName) {
+        Entry entEntry = (Entry)hmEntries.get(sName);
+        return (entEntry == null) ? 0 : entEntry.iReferences;
+    }
+
+    /**
+     * getResidentBytes
+     *
+     * Gets an estimate of the memory used by every resident image,
+     * in bytes (4 bytes per pixel). It includes the loaded images of
+     * this residency and the sprite atlas of the ResourceManager.
+     *
+     * @return object of class <code>Long</code>
+     */
+    public synchronized long getResidentBytes() {
+        long lBytes = rmResourceManager.getAtlasBytes();
+        Iterator iteI = hmEntries.values().iterator();
+        while (iteI.hasNext()) {
+            Entry entEntry = (Entry)iteI.next();
+            if (entEntry.futImage.isDone()) {
+                Image imaImage = AssetLoader.getResult(entEntry.futImage);
+                if (imaImage != null) {
+                    lBytes += 4L * imaImage.getWidth(null) *
+                        imaImage.getHeight(null);
+                }
+            }
+        }
+        return lBytes;
+    }
+
+    /**
+     * Entry
+     *
+     * It manages the definition of each object of type <code>Entry</code>
+     *
+     * The Entry class holds a resident image and its number of
+     * references.
+     *
+     * @author Quazar Volume
+     */
+    private static class Entry {
+
+        Future<Image> futImage; // Image, loaded or still loading
+        int iReferences;        // Number of users of the image
+
+        /**
+         * Entry
+         *
+         * Parameterized Constructor
+         *
+         * @param futImage is an object of class <code>Future</code>
+         */
+        Entry(Future<Image> futImage) {
+            this.futImage = futImage;
+        }
+    }
+}
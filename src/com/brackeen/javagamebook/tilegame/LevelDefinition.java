@@ -0,0 +1,111 @@
+package com.brackeen.javagamebook.tilegame;
+
+/**
+ * LevelDefinition
+ *
+ * It manages the definition of each object of type <code>LevelDefinition</code>
+ *
+ * The LevelDefinition class describes a level read from the definition
+ * files: its map, background, music and where the player starts. It
+ * never changes once created.
+ *
+ * @author Quazar Volume
+ */
+public class LevelDefinition {
+
+    private final int iNumber;
+    private final String sMap;          // File in the maps/ directory
+    private final String sBackground;   // File in the images/ directory
+    private final String sMusic;
+    private final int iPlayerX;         // Tile where the player starts
+    private final int iPlayerY;
+
+    /**
+     * LevelDefinition
+     *
+     * Parameterized Constructor
+     *
+     * @param iNumber is an object of class <code>Integer</code>
+     * @param sMap is an object of class <code>String</code>
+     * @param sBackground is an object of class <code>String</code>
+     * @param sMusic is an object of class <code>String</code>
+     * @param iPlayerX is an object of class <code>Integer</code>
+     * @param iPlayerY is an object of class <code>Integer</code>
+     */
+    public LevelDefinition(int iNumber, String sMap, String sBackground,
+        String sMusic, int iPlayerX, int iPlayerY)
+    {
+        this.iNumber = iNumber;
+        this.sMap = sMap;
+        this.sBackground = sBackground;
+        this.sMusic = sMusic;
+        this.iPlayerX = iPlayerX;
+        this.iPlayerY = iPlayerY;
+    }
+
+    /**
+     * getNumber
+     *
+     * Gets the number of this level.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getNumber() {
+        return iNumber;
+    }
+
+    /**
+     * getMap
+     *
+     * Gets the path of the map file.
+     *
+     * @return object of class <code>String</code>
+     */
+    public String getMap() {
+        return "maps/" + sMap;
+    }
+
+    /**
+     * getBackground
+     *
+     * Gets the name of the background image.
+     *
+     * @return object of class <code>String</code>
+     */
+    public String getBackground() {
+        return sBackground;
+    }
+
+    /**
+     * getMusic
+     *
+     * Gets the path of the music.
+     *
+     * @return object of class <code>String</code>
+     */
+    public String getMusic() {
+        return sMusic;
+    }
+
+    /**
+     * getPlayerX
+     *
+     * Gets the horizontal tile where the player starts.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getPlayerX() {
+        return iPlayerX;
+    }
+
+    /**
+     * getPlayerY
+     *
+     * Gets the vertical tile where the player starts.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getPlayerY() {
+        return iPlayerY;
+    }
+}
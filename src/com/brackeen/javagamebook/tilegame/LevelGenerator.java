@@ -0,0 +1,418 @@
+package com.brackeen.javagamebook.tilegame;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * LevelGenerator
+ *
+ * It manages the definition of each object of type <code>LevelGenerator</code>
+ *
+ * The LevelGenerator class creates maps in the format read by the
+ * ResourceManager, of any size, to test how the game behaves with
+ * large levels. The same seed and parameters always create the same
+ * map.
+ * <p>The ground is a random walk whose average height gives the
+ * wanted tile density; part of the tiles are taken away from it and
+ * used for floating platforms. Grubs, archers and the boss stand on
+ * the ground, flies float above it, and the goal is placed at the end.
+ * The map characters of each creature are read from the definitions.</p>
+ * <p>It can be run on its own:</p>
+ * <pre>
+ * LevelGenerator &lt;file&gt; [width height seed tileDensity platformRatio
+ *     grubDensity flyDensity archerDensity bossDensity]
+ * </pre>
+ *
+ * @author Quazar Volume
+ */
+public class LevelGenerator {
+
+    // Tiles used
+    public static final char cGROUND_TILE = 'M';
+    public static final char cPLATFORM_TILE = 'L';
+    public static final char cEMPTY = ' ';
+
+    // Creatures placed, and the densities used unless changed
+    private static final int[] iArrENEMY_KINDS = {
+        Archetype.iKIND_GRUB, Archetype.iKIND_FLY,
+        Archetype.iKIND_ARCHER, Archetype.iKIND_BOSS
+    };
+    private static final float[] fArrDEFAULT_DENSITIES = {
+        0.03f, 0.02f, 0.01f, 0f
+    };
+
+    private static final int iSAFE_COLUMNS = 6;     // Start without enemies
+    private static final int iHEADROOM = 4;         // Empty rows over ground
+    private static final int iMIN_PLATFORM = 3;
+    private static final int iMAX_PLATFORM = 8;
+
+    private final int iWidth;
+    private final int iHeight;
+    private final long lSeed;
+    private float fTileDensity;     // Part of the map that is tiles
+    private float fPlatformRatio;   // Part of the tiles that are platforms
+    private float[] fArrEnemyDensities; // Enemies per column, by kind
+    private char[] cArrEnemyChars;      // Map character, by kind
+    private char cGoalChar;
+
+    private char[][] cMatMap;       // By row, then column
+    private int[] iArrGround;       // First ground row of each column
+    private int iPlayerX;
+    private int iPlayerY;
+
+    /**
+     * LevelGenerator
+     *
+     * Parameterized Constructor
+     *
+     * Creates a generator of maps of the specified size, which places
+     * the creatures of the specified definitions.
+     *
+     * @param iWidth is an object of class <code>Integer</code>
+     * @param iHeight is an object of class <code>Integer</code>
+     * @param lSeed is an object of class <code>Long</code>
+     * @param defDefinitions is an object of class <code>Definitions</code>
+     */
+    public LevelGenerator(int iWidth, int iHeight, long lSeed,
+        Definitions defDefinitions)
+    {
+        if (iWidth < iSAFE_COLUMNS * 2 || iHeight < iHEADROOM * 2) {
+            throw new IllegalArgumentException("Map too small: " +
+                iWidth + "x" + iHeight);
+        }
+        this.iWidth = iWidth;
+        this.iHeight = iHeight;
+        this.lSeed = lSeed;
+        fTileDensity = 0.3f;
+        fPlatformRatio = 0.1f;
+        fArrEnemyDensities = fArrDEFAULT_DENSITIES.clone();
+
+        // find the map character of each creature
+        cArrEnemyChars = new char[iArrENEMY_KINDS.length];
+        for (char cChar = 0; cChar < Definitions.iNUM_CHARS; cChar++) {
+            Archetype arcArchetype = defDefinitions.getSpawn(cChar);
+            if (arcArchetype == null) {
+                continue;
+            }
+            for (int iI = 0; iI < iArrENEMY_KINDS.length; iI++) {
+                if (arcArchetype.getKind() == iArrENEMY_KINDS[iI] &&
+                    cArrEnemyChars[iI] == 0)
+                {
+                    cArrEnemyChars[iI] = cChar;
+                }
+            }
+            if (arcArchetype.getKind() == Archetype.iKIND_GOAL &&
+                cGoalChar == 0)
+            {
+                cGoalChar = cChar;
+            }
+        }
+    }
+
+    /**
+     * setTileDensity
+     *
+     * Sets the part of the map that is tiles, from 0 to 1.
+     *
+     * @param fTileDensity is an object of class <code>Float</code>
+     */
+    public void setTileDensity(float fTileDensity) {
+        this.fTileDensity = Math.max(0, Math.min(fTileDensity, 1));
+    }
+
+    /**
+     * setPlatformRatio
+     *
+     * Sets the part of the tiles used for floating platforms rather
+     * than ground, from 0 to 1.
+     *
+     * @param fPlatformRatio is an object of class <code>Float</code>
+     */
+    public void setPlatformRatio(float fPlatformRatio) {
+        this.fPlatformRatio = Math.max(0, Math.min(fPlatformRatio, 1));
+    }
+
+    /**
+     * setEnemyDensity
+     *
+     * Sets the chance of each column to have a creature of the
+     * specified kind (Archetype.iKIND_GRUB, iKIND_FLY, iKIND_ARCHER
+     * or iKIND_BOSS), from 0 to 1.
+     *
+     * @param iKind is an object of class <code>Integer</code>
+     * @param fDensity is an object of class <code>Float</code>
+     */
+    public void setEnemyDensity(int iKind, float fDensity) {
+        for (int iI = 0; iI < iArrENEMY_KINDS.length; iI++) {
+            if (iArrENEMY_KINDS[iI] == iKind) {
+                fArrEnemyDensities[iI] = Math.max(0, Math.min(fDensity, 1));
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Not an enemy: " + iKind);
+    }
+
+    /**
+     * generate
+     *
+     * Creates the map. It is created again, the same, each time this
+     * is called.
+     */
+    public void generate() {
+        Random ranRandom = new Random(lSeed);
+        cMatMap = new char[iHeight][iWidth];
+        for (int iY = 0; iY < iHeight; iY++) {
+            Arrays.fill(cMatMap[iY], cEMPTY);
+        }
+
+        // the ground gets the tiles not used for platforms
+        long lTiles = (long)(fTileDensity * iWidth * iHeight);
+        long lPlatformTiles = (long)(lTiles * fPlatformRatio);
+        int iMaxDepth = iHeight - iHEADROOM;
+        float fDepth = Math.max(1, Math.min(
+            (float)(lTiles - lPlatformTiles) / iWidth, iMaxDepth));
+        createGround(ranRandom, Math.round(fDepth), iMaxDepth);
+        createPlatforms(ranRandom, lPlatformTiles);
+
+        // the player starts over the first column
+        iPlayerX = 1;
+        iPlayerY = Math.max(0, iArrGround[iPlayerX] - 2);
+
+        // enemies, then the goal at the end
+        for (int iX = iSAFE_COLUMNS; iX < iWidth - iSAFE_COLUMNS; iX++) {
+            for (int iI = 0; iI < iArrENEMY_KINDS.length; iI++) {
+                if (cArrEnemyChars[iI] != 0 &&
+                    ranRandom.nextFloat() < fArrEnemyDensities[iI])
+                {
+                    placeEnemy(ranRandom, iArrENEMY_KINDS[iI],
+                        cArrEnemyChars[iI], iX);
+                }
+            }
+        }
+        if (cGoalChar != 0) {
+            int iX = iWidth - 2;
+            cMatMap[Math.max(0, iArrGround[iX] - 1)][iX] = cGoalChar;
+        }
+    }
+
+    /**
+     * createGround
+     *
+     * Fills the bottom of each column with ground. Its depth walks
+     * randomly around the specified average, without pits, so every
+     * column can be walked.
+     *
+     * @param ranRandom is an object of class <code>Random</code>
+     * @param iAverage is an object of class <code>Integer</code>
+     * @param iMaxDepth is an object of class <code>Integer</code>
+     */
+    private void createGround(Random ranRandom, int iAverage, int iMaxDepth) {
+        iArrGround = new int[iWidth];
+        int iDepth = iAverage;
+        for (int iX = 0; iX < iWidth; iX++) {
+            // keep the start and the end flat
+            if (iX >= iSAFE_COLUMNS && iX < iWidth - iSAFE_COLUMNS &&
+                ranRandom.nextInt(4) == 0)
+            {
+                // steps of one tile, pulled back to the average
+                int iStep = ranRandom.nextInt(3) - 1;
+                if (iDepth + iStep > iAverage + 3) {
+                    iStep = -1;
+                }
+                else if (iDepth + iStep < iAverage - 3) {
+                    iStep = 1;
+                }
+                iDepth = Math.max(1, Math.min(iDepth + iStep, iMaxDepth));
+            }
+            iArrGround[iX] = iHeight - iDepth;
+            for (int iY = iArrGround[iX]; iY < iHeight; iY++) {
+                cMatMap[iY][iX] = cGROUND_TILE;
+            }
+        }
+    }
+
+    /**
+     * createPlatforms
+     *
+     * Adds floating platforms until the specified number of tiles is
+     * used, leaving room to walk under and over them.
+     *
+     * @param ranRandom is an object of class <code>Random</code>
+     * @param lTiles is an object of class <code>Long</code>
+     */
+    private void createPlatforms(Random ranRandom, long lTiles) {
+        int iTries = 0;
+        while (lTiles > 0 && iTries < iWidth * 4) {
+            iTries++;
+            int iLength = iMIN_PLATFORM +
+                ranRandom.nextInt(iMAX_PLATFORM - iMIN_PLATFORM + 1);
+            iLength = (int)Math.min(iLength, lTiles);
+            int iX = ranRandom.nextInt(iWidth - iLength);
+
+            // the platform must fit over the highest ground under it
+            int iTop = iHeight;
+            for (int iI = iX; iI < iX + iLength; iI++) {
+                iTop = Math.min(iTop, iArrGround[iI]);
+            }
+            if (iTop - iHEADROOM < 2) {
+                continue;
+            }
+            int iY = 2 + ranRandom.nextInt(iTop - iHEADROOM - 1);
+            for (int iI = iX; iI < iX + iLength; iI++) {
+                if (cMatMap[iY][iI] == cEMPTY) {
+                    cMatMap[iY][iI] = cPLATFORM_TILE;
+                    lTiles--;
+                }
+            }
+        }
+    }
+
+    /**
+     * placeEnemy
+     *
+     * Places a creature in a column: flies a few tiles over the
+     * ground, the rest standing on it.
+     *
+     * @param ranRandom is an object of class <code>Random</code>
+     * @param iKind is an object of class <code>Integer</code>
+     * @param cChar is an object of class <code>Character</code>
+     * @param iX is an object of class <code>Integer</code>
+     */
+    private void placeEnemy(Random ranRandom, int iKind, char cChar, int iX) {
+        int iY = iArrGround[iX] - 1;
+        if (iKind == Archetype.iKIND_FLY) {
+            iY -= 2 + ranRandom.nextInt(3);
+        }
+        if (iY >= 0 && cMatMap[iY][iX] == cEMPTY) {
+            cMatMap[iY][iX] = cChar;
+        }
+    }
+
+    /**
+     * getPlayerX
+     *
+     * Gets the horizontal tile where the player should start.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getPlayerX() {
+        return iPlayerX;
+    }
+
+    /**
+     * getPlayerY
+     *
+     * Gets the vertical tile where the player should start.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getPlayerY() {
+        return iPlayerY;
+    }
+
+    /**
+     * write
+     *
+     * Writes the map created, with a comment describing how it was
+     * created.
+     *
+     * @param wriWriter is an object of class <code>Writer</code>
+     * @throws IOException
+     */
+    public void write(Writer wriWriter) throws IOException {
+        if (cMatMap == null) {
+            generate();
+        }
+        wriWriter.write("# Map created by LevelGenerator\n");
+        wriWriter.write("# " + iWidth + "x" + iHeight + " seed " + lSeed +
+            " tiles " + fTileDensity + " platforms " + fPlatformRatio +
+            " enemies");
+        for (int iI = 0; iI < fArrEnemyDensities.length; iI++) {
+            wriWriter.write(" " + fArrEnemyDensities[iI]);
+        }
+        wriWriter.write("\n# The player starts at " + iPlayerX + " " +
+            iPlayerY + "\n");
+        for (int iY = 0; iY < iHeight; iY++) {
+            // no trailing spaces
+            int iEnd = iWidth;
+            while (iEnd > 0 && cMatMap[iY][iEnd - 1] == cEMPTY) {
+                iEnd--;
+            }
+            wriWriter.write(cMatMap[iY], 0, iEnd);
+            wriWriter.write('\n');
+        }
+    }
+
+    /**
+     * main
+     *
+     * Writes a map to a file, and prints the line to add to
+     * data/levels.txt to play it.
+     *
+     * @param sArrArgs is an array of class <code>String</code>
+     */
+    public static void main(String[] sArrArgs) {
+        if (sArrArgs.length < 1) {
+            System.out.println("LevelGenerator <file> [width height seed " +
+                "tileDensity platformRatio grubDensity flyDensity " +
+                "archerDensity bossDensity]");
+            return;
+        }
+        try {
+            int iWidth = getArg(sArrArgs, 1, 1000);
+            int iHeight = getArg(sArrArgs, 2, 40);
+            long lSeed = sArrArgs.length > 3 ?
+                Long.parseLong(sArrArgs[3]) : 0;
+            LevelGenerator lgGenerator = new LevelGenerator(iWidth, iHeight,
+                lSeed, new Definitions(Definitions.sCREATURE_FILE,
+                Definitions.sLEVEL_FILE));
+            if (sArrArgs.length > 4) {
+                lgGenerator.setTileDensity(Float.parseFloat(sArrArgs[4]));
+            }
+            if (sArrArgs.length > 5) {
+                lgGenerator.setPlatformRatio(Float.parseFloat(sArrArgs[5]));
+            }
+            for (int iI = 0; iI < iArrENEMY_KINDS.length; iI++) {
+                if (sArrArgs.length > 6 + iI) {
+                    lgGenerator.setEnemyDensity(iArrENEMY_KINDS[iI],
+                        Float.parseFloat(sArrArgs[6 + iI]));
+                }
+            }
+            lgGenerator.generate();
+            Writer wriWriter = new BufferedWriter(new FileWriter(sArrArgs[0]));
+            try {
+                lgGenerator.write(wriWriter);
+            }
+            finally {
+                wriWriter.close();
+            }
+            System.out.println("level <number> " +
+                new File(sArrArgs[0]).getName() +
+                " <background> <music> " + lgGenerator.getPlayerX() + " " +
+                lgGenerator.getPlayerY());
+        }
+        catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * getArg
+     *
+     * Gets an integer argument, or the default if it's missing.
+     *
+     * @param sArrArgs is an array of class <code>String</code>
+     * @param iIndex is an object of class <code>Integer</code>
+     * @param iDefault is an object of class <code>Integer</code>
+     * @return object of class <code>Integer</code>
+     */
+    private static int getArg(String[] sArrArgs, int iIndex, int iDefault) {
+        return sArrArgs.length > iIndex ?
+            Integer.parseInt(sArrArgs[iIndex]) : iDefault;
+    }
+}
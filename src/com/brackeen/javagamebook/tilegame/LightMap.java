@@ -0,0 +1,401 @@
+package com.brackeen.javagamebook.tilegame;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.brackeen.javagamebook.graphics.AtlasFrame;
+
+/**
+ * LightMap
+ *
+ * It manages the definition of each object of type <code>LightMap</code>
+ *
+ * The LightMap class darkens a lit TileMap everywhere except around
+ * its lights. The light of the visible part of the map is added up
+ * in a low resolution grid (one cell every iCELL_SIZE pixels), which
+ * is scaled up with bilinear filtering and drawn as black over the
+ * scene, as transparent as the light is strong.
+ * <p>The grid is scaled up here, into an image as big as the screen,
+ * and only when its light changed since the last frame; the image is
+ * then drawn unscaled. Letting Java2D scale the grid with filtering
+ * costs several times more when drawing is not accelerated.</p>
+ * <p>The fixed lights of the map (torches) never change, so their
+ * light is added up once per chunk of iCHUNK_TILES by iCHUNK_TILES
+ * tiles, when the chunk is first seen, and kept in a cache of the
+ * most recently seen chunks. Each frame only copies the cached chunks
+ * on screen and adds the lights of the sprites on screen, so its cost
+ * depends on the screen and the lights in it, not on the size of the
+ * map.</p>
+ * <p>It is only used by the thread that draws.</p>
+ *
+ * @author Quazar Volume
+ */
+public class LightMap {
+
+    // Size of a cell of the grid, in pixels
+    private static final int iCELL_SIZE = 16;
+    // Size of a chunk, in tiles and in cells
+    private static final int iCHUNK_TILES = 8;
+    private static final int iCHUNK_CELLS =
+        TileMapRenderer.tilesToPixels(iCHUNK_TILES) / iCELL_SIZE;
+    // Chunks kept in the cache
+    private static final int iMAX_CHUNKS = 256;
+    // Light of a chunk without fixed lights
+    private static final int[] iArrNO_LIGHT = new int[0];
+
+    private final TileMap tmMap;
+    private final HashMap hmChunkLights;    // Fixed lights touching each chunk
+    private final LinkedHashMap lhmChunks;  // Cached light of each chunk
+
+    // Grid of the screen
+    private int[] iArrCells;
+    private int[] iArrDarkness;         // Alpha of each cell, 255 - light
+    private int[] iArrDrawnDarkness;    // Alpha of each cell in bufImage
+    private boolean bScaled;            // bufImage holds iArrDrawnDarkness
+    private int iGridWidth;
+    private int iGridHeight;
+
+    // Grid scaled up, in black with alpha premultiplied
+    private BufferedImage bufImage;
+    private int[] iArrPixels;
+    private int[] iArrRow;              // Row of cells interpolated vertically
+    private int[] iArrCellX;            // First cell of each column of pixels
+    private int[] iArrWeightX;          // Weight of the next cell
+
+    /**
+     * LightMap
+     *
+     * Parameterized Constructor
+     *
+     * Creates the LightMap of a TileMap, finding the chunks each of
+     * its fixed lights reaches.
+     *
+     * @param tmMap is an object of class <code>TileMap</code>
+     */
+    public LightMap(TileMap tmMap) {
+        this.tmMap = tmMap;
+        hmChunkLights = new HashMap();
+        for (int iI = 0; iI < tmMap.getNumLights(); iI++) {
+            int[] iArrLight = tmMap.getLight(iI);
+            int iFirstX = chunkOf(iArrLight[0] - iArrLight[2]);
+            int iLastX = chunkOf(iArrLight[0] + iArrLight[2]);
+            int iFirstY = chunkOf(iArrLight[1] - iArrLight[2]);
+            int iLastY = chunkOf(iArrLight[1] + iArrLight[2]);
+            for (int iY = iFirstY; iY <= iLastY; iY++) {
+                for (int iX = iFirstX; iX <= iLastX; iX++) {
+                    Long lKey = Long.valueOf(chunkKey(iX, iY));
+                    ArrayList ArrLights = (ArrayList)hmChunkLights.get(lKey);
+                    if (ArrLights == null) {
+                        ArrLights = new ArrayList();
+                        hmChunkLights.put(lKey, ArrLights);
+                    }
+                    ArrLights.add(iArrLight);
+                }
+            }
+        }
+        lhmChunks = new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry meEldest) {
+                return size() > iMAX_CHUNKS;
+            }
+        };
+    }
+
+    /**
+     * getMap
+     *
+     * Gets the TileMap lit.
+     *
+     * @return object of class <code>TileMap</code>
+     */
+    public TileMap getMap() {
+        return tmMap;
+    }
+
+    /**
+     * draw
+     *
+     * Darkens the screen drawn from a WorldSnapshot of the map,
+     * except around the fixed lights and the lights of its sprites.
+     *
+     * @param gra2D_G is an object of class <code>Graphics2D</code>
+     * @param wsSnapshot is an object of class <code>WorldSnapshot</code>
+     * @param iScreenWidth is an object of class <code>Integer</code>
+     * @param iScreenHeight is an object of class <code>Integer</code>
+     */
+    public void draw(Graphics2D gra2D_G, WorldSnapshot wsSnapshot,
+        int iScreenWidth, int iScreenHeight)
+    {
+        int iOffsetX = wsSnapshot.getOffsetX();
+        int iOffsetY = wsSnapshot.getOffsetY();
+        resize(iScreenWidth / iCELL_SIZE + 2, iScreenHeight / iCELL_SIZE + 2);
+
+        // first cell on screen, in cells of the world
+        int iFirstCellX = Math.floorDiv(-iOffsetX, iCELL_SIZE);
+        int iFirstCellY = Math.floorDiv(-iOffsetY, iCELL_SIZE);
+
+        // the light everywhere, and the cached fixed lights
+        Arrays.fill(iArrCells, 0, iGridWidth * iGridHeight,
+            tmMap.getAmbient());
+        int iLastChunkX = Math.floorDiv(iFirstCellX + iGridWidth - 1,
+            iCHUNK_CELLS);
+        int iLastChunkY = Math.floorDiv(iFirstCellY + iGridHeight - 1,
+            iCHUNK_CELLS);
+        for (int iChunkY = Math.floorDiv(iFirstCellY, iCHUNK_CELLS);
+            iChunkY <= iLastChunkY; iChunkY++)
+        {
+            for (int iChunkX = Math.floorDiv(iFirstCellX, iCHUNK_CELLS);
+                iChunkX <= iLastChunkX; iChunkX++)
+            {
+                addChunk(iChunkX, iChunkY, iFirstCellX, iFirstCellY);
+            }
+        }
+
+        // the lights of the sprites
+        for (int iI = 0; iI < wsSnapshot.getNumSprites(); iI++) {
+            if (wsSnapshot.getLightRadius(iI) > 0) {
+                AtlasFrame afFrame = wsSnapshot.getFrame(iI);
+                addLight(iArrCells, iGridWidth, iGridHeight,
+                    iFirstCellX, iFirstCellY,
+                    wsSnapshot.getX(iI) + afFrame.getWidth() / 2,
+                    wsSnapshot.getY(iI) + afFrame.getHeight() / 2,
+                    wsSnapshot.getLightRadius(iI),
+                    wsSnapshot.getLightIntensity(iI));
+            }
+        }
+
+        // black, as transparent as the light is strong
+        for (int iI = 0; iI < iGridWidth * iGridHeight; iI++) {
+            iArrDarkness[iI] = 255 - Math.min(iArrCells[iI], 255);
+        }
+
+        // scale it up, unless it is the same as in the last frame
+        if (!bScaled || !Arrays.equals(iArrDarkness, iArrDrawnDarkness)) {
+            scaleUp();
+            System.arraycopy(iArrDarkness, 0, iArrDrawnDarkness, 0,
+                iArrDarkness.length);
+            bScaled = true;
+        }
+        gra2D_G.drawImage(bufImage, iFirstCellX * iCELL_SIZE + iOffsetX,
+            iFirstCellY * iCELL_SIZE + iOffsetY, null);
+    }
+
+    /**
+     * scaleUp
+     *
+     * Scales the darkness of the grid up into the image, with bilinear
+     * filtering: each pixel mixes the four cells whose centers are
+     * around it. Pixels past the first or last centers take the
+     * nearest cell.
+     */
+    private void scaleUp() {
+        // positions are in halves of a pixel, so centers are whole
+        int iScale = 2 * iCELL_SIZE;
+        int iWidth = iGridWidth * iCELL_SIZE;
+        int iHeight = iGridHeight * iCELL_SIZE;
+        for (int iY = 0; iY < iHeight; iY++) {
+            // the two rows of cells around this row of pixels
+            int iPosition = 2 * iY + 1 - iCELL_SIZE;
+            int iCellY = Math.floorDiv(iPosition, iScale);
+            int iWeightY = iPosition - iCellY * iScale;
+            int iRow0 = Math.max(iCellY, 0) * iGridWidth;
+            int iRow1 = Math.min(iCellY + 1, iGridHeight - 1) * iGridWidth;
+            for (int iX = 0; iX < iGridWidth; iX++) {
+                iArrRow[iX] = iArrDarkness[iRow0 + iX] * (iScale - iWeightY) +
+                    iArrDarkness[iRow1 + iX] * iWeightY;
+            }
+
+            // mix the two cells around each column
+            int iPixel = iY * iWidth;
+            for (int iX = 0; iX < iWidth; iX++) {
+                int iCellX = iArrCellX[iX];
+                int iAlpha = (iArrRow[iCellX] * (iScale - iArrWeightX[iX]) +
+                    iArrRow[iCellX + 1] * iArrWeightX[iX] +
+                    iScale * iScale / 2) / (iScale * iScale);
+                iArrPixels[iPixel + iX] = iAlpha << 24;
+            }
+        }
+    }
+
+    /**
+     * resize
+     *
+     * Makes the grid (and its image) of the specified size, in cells,
+     * and finds the cells mixed by each column of pixels. They are
+     * only created again if the size changes.
+     *
+     * @param iGridWidth is an object of class <code>Integer</code>
+     * @param iGridHeight is an object of class <code>Integer</code>
+     */
+    private void resize(int iGridWidth, int iGridHeight) {
+        if (bufImage != null && this.iGridWidth == iGridWidth &&
+            this.iGridHeight == iGridHeight)
+        {
+            return;
+        }
+        this.iGridWidth = iGridWidth;
+        this.iGridHeight = iGridHeight;
+        iArrCells = new int[iGridWidth * iGridHeight];
+        iArrDarkness = new int[iGridWidth * iGridHeight];
+        iArrDrawnDarkness = new int[iGridWidth * iGridHeight];
+        bScaled = false;
+        // one more cell, read with no weight by the last columns
+        iArrRow = new int[iGridWidth + 1];
+
+        int iWidth = iGridWidth * iCELL_SIZE;
+        bufImage = new BufferedImage(iWidth, iGridHeight * iCELL_SIZE,
+            BufferedImage.TYPE_INT_ARGB_PRE);
+        iArrPixels = ((DataBufferInt)bufImage.getRaster().getDataBuffer())
+            .getData();
+        iArrCellX = new int[iWidth];
+        iArrWeightX = new int[iWidth];
+        int iScale = 2 * iCELL_SIZE;
+        for (int iX = 0; iX < iWidth; iX++) {
+            int iPosition = 2 * iX + 1 - iCELL_SIZE;
+            int iCellX = Math.floorDiv(iPosition, iScale);
+            if (iCellX < 0) {
+                iArrCellX[iX] = 0;
+                iArrWeightX[iX] = 0;
+            }
+            else if (iCellX >= iGridWidth - 1) {
+                iArrCellX[iX] = iGridWidth - 1;
+                iArrWeightX[iX] = 0;
+            }
+            else {
+                iArrCellX[iX] = iCellX;
+                iArrWeightX[iX] = iPosition - iCellX * iScale;
+            }
+        }
+    }
+
+    /**
+     * addChunk
+     *
+     * Adds the light of the fixed lights of a chunk to the grid. It
+     * is added up and cached the first time the chunk is seen.
+     *
+     * @param iChunkX is an object of class <code>Integer</code>
+     * @param iChunkY is an object of class <code>Integer</code>
+     * @param iFirstCellX is an object of class <code>Integer</code>
+     * @param iFirstCellY is an object of class <code>Integer</code>
+     */
+    private void addChunk(int iChunkX, int iChunkY, int iFirstCellX,
+        int iFirstCellY)
+    {
+        Long lKey = Long.valueOf(chunkKey(iChunkX, iChunkY));
+        int[] iArrChunk = (int[])lhmChunks.get(lKey);
+        if (iArrChunk == null) {
+            ArrayList ArrLights = (ArrayList)hmChunkLights.get(lKey);
+            if (ArrLights == null) {
+                iArrChunk = iArrNO_LIGHT;
+            }
+            else {
+                iArrChunk = new int[iCHUNK_CELLS * iCHUNK_CELLS];
+                for (int iI = 0; iI < ArrLights.size(); iI++) {
+                    int[] iArrLight = (int[])ArrLights.get(iI);
+                    addLight(iArrChunk, iCHUNK_CELLS, iCHUNK_CELLS,
+                        iChunkX * iCHUNK_CELLS, iChunkY * iCHUNK_CELLS,
+                        iArrLight[0], iArrLight[1], iArrLight[2],
+                        iArrLight[3]);
+                }
+            }
+            lhmChunks.put(lKey, iArrChunk);
+        }
+        if (iArrChunk == iArrNO_LIGHT) {
+            return;
+        }
+
+        // the part of the chunk on screen
+        int iChunkCellX = iChunkX * iCHUNK_CELLS - iFirstCellX;
+        int iChunkCellY = iChunkY * iCHUNK_CELLS - iFirstCellY;
+        int iStartX = Math.max(0, -iChunkCellX);
+        int iEndX = Math.min(iCHUNK_CELLS, iGridWidth - iChunkCellX);
+        int iStartY = Math.max(0, -iChunkCellY);
+        int iEndY = Math.min(iCHUNK_CELLS, iGridHeight - iChunkCellY);
+        for (int iY = iStartY; iY < iEndY; iY++) {
+            int iCell = (iChunkCellY + iY) * iGridWidth + iChunkCellX;
+            int iChunkCell = iY * iCHUNK_CELLS;
+            for (int iX = iStartX; iX < iEndX; iX++) {
+                iArrCells[iCell + iX] += iArrChunk[iChunkCell + iX];
+            }
+        }
+    }
+
+    /**
+     * addLight
+     *
+     * Adds the light of a point to the cells of a grid, fading from
+     * its intensity at the point to nothing at its radius. The grid
+     * starts at a cell of the world.
+     *
+     * @param iArrGrid is an array of class <code>Integer</code>
+     * @param iWidth is an object of class <code>Integer</code>
+     * @param iHeight is an object of class <code>Integer</code>
+     * @param iFirstCellX is an object of class <code>Integer</code>
+     * @param iFirstCellY is an object of class <code>Integer</code>
+     * @param iLightX is an object of class <code>Integer</code>
+     * @param iLightY is an object of class <code>Integer</code>
+     * @param iRadius is an object of class <code>Integer</code>
+     * @param iIntensity is an object of class <code>Integer</code>
+     */
+    private static void addLight(int[] iArrGrid, int iWidth, int iHeight,
+        int iFirstCellX, int iFirstCellY, int iLightX, int iLightY,
+        int iRadius, int iIntensity)
+    {
+        // cells reached, inside the grid
+        int iStartX = Math.max(0,
+            Math.floorDiv(iLightX - iRadius, iCELL_SIZE) - iFirstCellX);
+        int iEndX = Math.min(iWidth - 1,
+            Math.floorDiv(iLightX + iRadius, iCELL_SIZE) - iFirstCellX);
+        int iStartY = Math.max(0,
+            Math.floorDiv(iLightY - iRadius, iCELL_SIZE) - iFirstCellY);
+        int iEndY = Math.min(iHeight - 1,
+            Math.floorDiv(iLightY + iRadius, iCELL_SIZE) - iFirstCellY);
+
+        long lRadius2 = (long)iRadius * iRadius;
+        for (int iY = iStartY; iY <= iEndY; iY++) {
+            long lDy = (iFirstCellY + iY) * iCELL_SIZE + iCELL_SIZE / 2 -
+                iLightY;
+            for (int iX = iStartX; iX <= iEndX; iX++) {
+                long lDx = (iFirstCellX + iX) * iCELL_SIZE + iCELL_SIZE / 2 -
+                    iLightX;
+                long lDistance2 = lDx * lDx + lDy * lDy;
+                if (lDistance2 < lRadius2) {
+                    iArrGrid[iY * iWidth + iX] += (int)(iIntensity *
+                        (lRadius2 - lDistance2) / lRadius2);
+                }
+            }
+        }
+    }
+
+    /**
+     * chunkOf
+     *
+     * Gets the chunk of a position in pixels.
+     *
+     * @param iPixels is an object of class <code>Integer</code>
+     * @return object of class <code>Integer</code>
+     */
+    private static int chunkOf(int iPixels) {
+        return Math.floorDiv(TileMapRenderer.pixelsToTiles(iPixels),
+            iCHUNK_TILES);
+    }
+
+    /**
+     * chunkKey
+     *
+     * Gets the key of a chunk in the caches.
+     *
+     * @param iChunkX is an object of class <code>Integer</code>
+     * @param iChunkY is an object of class <code>Integer</code>
+     * @return object of class <code>Long</code>
+     */
+    private static long chunkKey(int iChunkX, int iChunkY) {
+        return ((long)iChunkX << 32) | (iChunkY & 0xffffffffL);
+    }
+}
@@ -0,0 +1,152 @@
+package com.brackeen.javagamebook.tilegame;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+
+/**
+ * MapLayer
+ *
+ * It manages the definition of each object of type <code>MapLayer</code>
+ *
+ * The MapLayer class is an extra background or foreground layer of a
+ * TileMap. A layer scrolls with its own factor relative to the map
+ * (1 moves with the tiles, less than 1 moves slower, creating a
+ * parallax effect). The content of the layer (an image or a grid of
+ * tiles) is cut once into vertical strips of compatible images, so
+ * only the strips that are on screen are drawn each frame.
+ *
+ * @author Quazar Volume
+ */
+public class MapLayer {
+
+    // Width in pixels of each cached strip
+    public static final int iSTRIP_WIDTH = 256;
+
+    private Image[] imaArrStrips;   // Pre-cut strips, left to right
+    private int iWidth;             // Total width in pixels
+    private int iHeight;            // Total height in pixels
+    private float fScrollX;
+    private float fScrollY;
+    private boolean bForeground;
+    private boolean bRepeat;        // Repeat the layer horizontally
+
+    /**
+     * MapLayer
+     *
+     * Parameterized Constructor
+     *
+     * Creates a new MapLayer from the specified strips.
+     *
+     * @param imaArrStrips is an array of class <code>Image</code>
+     * @param iWidth is an object of class <code>Integer</code>
+     * @param iHeight is an object of class <code>Integer</code>
+     * @param fScrollX is an object of class <code>Float</code>
+     * @param fScrollY is an object of class <code>Float</code>
+     * @param bForeground is an object of class <code>Boolean</code>
+     * @param bRepeat is an object of class <code>Boolean</code>
+     */
+    public MapLayer(Image[] imaArrStrips, int iWidth, int iHeight,
+        float fScrollX, float fScrollY, boolean bForeground, boolean bRepeat)
+    {
+        this.imaArrStrips = imaArrStrips;
+        this.iWidth = iWidth;
+        this.iHeight = iHeight;
+        this.fScrollX = fScrollX;
+        this.fScrollY = fScrollY;
+        this.bForeground = bForeground;
+        this.bRepeat = bRepeat;
+    }
+
+    /**
+     * isForeground
+     *
+     * Checks if this layer is drawn in front of the sprites.
+     *
+     * @return object of class <code>Boolean</code>
+     */
+    public boolean isForeground() {
+        return bForeground;
+    }
+
+    /**
+     * getWidth
+     *
+     * Gets the width of this layer in pixels.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getWidth() {
+        return iWidth;
+    }
+
+    /**
+     * getHeight
+     *
+     * Gets the height of this layer in pixels.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getHeight() {
+        return iHeight;
+    }
+
+    /**
+     * draw
+     *
+     * Draws the visible strips of this layer for the specified
+     * scrolling position of the map.
+     *
+     * @param gra2D_G is an object of class <code>Graphics2D</code>
+     * @param iOffsetX is an object of class <code>Integer</code>
+     * @param iOffsetY is an object of class <code>Integer</code>
+     * @param iScreenWidth is an object of class <code>Integer</code>
+     * @param iScreenHeight is an object of class <code>Integer</code>
+     */
+    public void draw(Graphics2D gra2D_G, int iOffsetX, int iOffsetY,
+        int iScreenWidth, int iScreenHeight)
+    {
+        int iX = Math.round(iOffsetX * fScrollX);
+        int iY = Math.round(iOffsetY * fScrollY);
+        if (iY >= iScreenHeight || iY + iHeight <= 0 || iWidth == 0) {
+            return;
+        }
+
+        if (bRepeat) {
+            // start with the copy that covers the left border
+            iX = iX % iWidth;
+            if (iX > 0) {
+                iX -= iWidth;
+            }
+            for (; iX < iScreenWidth; iX += iWidth) {
+                drawStrips(gra2D_G, iX, iY, iScreenWidth);
+            }
+        }
+        else {
+            drawStrips(gra2D_G, iX, iY, iScreenWidth);
+        }
+    }
+
+    /**
+     * drawStrips
+     *
+     * Draws the strips of one copy of this layer that are inside
+     * the screen.
+     *
+     * @param gra2D_G is an object of class <code>Graphics2D</code>
+     * @param iX is an object of class <code>Integer</code>
+     * @param iY is an object of class <code>Integer</code>
+     * @param iScreenWidth is an object of class <code>Integer</code>
+     */
+    private void drawStrips(Graphics2D gra2D_G, int iX, int iY,
+        int iScreenWidth)
+    {
+        int iFirstStrip = Math.max(0, -iX / iSTRIP_WIDTH);
+        for (int iI = iFirstStrip; iI < imaArrStrips.length; iI++) {
+            int iStripX = iX + iI * iSTRIP_WIDTH;
+            if (iStripX >= iScreenWidth) {
+                break;
+            }
+            gra2D_G.drawImage(imaArrStrips[iI], iStripX, iY, null);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.brackeen.javagamebook.tilegame;
+
+import java.util.ArrayList;
+
+import com.brackeen.javagamebook.input.GameAction;
+import com.brackeen.javagamebook.input.InputSnapshot;
+import com.brackeen.javagamebook.sound.Sound;
+import com.brackeen.javagamebook.sound.SoundEventBus;
+
+/**
+ * MenuState
+ *
+ * It manages the definition of each object of type <code>MenuState</code>
+ *
+ * The MenuState class is a static screen of the game, described only
+ * by data: a background, the music, an optional message, and the
+ * options it has. Each option is a GameAction that leads to another
+ * state (replacing the stack, opening a state over this one, closing
+ * this one, or quitting the game), optionally with a sound. The
+ * screen can also lead to another state after some time.
+ * <p>The logo, the menus, the pause screen, the game over screen and
+ * the credits are all MenuStates. They don't load maps or creatures.</p>
+ *
+ * @author Quazar Volume
+ */
+public class MenuState extends GameState {
+
+    // Transitions of an option
+    public static final int iGO_TO = 0;     // Replace the whole stack
+    public static final int iOPEN = 1;      // Put a state over this one
+    public static final int iCLOSE = 2;     // Remove this state
+    public static final int iQUIT = 3;      // Quit the game
+
+    private String sBackground;     // Background, or null to keep the one below
+    private String sMusic;          // Music, or null to keep the one playing
+    private String sMessage;
+    private boolean bOverlay;
+    private ArrayList ArrOptions;
+    private long lTimeout;          // Time before going to the timeout state
+    private GameState gsTimeoutState;
+    private long lTime;             // Time on this screen, in ms
+
+    /**
+     * MenuState
+     *
+     * Parameterized Constructor
+     *
+     * Creates a new MenuState, with no options.
+     *
+     * @param gmGame is an object of class <code>GameManager</code>
+     * @param sBackground is an object of class <code>String</code>
+     * @param sMusic is an object of class <code>String</code>
+     */
+    public MenuState(GameManager gmGame, String sBackground, String sMusic) {
+        super(gmGame);
+        this.sBackground = sBackground;
+        this.sMusic = sMusic;
+        ArrOptions = new ArrayList();
+    }
+
+    /**
+     * setOverlay
+     *
+     * Sets if this screen is drawn over the state below it.
+     *
+     * @param bOverlay is an object of class <code>Boolean</code>
+     */
+    public void setOverlay(boolean bOverlay) {
+        this.bOverlay = bOverlay;
+    }
+
+    /**
+     * setMessage
+     *
+     * Sets the message shown on this screen.
+     *
+     * @param sMessage is an object of class <code>String</code>
+     */
+    public void setMessage(String sMessage) {
+        this.sMessage = sMessage;
+    }
+
+    /**
+     * setTimeout
+     *
+     * Makes this screen go to another state after some time.
+     *
+     * @param lTimeout is an object of class <code>Long</code>
+     * @param gsState is an object of class <code>GameState</code>
+     */
+    public void setTimeout(long lTimeout, GameState gsState) {
+        this.lTimeout = lTimeout;
+        gsTimeoutState = gsState;
+        addNext(gsState);
+    }
+
+    /**
+     * addOption
+     *
+     * Adds an option to this screen. The state is ignored when the
+     * option closes this screen or quits, and the sound can be null.
+     *
+     * @param gaAction is an object of class <code>GameAction</code>
+     * @param iTransition is an object of class <code>Integer</code>
+     * @param gsState is an object of class <code>GameState</code>
+     * @param souSound is an object of class <code>Sound</code>
+     */
+    public void addOption(GameAction gaAction, int iTransition,
+        GameState gsState, Sound souSound)
+    {
+        ArrOptions.add(new Option(gaAction, iTransition, gsState, souSound));
+        if (iTransition == iGO_TO || iTransition == iOPEN) {
+            addNext(gsState);
+        }
+    }
+
+    /**
+     * enter
+     *
+     * Shows the background, plays the music and preloads the states
+     * this screen leads to.
+     */
+    public void enter() {
+        lTime = 0;
+        if (sBackground != null) {
+            gmGame.showBackground(sBackground);
+        }
+        if (sMusic != null) {
+            gmGame.playMusic(sMusic);
+        }
+        super.enter();
+    }
+
+    /**
+     * preload
+     *
+     * Starts loading the background of this screen.
+     */
+    public void preload() {
+        if (sBackground != null) {
+            gmGame.preloadBackground(sBackground);
+        }
+    }
+
+    /**
+     * isOverlay
+     *
+     * Checks if this screen is drawn over the state below it.
+     *
+     * @return object of class <code>Boolean</code>
+     */
+    public boolean isOverlay() {
+        return bOverlay;
+    }
+
+    /**
+     * getMessage
+     *
+     * Gets the message shown on this screen, or null.
+     *
+     * @return object of class <code>String</code>
+     */
+    public String getMessage() {
+        return sMessage;
+    }
+
+    /**
+     * update
+     *
+     * Follows the first option pressed, or the timeout.
+     *
+     * @param insInput is an object of class <code>InputSnapshot</code>
+     * @param lElapsedTime is an object of class <code>Long</code>
+     */
+    public void update(InputSnapshot insInput, long lElapsedTime) {
+        lTime += lElapsedTime;
+        if (gsTimeoutState != null && lTime >= lTimeout) {
+            gmGame.getStates().set(gsTimeoutState);
+            return;
+        }
+        for (int iI = 0; iI < ArrOptions.size(); iI++) {
+            Option optOption = (Option)ArrOptions.get(iI);
+            if (insInput.isPressed(optOption.gaAction)) {
+                follow(optOption);
+                return;
+            }
+        }
+    }
+
+    /**
+     * follow
+     *
+     * Follows an option.
+     *
+     * @param optOption is an object of class <code>Option</code>
+     */
+    private void follow(Option optOption) {
+        if (optOption.souSound != null) {
+            gmGame.getSoundBus().post(optOption.souSound,
+                SoundEventBus.iPRIORITY_HIGH);
+        }
+        switch (optOption.iTransition) {
+            case iGO_TO:
+                gmGame.getStates().set(optOption.gsState);
+                break;
+            case iOPEN:
+                gmGame.getStates().push(optOption.gsState);
+                break;
+            case iCLOSE:
+                gmGame.getStates().pop();
+                break;
+            default:
+                gmGame.stop();
+                break;
+        }
+    }
+
+    /**
+     * Option
+     *
+     * It manages the definition of each object of type <code>Option</code>
+     *
+     * The Option class holds an option of a menu.
+     *
+     * @author Quazar Volume
+     */
+    private static class Option {
+
+        GameAction gaAction;    // Action that chooses the option
+        int iTransition;        // What the option does
+        GameState gsState;      // State it leads to
+        Sound souSound;         // Sound played, or null
+
+        /**
+         * Option
+         *
+         * Parameterized Constructor
+         *
+         * @param gaAction is an object of class <code>GameAction</code>
+         * @param iTransition is an object of class <code>Integer</code>
+         * @param gsState is an object of class <code>GameState</code>
+         * @param souSound is an object of class <code>Sound</code>
+         */
+        Option(GameAction gaAction, int iTransition, GameState gsState,
+            Sound souSound)
+        {
+            this.gaAction = gaAction;
+            this.iTransition = iTransition;
+            this.gsState = gsState;
+            this.souSound = souSound;
+        }
+    }
+}
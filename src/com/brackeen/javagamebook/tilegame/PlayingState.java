@@ -0,0 +1,81 @@
+package com.brackeen.javagamebook.tilegame;
+
+import com.brackeen.javagamebook.input.InputSnapshot;
+
+/**
+ * PlayingState
+ *
+ * It manages the definition of each object of type <code>PlayingState</code>
+ *
+ * The PlayingState class is the game itself. The level map, its
+ * creatures and the physics only exist while this state is in the
+ * stack: a new game starts when it enters, and the map is released
+ * when it exits. While the player is in the main menu, the first
+ * level is preloaded.
+ *
+ * @author Quazar Volume
+ */
+public class PlayingState extends GameState {
+
+    /**
+     * PlayingState
+     *
+     * Parameterized Constructor
+     *
+     * @param gmGame is an object of class <code>GameManager</code>
+     */
+    public PlayingState(GameManager gmGame) {
+        super(gmGame);
+    }
+
+    /**
+     * enter
+     *
+     * Starts a new game.
+     */
+    public void enter() {
+        gmGame.startGame();
+        super.enter();
+    }
+
+    /**
+     * resume
+     *
+     * Preloads the states the game leads to again, since the state
+     * that was over the game (the pause screen) may have released
+     * them.
+     */
+    public void resume() {
+        preloadNext();
+    }
+
+    /**
+     * exit
+     *
+     * Releases the level.
+     */
+    public void exit() {
+        gmGame.endGame();
+    }
+
+    /**
+     * preload
+     *
+     * Starts loading the first level.
+     */
+    public void preload() {
+        gmGame.preloadGame();
+    }
+
+    /**
+     * update
+     *
+     * Updates the game.
+     *
+     * @param insInput is an object of class <code>InputSnapshot</code>
+     * @param lElapsedTime is an object of class <code>Long</code>
+     */
+    public void update(InputSnapshot insInput, long lElapsedTime) {
+        gmGame.updateGame(lElapsedTime);
+    }
+}
@@ -3,11 +3,20 @@ package com.brackeen.javagamebook.tilegame;
 import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
 
 import com.brackeen.javagamebook.graphics.*;
 import com.brackeen.javagamebook.tilegame.sprites.*;
+import com.brackeen.javagamebook.util.AssetLoader;
+import com.brackeen.javagamebook.util.Metrics;
 import java.util.Iterator;
 
 
@@ -18,30 +27,37 @@ import java.util.Iterator;
  *
  * The ResourceManager class loads and manages tile Images and
  * "host" Sprites used in the game. Game Sprites are cloned from
- * "host" Sprites.
+ * "host" Sprites, which are created from the Definitions read from
+ * the data/ directory.
  *
  * @author Quazar Volume
  *
  */
 public class ResourceManager {
 
-    private ArrayList ArrTiles;
+    // Size in pixels of each page of the sprite atlas
+    private static final int iATLAS_PAGE_SIZE = 1024;
+
+    private AtlasFrame[] afArrTiles;    // Tile A, B, C..., then the animated tiles
+    private int iNumLetterTiles;    // Tiles placed by a letter
+    private AnimatedTile[] atArrAnimatedTiles;
+    private int[] iArrTileTypes;    // Default collision type of each tile
+    private int[] iArrCharCodes;    // What each map character places
     protected int iCurrentMap;
     private GraphicsConfiguration gcGraphicsConfiguration;
+    private SpriteAtlas saAtlas;    // Pages with every tile and sprite frame
+    private HashMap hmFrames;       // Atlas frames by image file name
+    private AssetLoader alLoader;   // Decodes images in parallel
+    private FrameCache fcFrameCache; // Transformed creature frames saved on disk
+    private Definitions defDefinitions; // Creatures, power-ups and levels
+    private Metrics mtrMetrics;     // Map parsing metrics
 
-    // host sprites used for cloning
+    // host sprites used for cloning, by archetype index
+    private Sprite[] sprArrHosts;
     private Sprite sprPlayerSprite;
-    private Sprite sprMusicSprite;
-    private Sprite sprCoinSprite;
-    private Sprite sprGoalSprite;
-    private Sprite sprGrubSprite;
     private Sprite sprFlySprite;
     private Sprite sprArrowSprite;  // Sideways arrow
     private Sprite sprArrowSprite2; // Arrow aiming downwards
-    private Sprite sprArcherSprite;
-    private Sprite sprAguaSprite;
-    private Sprite sprPicosSprite;
-    private Sprite sprBossSprite;
     
     public Animation aniDefaultAnim; //Animation meant to be used by other classes when there is no animation available
 
@@ -55,11 +71,48 @@ public class ResourceManager {
      * of class <code>GraphicsConfiguration</code>
      */
     public ResourceManager(GraphicsConfiguration gcGraphicsConfiguration) {
+        this(gcGraphicsConfiguration, null);
+    }
+
+    /**
+     * ResourceManager
+     * 
+     * Creates a new ResourceManager with the specified
+     * GraphicsConfiguration, that decodes its images in parallel on 
+     * the specified AssetLoader. If the AssetLoader is null, a 
+     * temporary one is used.
+     * 
+     * @param gcGraphicsConfiguration is an object
+     * of class <code>GraphicsConfiguration</code>
+     * @param alLoader is an object of class <code>AssetLoader</code>
+     */
+    public ResourceManager(GraphicsConfiguration gcGraphicsConfiguration,
+        AssetLoader alLoader)
+    {
         this.gcGraphicsConfiguration = gcGraphicsConfiguration;
+        this.alLoader = (alLoader != null) ? alLoader : new AssetLoader();
+        saAtlas = new SpriteAtlas(gcGraphicsConfiguration, iATLAS_PAGE_SIZE);
+        hmFrames = new HashMap();
+        fcFrameCache = new FrameCache(new File("cache"));
+        try {
+            defDefinitions = new Definitions(Definitions.sCREATURE_FILE,
+                Definitions.sLEVEL_FILE);
+        }
+        catch (IOException ex) {
+            ex.printStackTrace();
+            defDefinitions = new Definitions();
+        }
+        sprArrHosts = new Sprite[defDefinitions.getNumArchetypes()];
         loadTileImages();
         loadCreatureSprites();
         loadPowerUpSprites();
+        createCharCodes();
+        mtrMetrics = new Metrics();
         aniDefaultAnim = null;
+        if (alLoader == null) {
+            this.alLoader.close();
+            this.alLoader = null;
+        }
     }
     
     /**
@@ -73,6 +126,28 @@ public class ResourceManager {
         return iCurrentMap;
     }
 
+    /**
+     * setMetrics
+     * 
+     * Sets the Metrics the time spent parsing maps is added to.
+     * 
+     * @param mtrMetrics is an object of class <code>Metrics</code>
+     */
+    public void setMetrics(Metrics mtrMetrics) {
+        this.mtrMetrics = mtrMetrics;
+    }
+
+    /**
+     * getDefinitions
+     * 
+     * Gets the definitions of the creatures, power-ups and levels.
+     * 
+     * @return object of class <code>Definitions</code>
+     */
+    public Definitions getDefinitions() {
+        return defDefinitions;
+    }
+
     /**
      * loadImage
      * 
@@ -83,9 +158,119 @@ public class ResourceManager {
      */
     public Image loadImage(String sName) {
         String sFilename = "images/" + sName;
+        // ImageIO can decode on several threads at once
+        try {
+            Image imaImage = ImageIO.read(new File(sFilename));
+            if (imaImage != null) {
+                return imaImage;
+            }
+        }
+        catch (IOException ex) {
+            // let ImageIcon try, as before
+        }
         return new ImageIcon(sFilename).getImage();
     }
 
+    /**
+     * loadCompatibleImageAsync
+     * 
+     * Loads a compatible image on the AssetLoader and returns 
+     * immediately. The image is obtained later from the Future.
+     * Must be called while an AssetLoader is available.
+     * 
+     * @param sName is an object of class <code>String</code>
+     * @return object of class <code>Future</code>
+     */
+    public Future<Image> loadCompatibleImageAsync(final String sName) {
+        return alLoader.submit(new Callable<Image>() {
+            public Image call() {
+                return loadCompatibleImage(sName);
+            }
+        });
+    }
+
+    /**
+     * getAtlasBytes
+     * 
+     * Gets an estimate of the memory used by the sprite atlas 
+     * (tiles, creatures and power-ups), in bytes.
+     * 
+     * @return object of class <code>Long</code>
+     */
+    public long getAtlasBytes() {
+        return saAtlas.getBytes();
+    }
+
+    /**
+     * loadFrames
+     * 
+     * Loads several images into the sprite atlas. The images are 
+     * decoded in parallel and packed in order, so later calls to 
+     * loadFrame with the same names return immediately.
+     * 
+     * @param sArrNames is an array of class <code>String</code>
+     */
+    private void loadFrames(String[] sArrNames) {
+        Future[] futArrImages = new Future[sArrNames.length];
+        for (int iI = 0; iI < sArrNames.length; iI++) {
+            if (!hmFrames.containsKey(sArrNames[iI])) {
+                final String sName = sArrNames[iI];
+                futArrImages[iI] = alLoader.submit(new Callable<Image>() {
+                    public Image call() {
+                        return loadImage(sName);
+                    }
+                });
+            }
+        }
+        for (int iI = 0; iI < sArrNames.length; iI++) {
+            Image imaImage = (Image)AssetLoader.getResult(futArrImages[iI]);
+            if (imaImage != null && !hmFrames.containsKey(sArrNames[iI])) {
+                hmFrames.put(sArrNames[iI], saAtlas.add(imaImage));
+            }
+        }
+    }
+
+    /**
+     * loadFrame
+     * 
+     * Loads an image from the images/ directory into the sprite atlas
+     * and gets its frame. Each file is only packed once.
+     * 
+     * @param sName is an object of class <code>String</code>
+     * @return object of class <code>AtlasFrame</code>
+     */
+    public AtlasFrame loadFrame(String sName) {
+        AtlasFrame afFrame = (AtlasFrame)hmFrames.get(sName);
+        if (afFrame == null) {
+            afFrame = saAtlas.add(loadImage(sName));
+            hmFrames.put(sName, afFrame);
+        }
+        return afFrame;
+    }
+
+    /**
+     * loadCompatibleImage
+     * 
+     * Loads an image from the images/ directory and copies it into an 
+     * image compatible with the display, so it can be kept in video 
+     * memory. JPEG images are opaque, others keep their transparency.
+     * 
+     * @param sName is an object of class <code>String</code>
+     * @return object of class <code>Image</code>
+     */
+    public Image loadCompatibleImage(String sName) {
+        Image imaImage = loadImage(sName);
+        int iTransparency = sName.toLowerCase().endsWith(".jpg") ?
+            Transparency.OPAQUE : Transparency.TRANSLUCENT;
+        Image imaNewImage = gcGraphicsConfiguration.createCompatibleImage(
+            Math.max(imaImage.getWidth(null), 1),
+            Math.max(imaImage.getHeight(null), 1), iTransparency);
+        Graphics2D gra2D_G = (Graphics2D)imaNewImage.getGraphics();
+        gra2D_G.drawImage(imaImage, 0, 0, null);
+        gra2D_G.dispose();
+        return imaNewImage;
+    }
+
     /**
      * getMirrorImage
      * 
@@ -141,70 +326,17 @@ public class ResourceManager {
         return imaNewImage;
     }
 
-    /**
-     * initSprites
-     * 
-     * Sets the initial health of sprites in the tmMap
-     * 
-     * @param tmMap an object of class <code>TileMap</code>
-     */
-    public void initSprites(TileMap tmMap) {
-        // Sprites
-        Iterator ite = tmMap.getSprites();
-        
-        while ( ite.hasNext() ) {
-            Sprite sprAux = (Sprite) ite.next();
-            
-            if ( sprAux instanceof Creature ) { // Handle creatures init
-            
-                Creature creAux = (Creature) sprAux;
-
-                if ( creAux instanceof Boss ) {
-                    creAux.setHealth(30);
-                    
-                if ( creAux instanceof Fly ) {
-                    creAux.setHealth(1);
-                }
-                
-                } else if ( creAux instanceof Grub ) {
-                    creAux.setHealth(3);
-                }
-            }
-            else {  // Handle other sprites init
-                
-            }
-        }
-        
-        // Player
-        Player plaPlayer = (Player) tmMap.getPlayer();
-        plaPlayer.setHealth(1000);
-    }
-    
     /**
      * loadNextMap
      * 
-     * returns next map
+     * Loads the map of the level after the current one, and makes it 
+     * the current map. After the last level comes the first.
      * 
      * @return object of class <code>TileMap</code>
      */
     public TileMap loadNextMap() {
-        TileMap tmMap = null;
-        while (tmMap == null) {
-            iCurrentMap++;
-            try {
-                tmMap = loadMap("maps/map" + iCurrentMap + ".txt");
-            }
-            catch (IOException ex) {
-                if (iCurrentMap == 1) {
-                    // no maps to load!
-                    return null;
-                }
-                iCurrentMap = 0;
-                tmMap = null;
-            }
-        }
-        
-        return tmMap;
+        iCurrentMap = defDefinitions.getNextLevel(iCurrentMap);
+        return loadLevel(iCurrentMap);
     }
 
     /**
@@ -215,8 +347,25 @@ public class ResourceManager {
      * @return object of class <code>TileMap</code>
      */
     public TileMap reloadMap() {
+        return loadLevel(iCurrentMap);
+    }
+
+    /**
+     * loadLevel
+     * 
+     * Loads the map of a level, without changing the current map. 
+     * It can be called on another thread, to preload a level.
+     * 
+     * @param iLevel is an object of class <code>Integer</code>
+     * @return object of class <code>TileMap</code>
+     */
+    public TileMap loadLevel(int iLevel) {
+        LevelDefinition ldLevel = defDefinitions.getLevel(iLevel);
         try {
-            return loadMap("maps/map" + iCurrentMap + ".txt");
+            if (ldLevel == null) {
+                throw new IOException("No level " + iLevel);
+            }
+            return loadMap(ldLevel);
         }
         catch (IOException ex) {
             ex.printStackTrace();
@@ -227,127 +376,373 @@ public class ResourceManager {
     /**
      * loadMap
      * 
-     * load map by file name
+     * Loads the map of a level. The file is read at once and its 
+     * bytes are scanned in one pass, which finds the map lines and 
+     * the directives without creating a String per line. Each 
+     * character of the map is then looked up in the table of 
+     * character codes, which says the tile or the creature or 
+     * power-up it places. The time spent and the characters parsed 
+     * are added to the metrics, as "map.parse.us", "map.parse.chars" 
+     * and "map.parse.chars.per.us"; creating the layers of the 
+     * directives is not included.
      * 
-     * @param sFilename is an object of class <code>String</code>
+     * @param ldLevel is an object of class <code>LevelDefinition</code>
      * @return object of class <code>TileMap</code>
      * @throws IOException 
      */
-    private TileMap loadMap(String sFilename)
-        throws IOException
-    {
-        ArrayList ArrLines = new ArrayList();
+    private TileMap loadMap(LevelDefinition ldLevel) throws IOException {
+        long lStart = System.nanoTime();
+        byte[] byteArrMap = Files.readAllBytes(Paths.get(ldLevel.getMap()));
+
+        // find the map lines and the directives
+        int[] iArrLineStarts = new int[64];
+        int[] iArrLineEnds = new int[64];
+        ArrayList ArrDirectives = new ArrayList();
         int iWidth = 0;
         int iHeight = 0;
-
-        // read every line in the text file into the list
-        BufferedReader brReader = new BufferedReader(
-            new FileReader(sFilename));
-        while (true) {
-            String sLine = brReader.readLine();
-            // no more lines to read
-            if (sLine == null) {
-                brReader.close();
-                break;
+        int iStart = 0;
+        while (iStart < byteArrMap.length) {
+            int iEnd = iStart;
+            while (iEnd < byteArrMap.length && byteArrMap[iEnd] != '\n') {
+                iEnd++;
+            }
+            int iNext = iEnd + 1;
+            if (iEnd > iStart && byteArrMap[iEnd - 1] == '\r') {
+                iEnd--;
             }
 
+            // directives are comments that start with "#@"
+            if (iEnd > iStart && byteArrMap[iStart] == '#') {
+                if (iEnd - iStart > 1 && byteArrMap[iStart + 1] == '@') {
+                    ArrDirectives.add(new String(byteArrMap, iStart,
+                        iEnd - iStart, "ISO-8859-1"));
+                }
+            }
             // add every line except for comments
-            if (!sLine.startsWith("#")) {
-                ArrLines.add(sLine);
-                iWidth = Math.max(iWidth, sLine.length());
+            else {
+                if (iHeight == iArrLineStarts.length) {
+                    iArrLineStarts = Arrays.copyOf(iArrLineStarts, iHeight * 2);
+                    iArrLineEnds = Arrays.copyOf(iArrLineEnds, iHeight * 2);
+                }
+                iArrLineStarts[iHeight] = iStart;
+                iArrLineEnds[iHeight] = iEnd;
+                iHeight++;
+                iWidth = Math.max(iWidth, iEnd - iStart);
             }
+            iStart = iNext;
         }
-
-        // parse the lines to create a TileEngine
-        iHeight = ArrLines.size();
         TileMap tmNewMap = new TileMap(iWidth, iHeight);
+        tmNewMap.setAnimatedTiles(atArrAnimatedTiles);
+        long lScanned = System.nanoTime();
+
+        // directives can change the tile types, add layers and lights
+        int[] iArrMapTileTypes = iArrTileTypes.clone();
+        for (int iI = 0; iI < ArrDirectives.size(); iI++) {
+            parseDirective((String)ArrDirectives.get(iI), iArrMapTileTypes,
+                tmNewMap);
+        }
+        long lPlaced = System.nanoTime();
+
+        // place what each character says
         for (int iY=0; iY<iHeight; iY++) {
-            String sLine = (String)ArrLines.get(iY);
-            for (int iX=0; iX<sLine.length(); iX++) {
-                char cChar = sLine.charAt(iX);
-
-                // check if the char represents tile A, B, C etc.
-                int iTile = cChar - 'A';
-                if (iTile >= 0 && iTile < ArrTiles.size()) {
-                    tmNewMap.setTile(iX, iY, (Image)ArrTiles.get(iTile), false);
-                    if (cChar == 'L') { //Transform platform tiles into platforms
-                        tmNewMap.setPlatform(iX, iY, true);
-                    }
+            int iOffset = iArrLineStarts[iY];
+            int iLength = iArrLineEnds[iY] - iOffset;
+            for (int iX=0; iX<iLength; iX++) {
+                int iChar = byteArrMap[iOffset + iX];
+                if (iChar < 0) {
+                    // not ASCII
+                    continue;
                 }
+                int iCode = iArrCharCodes[iChar];
 
-                // check if the char represents a sprite
-                else if (cChar == 'o') {
-                    addSprite(tmNewMap, sprAguaSprite, iX, iY);
-                }
-                else if (cChar == '!') {
-                    addSprite(tmNewMap, sprMusicSprite, iX, iY);
-                }
-                else if (cChar == '*') {
-                    addSprite(tmNewMap, sprGoalSprite, iX, iY);
+                // tile A, B, C etc., or an animated tile
+                if (iCode > 0) {
+                    tmNewMap.setTile(iX, iY, afArrTiles[iCode - 1],
+                        iArrMapTileTypes[iCode - 1]);
                 }
-                else if (cChar == '1') {
-                    addSprite(tmNewMap, sprGrubSprite, iX, iY);
-                }
-                else if (cChar == '2') {
-                    addSprite(tmNewMap, sprFlySprite, iX, iY);
-                }
-                else if (cChar == '3') {
-                    addSprite(tmNewMap, sprArcherSprite, iX, iY);
-                }
-                else if (cChar == '7') {
-                    addSprite( tmNewMap, sprArrowSprite, iX, iY);
+
+                // a creature or a power-up
+                else if (iCode < 0) {
+                    addSprite(tmNewMap, sprArrHosts[-iCode - 1], iX, iY);
                 }
-                else if (cChar == '8') {
-                    addSprite( tmNewMap, sprAguaSprite, iX, iY);
+            }
+        }
+        long lEnd = System.nanoTime();
+        long lMicros = Math.max((lScanned - lStart + lEnd - lPlaced) / 1000, 1);
+        mtrMetrics.add("map.parse.us", lMicros);
+        mtrMetrics.add("map.parse.chars", byteArrMap.length);
+        mtrMetrics.add("map.parse.chars.per.us", byteArrMap.length / lMicros);
+
+        // add the player to the map, where the level says
+        Creature player = (Creature)sprPlayerSprite.clone();
+        player.setX(TileMapRenderer.tilesToPixels(ldLevel.getPlayerX()));
+        player.setY(TileMapRenderer.tilesToPixels(ldLevel.getPlayerY()));
+        tmNewMap.setPlayer(player);
+
+        return tmNewMap;
+    }
+
+    /**
+     * createCharCodes
+     * 
+     * Creates the table of what each map character places: tile 
+     * A, B, C... or an animated tile (the tile index plus one), a 
+     * creature or power-up of the definitions (minus its archetype 
+     * index, minus one), or nothing (zero). Tiles come first.
+     */
+    private void createCharCodes() {
+        iArrCharCodes = new int[Definitions.iNUM_CHARS];
+        for (int iI = 0; iI < iArrCharCodes.length; iI++) {
+            int iTile = iI - 'A';
+            Archetype arcArchetype = defDefinitions.getSpawn((char)iI);
+            if (iTile >= 0 && iTile < iNumLetterTiles) {
+                iArrCharCodes[iI] = iTile + 1;
+            }
+            else if (defDefinitions.getTile((char)iI) != null) {
+                for (int iJ = 0; iJ < defDefinitions.getNumTiles(); iJ++) {
+                    if (defDefinitions.getTileAt(iJ).getChar() == iI) {
+                        iArrCharCodes[iI] = iNumLetterTiles + iJ + 1;
+                    }
                 }
-                else if (cChar == '9') {
-                    addSprite( tmNewMap, sprPicosSprite, iX, iY);
+            }
+            else if (arcArchetype != null &&
+                sprArrHosts[arcArchetype.getIndex()] != null)
+            {
+                iArrCharCodes[iI] = -arcArchetype.getIndex() - 1;
+            }
+        }
+    }
+
+    /**
+     * parseDirective
+     * 
+     * Parses a map directive. Directives are comment lines that 
+     * start with "#@", so older versions of the game ignore them. 
+     * <p>The "tile" directive changes the collision type of a tile 
+     * letter for this map only, for example "#@tile N ladder". The 
+     * types are solid, oneway, slope_up, slope_down, ladder and 
+     * empty.</p>
+     * <p>The "layer" and "tilelayer" directives add a background 
+     * ("back") or foreground ("front") layer made of an image or of 
+     * the tiles of another map file, with its horizontal and 
+     * vertical scroll factors and an optional "repeat", for example 
+     * "#@layer back Fondo_Villa.jpg 0.25 0.5 repeat".</p>
+     * <p>The "ambient" directive turns on the lighting of the map, 
+     * with the light everywhere from 0 (black) to 255, for example 
+     * "#@ambient 120". The "light" directive adds a fixed light (a 
+     * torch) at the center of a tile, with its radius in pixels and 
+     * its intensity, for example "#@light 12 30 256 200".</p>
+     * <p>The "arena" directive makes the map a boss arena: bosses 
+     * turn around at invisible walls at the given horizontal 
+     * positions, in pixels, and flying creatures are removed at the 
+     * left and right edges of the map, for example 
+     * "#@arena 80 2000".</p>
+     * 
+     * @param sLine is an object of class <code>String</code>
+     * @param iArrMapTileTypes is an array of class <code>Integer</code>
+     * @param tmMap is an object of class <code>TileMap</code>
+     */
+    private void parseDirective(String sLine, int[] iArrMapTileTypes,
+        TileMap tmMap)
+    {
+        String[] sArrTokens = sLine.substring(2).trim().split("\\s+");
+        if (sArrTokens.length == 3 && sArrTokens[0].equals("tile")) {
+            int iTile = sArrTokens[1].charAt(0) - 'A';
+            int iType = getTileType(sArrTokens[2]);
+            if (iTile >= 0 && iTile < iNumLetterTiles && iType >= 0) {
+                iArrMapTileTypes[iTile] = iType;
+            }
+        }
+        else if (sArrTokens.length >= 5 && (sArrTokens[0].equals("layer")
+                || sArrTokens[0].equals("tilelayer"))) {
+            try {
+                boolean bForeground = sArrTokens[1].equals("front");
+                float fScrollX = Float.parseFloat(sArrTokens[3]);
+                float fScrollY = Float.parseFloat(sArrTokens[4]);
+                boolean bRepeat = sArrTokens.length > 5 
+                    && sArrTokens[5].equals("repeat");
+                if (sArrTokens[0].equals("layer")) {
+                    tmMap.addLayer(createImageLayer(sArrTokens[2], 
+                        fScrollX, fScrollY, bForeground, bRepeat));
                 }
-                else if (cChar == '0') {
-                    addSprite( tmNewMap, sprBossSprite, iX, iY);
+                else {
+                    tmMap.addLayer(createTileLayer("maps/" + sArrTokens[2],
+                        iNumLetterTiles, fScrollX, fScrollY, 
+                        bForeground, bRepeat));
                 }
             }
+            catch (NumberFormatException ex) {
+                ex.printStackTrace();
+            }
+            catch (IOException ex) {
+                ex.printStackTrace();
+            }
         }
-
-        // add the player to the map
-        Creature player = (Creature)sprPlayerSprite.clone();
-        player.setHealth(1000);
-        switch(iCurrentMap-1) {
-            case 0:
-            case 1:
-            case 2:
-            case 3:
-            case 4: { // Main Menus
-                player.setX(-TileMapRenderer.tilesToPixels(3));
-                player.setY(0);
-                break;
+        else if (sArrTokens.length == 2 && sArrTokens[0].equals("ambient")) {
+            try {
+                tmMap.setAmbient(Integer.parseInt(sArrTokens[1]));
             }
-            case 5: { // Map 6
-                player.setX(TileMapRenderer.tilesToPixels(3));
-                player.setY(TileMapRenderer.tilesToPixels(14));
-                break;
+            catch (NumberFormatException ex) {
+                ex.printStackTrace();
             }
-            case 6: { // Map 7
-                player.setX(TileMapRenderer.tilesToPixels(100));
-                player.setY(TileMapRenderer.tilesToPixels(30));
-                break;
+        }
+        else if (sArrTokens.length == 3 && sArrTokens[0].equals("arena")) {
+            try {
+                tmMap.setArena(Integer.parseInt(sArrTokens[1]),
+                    Integer.parseInt(sArrTokens[2]));
             }
-            case 7: { // Map 8
-                player.setX(TileMapRenderer.tilesToPixels(31));
-                player.setY(TileMapRenderer.tilesToPixels(40));
-                break;
+            catch (NumberFormatException ex) {
+                ex.printStackTrace();
             }
-            case 8: { // Map 9
-                player.setX(TileMapRenderer.tilesToPixels(3));
-                player.setY(TileMapRenderer.tilesToPixels(14));
-                break;
+        }
+        else if (sArrTokens.length == 5 && sArrTokens[0].equals("light")) {
+            try {
+                int iHalfTile = TileMapRenderer.tilesToPixels(1) / 2;
+                tmMap.addLight(TileMapRenderer.tilesToPixels(
+                    Integer.parseInt(sArrTokens[1])) + iHalfTile,
+                    TileMapRenderer.tilesToPixels(
+                    Integer.parseInt(sArrTokens[2])) + iHalfTile,
+                    Integer.parseInt(sArrTokens[3]),
+                    Integer.parseInt(sArrTokens[4]));
+            }
+            catch (NumberFormatException ex) {
+                ex.printStackTrace();
             }
         }
-        tmNewMap.setPlayer(player);
-        
-        initSprites( tmNewMap );
+    }
+    
+    /**
+     * createImageLayer
+     * 
+     * Creates a MapLayer from an image of the images/ directory, 
+     * cut into strips.
+     * 
+     * @param sName is an object of class <code>String</code>
+     * @param fScrollX is an object of class <code>Float</code>
+     * @param fScrollY is an object of class <code>Float</code>
+     * @param bForeground is an object of class <code>Boolean</code>
+     * @param bRepeat is an object of class <code>Boolean</code>
+     * @return object of class <code>MapLayer</code>
+     */
+    private MapLayer createImageLayer(String sName, float fScrollX, 
+        float fScrollY, boolean bForeground, boolean bRepeat)
+    {
+        Image imaImage = loadImage(sName);
+        int iWidth = imaImage.getWidth(null);
+        int iHeight = imaImage.getHeight(null);
+        int iTransparency = sName.toLowerCase().endsWith(".jpg") ? 
+            Transparency.OPAQUE : Transparency.TRANSLUCENT;
 
-        return tmNewMap;
+        Image[] imaArrStrips = new Image[
+            (iWidth + MapLayer.iSTRIP_WIDTH - 1) / MapLayer.iSTRIP_WIDTH];
+        for (int iI = 0; iI < imaArrStrips.length; iI++) {
+            int iStripWidth = Math.min(MapLayer.iSTRIP_WIDTH, 
+                iWidth - iI * MapLayer.iSTRIP_WIDTH);
+            imaArrStrips[iI] = gcGraphicsConfiguration.createCompatibleImage(
+                iStripWidth, iHeight, iTransparency);
+            Graphics2D gra2D_G = (Graphics2D)imaArrStrips[iI].getGraphics();
+            gra2D_G.drawImage(imaImage, -iI * MapLayer.iSTRIP_WIDTH, 0, null);
+            gra2D_G.dispose();
+        }
+        return new MapLayer(imaArrStrips, iWidth, iHeight, 
+            fScrollX, fScrollY, bForeground, bRepeat);
+    }
+    
+    /**
+     * createTileLayer
+     * 
+     * Creates a MapLayer from the tiles of a map file. The tiles 
+     * are drawn once into strips, so the layer costs the same to 
+     * draw as an image layer. Sprites, animated tiles and directives 
+     * of the file are ignored.
+     * 
+     * @param sFilename is an object of class <code>String</code>
+     * @param iNumTiles is an object of class <code>Integer</code>
+     * @param fScrollX is an object of class <code>Float</code>
+     * @param fScrollY is an object of class <code>Float</code>
+     * @param bForeground is an object of class <code>Boolean</code>
+     * @param bRepeat is an object of class <code>Boolean</code>
+     * @return object of class <code>MapLayer</code>
+     * @throws IOException 
+     */
+    private MapLayer createTileLayer(String sFilename, int iNumTiles, 
+        float fScrollX, float fScrollY, boolean bForeground, 
+        boolean bRepeat) throws IOException
+    {
+        ArrayList ArrLines = new ArrayList();
+        int iColumns = 0;
+        BufferedReader brReader = new BufferedReader(
+            new FileReader(sFilename));
+        String sLine = brReader.readLine();
+        while (sLine != null) {
+            if (!sLine.startsWith("#")) {
+                ArrLines.add(sLine);
+                iColumns = Math.max(iColumns, sLine.length());
+            }
+            sLine = brReader.readLine();
+        }
+        brReader.close();
+
+        int iTileSize = TileMapRenderer.tilesToPixels(1);
+        int iWidth = iColumns * iTileSize;
+        int iHeight = ArrLines.size() * iTileSize;
+        int iTilesPerStrip = MapLayer.iSTRIP_WIDTH / iTileSize;
+        Image[] imaArrStrips = new Image[
+            (iWidth + MapLayer.iSTRIP_WIDTH - 1) / MapLayer.iSTRIP_WIDTH];
+        for (int iI = 0; iI < imaArrStrips.length; iI++) {
+            int iStripWidth = Math.min(MapLayer.iSTRIP_WIDTH, 
+                iWidth - iI * MapLayer.iSTRIP_WIDTH);
+            imaArrStrips[iI] = gcGraphicsConfiguration.createCompatibleImage(
+                iStripWidth, Math.max(iHeight, 1), Transparency.BITMASK);
+            Graphics2D gra2D_G = (Graphics2D)imaArrStrips[iI].getGraphics();
+            for (int iY = 0; iY < ArrLines.size(); iY++) {
+                String sRow = (String)ArrLines.get(iY);
+                for (int iX = iI * iTilesPerStrip; 
+                        iX < Math.min(sRow.length(), (iI + 1) * iTilesPerStrip); 
+                        iX++) {
+                    int iTile = sRow.charAt(iX) - 'A';
+                    if (iTile >= 0 && iTile < iNumTiles) {
+                        afArrTiles[iTile].draw(gra2D_G,
+                            (iX - iI * iTilesPerStrip) * iTileSize,
+                            iY * iTileSize);
+                    }
+                }
+            }
+            gra2D_G.dispose();
+        }
+        return new MapLayer(imaArrStrips, iWidth, iHeight, 
+            fScrollX, fScrollY, bForeground, bRepeat);
+    }
+    
+    /**
+     * getTileType
+     * 
+     * Gets the CollisionMask tile type of the specified name. 
+     * Returns -1 if the name is unknown.
+     * 
+     * @param sName is an object of class <code>String</code>
+     * @return object of class <code>Integer</code>
+     */
+    private int getTileType(String sName) {
+        if (sName.equals("solid")) {
+            return CollisionMask.iTILE_SOLID;
+        }
+        else if (sName.equals("oneway")) {
+            return CollisionMask.iTILE_ONE_WAY;
+        }
+        else if (sName.equals("slope_up")) {
+            return CollisionMask.iTILE_SLOPE_UP;
+        }
+        else if (sName.equals("slope_down")) {
+            return CollisionMask.iTILE_SLOPE_DOWN;
+        }
+        else if (sName.equals("ladder")) {
+            return CollisionMask.iTILE_LADDER;
+        }
+        else if (sName.equals("empty")) {
+            return CollisionMask.iTILE_EMPTY;
+        }
+        return -1;
     }
 
     /**
@@ -389,12 +784,13 @@ public class ResourceManager {
     /**
      * loadTileImages
      * 
-     * Loads and array of tiles
+     * Loads and array of tiles: the tiles placed by letters, then 
+     * the animated tiles of the definitions.
      */
     public void loadTileImages() {
         // keep looking for tile A,B,C, etc. this makes it
         // easy to drop new tiles in the images/ directory
-        ArrTiles = new ArrayList();
+        ArrayList ArrNames = new ArrayList();
         char cChar = 'A';
         while (true) {
             String sName = "tile_" + cChar + ".png";
@@ -402,282 +798,332 @@ public class ResourceManager {
             if (!filFile.exists()) {
                 break;
             }
-            ArrTiles.add(loadImage(sName));
+            ArrNames.add(sName);
             cChar++;
         }
+        iNumLetterTiles = ArrNames.size();
+        for (int iI = 0; iI < defDefinitions.getNumTiles(); iI++) {
+            addFrameNames(ArrNames,
+                defDefinitions.getTileAt(iI).getAnimation());
+        }
+        loadFrames((String[])ArrNames.toArray(new String[0]));
+        afArrTiles = new AtlasFrame[iNumLetterTiles +
+            defDefinitions.getNumTiles()];
+        for (int iI = 0; iI < iNumLetterTiles; iI++) {
+            afArrTiles[iI] = loadFrame((String)ArrNames.get(iI));
+        }
+        atArrAnimatedTiles = new AnimatedTile[defDefinitions.getNumTiles()];
+        for (int iI = 0; iI < atArrAnimatedTiles.length; iI++) {
+            TileDefinition tdTile = defDefinitions.getTileAt(iI);
+            AnimationDefinition adAnim = tdTile.getAnimation();
+            AtlasFrame[] afArrFrames = new AtlasFrame[adAnim.getNumFrames()];
+            long[] lArrDurations = new long[adAnim.getNumFrames()];
+            for (int iJ = 0; iJ < afArrFrames.length; iJ++) {
+                afArrFrames[iJ] = loadFrame(adAnim.getFrame(iJ));
+                lArrDurations[iJ] = adAnim.getDuration(iJ);
+            }
+            atArrAnimatedTiles[iI] = new AnimatedTile(afArrFrames,
+                lArrDurations, tdTile.getKind());
+            afArrTiles[iNumLetterTiles + iI] = atArrAnimatedTiles[iI];
+        }
+
+        // every tile is solid except for platforms; the player goes 
+        // through animated tiles
+        iArrTileTypes = new int[afArrTiles.length];
+        for (int iI = 0; iI < iArrTileTypes.length; iI++) {
+            iArrTileTypes[iI] = (iI < iNumLetterTiles) ?
+                CollisionMask.iTILE_SOLID : CollisionMask.iTILE_EMPTY;
+        }
+        if ('L' - 'A' < iArrTileTypes.length) {
+            iArrTileTypes['L' - 'A'] = CollisionMask.iTILE_ONE_WAY;
+        }
     }
 
     /**
      * loadCreatureSprites
      * 
-     * loads the sprites of the creatures used in the map
+     * Creates the "host" sprites of the creatures of the definitions.
+     * Throws an IllegalStateException naming the image if an image 
+     * of a creature can't be loaded.
      */
     public void loadCreatureSprites() {
         
         // Loads the default animation in case no animation of a creature is used
         aniDefaultAnim = new Animation();
-        aniDefaultAnim.addFrame(loadImage("PC_1.png"), 1000);
+        aniDefaultAnim.addFrame(loadFrame("PC_1.png"), 1000);
 
-        Image[][] imaMatImages = new Image[4][];
-        
-        int iHeight = TileMapRenderer.tilesToPixels(2);
-        
-        // load left-facing images
-        imaMatImages[0] = new Image[] {
-            getMirrorImage(loadImage("PC_1.png")),//.getScaledInstance(-1, iHeight, 0),
-            getMirrorImage(loadImage("PC_2.png")),//.getScaledInstance(-1, iHeight, 0),
-            getMirrorImage(loadImage("PC_3.png")),//.getScaledInstance(-1, iHeight, 0),
-            getMirrorImage(loadImage("PC_4.png")),//.getScaledInstance(-1, iHeight, 0),
-            getMirrorImage(loadImage("PC_5.png")),//.getScaledInstance(-1, iHeight, 0),
-            getMirrorImage(loadImage("PC_6.png")),//.getScaledInstance(-1, iHeight, 0),
-            getMirrorImage(loadImage("PP_1.png")),//.getScaledInstance(-1, iHeight, 0),
-            getMirrorImage(loadImage("PP_2.png")),//.getScaledInstance(-1, iHeight, 0),
-            getMirrorImage(loadImage("PP_3.png")),//.getScaledInstance(-1, iHeight, 0),
-            getMirrorImage(loadImage("PP_4.png")),//.getScaledInstance(-1, iHeight, 0),
-            loadImage("Murcielago1.png"),
-            loadImage("Murcielago2.png"),
-            loadImage("Murcielago1.png"),
-            loadImage("Malo_espada_caminando_1.png"),
-            loadImage("Malo_espada_caminando_2.png"),
-            loadImage("Malo_espada_caminando_3.png"),
-            loadImage("Malo_espada_caminando_4.png"),
-            loadImage("Malo_espada_caminando_5.png"),
-            loadImage("Malo_espada_caminando_6.png"),
-            loadImage("MA_1.png"),
-            loadImage("MA_2.png"),
-            loadImage("MA_3.png"),
-            loadImage("MA_4.png"),
-            loadImage("MA_5.png"),
-            loadImage("MA_6.png"),
-            getMirrorImage(loadImage("flecha.png")),
-            loadImage("flecha.png"),
-            loadImage("flecha.png"),
-            loadImage("rey_caminando_1.png"),
-            loadImage("rey_caminando_2.png"),
-            loadImage("rey_caminando_3.png"),
-            loadImage("rey_caminando_4.png"),
-            loadImage("rey_caminando_5.png"),
-            loadImage("rey_caminando_6.png"),
-            loadImage("flecha2.png")
-        };
-
-        imaMatImages[1] = new Image[imaMatImages[0].length];
-        imaMatImages[2] = new Image[imaMatImages[0].length];
-        imaMatImages[3] = new Image[imaMatImages[0].length];
-        for (int i=0; i<imaMatImages[0].length; i++) {
-            // right-facing images
-            imaMatImages[1][i] = getMirrorImage(imaMatImages[0][i]);
-            // left-facing "dead" images
-            imaMatImages[2][i] = getFlippedImage(imaMatImages[0][i]);
-            // right-facing "dead" images
-            imaMatImages[3][i] = getFlippedImage(imaMatImages[1][i]);
-        }
-
-        // create creature animations
-        Animation[] aniArrPlayerCaminAnim = new Animation[4];
-        Animation[] aniArrPlayerIdleAnim = new Animation[4];
-        Animation[] aniArrFlyAnim = new Animation[4];
-        Animation[] aniArrGrubAnim = new Animation[4];
-        Animation[] aniArrArrowAnim = new Animation[4];
-        Animation[] aniArrArrowAnim2 = new Animation[4];
-        Animation[] aniArrArcherAnim = new Animation[4];
-        Animation[] aniArrBossAnim = new Animation[4];
-        
-       for (int iI=0; iI<4; iI++) {
-            aniArrPlayerCaminAnim[iI] = createPlayerAnim(imaMatImages[iI][0], 
-                    imaMatImages[iI][1], imaMatImages[iI][2],imaMatImages[iI][3] ,
-                    imaMatImages[iI][4],imaMatImages[iI][5]);
-            aniArrPlayerIdleAnim[iI] = createPlayerAnim(imaMatImages[iI][6], 
-                    imaMatImages[iI][7], imaMatImages[iI][8],imaMatImages[iI][9] ,
-                    imaMatImages[iI][6],imaMatImages[iI][7]);
-            aniArrFlyAnim[iI] = createFlyAnim(imaMatImages[iI][10], 
-                    imaMatImages[iI][11], imaMatImages[iI][12]);
-            aniArrGrubAnim[iI] = createGrubAnim(imaMatImages[iI][13], 
-                    imaMatImages[iI][14],imaMatImages[iI][15],
-                    imaMatImages[iI][16],imaMatImages[iI][17],
-                    imaMatImages[iI][18]);
-            aniArrArcherAnim[iI] = createGrubAnim(imaMatImages[iI][19], 
-                    imaMatImages[iI][20],imaMatImages[iI][21],
-                    imaMatImages[iI][22],imaMatImages[iI][23],
-                    imaMatImages[iI][24]);
-            aniArrArrowAnim[iI] = createWeaponAnim(imaMatImages[iI][25], 
-                    imaMatImages[iI][25], imaMatImages[iI][25]);
-            aniArrBossAnim[iI] = createGrubAnim(imaMatImages[iI][28], 
-                    imaMatImages[iI][29],imaMatImages[iI][30],
-                    imaMatImages[iI][31],imaMatImages[iI][32],
-                    imaMatImages[iI][33]);
-            aniArrArrowAnim2[iI] = createWeaponAnim(imaMatImages[iI][34], 
-                    imaMatImages[iI][34], imaMatImages[iI][34]);
+        // every image of the creatures, once; names starting with '~' 
+        // are mirrored
+        ArrayList ArrNames = new ArrayList();
+        for (int iI = 0; iI < defDefinitions.getNumArchetypes(); iI++) {
+            Archetype arcArchetype = defDefinitions.getArchetype(iI);
+            if (arcArchetype.isCreature()) {
+                addFrameNames(ArrNames, arcArchetype.getWalkAnimation());
+                addFrameNames(ArrNames, arcArchetype.getIdleAnimation());
+            }
+        }
+        String[] sArrNames = (String[])ArrNames.toArray(new String[0]);
+
+        // decode and transform every image in parallel
+        Future[] futArrImages = new Future[sArrNames.length];
+        for (int iI=0; iI<sArrNames.length; iI++) {
+            final String sName = sArrNames[iI];
+            futArrImages[iI] = alLoader.submit(new Callable<Image[]>() {
+                public Image[] call() {
+                    return loadCreatureImages(sName);
+                }
+            });
+        }
+
+        // pack every image into the atlas, in order
+        HashMap hmVariants = new HashMap(); // Four frames of each image
+        for (int iJ=0; iJ<sArrNames.length; iJ++) {
+            Image[] imaArrImages = (Image[])AssetLoader.getResult(
+                futArrImages[iJ]);
+            if (imaArrImages == null) {
+                // the task failed, and printed why
+                throw new IllegalStateException(
+                    "Can't load creature image " + sArrNames[iJ]);
+            }
+            AtlasFrame[] afArrFrames = new AtlasFrame[4];
+            for (int iI=0; iI<4; iI++) {
+                afArrFrames[iI] = saAtlas.add(imaArrImages[iI]);
+            }
+            hmVariants.put(sArrNames[iJ], afArrFrames);
         }
 
         // create creature sprites
-        sprPlayerSprite = new Player(aniArrPlayerCaminAnim[0], aniArrPlayerCaminAnim[1],
-                aniArrPlayerCaminAnim[2], aniArrPlayerCaminAnim[3],
-                aniArrPlayerIdleAnim[0], aniArrPlayerIdleAnim[1]);
-        sprFlySprite = new Fly(aniArrFlyAnim[0], aniArrFlyAnim[1],
-                aniArrFlyAnim[2], aniArrFlyAnim[3], aniArrFlyAnim[0], 
-                aniArrFlyAnim[1]);
-        sprGrubSprite = new Grub(aniArrGrubAnim[0], aniArrGrubAnim[1],
-                aniArrGrubAnim[2], aniArrGrubAnim[3], aniArrGrubAnim[0], 
-                aniArrGrubAnim[1]);
-        sprArcherSprite = new Archer(aniArrArcherAnim[0], aniArrArcherAnim[1],
-                aniArrArcherAnim[2], aniArrArcherAnim[3], aniArrArcherAnim[0], 
-                aniArrArcherAnim[1]);
-        sprArrowSprite = new Weapon(aniArrArrowAnim[0], aniArrArrowAnim[1], 
-                aniArrArrowAnim[2], aniArrArrowAnim[0], aniArrArrowAnim[0], 
-                aniArrArrowAnim[1]);
-        sprArrowSprite2 = new Weapon(aniArrArrowAnim2[0], aniArrArrowAnim2[1], 
-                aniArrArrowAnim2[2], aniArrArrowAnim2[0], aniArrArrowAnim2[0], 
-                aniArrArrowAnim2[1]);
-        sprBossSprite = new Boss(aniArrBossAnim[0], aniArrBossAnim[1],
-                aniArrBossAnim[2], aniArrBossAnim[3], aniArrBossAnim[0], 
-                aniArrBossAnim[1]);
-
-    }
-
-    /**
-     * createPlayerAnim
-     * 
-     * Creates the player animation
-     * 
-     * @param imaPlayer1 is an object of class <code>Image</code>
-     * @param imaPlayer2 is an object of class <code>Image</code>
-     * @param imaPlayer3 is an object of class <code>Image</code>
-     * @return object of class <code>Animation</code>
+        for (int iJ = 0; iJ < defDefinitions.getNumArchetypes(); iJ++) {
+            Archetype arcArchetype = defDefinitions.getArchetype(iJ);
+            if (arcArchetype.isCreature()) {
+                Animation[] aniArrWalkAnim = new Animation[4];
+                Animation[] aniArrIdleAnim = new Animation[2];
+                for (int iI=0; iI<4; iI++) {
+                    aniArrWalkAnim[iI] = createCreatureAnim(
+                        arcArchetype.getWalkAnimation(), hmVariants, iI);
+                }
+                for (int iI=0; iI<2; iI++) {
+                    aniArrIdleAnim[iI] = createCreatureAnim(
+                        arcArchetype.getIdleAnimation(), hmVariants, iI);
+                }
+                sprArrHosts[iJ] = createCreature(arcArchetype,
+                    aniArrWalkAnim, aniArrIdleAnim);
+            }
+        }
+        sprPlayerSprite = getHost("player");
+        sprFlySprite = getHost("fly");
+        sprArrowSprite = getHost("arrow");
+        sprArrowSprite2 = getHost("arrow_down");
+    }
+
+    /**
+     * addFrameNames
+     * 
+     * Adds the images of an animation to a list, unless they are 
+     * already there.
+     * 
+     * @param ArrNames is an object of class <code>ArrayList</code>
+     * @param adAnim is an object of class <code>AnimationDefinition</code>
      */
-    private Animation createPlayerAnim(Image imaPlayer1,
-        Image imaPlayer2, Image imaPlayer3,Image imaPlayer4,Image imaPlayer5, Image imaPlayer6)
+    private static void addFrameNames(ArrayList ArrNames,
+        AnimationDefinition adAnim)
     {
-        Animation aniAnim = new Animation();
-        aniAnim.addFrame(imaPlayer1, 250);
-        aniAnim.addFrame(imaPlayer2, 150);
-        aniAnim.addFrame(imaPlayer3, 150);
-        aniAnim.addFrame(imaPlayer4, 150);
-        aniAnim.addFrame(imaPlayer5, 200);
-        aniAnim.addFrame(imaPlayer6, 150);
-        return aniAnim;
+        for (int iI = 0; iI < adAnim.getNumFrames(); iI++) {
+            if (!ArrNames.contains(adAnim.getFrame(iI))) {
+                ArrNames.add(adAnim.getFrame(iI));
+            }
+        }
     }
-    
-     /**
-     * createMenuAnim
-     *
-     * Creates the Menu animation
-     *
-     * @param imaImg1 is an object of class <code>Image</code>
-     * @return object of class <code>Animation</code>
+
+    /**
+     * getHost
+     * 
+     * Gets the "host" sprite of the archetype of the specified name, 
+     * or null if there is none.
+     * 
+     * @param sName is an object of class <code>String</code>
+     * @return object of class <code>Sprite</code>
      */
-    private Animation createMenuAnim(Image imaImg1) {
-        Animation aniAnim = new Animation();
-        aniAnim.addFrame(imaImg1, 50);
-        return aniAnim;
+    private Sprite getHost(String sName) {
+        Archetype arcArchetype = defDefinitions.getArchetype(sName);
+        return (arcArchetype != null) ?
+            sprArrHosts[arcArchetype.getIndex()] : null;
     }
-    
+
     /**
-     * createWeaponAnim
-     *
-     * Creates the weapon animation
-     *
-     * @param imaImg1 is an object of class <code>Image</code>
-     * @param imaImg2 is an object of class <code>Image</code>
-     * @param imaImg3 is an object of class <code>Image</code>
-     * @return object of class <code>Animation</code>
+     * createCreature
+     * 
+     * Creates the "host" sprite of a creature archetype, with its 
+     * health, speed and animations.
+     * 
+     * @param arcArchetype is an object of class <code>Archetype</code>
+     * @param aniArrWalkAnim is an array of class <code>Animation</code>
+     * @param aniArrIdleAnim is an array of class <code>Animation</code>
+     * @return object of class <code>Creature</code>
      */
-    private Animation createWeaponAnim(Image imaImg1, Image imaImg2,
-                                       Image imaImg3) {
-        Animation aniAnim = new Animation();
-        aniAnim.addFrame(imaImg1, 50);
-        aniAnim.addFrame(imaImg2, 50);
-        aniAnim.addFrame(imaImg3, 50);
-        aniAnim.addFrame(imaImg2, 50);
-        return aniAnim;
+    private Creature createCreature(Archetype arcArchetype,
+        Animation[] aniArrWalkAnim, Animation[] aniArrIdleAnim)
+    {
+        Creature creCreature;
+        switch (arcArchetype.getKind()) {
+            case Archetype.iKIND_PLAYER:
+                creCreature = new Player(aniArrWalkAnim[0], aniArrWalkAnim[1],
+                    aniArrWalkAnim[2], aniArrWalkAnim[3],
+                    aniArrIdleAnim[0], aniArrIdleAnim[1]);
+                break;
+            case Archetype.iKIND_GRUB:
+                creCreature = new Grub(aniArrWalkAnim[0], aniArrWalkAnim[1],
+                    aniArrWalkAnim[2], aniArrWalkAnim[3],
+                    aniArrIdleAnim[0], aniArrIdleAnim[1]);
+                break;
+            case Archetype.iKIND_FLY:
+                creCreature = new Fly(aniArrWalkAnim[0], aniArrWalkAnim[1],
+                    aniArrWalkAnim[2], aniArrWalkAnim[3],
+                    aniArrIdleAnim[0], aniArrIdleAnim[1]);
+                break;
+            case Archetype.iKIND_ARCHER:
+                creCreature = new Archer(aniArrWalkAnim[0], aniArrWalkAnim[1],
+                    aniArrWalkAnim[2], aniArrWalkAnim[3],
+                    aniArrIdleAnim[0], aniArrIdleAnim[1]);
+                break;
+            case Archetype.iKIND_BOSS:
+                creCreature = new Boss(aniArrWalkAnim[0], aniArrWalkAnim[1],
+                    aniArrWalkAnim[2], aniArrWalkAnim[3],
+                    aniArrIdleAnim[0], aniArrIdleAnim[1]);
+                break;
+            default:
+                creCreature = new Weapon(aniArrWalkAnim[0], aniArrWalkAnim[1],
+                    aniArrWalkAnim[2], aniArrWalkAnim[3],
+                    aniArrIdleAnim[0], aniArrIdleAnim[1]);
+                break;
+        }
+        creCreature.setHealth(arcArchetype.getHealth());
+        creCreature.setMaxSpeed(arcArchetype.getSpeed());
+        creCreature.setArchetype(arcArchetype.getIndex());
+        creCreature.setLight(arcArchetype.getLightRadius(),
+            arcArchetype.getLightIntensity());
+        return creCreature;
+    }
+
+    /**
+     * loadCreatureImages
+     * 
+     * Loads a creature image and creates its four versions: facing 
+     * left, facing right, and both "dead" (upside down). Images whose 
+     * name starts with '~' face right in the file and are mirrored.
+     * The four versions are saved in the frame cache, so later 
+     * launches skip decoding and transforming them.
+     * 
+     * @param sName is an object of class <code>String</code>
+     * @return array of class <code>Image</code>
+     */
+    private Image[] loadCreatureImages(String sName) {
+        boolean bMirrored = sName.startsWith("~");
+        if (bMirrored) {
+            sName = sName.substring(1);
+        }
+        File filSource = new File("images/" + sName);
+        String sVariant = bMirrored ? "mirrored" : "normal";
+        Image[] imaArrImages = fcFrameCache.load(filSource, sVariant);
+        if (imaArrImages != null && imaArrImages.length == 4) {
+            return imaArrImages;
+        }
+
+        imaArrImages = new Image[4];
+        if (bMirrored) {
+            imaArrImages[0] = getMirrorImage(loadImage(sName));
+        }
+        else {
+            imaArrImages[0] = loadImage(sName);
+        }
+        // right-facing image
+        imaArrImages[1] = getMirrorImage(imaArrImages[0]);
+        // left-facing "dead" image
+        imaArrImages[2] = getFlippedImage(imaArrImages[0]);
+        // right-facing "dead" image
+        imaArrImages[3] = getFlippedImage(imaArrImages[1]);
+        fcFrameCache.store(filSource, sVariant, imaArrImages);
+        return imaArrImages;
     }
 
     /**
-     * createFlyAnim
+     * createCreatureAnim
      * 
-     * Creates the animation for creatures that fly
+     * Creates an animation of a creature, with one of the four 
+     * versions of its images: facing left, facing right, and both 
+     * "dead".
      * 
-     * @param imaImg1 is an object of class <code>Image</code>
-     * @param imaImg2 is an object of class <code>Image</code>
-     * @param imaImg3 is an object of class <code>Image</code>
+     * @param adAnim is an object of class <code>AnimationDefinition</code>
+     * @param hmVariants is an object of class <code>HashMap</code>
+     * @param iVariant is an object of class <code>Integer</code>
      * @return object of class <code>Animation</code>
      */
-    private Animation createFlyAnim(Image imaImg1, Image imaImg2,
-        Image imaImg3)
+    private Animation createCreatureAnim(AnimationDefinition adAnim,
+        HashMap hmVariants, int iVariant)
     {
         Animation aniAnim = new Animation();
-        aniAnim.addFrame(imaImg1, 50);
-        aniAnim.addFrame(imaImg2, 50);
-        aniAnim.addFrame(imaImg3, 50);
-        aniAnim.addFrame(imaImg2, 50);
+        for (int iI = 0; iI < adAnim.getNumFrames(); iI++) {
+            AtlasFrame[] afArrFrames =
+                (AtlasFrame[])hmVariants.get(adAnim.getFrame(iI));
+            aniAnim.addFrame(afArrFrames[iVariant], adAnim.getDuration(iI));
+        }
         return aniAnim;
     }
 
     /**
-     * createGrubAnim
+     * createPowerUpAnim
      * 
-     * Creates the animation for creatures that are on the ground
+     * Creates an animation of a power-up.
      * 
-     * @param imaImg1 is an object of class <code>Image</code>
-     * @param imaImg2 is an object of class <code>Image</code>
-     * @param imaImg3 is an object of class <code>Image</code>
+     * @param adAnim is an object of class <code>AnimationDefinition</code>
      * @return object of class <code>Animation</code>
      */
-    private Animation createGrubAnim(Image imaImg1, Image imaImg2, 
-            Image imaImg3,Image imaImg4,Image imaImg5,Image imaImg6) {
+    private Animation createPowerUpAnim(AnimationDefinition adAnim) {
         Animation aniAnim = new Animation();
-        aniAnim.addFrame(imaImg1, 250);
-        aniAnim.addFrame(imaImg2, 150);
-        aniAnim.addFrame(imaImg3, 150);
-        aniAnim.addFrame(imaImg4, 150);
-        aniAnim.addFrame(imaImg5, 200);
-        aniAnim.addFrame(imaImg6, 150);
+        for (int iI = 0; iI < adAnim.getNumFrames(); iI++) {
+            aniAnim.addFrame(loadFrame(adAnim.getFrame(iI)),
+                adAnim.getDuration(iI));
+        }
         return aniAnim;
     }
 
     /**
      * loadPowerUpSprites
      * 
-     * Loads the power up
+     * Creates the "host" sprites of the power-ups of the definitions.
      */
     private void loadPowerUpSprites() {
-        // create "goal" sprite
-        Animation aniAnim = new Animation();
-        aniAnim.addFrame(loadImage("puerta_1.png"), 150);
-        aniAnim.addFrame(loadImage("puerta_1.png"), 150);
-        aniAnim.addFrame(loadImage("puerta_1.png"), 150);
-        aniAnim.addFrame(loadImage("puerta_1.png"), 150);
-        sprGoalSprite = new PowerUp.Goal(aniAnim);
-        
-        aniAnim = new Animation();
-        aniAnim.addFrame(loadImage("Agua1.png"), 150);
-        aniAnim.addFrame(loadImage("Agua2.png"), 150);
-        aniAnim.addFrame(loadImage("Agua3.png"), 150);
-        aniAnim.addFrame(loadImage("Agua2.png"), 150);
-        sprAguaSprite = new PowerUp.Goal(aniAnim);
-
-        // create "star" sprite
-        aniAnim = new Animation();
-        aniAnim.addFrame(loadImage("star1.png"), 100);
-        aniAnim.addFrame(loadImage("star2.png"), 100);
-        aniAnim.addFrame(loadImage("star3.png"), 100);
-        aniAnim.addFrame(loadImage("star4.png"), 100);
-        sprCoinSprite = new PowerUp.Star(aniAnim);
-        
-        aniAnim = new Animation();
-        aniAnim.addFrame(loadImage("Picos_2.png"), 100);
-        aniAnim.addFrame(loadImage("Picos_2.png"), 100);
-        aniAnim.addFrame(loadImage("Picos_2.png"), 100);
-        aniAnim.addFrame(loadImage("Picos_2.png"), 100);
-        sprPicosSprite = new PowerUp.Star(aniAnim);
-
-        // create "music" sprite
-        aniAnim = new Animation();
-        aniAnim.addFrame(loadImage("music1.png"), 150);
-        aniAnim.addFrame(loadImage("music2.png"), 150);
-        aniAnim.addFrame(loadImage("music3.png"), 150);
-        aniAnim.addFrame(loadImage("music2.png"), 150);
-        sprMusicSprite = new PowerUp.Music(aniAnim);
+        // decode every image in parallel
+        ArrayList ArrNames = new ArrayList();
+        for (int iI = 0; iI < defDefinitions.getNumArchetypes(); iI++) {
+            Archetype arcArchetype = defDefinitions.getArchetype(iI);
+            if (!arcArchetype.isCreature()) {
+                addFrameNames(ArrNames, arcArchetype.getWalkAnimation());
+            }
+        }
+        loadFrames((String[])ArrNames.toArray(new String[0]));
+
+        for (int iI = 0; iI < defDefinitions.getNumArchetypes(); iI++) {
+            Archetype arcArchetype = defDefinitions.getArchetype(iI);
+            if (arcArchetype.isCreature()) {
+                continue;
+            }
+            Animation aniAnim = createPowerUpAnim(
+                arcArchetype.getWalkAnimation());
+            switch (arcArchetype.getKind()) {
+                case Archetype.iKIND_STAR:
+                    sprArrHosts[iI] = new PowerUp.Star(aniAnim);
+                    break;
+                case Archetype.iKIND_MUSIC:
+                    sprArrHosts[iI] = new PowerUp.Music(aniAnim);
+                    break;
+                default:
+                    sprArrHosts[iI] = new PowerUp.Goal(aniAnim);
+                    break;
+            }
+            sprArrHosts[iI].setLight(arcArchetype.getLightRadius(),
+                arcArchetype.getLightIntensity());
+        }
     }
     
     /**
@@ -750,8 +1196,6 @@ public class ResourceManager {
         flSpawnSprite.setVelocityX(fVelX);
         flSpawnSprite.setVelocityY(fVelY);
         
-        flSpawnSprite.setHealth(1);
-        
         tmMap.addSprite(flSpawnSprite);
     }
     
@@ -0,0 +1,120 @@
+package com.brackeen.javagamebook.tilegame;
+
+/**
+ * TileCollision
+ *
+ * It manages the definition of each object of type <code>TileCollision</code>
+ *
+ * The TileCollision class is the immutable result of sweeping a Sprite
+ * through the tiles of a TileMap. It holds the tile that stopped the
+ * Sprite, the time of impact as a fraction of the attempted movement,
+ * the contact normal and the pixel position of the blocking surface
+ * along the axis of movement.
+ *
+ * @author Quazar Volume
+ */
+public class TileCollision {
+
+    private final int iTileX;       // Tile that was hit
+    private final int iTileY;
+    private final float fTime;      // Time of impact, from 0 (start) to 1 (end)
+    private final int iNormalX;     // Contact normal, pointing away from the tile
+    private final int iNormalY;
+    private final float fSurface;   // Pixel position of the blocking surface
+
+    /**
+     * TileCollision
+     *
+     * Parameterized Constructor
+     *
+     * Creates a new TileCollision with the specified values.
+     *
+     * @param iTileX is an object of class <code>Integer</code>
+     * @param iTileY is an object of class <code>Integer</code>
+     * @param fTime is an object of class <code>Float</code>
+     * @param iNormalX is an object of class <code>Integer</code>
+     * @param iNormalY is an object of class <code>Integer</code>
+     * @param fSurface is an object of class <code>Float</code>
+     */
+    public TileCollision(int iTileX, int iTileY, float fTime,
+        int iNormalX, int iNormalY, float fSurface)
+    {
+        this.iTileX = iTileX;
+        this.iTileY = iTileY;
+        this.fTime = fTime;
+        this.iNormalX = iNormalX;
+        this.iNormalY = iNormalY;
+        this.fSurface = fSurface;
+    }
+
+    /**
+     * getTileX
+     *
+     * Gets the x position (in tiles) of the tile that was hit.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getTileX() {
+        return iTileX;
+    }
+
+    /**
+     * getTileY
+     *
+     * Gets the y position (in tiles) of the tile that was hit.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getTileY() {
+        return iTileY;
+    }
+
+    /**
+     * getTime
+     *
+     * Gets the time of impact as a fraction of the attempted
+     * movement. 0 means the Sprite could not move at all and 1
+     * means it touched the tile at the end of its movement.
+     *
+     * @return object of class <code>Float</code>
+     */
+    public float getTime() {
+        return fTime;
+    }
+
+    /**
+     * getNormalX
+     *
+     * Gets the horizontal component of the contact normal
+     * (-1, 0 or 1).
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getNormalX() {
+        return iNormalX;
+    }
+
+    /**
+     * getNormalY
+     *
+     * Gets the vertical component of the contact normal
+     * (-1, 0 or 1).
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getNormalY() {
+        return iNormalY;
+    }
+
+    /**
+     * getSurface
+     *
+     * Gets the pixel position of the surface that stopped the
+     * Sprite, along the axis of movement.
+     *
+     * @return object of class <code>Float</code>
+     */
+    public float getSurface() {
+        return fSurface;
+    }
+}
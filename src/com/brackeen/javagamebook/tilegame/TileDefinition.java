@@ -0,0 +1,74 @@
+package com.brackeen.javagamebook.tilegame;
+
+/**
+ * TileDefinition
+ *
+ * It manages the definition of each object of type <code>TileDefinition</code>
+ *
+ * The TileDefinition class describes an animated tile read from the
+ * definition files: the map character that places it, its animation
+ * and what it does to the player who touches it, as the class of a
+ * power-up (Star, Music or Goal) or nothing. It never changes once
+ * created.
+ *
+ * @author Quazar Volume
+ */
+public class TileDefinition {
+
+    // Kind of a tile that does nothing to the player
+    public static final int iNO_KIND = -1;
+
+    private final char cChar;                   // Character of the map files
+    private final AnimationDefinition adAnim;
+    private final int iKind;                    // Archetype power-up kind
+
+    /**
+     * TileDefinition
+     *
+     * Parameterized Constructor
+     *
+     * @param cChar is an object of class <code>Character</code>
+     * @param adAnim is an object of class <code>AnimationDefinition</code>
+     * @param iKind is an object of class <code>Integer</code>
+     */
+    public TileDefinition(char cChar, AnimationDefinition adAnim, int iKind) {
+        this.cChar = cChar;
+        this.adAnim = adAnim;
+        this.iKind = iKind;
+    }
+
+    /**
+     * getChar
+     *
+     * Gets the character of the map files that places this tile.
+     *
+     * @return object of class <code>Character</code>
+     */
+    public char getChar() {
+        return cChar;
+    }
+
+    /**
+     * getAnimation
+     *
+     * Gets the animation of this tile.
+     *
+     * @return object of class <code>AnimationDefinition</code>
+     */
+    public AnimationDefinition getAnimation() {
+        return adAnim;
+    }
+
+    /**
+     * getKind
+     *
+     * Gets what this tile does to the player, as the class of a
+     * power-up (iKIND_STAR, iKIND_MUSIC or iKIND_GOAL of Archetype),
+     * or iNO_KIND.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getKind() {
+        return iKind;
+    }
+}
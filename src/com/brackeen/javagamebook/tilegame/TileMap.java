@@ -1,10 +1,12 @@
 package com.brackeen.javagamebook.tilegame;
 
-import java.awt.Image;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.Iterator;
 
+import com.brackeen.javagamebook.graphics.AtlasFrame;
 import com.brackeen.javagamebook.graphics.Sprite;
+import com.brackeen.javagamebook.tilegame.sprites.Boss;
 
 /**
  * TileMap
@@ -13,17 +15,32 @@ import com.brackeen.javagamebook.graphics.Sprite;
  *
  * The TileMap class contains the data for a tile-based
  * map, including Sprites. Each tile is a reference to an
- * Image. Of course, Images are used multiple times in the tile
+ * AtlasFrame. Of course, frames are used multiple times in the tile
  * map.
+ * <p>Some tiles are AnimatedTiles. All of them take their frame
+ * from the clock of the map, which the game advances once per
+ * tick.</p>
  *
  * @author Quazar Volume
  *
  */
 public class TileMap {
 
-    private Image[][] imaMatTiles; //Matrix of tile images
-    private boolean[][] bPlatform; //Matrix that determines wheter the tile is a platform or not
+    // Ambient light of a map without lighting
+    public static final int iFULL_LIGHT = 255;
+
+    private AtlasFrame[][] afMatTiles; //Matrix of tile frames
+    private CollisionMask cmCollisionMask; //Solid, one-way, slope and ladder tiles
     private LinkedList lklSprites; //Linkedlist of sprites
+    private ArrayList ArrBosses; //Bosses among the sprites, kept in sync with lklSprites
+    private ArrayList ArrLayers; //Background and foreground layers, in drawing order
+    private int iAmbient; //Light everywhere, iFULL_LIGHT if the map has no lighting
+    private ArrayList ArrLights; //Fixed lights, as {x, y, radius, intensity}
+    private boolean bArena; //Boss arena, with invisible walls for the boss
+    private int iArenaLeft; //Walls of the arena, in pixels
+    private int iArenaRight;
+    private AnimatedTile[] atArrAnimatedTiles; //Animated tiles that may be in the map
+    private long lClock; //Time played in this map, in ms, for the animated tiles
     private Sprite sprPlayer; //object sprite of player
 
     /**
@@ -38,15 +55,16 @@ public class TileMap {
      * @param iHeight is an object of class <code>Integer</code>
      */
     public TileMap(int iWidth, int iHeight) {
-        imaMatTiles = new Image[iWidth][iHeight];
-        bPlatform = new boolean[iWidth][iHeight];
-        // Initalize all tiles as solid tiles.
-        for (int iK = 0; iK < iWidth; iK++) {
-            for (int iJ = 0; iJ < iHeight; iJ++) {
-                bPlatform[iK][iJ] = false;
-            }
-        }
+        afMatTiles = new AtlasFrame[iWidth][iHeight];
+        cmCollisionMask = new CollisionMask(iWidth, iHeight);
         lklSprites = new LinkedList();
+        ArrBosses = new ArrayList();
+        ArrLayers = new ArrayList();
+        iAmbient = iFULL_LIGHT;
+        ArrLights = new ArrayList();
+        bArena = false;
+        atArrAnimatedTiles = new AnimatedTile[0];
+        lClock = 0;
     }
 
 
@@ -58,7 +76,7 @@ public class TileMap {
      * @return object of class <code>Image</code>
      */
     public int getWidth() {
-        return imaMatTiles.length;
+        return afMatTiles.length;
     }
 
     /**
@@ -69,7 +87,7 @@ public class TileMap {
      * @return object of class <code>Image</code>
      */
     public int getHeight() {
-        return imaMatTiles[0].length;
+        return afMatTiles[0].length;
     }
 
     /**
@@ -81,39 +99,111 @@ public class TileMap {
      * 
      * @param iX is an object of class <code>Integer</code>
      * @param iY is an object of class <code>Integer</code>
-     * @return object of class <code>Image</code>
+     * @return object of class <code>AtlasFrame</code>
      */
-    public Image getTile(int iX, int iY) {
+    public AtlasFrame getTile(int iX, int iY) {
         if (iX < 0 || iX >= getWidth() ||
             iY < 0 || iY >= getHeight())
         {
             return null;
         }
         else {
-            return imaMatTiles[iX][iY];
+            return afMatTiles[iX][iY];
         }
     }
 
     /**
      * setTile
      * 
-     * Sets the tile at the specified location.
+     * Sets the tile at the specified location. Tiles are solid 
+     * unless they are platforms.
+     * 
+     * @param iX is an object of class <code>Integer</code>
+     * @param iY is an object of class <code>Integer</code>
+     * @param afTile is an object of class <code>AtlasFrame</code>
+     * @param bIsPlatform is an object of class <code>Boolean</code>
+     */
+    public void setTile(int iX, int iY, AtlasFrame afTile, boolean bIsPlatform) {
+        afMatTiles[iX][iY] = afTile;
+        if (afTile == null) {
+            cmCollisionMask.setTileType(iX, iY, CollisionMask.iTILE_EMPTY);
+        }
+        else if (bIsPlatform) {
+            cmCollisionMask.setTileType(iX, iY, CollisionMask.iTILE_ONE_WAY);
+        }
+        else {
+            cmCollisionMask.setTileType(iX, iY, CollisionMask.iTILE_SOLID);
+        }
+    }
+    
+    /**
+     * setTile
+     * 
+     * Sets the tile at the specified location and its collision type 
+     * (one of the CollisionMask tile types) at once.
+     * 
+     * @param iX is an object of class <code>Integer</code>
+     * @param iY is an object of class <code>Integer</code>
+     * @param afTile is an object of class <code>AtlasFrame</code>
+     * @param iType is an object of class <code>Integer</code>
+     */
+    public void setTile(int iX, int iY, AtlasFrame afTile, int iType) {
+        afMatTiles[iX][iY] = afTile;
+        cmCollisionMask.setTileType(iX, iY, iType);
+    }
+    
+    /**
+     * setTileType
+     * 
+     * Sets the collision type of the tile at the specified location 
+     * (one of the CollisionMask tile types).
      * 
      * @param iX is an object of class <code>Integer</code>
      * @param iY is an object of class <code>Integer</code>
-     * @param imaTile is an object of class <code>Image</code>
+     * @param iType is an object of class <code>Integer</code>
      */
-    public void setTile(int iX, int iY, Image imaTile, boolean bIsPlatform) {
-        imaMatTiles[iX][iY] = imaTile;
-        this.bPlatform[iX][iY] = bIsPlatform;
+    public void setTileType(int iX, int iY, int iType) {
+        cmCollisionMask.setTileType(iX, iY, iType);
     }
     
+    /**
+     * setPlatform
+     * 
+     * Sets whether the tile at the specified location is a 
+     * one-way platform or a solid tile.
+     * 
+     * @param iX is an object of class <code>Integer</code>
+     * @param iY is an object of class <code>Integer</code>
+     * @param bIsPlatform is an object of class <code>Boolean</code>
+     */
     public void setPlatform(int iX, int iY, boolean bIsPlatform) {
-        this.bPlatform[iX][iY] = bIsPlatform;
+        cmCollisionMask.setTileType(iX, iY, bIsPlatform ? 
+            CollisionMask.iTILE_ONE_WAY : CollisionMask.iTILE_SOLID);
     }
     
+    /**
+     * getPlatform
+     * 
+     * Checks if the tile at the specified location is a one-way 
+     * platform.
+     * 
+     * @param iX is an object of class <code>Integer</code>
+     * @param iY is an object of class <code>Integer</code>
+     * @return object of class <code>Boolean</code>
+     */
     public boolean getPlatform(int iX, int iY) {
-        return bPlatform[iX][iY];
+        return cmCollisionMask.isOneWay(iX, iY);
+    }
+    
+    /**
+     * getCollisionMask
+     * 
+     * Gets the collision data of this map.
+     * 
+     * @return object of class <code>CollisionMask</code>
+     */
+    public CollisionMask getCollisionMask() {
+        return cmCollisionMask;
     }
 
     /**
@@ -147,6 +237,9 @@ public class TileMap {
      */
     public void addSprite(Sprite sprSprite) {
         lklSprites.add(sprSprite);
+        if (sprSprite instanceof Boss) {
+            ArrBosses.add(sprSprite);
+        }
     }
     
     /**
@@ -158,18 +251,272 @@ public class TileMap {
      */
     public void removeSprite(Sprite sprSprite) {
         lklSprites.remove(sprSprite);
+        ArrBosses.remove(sprSprite);
+    }
+
+    /**
+     * containsSprite
+     *
+     * Checks if a Sprite object is in this map (excluding the
+     * player Sprite).
+     *
+     * @param sprSprite is an object of class <code>Sprite</code>
+     * @return object of class <code>Boolean</code>
+     */
+    public boolean containsSprite(Sprite sprSprite) {
+        return lklSprites.contains(sprSprite);
     }
 
     /**
      * getSprites
      * 
      * Gets an Iterator of all the Sprites in this map,
-     * excluding the player Sprite.
+     * excluding the player Sprite. Sprites removed through the
+     * Iterator are also removed from the boss registry.
      * 
      * @return object of class <code>LinkedList</code>
      */
     public Iterator getSprites() {
-        return lklSprites.iterator();
+        final Iterator iteSprites = lklSprites.iterator();
+        return new Iterator() {
+            private Object objLast; // Last Sprite returned
+
+            public boolean hasNext() {
+                return iteSprites.hasNext();
+            }
+
+            public Object next() {
+                objLast = iteSprites.next();
+                return objLast;
+            }
+
+            public void remove() {
+                iteSprites.remove();
+                if (objLast instanceof Boss) {
+                    ArrBosses.remove(objLast);
+                }
+            }
+        };
+    }
+
+    /**
+     * getBoss
+     * 
+     * Gets the first Boss in this map, without scanning all the
+     * Sprites. Returns null if there is no Boss.
+     * 
+     * @return object of class <code>Boss</code>
+     */
+    public Boss getBoss() {
+        if (ArrBosses.isEmpty()) {
+            return null;
+        }
+        return (Boss)ArrBosses.get(0);
+    }
+
+    /**
+     * addLayer
+     * 
+     * Adds a background or foreground layer to this map. Layers 
+     * are drawn in the order they are added.
+     * 
+     * @param mlLayer is an object of class <code>MapLayer</code>
+     */
+    public void addLayer(MapLayer mlLayer) {
+        ArrLayers.add(mlLayer);
+    }
+
+    /**
+     * getLayers
+     * 
+     * Gets an Iterator of all the layers of this map, in drawing 
+     * order.
+     * 
+     * @return object of class <code>Iterator</code>
+     */
+    public Iterator getLayers() {
+        return ArrLayers.iterator();
+    }
+
+    /**
+     * setAmbient
+     * 
+     * Sets the light everywhere in this map, from 0 (black) to 
+     * iFULL_LIGHT, which turns the lighting off.
+     * 
+     * @param iAmbient is an object of class <code>Integer</code>
+     */
+    public void setAmbient(int iAmbient) {
+        this.iAmbient = Math.max(0, Math.min(iAmbient, iFULL_LIGHT));
+    }
+
+    /**
+     * setArena
+     * 
+     * Makes this map a boss arena, with invisible walls at the 
+     * specified horizontal positions (in pixels) that turn bosses 
+     * around.
+     * 
+     * @param iLeft is an object of class <code>Integer</code>
+     * @param iRight is an object of class <code>Integer</code>
+     */
+    public void setArena(int iLeft, int iRight) {
+        bArena = true;
+        iArenaLeft = iLeft;
+        iArenaRight = iRight;
+    }
+
+    /**
+     * isArena
+     * 
+     * Checks if this map is a boss arena.
+     * 
+     * @return object of class <code>Boolean</code>
+     */
+    public boolean isArena() {
+        return bArena;
+    }
+
+    /**
+     * getArenaLeft
+     * 
+     * Gets the left wall of the arena, in pixels.
+     * 
+     * @return object of class <code>Integer</code>
+     */
+    public int getArenaLeft() {
+        return iArenaLeft;
+    }
+
+    /**
+     * getArenaRight
+     * 
+     * Gets the right wall of the arena, in pixels.
+     * 
+     * @return object of class <code>Integer</code>
+     */
+    public int getArenaRight() {
+        return iArenaRight;
+    }
+
+    /**
+     * getAmbient
+     * 
+     * Gets the light everywhere in this map.
+     * 
+     * @return object of class <code>Integer</code>
+     */
+    public int getAmbient() {
+        return iAmbient;
+    }
+
+    /**
+     * isLit
+     * 
+     * Checks if this map is drawn with lighting.
+     * 
+     * @return object of class <code>Boolean</code>
+     */
+    public boolean isLit() {
+        return iAmbient < iFULL_LIGHT;
+    }
+
+    /**
+     * addLight
+     * 
+     * Adds a fixed light (a torch) to this map, at a position in 
+     * pixels, with its radius in pixels and its intensity, from 0 to 
+     * 255.
+     * 
+     * @param iX is an object of class <code>Integer</code>
+     * @param iY is an object of class <code>Integer</code>
+     * @param iRadius is an object of class <code>Integer</code>
+     * @param iIntensity is an object of class <code>Integer</code>
+     */
+    public void addLight(int iX, int iY, int iRadius, int iIntensity) {
+        ArrLights.add(new int[] {iX, iY, Math.max(iRadius, 0),
+            Math.max(0, Math.min(iIntensity, 255))});
+    }
+
+    /**
+     * getNumLights
+     * 
+     * Gets the number of fixed lights of this map.
+     * 
+     * @return object of class <code>Integer</code>
+     */
+    public int getNumLights() {
+        return ArrLights.size();
+    }
+
+    /**
+     * getLight
+     * 
+     * Gets a fixed light of this map, as {x, y, radius, intensity}.
+     * 
+     * @param iIndex is an object of class <code>Integer</code>
+     * @return array of class <code>Integer</code>
+     */
+    public int[] getLight(int iIndex) {
+        return ((int[])ArrLights.get(iIndex)).clone();
+    }
+
+    /**
+     * setAnimatedTiles
+     * 
+     * Sets the animated tiles that may be placed in this map. The 
+     * renderer chooses their frame from the clock before drawing.
+     * 
+     * @param atArrAnimatedTiles is an array of class <code>AnimatedTile</code>
+     */
+    public void setAnimatedTiles(AnimatedTile[] atArrAnimatedTiles) {
+        this.atArrAnimatedTiles = atArrAnimatedTiles.clone();
+    }
+
+    /**
+     * getNumAnimatedTiles
+     * 
+     * Gets the number of animated tiles that may be in this map.
+     * 
+     * @return object of class <code>Integer</code>
+     */
+    public int getNumAnimatedTiles() {
+        return atArrAnimatedTiles.length;
+    }
+
+    /**
+     * getAnimatedTile
+     * 
+     * Gets an animated tile that may be in this map.
+     * 
+     * @param iIndex is an object of class <code>Integer</code>
+     * @return object of class <code>AnimatedTile</code>
+     */
+    public AnimatedTile getAnimatedTile(int iIndex) {
+        return atArrAnimatedTiles[iIndex];
+    }
+
+    /**
+     * updateClock
+     * 
+     * Advances the clock of the animated tiles by the specified 
+     * amount of time.
+     * 
+     * @param lElapsedTime is an object of class <code>Long</code>
+     */
+    public void updateClock(long lElapsedTime) {
+        lClock += lElapsedTime;
+    }
+
+    /**
+     * getClock
+     * 
+     * Gets the time played in this map, in milliseconds.
+     * 
+     * @return object of class <code>Long</code>
+     */
+    public long getClock() {
+        return lClock;
     }
 
 }
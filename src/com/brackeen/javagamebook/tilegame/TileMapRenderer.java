@@ -1,11 +1,11 @@
 package com.brackeen.javagamebook.tilegame;
 
 import java.awt.*;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 
+import com.brackeen.javagamebook.graphics.AtlasFrame;
 import com.brackeen.javagamebook.graphics.Sprite;
-import com.brackeen.javagamebook.tilegame.sprites.Creature;
-import com.brackeen.javagamebook.tilegame.sprites.Fly;
 
 /**
  * TileMapRenderer
@@ -18,6 +18,15 @@ import com.brackeen.javagamebook.tilegame.sprites.Fly;
  * <p>If the width of background image is smaller the width of 
  * the tile map, the background image will appear to move 
  * slowly, creating a parallax background effect.</p> 
+ * <p>Maps may also declare any number of extra background and 
+ * foreground layers, each with its own scroll factor, and be lit: 
+ * darkened everywhere except around their lights, by a LightMap.</p> 
+ * <p>The scrolling position comes from a Camera, which is 
+ * updated once per tick by the game. Frames are drawn from a 
+ * WorldSnapshot, so they can be drawn on another thread.</p> 
+ * <p>It can also track what it drew last, so static screens 
+ * (menus, pause) can ask for the area that changed and only redraw 
+ * that.</p> 
  * <p>Also, three static methods are provided to convert pixels 
  * to tile positions, and vice-versa.</p> 
  * <p>This TileMapRender uses a tile size of 64.</p>
@@ -33,6 +42,22 @@ public class TileMapRenderer {
 
     // Background image object
     private Image imaBackground;
+
+    // View of the map
+    private Camera camCamera;
+
+    // Lighting of the map drawn, or null
+    private LightMap lmLights;
+
+    // State of the last drawn frame, used to find dirty areas
+    private boolean bTrackDirty;
+    private boolean bDrawn;             // A frame was drawn while tracking
+    private int iDrawnOffsetX;
+    private int iDrawnOffsetY;
+    private Image imaDrawnBackground;
+    private TileMap tmDrawnMap;
+    private long lDrawnClock;           // Clock of the animated tiles
+    private IdentityHashMap ihmDrawnSprites;    // Last bounds of each sprite
     
     /**
      * pixelsToTiles
@@ -81,6 +106,31 @@ public class TileMapRenderer {
         //return numTiles * TILE_SIZE;
     }
     
+    /**
+     * TileMapRenderer
+     * 
+     * Parameterized Constructor
+     * 
+     * Creates a new TileMapRenderer that scrolls the map as the 
+     * specified Camera says.
+     * 
+     * @param camCamera is an object of class <code>Camera</code>
+     */
+    public TileMapRenderer(Camera camCamera) {
+        this.camCamera = camCamera;
+    }
+    
+    /**
+     * getCamera
+     * 
+     * Gets the Camera used to scroll the map.
+     * 
+     * @return object of class <code>Camera</code>
+     */
+    public Camera getCamera() {
+        return camCamera;
+    }
+    
     /**
      * setBackground
      * 
@@ -92,35 +142,40 @@ public class TileMapRenderer {
         this.imaBackground = imaBackground;
     }
     
+    /**
+     * getBackground
+     * 
+     * Gets the background to draw, or null.
+     * 
+     * @return object of class <code>Image</code>
+     */
+    public Image getBackground() {
+        return imaBackground;
+    }
+    
     /**
      * draw
      * 
-     * Draws the specified TileMap.
+     * Draws a WorldSnapshot of a TileMap. Only the snapshot and the 
+     * tiles and layers of its map are read, so it can be drawn while 
+     * the game updates the sprites. A snapshot without a map (a menu) 
+     * only draws its background.
      * 
      * @param gra2D_G is an object of class <code>Graphics2D</code>
-     * @param tmMap is an object of class <code>TileMap</code>
+     * @param wsSnapshot is an object of class <code>WorldSnapshot</code>
      * @param iScreenWidth is an object of class <code>Integer</code>
      * @param iScreenHeight is an object of class <code>Integer</code>
      */
-    public void draw(Graphics2D gra2D_G, TileMap tmMap,
+    public void draw(Graphics2D gra2D_G, WorldSnapshot wsSnapshot,
         int iScreenWidth, int iScreenHeight)
     {
-        // Gets player's sprite
-        Sprite sprPlayer = tmMap.getPlayer();
-        int iMapWidth = tilesToPixels(tmMap.getWidth());
-        int iMapHeight = tilesToPixels(tmMap.getHeight());
+        TileMap tmMap = wsSnapshot.getMap();
+        Image imaBackground = wsSnapshot.getBackground();
 
         // get the scrolling position of the map
-        // based on player's position
-        int iOffsetX = iScreenWidth / 2 -
-            Math.round(sprPlayer.getX()) - iTILE_SIZE;
-        iOffsetX = Math.min(iOffsetX, 0);
-        iOffsetX = Math.max(iOffsetX, iScreenWidth - iMapWidth);
-        
-        int iOffsetY = iScreenHeight / 2 -
-            Math.round(sprPlayer.getY()) - iTILE_SIZE;
-        iOffsetY = Math.min(iOffsetY, 0);
-        iOffsetY = Math.max(iOffsetY, iScreenHeight - iMapHeight);
+        // from the camera, when the snapshot was taken
+        int iOffsetX = wsSnapshot.getOffsetX();
+        int iOffsetY = wsSnapshot.getOffsetY();
 
 //        // get the y offset to draw all sprites and tiles
 //        int iOffsetY = iScreenHeight -
@@ -134,7 +189,25 @@ public class TileMapRenderer {
             gra2D_G.fillRect(0, 0, iScreenWidth, iScreenHeight);
         }
 
+        // draw the background of a screen without map
+        if (tmMap == null) {
+            if (imaBackground != null) {
+                gra2D_G.drawImage(imaBackground, 0, 0, null);
+            }
+            if (bTrackDirty) {
+                bDrawn = true;
+                iDrawnOffsetX = iOffsetX;
+                iDrawnOffsetY = iOffsetY;
+                imaDrawnBackground = imaBackground;
+                tmDrawnMap = null;
+                ihmDrawnSprites.clear();
+            }
+            return;
+        }
+
         // draw parallax background image
+        int iMapWidth = tilesToPixels(tmMap.getWidth());
+        int iMapHeight = tilesToPixels(tmMap.getHeight());
         if (imaBackground != null) {
             int x = iOffsetX *
                 (iScreenWidth - imaBackground.getWidth(null)) /
@@ -148,42 +221,262 @@ public class TileMapRenderer {
             gra2D_G.drawImage(imaBackground, x, y, null);
         }
 
-        // draw the visible tiles
+        // draw background layers
+        drawLayers(gra2D_G, tmMap, false, iOffsetX, iOffsetY,
+            iScreenWidth, iScreenHeight);
+
+        // draw the visible tiles, animated ones at the snapshot's time
+        long lClock = wsSnapshot.getClock();
         int iFirstTileX = pixelsToTiles(-iOffsetX);
         int iLastTileX = iFirstTileX +
             pixelsToTiles(iScreenWidth) + 1;
         for (int iY=0; iY<tmMap.getHeight(); iY++) {
             for (int iX=iFirstTileX; iX <= iLastTileX; iX++) {
-                Image imaImage = tmMap.getTile(iX, iY);
-                if (imaImage != null) {
-                    gra2D_G.drawImage(imaImage,
+                AtlasFrame afTile = tmMap.getTile(iX, iY);
+                if (afTile instanceof AnimatedTile) {
+                    afTile = ((AnimatedTile)afTile).getFrame(lClock);
+                }
+                if (afTile != null) {
+                    afTile.draw(gra2D_G,
                         tilesToPixels(iX) + iOffsetX,
-                        tilesToPixels(iY) + iOffsetY,
-                        null);
+                        tilesToPixels(iY) + iOffsetY);
                 }
             }
         }
 
-        // draw player
-        gra2D_G.drawImage(sprPlayer.getImage(),
-            Math.round(sprPlayer.getX()) + iOffsetX,
-            Math.round(sprPlayer.getY()) + iOffsetY,
-            null);
+        // draw player and sprites
+        for (int iI = 0; iI < wsSnapshot.getNumSprites(); iI++) {
+            wsSnapshot.getFrame(iI).draw(gra2D_G,
+                wsSnapshot.getX(iI) + iOffsetX,
+                wsSnapshot.getY(iI) + iOffsetY);
+        }
+
+        // draw particles
+        if (wsSnapshot.getParticles() != null) {
+            wsSnapshot.getParticles().draw(gra2D_G, iOffsetX, iOffsetY,
+                iScreenWidth, iScreenHeight);
+        }
+
+        // draw foreground layers
+        drawLayers(gra2D_G, tmMap, true, iOffsetX, iOffsetY,
+            iScreenWidth, iScreenHeight);
+
+        // darken it all except around the lights
+        if (tmMap.isLit()) {
+            if (lmLights == null || lmLights.getMap() != tmMap) {
+                lmLights = new LightMap(tmMap);
+            }
+            lmLights.draw(gra2D_G, wsSnapshot, iScreenWidth, iScreenHeight);
+        }
+
+        // remember what was drawn
+        if (bTrackDirty) {
+            bDrawn = true;
+            iDrawnOffsetX = iOffsetX;
+            iDrawnOffsetY = iOffsetY;
+            imaDrawnBackground = imaBackground;
+            tmDrawnMap = tmMap;
+            lDrawnClock = wsSnapshot.getClock();
+            ihmDrawnSprites.clear();
+            for (int iI = 0; iI < wsSnapshot.getNumSprites(); iI++) {
+                AtlasFrame afFrame = wsSnapshot.getFrame(iI);
+                ihmDrawnSprites.put(wsSnapshot.getSprite(iI),
+                    new DrawnSprite(afFrame,
+                    wsSnapshot.getX(iI) + iOffsetX,
+                    wsSnapshot.getY(iI) + iOffsetY));
+            }
+        }
+    }
+
+    /**
+     * setTrackDirty
+     * 
+     * Turns on or off the tracking of what is drawn. While it is on, 
+     * getDirtyArea can tell which part of the screen changed since 
+     * the last frame drawn.
+     * 
+     * @param bTrackDirty is an object of class <code>Boolean</code>
+     */
+    public void setTrackDirty(boolean bTrackDirty) {
+        if (bTrackDirty && ihmDrawnSprites == null) {
+            ihmDrawnSprites = new IdentityHashMap();
+        }
+        if (bTrackDirty != this.bTrackDirty) {
+            this.bTrackDirty = bTrackDirty;
+            bDrawn = false;
+            tmDrawnMap = null;
+            imaDrawnBackground = null;
+            ihmDrawnSprites.clear();
+        }
+    }
+
+    /**
+     * getDirtyArea
+     * 
+     * Gets the area of the screen that would change if the specified 
+     * TileMap was drawn now, compared to the last frame drawn: the old 
+     * and new bounds of every sprite that moved, changed its frame, 
+     * appeared or disappeared. The whole screen is dirty if nothing 
+     * was drawn yet, or the map, its scrolling, the background or 
+     * the clock of its animated tiles changed. The area is empty if 
+     * nothing changed. The map may be null on screens that only have 
+     * a background. Dirty tracking must be on.
+     * 
+     * @param tmMap is an object of class <code>TileMap</code>
+     * @param iScreenWidth is an object of class <code>Integer</code>
+     * @param iScreenHeight is an object of class <code>Integer</code>
+     * @return object of class <code>Rectangle</code>
+     */
+    public Rectangle getDirtyArea(TileMap tmMap, int iScreenWidth,
+        int iScreenHeight)
+    {
+        Rectangle recScreen = new Rectangle(0, 0, iScreenWidth, iScreenHeight);
+        int iOffsetX = camCamera.getOffsetX();
+        int iOffsetY = camCamera.getOffsetY();
+        if (!bTrackDirty || !bDrawn || tmMap != tmDrawnMap ||
+            imaBackground != imaDrawnBackground ||
+            iOffsetX != iDrawnOffsetX || iOffsetY != iDrawnOffsetY)
+        {
+            return recScreen;
+        }
+        if (tmMap == null) {
+            // only the background, which didn't change
+            return new Rectangle();
+        }
+        if (tmMap.getNumAnimatedTiles() > 0 &&
+            tmMap.getClock() != lDrawnClock)
+        {
+            return recScreen;
+        }
 
-        // draw sprites
+        Rectangle recDirty = new Rectangle();
+        int iSeen = 0;
+        Sprite sprSprite = tmMap.getPlayer();
         Iterator iteI = tmMap.getSprites();
+        while (sprSprite != null) {
+            DrawnSprite dsDrawn = (DrawnSprite)ihmDrawnSprites.get(sprSprite);
+            DrawnSprite dsNow = new DrawnSprite(sprSprite, iOffsetX, iOffsetY);
+            if (dsDrawn == null) {
+                addDirty(recDirty, dsNow.recBounds);
+            }
+            else {
+                iSeen++;
+                if (dsDrawn.afFrame != dsNow.afFrame ||
+                    !dsDrawn.recBounds.equals(dsNow.recBounds))
+                {
+                    addDirty(recDirty, dsDrawn.recBounds);
+                    addDirty(recDirty, dsNow.recBounds);
+                }
+            }
+            sprSprite = iteI.hasNext() ? (Sprite)iteI.next() : null;
+        }
+
+        // some sprites were removed; their old bounds are dirty
+        if (iSeen < ihmDrawnSprites.size()) {
+            Iterator iteDrawn = ihmDrawnSprites.keySet().iterator();
+            while (iteDrawn.hasNext()) {
+                Sprite sprDrawn = (Sprite)iteDrawn.next();
+                if (sprDrawn != tmMap.getPlayer() &&
+                    !tmMap.containsSprite(sprDrawn))
+                {
+                    addDirty(recDirty, ((DrawnSprite)ihmDrawnSprites.get(
+                        sprDrawn)).recBounds);
+                }
+            }
+        }
+        return recDirty.intersection(recScreen);
+    }
+
+    /**
+     * addDirty
+     * 
+     * Adds a rectangle to a dirty area.
+     * 
+     * @param recDirty is an object of class <code>Rectangle</code>
+     * @param recBounds is an object of class <code>Rectangle</code>
+     */
+    private static void addDirty(Rectangle recDirty, Rectangle recBounds) {
+        if (recDirty.isEmpty()) {
+            recDirty.setBounds(recBounds);
+        }
+        else {
+            recDirty.add(recBounds);
+        }
+    }
+
+    /**
+     * drawLayers
+     * 
+     * Draws the background or the foreground layers of a TileMap, 
+     * in the order they were declared.
+     * 
+     * @param gra2D_G is an object of class <code>Graphics2D</code>
+     * @param tmMap is an object of class <code>TileMap</code>
+     * @param bForeground is an object of class <code>Boolean</code>
+     * @param iOffsetX is an object of class <code>Integer</code>
+     * @param iOffsetY is an object of class <code>Integer</code>
+     * @param iScreenWidth is an object of class <code>Integer</code>
+     * @param iScreenHeight is an object of class <code>Integer</code>
+     */
+    private void drawLayers(Graphics2D gra2D_G, TileMap tmMap,
+        boolean bForeground, int iOffsetX, int iOffsetY,
+        int iScreenWidth, int iScreenHeight)
+    {
+        Iterator iteI = tmMap.getLayers();
         while (iteI.hasNext()) {
-            Sprite sprSprite = (Sprite)iteI.next();
-            int iX = Math.round(sprSprite.getX()) + iOffsetX;
-            int iY = Math.round(sprSprite.getY()) + iOffsetY;
-            gra2D_G.drawImage(sprSprite.getImage(), iX, iY, null);
-
-            // wake up the creature when it's on screen
-            if (sprSprite instanceof Creature &&
-                iX >= 0 && iX < iScreenWidth)
-            {
-                ((Creature)sprSprite).wakeUp();
+            MapLayer mlLayer = (MapLayer)iteI.next();
+            if (mlLayer.isForeground() == bForeground) {
+                mlLayer.draw(gra2D_G, iOffsetX, iOffsetY,
+                    iScreenWidth, iScreenHeight);
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * DrawnSprite
+     * 
+     * It manages the definition of each object of type <code>DrawnSprite</code>
+     * 
+     * The DrawnSprite class holds the frame and the screen bounds of 
+     * a Sprite when it was drawn.
+     * 
+     * @author Quazar Volume
+     */
+    private static class DrawnSprite {
+
+        AtlasFrame afFrame;     // Frame drawn
+        Rectangle recBounds;    // Bounds on the screen
+
+        /**
+         * DrawnSprite
+         * 
+         * Parameterized Constructor
+         * 
+         * @param sprSprite is an object of class <code>Sprite</code>
+         * @param iOffsetX is an object of class <code>Integer</code>
+         * @param iOffsetY is an object of class <code>Integer</code>
+         */
+        DrawnSprite(Sprite sprSprite, int iOffsetX, int iOffsetY) {
+            afFrame = sprSprite.getCurrentFrame();
+            recBounds = new Rectangle(
+                Math.round(sprSprite.getX()) + iOffsetX,
+                Math.round(sprSprite.getY()) + iOffsetY,
+                afFrame.getWidth(), afFrame.getHeight());
+        }
+
+        /**
+         * DrawnSprite
+         * 
+         * Parameterized Constructor
+         * 
+         * @param afFrame is an object of class <code>AtlasFrame</code>
+         * @param iX is an object of class <code>Integer</code>
+         * @param iY is an object of class <code>Integer</code>
+         */
+        DrawnSprite(AtlasFrame afFrame, int iX, int iY) {
+            this.afFrame = afFrame;
+            recBounds = new Rectangle(iX, iY,
+                afFrame.getWidth(), afFrame.getHeight());
+        }
+    }
+}
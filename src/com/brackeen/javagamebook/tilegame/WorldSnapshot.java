@@ -0,0 +1,400 @@
+package com.brackeen.javagamebook.tilegame;
+
+import java.awt.Image;
+import java.util.Iterator;
+
+import com.brackeen.javagamebook.graphics.AtlasFrame;
+import com.brackeen.javagamebook.graphics.ParticleSystem;
+import com.brackeen.javagamebook.graphics.Sprite;
+
+/**
+ * WorldSnapshot
+ *
+ * It manages the definition of each object of type <code>WorldSnapshot</code>
+ *
+ * The WorldSnapshot class holds everything needed to draw one frame
+ * of the game, copied at the end of a game tick: the scrolling of
+ * the map, the clock of its animated tiles, the background, the
+ * frame, position and light of every sprite, the particles, and the
+ * values shown in the HUD. A snapshot given to another thread is
+ * never changed again, so it can be drawn there while the game goes
+ * on updating the sprites; when the game draws by itself, it fills
+ * the same snapshot again every frame, so nothing is allocated.
+ * <p>The tiles and layers are read from the TileMap itself, since
+ * they don't change after the map is loaded. Screens without a map
+ * (the menus) only have a background.</p>
+ *
+ * @author Quazar Volume
+ */
+public class WorldSnapshot {
+
+    // Boss health when the map has no boss
+    public static final int iNO_BOSS = Integer.MIN_VALUE;
+
+    private TileMap tmMap;
+    private Image imaBackground;
+    private int iOffsetX;                   // Scrolling of the map, in pixels
+    private int iOffsetY;
+    private long lClock;                    // Clock of the animated tiles
+
+    // Sprites, the player first; the arrays only grow
+    private int iNumSprites;
+    private Sprite[] sprArrSprites;         // Sprites copied (identity only)
+    private AtlasFrame[] afArrFrames;       // Frame of each sprite
+    private int[] iArrX;                    // World position of each sprite
+    private int[] iArrY;
+    private int[] iArrLightRadius;          // Light of each sprite, or 0
+    private int[] iArrLightIntensity;
+
+    private ParticleSystem.Batch batParticles;          // Or null
+
+    // HUD
+    private boolean bHud;                   // Life, score and health are shown
+    private int iScore;
+    private int iLife;
+    private int iHealth;
+    private int iBossHealth;
+    private boolean bPause;
+    private String sMessage;                // Message of the screen, or null
+
+    /**
+     * WorldSnapshot
+     *
+     * Parameterized Constructor
+     *
+     * Copies the state of the specified TileMap (or null), scrolled
+     * as the Camera says, and the HUD values. The particles are
+     * already a copy, made by their ParticleSystem (or null).
+     *
+     * @param tmMap is an object of class <code>TileMap</code>
+     * @param camCamera is an object of class <code>Camera</code>
+     * @param imaBackground is an object of class <code>Image</code>
+     * @param batParticles is an object of class <code>ParticleSystem.Batch</code>
+     * @param bHud is an object of class <code>Boolean</code>
+     * @param iScore is an object of class <code>Integer</code>
+     * @param iLife is an object of class <code>Integer</code>
+     * @param iHealth is an object of class <code>Integer</code>
+     * @param iBossHealth is an object of class <code>Integer</code>
+     * @param bPause is an object of class <code>Boolean</code>
+     * @param sMessage is an object of class <code>String</code>
+     */
+    public WorldSnapshot(TileMap tmMap, Camera camCamera,
+        Image imaBackground, ParticleSystem.Batch batParticles, boolean bHud,
+        int iScore, int iLife, int iHealth, int iBossHealth, boolean bPause,
+        String sMessage)
+    {
+        sprArrSprites = new Sprite[0];
+        set(tmMap, camCamera, imaBackground, batParticles, bHud, iScore,
+            iLife, iHealth, iBossHealth, bPause, sMessage);
+    }
+
+    /**
+     * set
+     *
+     * Copies the state of the specified TileMap (or null) and the HUD
+     * values again, like the constructor does, reusing the arrays of
+     * this snapshot. It must not be called while the snapshot is
+     * being drawn.
+     *
+     * @param tmMap is an object of class <code>TileMap</code>
+     * @param camCamera is an object of class <code>Camera</code>
+     * @param imaBackground is an object of class <code>Image</code>
+     * @param batParticles is an object of class <code>ParticleSystem.Batch</code>
+     * @param bHud is an object of class <code>Boolean</code>
+     * @param iScore is an object of class <code>Integer</code>
+     * @param iLife is an object of class <code>Integer</code>
+     * @param iHealth is an object of class <code>Integer</code>
+     * @param iBossHealth is an object of class <code>Integer</code>
+     * @param bPause is an object of class <code>Boolean</code>
+     * @param sMessage is an object of class <code>String</code>
+     */
+    public void set(TileMap tmMap, Camera camCamera, Image imaBackground,
+        ParticleSystem.Batch batParticles, boolean bHud, int iScore,
+        int iLife, int iHealth, int iBossHealth, boolean bPause,
+        String sMessage)
+    {
+        this.tmMap = tmMap;
+        this.imaBackground = imaBackground;
+        this.batParticles = batParticles;
+        iOffsetX = camCamera.getOffsetX();
+        iOffsetY = camCamera.getOffsetY();
+        lClock = (tmMap != null) ? tmMap.getClock() : 0;
+
+        // count the sprites first, so the arrays grow at most once
+        int iCount = 0;
+        Iterator iteI = null;
+        if (tmMap != null) {
+            iCount = 1;
+            iteI = tmMap.getSprites();
+            while (iteI.hasNext()) {
+                iteI.next();
+                iCount++;
+            }
+            iteI = tmMap.getSprites();
+        }
+        if (iCount > sprArrSprites.length) {
+            sprArrSprites = new Sprite[iCount];
+            afArrFrames = new AtlasFrame[iCount];
+            iArrX = new int[iCount];
+            iArrY = new int[iCount];
+            iArrLightRadius = new int[iCount];
+            iArrLightIntensity = new int[iCount];
+        }
+        else {
+            // don't keep the sprites that are gone
+            for (int iI = iCount; iI < iNumSprites; iI++) {
+                sprArrSprites[iI] = null;
+                afArrFrames[iI] = null;
+            }
+        }
+        iNumSprites = iCount;
+
+        Sprite sprSprite = (tmMap != null) ? tmMap.getPlayer() : null;
+        for (int iI = 0; iI < iCount; iI++) {
+            sprArrSprites[iI] = sprSprite;
+            afArrFrames[iI] = sprSprite.getCurrentFrame();
+            iArrX[iI] = Math.round(sprSprite.getX());
+            iArrY[iI] = Math.round(sprSprite.getY());
+            iArrLightRadius[iI] = sprSprite.getLightRadius();
+            iArrLightIntensity[iI] = sprSprite.getLightIntensity();
+            sprSprite = iteI.hasNext() ? (Sprite)iteI.next() : null;
+        }
+
+        this.bHud = bHud;
+        this.iScore = iScore;
+        this.iLife = iLife;
+        this.iHealth = iHealth;
+        this.iBossHealth = iBossHealth;
+        this.bPause = bPause;
+        this.sMessage = sMessage;
+    }
+
+    /**
+     * getMap
+     *
+     * Gets the TileMap copied, to read its tiles and layers, or
+     * null if the screen has no map.
+     *
+     * @return object of class <code>TileMap</code>
+     */
+    public TileMap getMap() {
+        return tmMap;
+    }
+
+    /**
+     * getBackground
+     *
+     * Gets the background image, or null.
+     *
+     * @return object of class <code>Image</code>
+     */
+    public Image getBackground() {
+        return imaBackground;
+    }
+
+    /**
+     * getOffsetX
+     *
+     * Gets the horizontal scrolling of the map.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getOffsetX() {
+        return iOffsetX;
+    }
+
+    /**
+     * getOffsetY
+     *
+     * Gets the vertical scrolling of the map.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getOffsetY() {
+        return iOffsetY;
+    }
+
+    /**
+     * getClock
+     *
+     * Gets the clock of the animated tiles of the map.
+     *
+     * @return object of class <code>Long</code>
+     */
+    public long getClock() {
+        return lClock;
+    }
+
+    /**
+     * getNumSprites
+     *
+     * Gets the number of sprites copied, the player included.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getNumSprites() {
+        return iNumSprites;
+    }
+
+    /**
+     * getSprite
+     *
+     * Gets the Sprite copied at an index (0 is the player). Only its
+     * identity may be used; its state may have changed since.
+     *
+     * @param iIndex is an object of class <code>Integer</code>
+     * @return object of class <code>Sprite</code>
+     */
+    public Sprite getSprite(int iIndex) {
+        return sprArrSprites[iIndex];
+    }
+
+    /**
+     * getFrame
+     *
+     * Gets the frame of the sprite at an index.
+     *
+     * @param iIndex is an object of class <code>Integer</code>
+     * @return object of class <code>AtlasFrame</code>
+     */
+    public AtlasFrame getFrame(int iIndex) {
+        return afArrFrames[iIndex];
+    }
+
+    /**
+     * getX
+     *
+     * Gets the horizontal world position of the sprite at an index.
+     *
+     * @param iIndex is an object of class <code>Integer</code>
+     * @return object of class <code>Integer</code>
+     */
+    public int getX(int iIndex) {
+        return iArrX[iIndex];
+    }
+
+    /**
+     * getY
+     *
+     * Gets the vertical world position of the sprite at an index.
+     *
+     * @param iIndex is an object of class <code>Integer</code>
+     * @return object of class <code>Integer</code>
+     */
+    public int getY(int iIndex) {
+        return iArrY[iIndex];
+    }
+
+    /**
+     * getLightRadius
+     *
+     * Gets the radius of the light of the sprite at an index, or 0
+     * if it has no light.
+     *
+     * @param iIndex is an object of class <code>Integer</code>
+     * @return object of class <code>Integer</code>
+     */
+    public int getLightRadius(int iIndex) {
+        return iArrLightRadius[iIndex];
+    }
+
+    /**
+     * getLightIntensity
+     *
+     * Gets the intensity of the light of the sprite at an index.
+     *
+     * @param iIndex is an object of class <code>Integer</code>
+     * @return object of class <code>Integer</code>
+     */
+    public int getLightIntensity(int iIndex) {
+        return iArrLightIntensity[iIndex];
+    }
+
+    /**
+     * getParticles
+     *
+     * Gets the particles copied, or null.
+     *
+     * @return object of class <code>ParticleSystem.Batch</code>
+     */
+    public ParticleSystem.Batch getParticles() {
+        return batParticles;
+    }
+
+    /**
+     * isHudShown
+     *
+     * Checks if the life, score and health are shown.
+     *
+     * @return object of class <code>Boolean</code>
+     */
+    public boolean isHudShown() {
+        return bHud;
+    }
+
+    /**
+     * getScore
+     *
+     * Gets the score.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getScore() {
+        return iScore;
+    }
+
+    /**
+     * getLife
+     *
+     * Gets the lives left.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getLife() {
+        return iLife;
+    }
+
+    /**
+     * getHealth
+     *
+     * Gets the health of the player.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getHealth() {
+        return iHealth;
+    }
+
+    /**
+     * getBossHealth
+     *
+     * Gets the health of the boss, or iNO_BOSS if there is none.
+     *
+     * @return object of class <code>Integer</code>
+     */
+    public int getBossHealth() {
+        return iBossHealth;
+    }
+
+    /**
+     * isPaused
+     *
+     * Checks if the game was paused.
+     *
+     * @return object of class <code>Boolean</code>
+     */
+    public boolean isPaused() {
+        return bPause;
+    }
+
+    /**
+     * getMessage
+     *
+     * Gets the message of the screen, or null.
+     *
+     * @return object of class <code>String</code>
+     */
+    public String getMessage() {
+        return sMessage;
+    }
+}
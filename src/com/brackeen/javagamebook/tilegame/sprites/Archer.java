@@ -58,14 +58,6 @@ public class Archer extends Creature {
                 aniIdleLeft, aniIdleRight, iHealth);
     }
 
-    /**
-     * getMaxSpeed
-     * 
-     * @return object of class <code>integer</code>
-     */
-    public float getMaxSpeed() {
-        return 0.05f;
-    }
     
 
 }
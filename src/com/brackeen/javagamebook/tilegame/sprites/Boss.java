@@ -54,13 +54,4 @@ public class Boss extends Creature {
         super(aniWalkLeft, aniWalkRight, aniDeadLeft, aniDeadRight, 
                 aniIdleLeft, aniIdleRight, iHealth);
     }
-
-    /**
-     * getMaxSpeed
-     * 
-     * @return object of class <code>integer</code>
-     */
-    public float getMaxSpeed() {
-        return 0.35f;
-    }
 }
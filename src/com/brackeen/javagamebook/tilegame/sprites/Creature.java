@@ -35,6 +35,8 @@ public abstract class Creature extends Sprite {
     private int iState;
     private long lStateTime;
     private int iHealth;
+    private float fMaxSpeed;
+    private int iArchetype;         // Index of its definition, or -1
     private Calendar calShootTime;
     private boolean bFacingRight;   // States wether or not the creature is facing to the right.
     
@@ -71,6 +73,7 @@ public abstract class Creature extends Sprite {
         this.aniIdleRight = aniIdleRight;
         iState = iSTATE_NORMAL;
         iHealth = 2;
+        iArchetype = -1;
         calShootTime = Calendar.getInstance();
         bFacingRight = true;
         sprStickySprite = null;
@@ -106,6 +109,7 @@ public abstract class Creature extends Sprite {
         this.aniIdleRight = aniIdleRight;
         iState = iSTATE_NORMAL;
         this.iHealth = iHealth;
+        iArchetype = -1;
         calShootTime = Calendar.getInstance();
         bFacingRight = true;
         sprStickySprite = null;
@@ -114,7 +118,8 @@ public abstract class Creature extends Sprite {
     /**
      * clone
      * 
-     * Clones the object
+     * Clones the object. The clone has the health, maximum speed, 
+     * archetype and light of this Creature.
      * 
      * @return object of class <code>Creature</code>
      */
@@ -122,7 +127,8 @@ public abstract class Creature extends Sprite {
         // use reflection to create the correct subclass
         Constructor constConstructor = getClass().getConstructors()[0];
         try {
-            return constConstructor.newInstance(new Object[] {
+            Creature creClone = (Creature)constConstructor.newInstance(
+                new Object[] {
                 (Animation)aniWalkLeft.clone(),
                 (Animation)aniWalkRight.clone(),
                 (Animation)aniDeadLeft.clone(),
@@ -130,6 +136,11 @@ public abstract class Creature extends Sprite {
                 (Animation)aniIdleLeft.clone(),
                 (Animation)aniIdleRight.clone()
             });
+            creClone.iHealth = iHealth;
+            creClone.fMaxSpeed = fMaxSpeed;
+            creClone.iArchetype = iArchetype;
+            creClone.setLight(getLightRadius(), getLightIntensity());
+            return creClone;
         }
         catch (Exception ex) {
             // should never happen
@@ -146,7 +157,41 @@ public abstract class Creature extends Sprite {
      * @return object of class <code>integer</code>
      */
     public float getMaxSpeed() {
-        return 0;
+        return fMaxSpeed;
+    }
+
+    /**
+     * setMaxSpeed
+     * 
+     * Sets the maximum speed of this Creature.
+     * 
+     * @param fMaxSpeed is an object of class <code>Float</code>
+     */
+    public void setMaxSpeed(float fMaxSpeed) {
+        this.fMaxSpeed = fMaxSpeed;
+    }
+
+    /**
+     * getArchetype
+     * 
+     * Gets the index of the definition this Creature was created 
+     * from, or -1.
+     * 
+     * @return object of class <code>Integer</code>
+     */
+    public int getArchetype() {
+        return iArchetype;
+    }
+
+    /**
+     * setArchetype
+     * 
+     * Sets the index of the definition this Creature was created from.
+     * 
+     * @param iArchetype is an object of class <code>Integer</code>
+     */
+    public void setArchetype(int iArchetype) {
+        this.iArchetype = iArchetype;
     }
 
     /**
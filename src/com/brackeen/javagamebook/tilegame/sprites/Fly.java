@@ -55,14 +55,6 @@ public class Fly extends Creature {
                 aniIdleLeft, aniIdleRight, iHealth);
     }
 
-    /**
-     * getMaxSpeed
-     * 
-     * @return object of class <code>integer</code>
-     */
-    public float getMaxSpeed() {
-        return 0.2f;
-    }
 
     /**
      * isFlying
@@ -72,5 +64,4 @@ public class Fly extends Creature {
     public boolean isFlying() {
         return isAlive();
     }
-
 }
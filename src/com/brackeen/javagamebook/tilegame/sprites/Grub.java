@@ -57,14 +57,4 @@ public class Grub extends Creature {
         super(aniWalkLeft, aniWalkRight, aniDeadLeft, aniDeadRight, 
                 aniIdleLeft, aniIdleRight, iHealth);
     }
-
-    /**
-     * getMaxSpeed
-     * 
-     * @return object of class <code>integer</code>
-     */
-    public float getMaxSpeed() {
-        return 0.05f;
-    }
-
 }
@@ -171,15 +171,4 @@ public class Player extends Creature {
     public boolean isGrounded() {
         return bOnGround;
     }
-
-    /**
-     * getMaxSpeed
-     * 
-     * returns max speed of the player
-     * 
-     * @return object of class <code>Integer</code>
-     */
-    public float getMaxSpeed() {
-        return 0.5f;
-    }
 }
@@ -37,8 +37,10 @@ public abstract class PowerUp extends Sprite {
         // use reflection to create the correct subclass
         Constructor constConstructor = getClass().getConstructors()[0];
         try {
-            return constConstructor.newInstance(
+            PowerUp puClone = (PowerUp)constConstructor.newInstance(
                 new Object[] {(Animation)aniAnim.clone()});
+            puClone.setLight(getLightRadius(), getLightIntensity());
+            return puClone;
         }
         catch (Exception ex) {
             // should never happen
@@ -0,0 +1,87 @@
+package com.brackeen.javagamebook.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * AssetLoader
+ *
+ * It manages the definition of each object of type <code>AssetLoader</code>
+ *
+ * The AssetLoader class is a ThreadPool that loads game assets
+ * (images, sounds and sequences) in parallel. Each load is submitted
+ * as a task and returns a Future, so the game only waits for the
+ * assets it needs right now while the rest keep loading behind it.
+ *
+ * @author Quazar Volume
+ */
+public class AssetLoader extends ThreadPool {
+
+    /**
+     * AssetLoader
+     *
+     * Default Constructor
+     *
+     * Creates a new AssetLoader with one thread per available
+     * processor (at least two).
+     */
+    public AssetLoader() {
+        this(Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * AssetLoader
+     *
+     * Parameterized Constructor
+     *
+     * Creates a new AssetLoader with the specified number of threads.
+     *
+     * @param iNumThreads is an object of class <code>Integer</code>
+     */
+    public AssetLoader(int iNumThreads) {
+        super(iNumThreads);
+    }
+
+    /**
+     * submit
+     *
+     * Requests a new loading task and returns immediately. The
+     * result of the task can be obtained later from the returned
+     * Future.
+     *
+     * @param calTask is an object of class <code>Callable</code>
+     * @return object of class <code>Future</code>
+     */
+    public <T> Future<T> submit(Callable<T> calTask) {
+        FutureTask<T> ftTask = new FutureTask<T>(calTask);
+        runTask(ftTask);
+        return ftTask;
+    }
+
+    /**
+     * getResult
+     *
+     * Waits for a loading task to finish and gets its result.
+     * Returns null if the task failed or the wait was interrupted.
+     *
+     * @param futFuture is an object of class <code>Future</code>
+     * @return object of the class loaded by the task, or null
+     */
+    public static <T> T getResult(Future<T> futFuture) {
+        if (futFuture == null) {
+            return null;
+        }
+        try {
+            return futFuture.get();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException ex) {
+            ex.getCause().printStackTrace();
+        }
+        return null;
+    }
+}
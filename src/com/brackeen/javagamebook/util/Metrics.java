@@ -0,0 +1,199 @@
+package com.brackeen.javagamebook.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Metrics
+ *
+ * It manages the definition of each object of type <code>Metrics</code>
+ *
+ * The Metrics class is a registry of named measurements shared by the
+ * game loop and the subsystems it drives (sound, loading...). Each
+ * measurement keeps the number of samples, their sum, minimum,
+ * maximum and last value, so averages can be read at any time without
+ * storing every sample. Counters are measurements whose samples are
+ * all 1. It can be used from any thread.
+ *
+ * @author Quazar Volume
+ */
+public class Metrics {
+
+    private TreeMap tmpStats;   // Measurements by name, sorted
+
+    /**
+     * Metrics
+     *
+     * Default Constructor
+     *
+     * Creates a new, empty Metrics registry.
+     */
+    public Metrics() {
+        tmpStats = new TreeMap();
+    }
+
+    /**
+     * add
+     *
+     * Adds a sample to a measurement, creating it if needed.
+     *
+     * @param sName is an object of class <code>String</code>
+     * @param lValue is an object of class <code>Long</code>
+     */
+    public synchronized void add(String sName, long lValue) {
+        Stat staStat = (Stat)tmpStats.get(sName);
+        if (staStat == null) {
+            staStat = new Stat();
+            tmpStats.put(sName, staStat);
+        }
+        staStat.add(lValue);
+    }
+
+    /**
+     * increment
+     *
+     * Adds one to a counter.
+     *
+     * @param sName is an object of class <code>String</code>
+     */
+    public void increment(String sName) {
+        add(sName, 1);
+    }
+
+    /**
+     * getCount
+     *
+     * Gets the number of samples of a measurement (0 if it has none).
+     *
+     * @param sName is an object of class <code>String</code>
+     * @return object of class <code>Long</code>
+     */
+    public synchronized long getCount(String sName) {
+        Stat staStat = (Stat)tmpStats.get(sName);
+        return (staStat == null) ? 0 : staStat.lCount;
+    }
+
+    /**
+     * getAverage
+     *
+     * Gets the average of the samples of a measurement (0 if it has
+     * none).
+     *
+     * @param sName is an object of class <code>String</code>
+     * @return object of class <code>Double</code>
+     */
+    public synchronized double getAverage(String sName) {
+        Stat staStat = (Stat)tmpStats.get(sName);
+        return (staStat == null) ? 0 : staStat.getAverage();
+    }
+
+    /**
+     * getMax
+     *
+     * Gets the largest sample of a measurement (0 if it has none).
+     *
+     * @param sName is an object of class <code>String</code>
+     * @return object of class <code>Long</code>
+     */
+    public synchronized long getMax(String sName) {
+        Stat staStat = (Stat)tmpStats.get(sName);
+        return (staStat == null) ? 0 : staStat.lMax;
+    }
+
+    /**
+     * getLast
+     *
+     * Gets the last sample of a measurement (0 if it has none).
+     *
+     * @param sName is an object of class <code>String</code>
+     * @return object of class <code>Long</code>
+     */
+    public synchronized long getLast(String sName) {
+        Stat staStat = (Stat)tmpStats.get(sName);
+        return (staStat == null) ? 0 : staStat.lLast;
+    }
+
+    /**
+     * reset
+     *
+     * Forgets every measurement.
+     */
+    public synchronized void reset() {
+        tmpStats.clear();
+    }
+
+    /**
+     * toString
+     *
+     * Gets a report of every measurement, one per line, sorted by
+     * name.
+     *
+     * @return object of class <code>String</code>
+     */
+    public synchronized String toString() {
+        StringBuffer sbReport = new StringBuffer();
+        Iterator iteI = tmpStats.entrySet().iterator();
+        while (iteI.hasNext()) {
+            Map.Entry entEntry = (Map.Entry)iteI.next();
+            Stat staStat = (Stat)entEntry.getValue();
+            sbReport.append(entEntry.getKey())
+                .append(": count=").append(staStat.lCount)
+                .append(" avg=").append(Math.round(staStat.getAverage()))
+                .append(" min=").append(staStat.lMin)
+                .append(" max=").append(staStat.lMax)
+                .append(" last=").append(staStat.lLast)
+                .append('\n');
+        }
+        return sbReport.toString();
+    }
+
+    /**
+     * Stat
+     *
+     * It manages the definition of each object of type <code>Stat</code>
+     *
+     * The Stat class holds the summary of the samples of one
+     * measurement.
+     *
+     * @author Quazar Volume
+     */
+    private static class Stat {
+
+        long lCount;    // Number of samples
+        long lSum;      // Sum of the samples
+        long lMin;      // Smallest sample
+        long lMax;      // Largest sample
+        long lLast;     // Last sample
+
+        /**
+         * add
+         *
+         * Adds a sample.
+         *
+         * @param lValue is an object of class <code>Long</code>
+         */
+        void add(long lValue) {
+            if (lCount == 0 || lValue < lMin) {
+                lMin = lValue;
+            }
+            if (lCount == 0 || lValue > lMax) {
+                lMax = lValue;
+            }
+            lCount++;
+            lSum += lValue;
+            lLast = lValue;
+        }
+
+        /**
+         * getAverage
+         *
+         * Gets the average of the samples.
+         *
+         * @return object of class <code>Double</code>
+         */
+        double getAverage() {
+            return (lCount == 0) ? 0 : (double)lSum / lCount;
+        }
+    }
+}